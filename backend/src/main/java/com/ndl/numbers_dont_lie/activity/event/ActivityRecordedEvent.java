@@ -0,0 +1,9 @@
+package com.ndl.numbers_dont_lie.activity.event;
+
+import java.time.Instant;
+
+/**
+ * Published after an activity entry was saved.
+ */
+public record ActivityRecordedEvent(Long userId, String email, Instant at) {
+}
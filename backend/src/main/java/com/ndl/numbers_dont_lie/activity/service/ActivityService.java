@@ -3,9 +3,11 @@ package com.ndl.numbers_dont_lie.activity.service;
 import com.ndl.numbers_dont_lie.activity.dto.ActivityDto;
 import com.ndl.numbers_dont_lie.activity.dto.ActivityWeekSummary;
 import com.ndl.numbers_dont_lie.activity.entity.ActivityEntry;
+import com.ndl.numbers_dont_lie.activity.event.ActivityRecordedEvent;
 import com.ndl.numbers_dont_lie.activity.repository.ActivityEntryRepository;
 import com.ndl.numbers_dont_lie.entity.UserEntity;
 import com.ndl.numbers_dont_lie.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
@@ -15,9 +17,10 @@ import java.util.*;
 public class ActivityService {
   private final UserRepository users;
   private final ActivityEntryRepository repo;
+  private final ApplicationEventPublisher events;
 
-  public ActivityService(UserRepository users, ActivityEntryRepository repo) {
-    this.users = users; this.repo = repo;
+  public ActivityService(UserRepository users, ActivityEntryRepository repo, ApplicationEventPublisher events) {
+    this.users = users; this.repo = repo; this.events = events;
   }
 
   public ActivityEntry add(String email, ActivityDto dto) {
@@ -34,31 +37,58 @@ public class ActivityService {
     ActivityEntry e = new ActivityEntry();
     e.setUser(user); e.setAt(at);
     e.setType(dto.type); e.setMinutes(dto.minutes); e.setIntensity(dto.intensity);
-    return repo.save(e);
+    ActivityEntry saved = repo.save(e);
+    events.publishEvent(new ActivityRecordedEvent(user.getId(), email, at));
+    return saved;
   }
 
   public List<ActivityEntry> list(String email, LocalDate from, LocalDate to) {
     UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
+    return list(user, from, to);
+  }
+
+  public List<ActivityEntry> list(UserEntity user, LocalDate from, LocalDate to) {
     Instant start = from.atStartOfDay(ZoneOffset.UTC).toInstant();
     Instant end   = to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
     return repo.findAllByUserAndAtBetweenOrderByAtAsc(user, start, end);
   }
 
   public ActivityWeekSummary weekSummary(String email, LocalDate anyDateInsideWeek) {
+    UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
+    return weekSummaries(user, anyDateInsideWeek, 1).get(0);
+  }
+
+  /**
+   * Summaries of the week containing the date and of the (weeks - 1) weeks before it, oldest first,
+   * read with a single query.
+   */
+  public List<ActivityWeekSummary> weekSummaries(UserEntity user, LocalDate anyDateInsideWeek, int weeks) {
+    if (weeks < 1) throw new IllegalArgumentException("weeks must be positive");
     // ISO week: понедельник — воскресенье
-    LocalDate monday = anyDateInsideWeek.with(java.time.temporal.TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-    LocalDate sunday = monday.plusDays(6);
-    List<ActivityEntry> entries = list(email, monday, sunday);
+    LocalDate lastMonday = anyDateInsideWeek.with(java.time.temporal.TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    LocalDate firstMonday = lastMonday.minusWeeks(weeks - 1L);
+    List<ActivityEntry> entries = list(user, firstMonday, lastMonday.plusDays(6));
 
-    int total = 0; int sessions = entries.size();
+    List<ActivityWeekSummary> summaries = new ArrayList<>(weeks);
+    for (LocalDate monday = firstMonday; !monday.isAfter(lastMonday); monday = monday.plusWeeks(1)) {
+      summaries.add(summarizeWeek(monday, entries));
+    }
+    return summaries;
+  }
+
+  private ActivityWeekSummary summarizeWeek(LocalDate monday, List<ActivityEntry> entries) {
+    LocalDate sunday = monday.plusDays(6);
+    int total = 0; int sessions = 0;
     Map<String,Integer> byType = new TreeMap<>();
     Map<Integer,Integer> byWeekday = new TreeMap<>();
     Set<LocalDate> days = new HashSet<>();
 
     for (ActivityEntry e : entries) {
+      LocalDate d = LocalDateTime.ofInstant(e.getAt(), ZoneOffset.UTC).toLocalDate();
+      if (d.isBefore(monday) || d.isAfter(sunday)) continue;
+      sessions++;
       total += e.getMinutes();
       byType.merge(e.getType(), e.getMinutes(), Integer::sum);
-      LocalDate d = LocalDateTime.ofInstant(e.getAt(), ZoneOffset.UTC).toLocalDate();
       days.add(d);
       int wd = d.getDayOfWeek().getValue(); // 1..7
       byWeekday.merge(wd, e.getMinutes(), Integer::sum);
@@ -75,9 +105,14 @@ public class ActivityService {
   }
 
   public Map<Integer,Integer> monthByDayMinutes(String email, int year, int month) {
+    UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
+    return monthByDayMinutes(user, year, month);
+  }
+
+  public Map<Integer,Integer> monthByDayMinutes(UserEntity user, int year, int month) {
     java.time.LocalDate first = java.time.LocalDate.of(year, month, 1);
     java.time.LocalDate last  = first.with(java.time.temporal.TemporalAdjusters.lastDayOfMonth());
-    List<ActivityEntry> entries = list(email, first, last);
+    List<ActivityEntry> entries = list(user, first, last);
     Map<Integer,Integer> byDay = new java.util.TreeMap<>();
     for (ActivityEntry e : entries) {
       int day = java.time.LocalDateTime.ofInstant(e.getAt(), java.time.ZoneOffset.UTC).getDayOfMonth();
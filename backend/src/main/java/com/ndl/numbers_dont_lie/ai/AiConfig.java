@@ -1,14 +1,31 @@
 package com.ndl.numbers_dont_lie.ai;
 
 import com.ndl.numbers_dont_lie.ai.cache.AiSessionCache;
+import com.ndl.numbers_dont_lie.ai.cache.LlmResponseCache;
 import com.ndl.numbers_dont_lie.ai.embedding.EmbeddingService;
 import com.ndl.numbers_dont_lie.ai.embedding.SimpleTfIdfEmbedding;
+import com.ndl.numbers_dont_lie.ai.repository.AiSessionCacheRepository;
+import com.ndl.numbers_dont_lie.ai.service.AiInsightCacheHistoryMigration;
+import com.ndl.numbers_dont_lie.ai.repository.LlmResponseCacheRepository;
+import com.ndl.numbers_dont_lie.ai.stub.GroqStubServer;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiTelemetry;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiTokenBudget;
+import io.micrometer.core.instrument.MeterRegistry;
 import com.ndl.numbers_dont_lie.ai.vector.InMemoryVectorStore;
 import com.ndl.numbers_dont_lie.ai.vector.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
 /**
  * AI configuration with optional Groq integration.
  * 
@@ -23,16 +40,122 @@ public class AiConfig {
     /**
      * GroqClient bean - only created if GROQ_API_KEY is present.
      * This prevents application startup failure when API key is not configured.
+     * The rate limiter is shared by every caller, so its limits should match the account quotas.
+     * Retry and circuit breaker settings bound how long a Groq outage can hold up a request.
+     * When the stub server is enabled it replaces the configured base URL.
      */
     @Bean
     @ConditionalOnProperty(name = "groq.api.key", matchIfMissing = false)
-    public GroqClient groqClient() {
-        return new GroqClient();
+    public GroqClient groqClient(
+            @Value("${groq.api.key}") String apiKey,
+            @Value("${groq.api.base-url:" + GroqClient.DEFAULT_BASE_URL + "}") String baseUrl,
+            @Value("${groq.client.max-in-flight:4}") int maxInFlight,
+            @Value("${groq.client.requests-per-minute:30}") int requestsPerMinute,
+            @Value("${groq.client.tokens-per-minute:12000}") int tokensPerMinute,
+            @Value("${groq.client.retry.max-attempts:3}") int maxAttempts,
+            @Value("${groq.client.retry.base-delay-ms:500}") long baseDelayMs,
+            @Value("${groq.client.retry.max-delay-ms:8000}") long maxDelayMs,
+            @Value("${groq.client.retry.max-retry-after-ms:20000}") long maxRetryAfterMs,
+            @Value("${groq.client.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${groq.client.breaker.open-seconds:30}") long openSeconds,
+            @Value("${groq.cache.enabled:true}") boolean cacheEnabled,
+            LlmResponseCache llmResponseCache,
+            AiTelemetry aiTelemetry,
+            ObjectProvider<GroqStubServer> stubServer) {
+        GroqStubServer stub = stubServer.getIfAvailable();
+        return new GroqClient(
+            stub != null ? stub.baseUrl() : baseUrl,
+            apiKey,
+            new GroqRateLimiter(maxInFlight, requestsPerMinute, tokensPerMinute),
+            new GroqRetryPolicy(maxAttempts, Duration.ofMillis(baseDelayMs),
+                Duration.ofMillis(maxDelayMs), Duration.ofMillis(maxRetryAfterMs)),
+            new GroqCircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds)),
+            cacheEnabled ? llmResponseCache : null,
+            aiTelemetry);
+    }
+
+    /**
+     * AI call metrics (latency, tokens, cost, errors) and the per-user daily token budget.
+     * Prices are per million tokens of the configured model.
+     */
+    @Bean
+    public AiTelemetry aiTelemetry(
+            MeterRegistry meterRegistry,
+            @Value("${app.ai.budget.daily-tokens-per-user:200000}") long dailyTokensPerUser,
+            @Value("${groq.pricing.prompt-usd-per-million:0.59}") double promptUsdPerMillion,
+            @Value("${groq.pricing.completion-usd-per-million:0.79}") double completionUsdPerMillion) {
+        return new AiTelemetry(meterRegistry, new AiTokenBudget(dailyTokensPerUser, Clock.systemUTC()),
+            promptUsdPerMillion, completionUsdPerMillion);
+    }
+
+    /**
+     * Local OpenAI-compatible stand-in for Groq, for load and latency runs without real quota.
+     * Never enable in production: every AI call is answered by the stub.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "groq.stub.enabled", havingValue = "true")
+    public GroqStubServer groqStubServer(
+            @Value("${groq.stub.port:0}") int port,
+            @Value("${groq.stub.mode:REPLAY}") GroqStubServer.Mode mode,
+            @Value("${groq.stub.fixture-dir:groq-fixtures}") String fixtureDir,
+            @Value("${groq.stub.upstream-url:" + GroqClient.DEFAULT_BASE_URL + "}") String upstreamUrl,
+            @Value("${groq.stub.upstream-api-key:}") String upstreamApiKey,
+            @Value("${groq.stub.latency.median-ms:800}") long medianMs,
+            @Value("${groq.stub.latency.p95-ms:2500}") long p95Ms,
+            @Value("${groq.stub.rate-limited-rate:0.0}") double rateLimitedRate,
+            @Value("${groq.stub.server-error-rate:0.0}") double serverErrorRate,
+            @Value("${groq.stub.retry-after-seconds:1}") long retryAfterSeconds,
+            @Value("${groq.stub.stream-chunks:16}") int streamChunks,
+            @Value("${groq.stub.seed:0}") long seed) throws IOException {
+        return new GroqStubServer(new GroqStubServer.Settings(mode, Path.of(fixtureDir), upstreamUrl, upstreamApiKey,
+                Duration.ofMillis(medianMs), Duration.ofMillis(p95Ms), rateLimitedRate, serverErrorRate,
+                Duration.ofSeconds(retryAfterSeconds), streamChunks, seed))
+            .start(port);
+    }
+
+    /**
+     * Content-addressed response cache for Groq (LRU + llm_response_cache table).
+     * Only prompts at or below max-temperature are cached; creative prompts always call the model.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "groq.api.key", matchIfMissing = false)
+    public LlmResponseCache llmResponseCache(
+            LlmResponseCacheRepository repository,
+            @Value("${groq.cache.max-entries:1000}") int maxEntries,
+            @Value("${groq.cache.ttl-hours:24}") long ttlHours,
+            @Value("${groq.cache.max-temperature:0.3}") double maxTemperature) {
+        return new LlmResponseCache(repository, maxEntries, Duration.ofHours(ttlHours), maxTemperature);
+    }
+
+    /**
+     * Strategy and meal-structure results per user (LRU + ai_session_cache table).
+     * Invalidated by profile and nutritional-preference updates.
+     */
+    @Bean
+    public AiSessionCache aiSessionCache(
+            AiSessionCacheRepository repository,
+            @Value("${app.ai.session-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.ai.session-cache.near-ttl-minutes:10}") long nearTtlMinutes,
+            @Value("${app.ai.session-cache.ttl-days:7}") long ttlDays,
+            @Value("${app.ai.session-cache.miss-ttl-seconds:30}") long missTtlSeconds) {
+        return new AiSessionCache(repository, maxEntries, Duration.ofMinutes(nearTtlMinutes), Duration.ofDays(ttlDays),
+            Duration.ofSeconds(missTtlSeconds));
+    }
+
+    /**
+     * Removes pre-upsert insight history before Hibernate adds the (user, scope, goal_key) unique key.
+     * The entity manager factory depends on it, so the deletes finish before the schema update runs.
+     */
+    @Bean(initMethod = "migrate")
+    public AiInsightCacheHistoryMigration aiInsightCacheHistoryMigration(
+            DataSource dataSource,
+            @Value("${app.ai.insight-cache.purge-batch-size:500}") int batchSize) {
+        return new AiInsightCacheHistoryMigration(dataSource, batchSize);
     }
 
     @Bean
-    public AiSessionCache aiSessionCache() {
-        return new AiSessionCache();
+    public static EntityManagerFactoryDependsOnPostProcessor aiInsightCacheMigrationBeforeSchemaUpdate() {
+        return new EntityManagerFactoryDependsOnPostProcessor(AiInsightCacheHistoryMigration.class);
     }
 
     /**
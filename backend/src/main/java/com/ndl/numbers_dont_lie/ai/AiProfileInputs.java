@@ -0,0 +1,72 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import com.ndl.numbers_dont_lie.ai.dto.AiStrategyRequest;
+import com.ndl.numbers_dont_lie.profile.entity.ProfileEntity;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps a stored profile to the inputs of the AI strategy step (STEP 4.1).
+ *
+ * Shared by the plan bootstrap and by profile updates, so that the fingerprint an
+ * {@link com.ndl.numbers_dont_lie.ai.cache.AiSessionCache} entry was stored with can be
+ * recomputed after an update and compared.
+ */
+public final class AiProfileInputs {
+
+    private AiProfileInputs() {
+    }
+
+    public static AiStrategyRequest strategyRequest(Long userId, ProfileEntity profile) {
+        AiStrategyRequest request = new AiStrategyRequest();
+        request.setUserId(String.valueOf(userId));
+        request.setTimezone(profile.getTimezone() != null
+            ? ZoneId.of(profile.getTimezone())
+            : ZoneId.systemDefault());
+        request.setAge(profile.getAge() != null ? profile.getAge() : 30);
+        request.setSex(profile.getGender() != null ? profile.getGender() : "other");
+        request.setHeightCm(profile.getHeightCm() != null ? profile.getHeightCm() : 170);
+        request.setWeightKg(profile.getWeightKg() != null ? profile.getWeightKg() : 70);
+        request.setGoal(profile.getGoal() != null ? profile.getGoal() : "general_fitness");
+        request.setDietaryPreferences(Collections.emptyMap());
+        request.setAllergies(Collections.emptyList());
+
+        int mealCount = mealCount(profile.getMealFrequency());
+        Map<String, Integer> mealFreq = new HashMap<>();
+        mealFreq.put("breakfast", 1);
+        mealFreq.put("lunch", 1);
+        mealFreq.put("dinner", 1);
+        mealFreq.put("snacks", Math.max(0, mealCount - 3));
+        request.setMealFrequency(mealFreq);
+        return request;
+    }
+
+    /**
+     * Parse meal frequency string (e.g., "THREE_MEALS") to integer count.
+     */
+    public static int mealCount(String mealFrequency) {
+        if (mealFrequency == null) {
+            return 3; // Default to 3 meals
+        }
+
+        switch (mealFrequency.toUpperCase()) {
+            case "THREE_MEALS":
+            case "3":
+                return 3;
+            case "FOUR_MEALS":
+            case "4":
+                return 4;
+            case "FIVE_MEALS":
+            case "5":
+                return 5;
+            case "SIX_MEALS":
+            case "6":
+                return 6;
+            default:
+                return 3;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.ndl.numbers_dont_lie.ai;
+
+/**
+ * Kind of prompt sent to Groq. Circuit breakers are kept per endpoint and prompt type,
+ * so a failing recipe prompt does not stop strategy analysis and vice versa.
+ * The key is also the prompt_type tag of the AI call metrics.
+ */
+public enum AiPromptType {
+    STRATEGY("strategy"),
+    MEAL_STRUCTURE("meal-structure"),
+    RECIPE("recipe"),
+    INSIGHTS("insights"),
+    SUMMARY("summary"),
+    SUBSTITUTION("substitution"),
+    SUGGESTIONS("suggestions"),
+    GENERAL("general");
+
+    private final String key;
+
+    AiPromptType(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
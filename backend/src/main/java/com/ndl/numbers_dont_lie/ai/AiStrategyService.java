@@ -7,12 +7,14 @@ import com.ndl.numbers_dont_lie.ai.dto.AiMealStructureResult;
 import com.ndl.numbers_dont_lie.ai.dto.AiStrategyRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiStrategyResult;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service to craft prompts, call Groq, validate JSON schema and store in-session.
@@ -45,19 +47,29 @@ public class AiStrategyService {
      * DEBUG ONLY: When mockMode=true, returns hardcoded strategy.
      */
     public AiStrategyResult analyzeStrategy(AiStrategyRequest req) {
+        return GroqClient.await(analyzeStrategyAsync(req));
+    }
+
+    /**
+     * Non-blocking STEP 4.1, e.g. to bootstrap several users concurrently.
+     * Chain {@link #analyzeMealStructureAsync} on the result for STEP 4.2.
+     */
+    public CompletableFuture<AiStrategyResult> analyzeStrategyAsync(AiStrategyRequest req) {
         // DEBUG ONLY: Return mock response if flag is enabled
         if (mockMode) {
             logger.warn("[DEBUG MOCK] Returning mock AI strategy (Groq API bypassed)");
             AiStrategyResult mockResult = createMockStrategy(req);
-            cache.putStrategyResult(req.getUserId(), mockResult);
-            return mockResult;
+            cache.putStrategyResult(req.getUserId(), mockResult, AiSessionCache.fingerprint(req));
+            return CompletableFuture.completedFuture(mockResult);
         }
         
         String prompt = buildStrategyPrompt(req);
-        JsonNode json = groqClient.callForJson(prompt);
-        AiStrategyResult result = validateAndMapStrategy(json);
-        cache.putStrategyResult(req.getUserId(), result);
-        return result;
+        return AiCallScope.callAs(req.getUserId(),
+                () -> groqClient.callForJsonAsync(AiPromptType.STRATEGY, prompt)).thenApply(json -> {
+            AiStrategyResult result = validateAndMapStrategy(json);
+            cache.putStrategyResult(req.getUserId(), result, AiSessionCache.fingerprint(req));
+            return result;
+        });
     }
 
     public AiStrategyResult getCachedStrategy(String userId) {
@@ -76,14 +88,21 @@ public class AiStrategyService {
      * DEBUG ONLY: When mockMode=true, returns hardcoded meal structure.
      */
     public AiMealStructureResult analyzeMealStructure(AiMealStructureRequest req) {
+        return GroqClient.await(analyzeMealStructureAsync(req));
+    }
+
+    /**
+     * Non-blocking STEP 4.2. Fails with {@link AiClientException} when STEP 4.1 is missing.
+     */
+    public CompletableFuture<AiMealStructureResult> analyzeMealStructureAsync(AiMealStructureRequest req) {
         // Enforce sequential flow: STEP 4.1 must complete first
         if (req.getStrategyResult() == null) {
             AiStrategyResult cached = cache.getStrategyResult(req.getUserId());
             if (cached == null) {
-                throw new AiClientException(
+                return CompletableFuture.failedFuture(new AiClientException(
                     "Cannot analyze meal structure: STEP 4.1 (strategy) not completed. " +
                     "Call analyzeStrategy() first."
-                );
+                ));
             }
             req.setStrategyResult(cached);
         }
@@ -93,14 +112,16 @@ public class AiStrategyService {
             logger.warn("[DEBUG MOCK] Returning mock meal structure (Groq API bypassed)");
             AiMealStructureResult mockResult = createMockMealStructure(req);
             cache.putMealStructureResult(req.getUserId(), mockResult);
-            return mockResult;
+            return CompletableFuture.completedFuture(mockResult);
         }
 
         String prompt = buildMealStructurePrompt(req);
-        JsonNode json = groqClient.callForJson(prompt);
-        AiMealStructureResult result = validateAndMapMealStructure(json);
-        cache.putMealStructureResult(req.getUserId(), result);
-        return result;
+        return AiCallScope.callAs(req.getUserId(),
+                () -> groqClient.callForJsonAsync(AiPromptType.MEAL_STRUCTURE, prompt)).thenApply(json -> {
+            AiMealStructureResult result = validateAndMapMealStructure(json);
+            cache.putMealStructureResult(req.getUserId(), result);
+            return result;
+        });
     }
 
     public AiMealStructureResult getCachedMealStructure(String userId) {
@@ -109,11 +130,11 @@ public class AiStrategyService {
 
     // ========== Private: STEP 4.1 Prompt Building ==========
 
+    // No user id in the prompt: equal profiles give equal prompts, which the response cache shares
     private String buildStrategyPrompt(AiStrategyRequest req) {
         StringBuilder sb = new StringBuilder();
         sb.append("Given the following normalized user profile inputs, compute a nutrition strategy.\n");
         sb.append("Inputs:\n");
-        sb.append("- user_id: ").append(req.getUserId()).append("\n");
         sb.append("- timezone: ").append(req.getTimezone()).append("\n");
         sb.append("- age: ").append(req.getAge()).append("\n");
         sb.append("- sex: ").append(req.getSex()).append("\n");
@@ -0,0 +1,132 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Circuit breakers for Groq, one per endpoint and prompt type (e.g. "chat/recipe").
+ *
+ * Design intent:
+ * - CLOSED: calls go through; consecutive transient failures (after retries) are counted
+ * - OPEN after failureThreshold of them: calls fail at once with no network round trip,
+ *   so callers drop to their DB-only path instead of waiting out timeouts
+ * - HALF_OPEN after openDuration: a single probe call is let through; its success closes the
+ *   breaker, its failure opens it for another openDuration
+ * - Client errors (400, 401) are not counted: they are not a sign of an outage
+ */
+public class GroqCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public GroqCircuitBreaker(int failureThreshold, Duration openDuration) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public static String key(String endpoint, AiPromptType promptType) {
+        return endpoint + "/" + promptType.getKey();
+    }
+
+    /**
+     * Whether a call may start now. In HALF_OPEN only the first caller gets true (the probe).
+     */
+    public boolean tryAcquire(String key) {
+        return circuit(key).tryAcquire(System.nanoTime());
+    }
+
+    public void onSuccess(String key) {
+        circuit(key).onSuccess();
+    }
+
+    public void onFailure(String key) {
+        circuit(key).onFailure(System.nanoTime());
+    }
+
+    /**
+     * The call did not reach a verdict (client error, cancelled): free a HALF_OPEN probe slot.
+     */
+    public void onIgnored(String key) {
+        circuit(key).onIgnored();
+    }
+
+    public State state(String key) {
+        Circuit circuit = circuits.get(key);
+        return circuit != null ? circuit.state(System.nanoTime()) : State.CLOSED;
+    }
+
+    /**
+     * State of every breaker that has seen a call, by key.
+     */
+    public Map<String, State> snapshot() {
+        long now = System.nanoTime();
+        Map<String, State> states = new TreeMap<>();
+        circuits.forEach((key, circuit) -> states.put(key, circuit.state(now)));
+        return states;
+    }
+
+    private Circuit circuit(String key) {
+        return circuits.computeIfAbsent(key, k -> new Circuit());
+    }
+
+    private final class Circuit {
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean probeInFlight;
+
+        synchronized boolean tryAcquire(long now) {
+            switch (state(now)) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    if (probeInFlight) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    probeInFlight = true;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        synchronized void onSuccess() {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            probeInFlight = false;
+        }
+
+        synchronized void onFailure(long now) {
+            consecutiveFailures++;
+            if (probeInFlight || consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = now;
+            }
+            probeInFlight = false;
+        }
+
+        synchronized void onIgnored() {
+            probeInFlight = false;
+        }
+
+        synchronized State state(long now) {
+            if (state == State.OPEN && now - openedAt >= openNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        }
+    }
+}
@@ -3,9 +3,17 @@ package com.ndl.numbers_dont_lie.ai;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.cache.LlmResponseCache;
+import com.ndl.numbers_dont_lie.ai.exception.AiBudgetExceededException;
+import com.ndl.numbers_dont_lie.ai.exception.AiCircuitOpenException;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.ConnectException;
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -13,34 +21,141 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Groq client wrapper for JSON-only responses with optional function calling.
- * Reads API key from env GROQ_API_KEY. Does not persist results.
+ * Reads API key from env GROQ_API_KEY unless one is passed in. Does not persist results.
+ * The base URL is configurable, so the same HTTP and parsing path can run against any
+ * OpenAI-compatible server (e.g. the local {@code GroqStubServer} in load tests).
+ *
+ * Every call goes through {@link HttpClient#sendAsync} behind a shared {@link GroqRateLimiter}
+ * (max in-flight requests, requests and tokens per minute). The *Async methods return
+ * immediately so callers can fan out; the synchronous methods wait on the same pipeline.
+ *
+ * Transient failures (429, 5xx, timeouts, connection errors) are retried per {@link GroqRetryPolicy};
+ * what still fails feeds a {@link GroqCircuitBreaker} per endpoint and prompt type. While a
+ * breaker is open calls fail at once with {@link AiCircuitOpenException}.
+ *
+ * Low-temperature requests are answered from the {@link LlmResponseCache} when an identical
+ * request was answered before; a hit costs no permit, no tokens and ignores the breaker.
+ *
+ * With {@link AiTelemetry} every call is timed per prompt type and endpoint, its token usage
+ * counted and charged to the user of the caller's {@link AiCallScope}; a user over the daily
+ * token budget gets {@link AiBudgetExceededException} without a request being sent.
+ *
+ * The *Streamed methods send {@code stream: true} and report each top-level field of the JSON
+ * answer to a {@link GroqStreamListener} as soon as it is complete; they return the same final
+ * JSON as their non-streamed counterparts and are not cached.
  */
-public class GroqClient {
+public class GroqClient implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GroqClient.class);
+    public static final String ENDPOINT_CHAT = "chat";
+    public static final String ENDPOINT_FUNCTION_RESULT = "function-result";
     private static final String DEFAULT_MODEL = "llama-3.3-70b-versatile";
+    public static final String DEFAULT_BASE_URL = "https://api.groq.com/openai/v1";
     private static final double DEFAULT_TEMPERATURE = 0.2;
     private static final double DEFAULT_TOP_P = 0.95;
+    // Rough token estimate for admission; reconciled with the reported usage afterwards
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int COMPLETION_TOKEN_ALLOWANCE = 1024;
     private final String apiKey;
+    private final URI chatCompletionsUri;
     private final HttpClient httpClient;
+    private final GroqRateLimiter rateLimiter;
+    private final GroqRetryPolicy retryPolicy;
+    private final GroqCircuitBreaker circuitBreaker;
+    private final LlmResponseCache responseCache;
+    private final AiTelemetry telemetry;
+    private final ExecutorService executor;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public GroqClient() {
-        this.apiKey = System.getenv("GROQ_API_KEY");
+        this(new GroqRateLimiter(4, 30, 12_000), GroqRetryPolicy.defaults(),
+            new GroqCircuitBreaker(5, Duration.ofSeconds(30)), null);
+    }
+
+    /**
+     * @param responseCache response cache, or null to always call Groq
+     */
+    public GroqClient(
+            GroqRateLimiter rateLimiter,
+            GroqRetryPolicy retryPolicy,
+            GroqCircuitBreaker circuitBreaker,
+            LlmResponseCache responseCache) {
+        this(DEFAULT_BASE_URL, System.getenv("GROQ_API_KEY"), rateLimiter, retryPolicy, circuitBreaker, responseCache, null);
+    }
+
+    /**
+     * @param baseUrl       OpenAI-compatible API root, e.g. {@value #DEFAULT_BASE_URL}
+     * @param apiKey        bearer token sent with every request
+     * @param responseCache response cache, or null to always call Groq
+     * @param telemetry     metrics and token budget, or null for none
+     */
+    public GroqClient(
+            String baseUrl,
+            String apiKey,
+            GroqRateLimiter rateLimiter,
+            GroqRetryPolicy retryPolicy,
+            GroqCircuitBreaker circuitBreaker,
+            LlmResponseCache responseCache,
+            AiTelemetry telemetry) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            throw new IllegalArgumentException("Groq base URL must not be blank");
+        }
+        this.chatCompletionsUri = URI.create(baseUrl.replaceAll("/+$", "") + "/chat/completions");
+        this.apiKey = apiKey;
         if (this.apiKey == null || this.apiKey.isBlank()) {
             // Note: This should never happen if @ConditionalOnProperty works correctly
             // But kept as defensive check
             throw new AiClientException("Groq API key not configured. Set GROQ_API_KEY.");
         }
+        this.rateLimiter = rateLimiter;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.responseCache = responseCache;
+        this.telemetry = telemetry;
+        // Permit waits and response handling run on virtual threads, never on request threads
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
                 .build();
     }
 
+    public GroqRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public GroqCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public LlmResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * False while the chat breaker of this prompt type is open; callers should then skip AI.
+     */
+    public boolean isAvailable(AiPromptType promptType) {
+        return circuitBreaker.state(GroqCircuitBreaker.key(ENDPOINT_CHAT, promptType)) != GroqCircuitBreaker.State.OPEN;
+    }
+
     /**
      * Call Groq API with structured prompt for JSON-only response.
      * Generic method supporting all prompt types (strategy, meal structure, etc.).
@@ -63,75 +178,97 @@ public class GroqClient {
         return callForJson(prompt, functions, DEFAULT_TEMPERATURE);
     }
 
+    public CompletableFuture<JsonNode> callForJsonAsync(AiPromptType promptType, String prompt) {
+        return callForJsonAsync(promptType, prompt, null, DEFAULT_TEMPERATURE);
+    }
+
     public JsonNode callForJson(String prompt, Double temperature) {
         return callForJson(prompt, null, temperature);
     }
 
+    public JsonNode callForJson(AiPromptType promptType, String prompt, Double temperature) {
+        return await(callForJsonAsync(promptType, prompt, null, temperature));
+    }
+
     public JsonNode callForJson(String prompt, List<Map<String, Object>> functions, Double temperature) {
-        try {
-            List<Object> messages = new ArrayList<>();
-            messages.add(Map.of(
-                "role", "system", 
-                "content", "You are a nutrition assistant. Respond STRICTLY with valid JSON. " +
-                          "No markdown, no code fences, no prose outside JSON. " +
-                          "When you need nutritional data, call the calculate_nutrition function."
-            ));
-            messages.add(Map.of("role", "user", "content", prompt));
-
-            Map<String, Object> requestBody = new java.util.HashMap<>();
-            requestBody.put("model", DEFAULT_MODEL);
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", temperature != null ? temperature : DEFAULT_TEMPERATURE);
-            requestBody.put("top_p", DEFAULT_TOP_P);
-            
-            if (functions != null && !functions.isEmpty()) {
-                requestBody.put("functions", functions);
-                requestBody.put("function_call", "auto");
-            }
+        return await(callForJsonAsync(prompt, functions, temperature));
+    }
 
-            String body = objectMapper.writeValueAsString(requestBody);
+    /**
+     * Non-blocking variant of {@link #callForJson(String, List, Double)}.
+     * The caller's thread is released immediately; waiting for a rate-limit permit happens
+     * on a virtual thread and the HTTP exchange on the client's async pipeline.
+     * Completes exceptionally with {@link AiClientException}.
+     */
+    public CompletableFuture<JsonNode> callForJsonAsync(String prompt, List<Map<String, Object>> functions, Double temperature) {
+        return callForJsonAsync(AiPromptType.GENERAL, prompt, functions, temperature);
+    }
 
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api.groq.com/openai/v1/chat/completions"))
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(60))
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .build();
+    public CompletableFuture<JsonNode> callForJsonAsync(
+            AiPromptType promptType, String prompt, List<Map<String, Object>> functions, Double temperature) {
+        Map<String, Object> requestBody = chatRequestBody(prompt, functions, temperature);
+        return cachedSend(ENDPOINT_CHAT, promptType, requestBody, "Groq request failed.", this::chatContent);
+    }
 
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-            handleHttpErrors(response);
+    /**
+     * Streamed variant of {@link #callForJsonAsync(AiPromptType, String, List, Double)}.
+     * A function call is not streamed to the listener; it is returned whole as usual.
+     */
+    public CompletableFuture<JsonNode> callForJsonStreamed(
+            AiPromptType promptType,
+            String prompt,
+            List<Map<String, Object>> functions,
+            Double temperature,
+            GroqStreamListener listener) {
+        Map<String, Object> requestBody = chatRequestBody(prompt, functions, temperature);
+        requestBody.put("stream", true);
+        return send(ENDPOINT_CHAT, promptType, requestBody, "Groq request failed.", listener, AiCallScope.currentUserId())
+            .thenApply(this::chatContent);
+    }
 
-            JsonNode root = objectMapper.readTree(response.body());
-            JsonNode choice = root.path("choices").path(0);
-            JsonNode message = choice.path("message");
+    private Map<String, Object> chatRequestBody(String prompt, List<Map<String, Object>> functions, Double temperature) {
+        List<Object> messages = new ArrayList<>();
+        messages.add(Map.of(
+            "role", "system", 
+            "content", "You are a nutrition assistant. Respond STRICTLY with valid JSON. " +
+                      "No markdown, no code fences, no prose outside JSON. " +
+                      "When you need nutritional data, call the calculate_nutrition function."
+        ));
+        messages.add(Map.of("role", "user", "content", prompt));
 
-            // Check for function call
-            if (message.has("function_call")) {
-                return message; // Return entire message with function_call
-            }
+        Map<String, Object> requestBody = new java.util.HashMap<>();
+        requestBody.put("model", DEFAULT_MODEL);
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", temperature != null ? temperature : DEFAULT_TEMPERATURE);
+        requestBody.put("top_p", DEFAULT_TOP_P);
+        
+        if (functions != null && !functions.isEmpty()) {
+            requestBody.put("functions", functions);
+            requestBody.put("function_call", "auto");
+        }
+        return requestBody;
+    }
 
-            // Regular content response
-            JsonNode content = message.path("content");
-            if (content == null || content.isMissingNode() || !content.isTextual()) {
-                throw new AiClientException("Malformed Groq response. No content.");
-            }
-            
-            String contentText = content.asText();
-            try {
-                return objectMapper.readTree(contentText);
-            } catch (JsonProcessingException e) {
-                throw new AiClientException("Model did not return valid JSON.", e);
-            }
-        } catch (HttpTimeoutException e) {
-            Thread.currentThread().interrupt();
-            throw new AiClientException("Groq request timed out. Please retry.", e);
-        } catch (ConnectException e) {
-            Thread.currentThread().interrupt();
-            throw new AiClientException("Groq connectivity error. Check network.", e);
-        } catch (IOException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AiClientException("Groq request failed.", e);
+    private JsonNode chatContent(JsonNode root) {
+        JsonNode choice = root.path("choices").path(0);
+        JsonNode message = choice.path("message");
+
+        // Check for function call
+        if (message.has("function_call")) {
+            return message; // Return entire message with function_call
+        }
+
+        // Regular content response
+        JsonNode content = message.path("content");
+        if (content == null || content.isMissingNode() || !content.isTextual()) {
+            throw new AiClientException("Malformed Groq response. No content.");
+        }
+        
+        String contentText = content.asText();
+        try {
+            return objectMapper.readTree(contentText);
+        } catch (JsonProcessingException e) {
+            throw new AiClientException("Model did not return valid JSON.", e);
         }
     }
 
@@ -149,85 +286,407 @@ public class GroqClient {
             String functionName,
             String functionResult,
             List<Map<String, Object>> functions) {
+        return await(callWithFunctionResultAsync(AiPromptType.GENERAL, originalPrompt, functionName, functionResult, functions));
+    }
+
+    /**
+     * Non-blocking variant of {@link #callWithFunctionResult}.
+     */
+    public CompletableFuture<JsonNode> callWithFunctionResultAsync(
+            AiPromptType promptType,
+            String originalPrompt,
+            String functionName,
+            String functionResult,
+            List<Map<String, Object>> functions) {
+        Map<String, Object> requestBody = functionResultRequestBody(originalPrompt, functionName, functionResult);
+        return cachedSend(ENDPOINT_FUNCTION_RESULT, promptType, requestBody,
+            "Groq function result request failed.", this::functionResultContent);
+    }
+
+    /**
+     * Streamed variant of {@link #callWithFunctionResultAsync}.
+     */
+    public CompletableFuture<JsonNode> callWithFunctionResultStreamed(
+            AiPromptType promptType,
+            String originalPrompt,
+            String functionName,
+            String functionResult,
+            GroqStreamListener listener) {
+        Map<String, Object> requestBody = functionResultRequestBody(originalPrompt, functionName, functionResult);
+        requestBody.put("stream", true);
+        return send(ENDPOINT_FUNCTION_RESULT, promptType, requestBody, "Groq function result request failed.",
+                listener, AiCallScope.currentUserId())
+            .thenApply(this::functionResultContent);
+    }
+
+    private Map<String, Object> functionResultRequestBody(String originalPrompt, String functionName, String functionResult) {
+        List<Object> messages = new ArrayList<>();
+        messages.add(Map.of(
+            "role", "system",
+            "content", "You are a nutrition assistant. Use function results to complete the recipe JSON."
+        ));
+        messages.add(Map.of("role", "user", "content", originalPrompt));
+        messages.add(Map.of(
+            "role", "assistant",
+            "content", "",
+            "function_call", Map.of(
+                "name", functionName,
+                "arguments", "{}" // Simplified
+            )
+        ));
+        messages.add(Map.of(
+            "role", "function",
+            "name", functionName,
+            "content", functionResult
+        ));
+
+        Map<String, Object> requestBody = new java.util.HashMap<>();
+        requestBody.put("model", DEFAULT_MODEL);
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", DEFAULT_TEMPERATURE);
+        requestBody.put("top_p", DEFAULT_TOP_P);
+        return requestBody;
+    }
+
+    private JsonNode functionResultContent(JsonNode root) {
+        JsonNode content = root.path("choices").path(0).path("message").path("content");
         
+        if (content == null || content.isMissingNode() || !content.isTextual()) {
+            throw new AiClientException("Malformed Groq response after function call.");
+        }
+
+        String contentText = content.asText();
         try {
-            List<Object> messages = new ArrayList<>();
-            messages.add(Map.of(
-                "role", "system",
-                "content", "You are a nutrition assistant. Use function results to complete the recipe JSON."
-            ));
-            messages.add(Map.of("role", "user", "content", originalPrompt));
-            messages.add(Map.of(
-                "role", "assistant",
-                "content", "",
-                "function_call", Map.of(
-                    "name", functionName,
-                    "arguments", "{}" // Simplified
-                )
-            ));
-            messages.add(Map.of(
-                "role", "function",
-                "name", functionName,
-                "content", functionResult
-            ));
-
-            Map<String, Object> requestBody = new java.util.HashMap<>();
-            requestBody.put("model", DEFAULT_MODEL);
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", DEFAULT_TEMPERATURE);
-            requestBody.put("top_p", DEFAULT_TOP_P);
-
-            String body = objectMapper.writeValueAsString(requestBody);
-
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api.groq.com/openai/v1/chat/completions"))
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(60))
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-            handleHttpErrors(response);
-
-            JsonNode root = objectMapper.readTree(response.body());
-            JsonNode content = root.path("choices").path(0).path("message").path("content");
-            
-            if (content == null || content.isMissingNode() || !content.isTextual()) {
-                throw new AiClientException("Malformed Groq response after function call.");
+            return objectMapper.readTree(contentText);
+        } catch (JsonProcessingException e) {
+            throw new AiClientException("Model did not return valid JSON after function.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // ========== Transport ==========
+
+    /**
+     * Serve from the response cache when possible; otherwise send and, once the content has
+     * been extracted successfully, store the envelope (off the caller's path).
+     */
+    private CompletableFuture<JsonNode> cachedSend(
+            String endpoint,
+            AiPromptType promptType,
+            Map<String, Object> requestBody,
+            String failureMessage,
+            Function<JsonNode, JsonNode> extractContent) {
+        // The lookup continues on another thread: take the caller's user now
+        String userId = AiCallScope.currentUserId();
+        if (responseCache == null || !responseCache.isCacheable(requestBody)) {
+            return send(endpoint, promptType, requestBody, failureMessage, null, userId).thenApply(extractContent);
+        }
+        String cacheKey = responseCache.key(requestBody);
+        long startedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> responseCache.lookup(cacheKey), executor).thenCompose(cached -> {
+            if (cached != null) {
+                logger.debug("[LLM_CACHE] {} hit {}", promptType.getKey(), cacheKey);
+                if (telemetry != null) {
+                    telemetry.recordCall(promptType, endpoint, "cached", System.nanoTime() - startedAt);
+                }
+                try {
+                    return CompletableFuture.completedFuture(extractContent.apply(objectMapper.readTree(cached)));
+                } catch (JsonProcessingException e) {
+                    return CompletableFuture.failedFuture(new AiClientException(failureMessage, e));
+                }
+            }
+            return send(endpoint, promptType, requestBody, failureMessage, null, userId).thenApply(root -> {
+                JsonNode content = extractContent.apply(root);
+                int totalTokens = root.path("usage").path("total_tokens").asInt(0);
+                executor.execute(() -> responseCache.store(cacheKey, promptType, root.toString(), totalTokens));
+                return content;
+            });
+        });
+    }
+
+    /**
+     * Send a chat completion through the circuit breaker of (endpoint, prompt type), retrying
+     * transient failures; the breaker sees one outcome per logical call.
+     * With a listener the response is read as an event stream, otherwise as one body.
+     * Latency, usage and failures are reported to telemetry once per logical call.
+     */
+    private CompletableFuture<JsonNode> send(
+            String endpoint,
+            AiPromptType promptType,
+            Map<String, Object> requestBody,
+            String failureMessage,
+            GroqStreamListener listener,
+            String userId) {
+        if (telemetry != null) {
+            try {
+                telemetry.checkBudget(userId, promptType);
+            } catch (AiBudgetExceededException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        String breakerKey = GroqCircuitBreaker.key(endpoint, promptType);
+        if (!circuitBreaker.tryAcquire(breakerKey)) {
+            if (telemetry != null) {
+                telemetry.recordError(promptType, endpoint, "CircuitOpen");
+            }
+            return CompletableFuture.failedFuture(new AiCircuitOpenException(
+                "AI temporarily unavailable (" + breakerKey + "). Using non-AI results."));
+        }
+
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(requestBody);
+        } catch (JsonProcessingException e) {
+            circuitBreaker.onIgnored(breakerKey);
+            return CompletableFuture.failedFuture(new AiClientException(failureMessage, e));
+        }
+
+        HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(chatCompletionsUri)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        int estimatedTokens = body.length() / CHARS_PER_TOKEN + COMPLETION_TOKEN_ALLOWANCE;
+        Function<HttpRequest, CompletableFuture<JsonNode>> transport = listener == null
+            ? request -> readWhole(request, failureMessage)
+            : request -> readStream(request, failureMessage, listener);
+        long startedAt = System.nanoTime();
+        return attempt(httpRequest, estimatedTokens, 1, breakerKey, failureMessage, transport)
+            .whenComplete((root, error) -> {
+                AiClientException failure = error != null ? translate(error, failureMessage) : null;
+                if (failure == null) {
+                    circuitBreaker.onSuccess(breakerKey);
+                } else if (isTransient(failure)) {
+                    circuitBreaker.onFailure(breakerKey);
+                    logger.warn("[GROQ] {} failed after retries, breaker={}", breakerKey, circuitBreaker.state(breakerKey));
+                } else {
+                    circuitBreaker.onIgnored(breakerKey);
+                }
+                if (telemetry != null) {
+                    telemetry.recordCall(promptType, endpoint, failure == null ? "success" : "error",
+                        System.nanoTime() - startedAt);
+                    if (failure == null) {
+                        telemetry.recordUsage(userId, promptType, endpoint, root.path("usage"));
+                    } else {
+                        telemetry.recordError(promptType, endpoint, errorTag(failure));
+                    }
+                }
+            });
+    }
+
+    private CompletableFuture<JsonNode> attempt(
+            HttpRequest httpRequest,
+            int estimatedTokens,
+            int attempt,
+            String breakerKey,
+            String failureMessage,
+            Function<HttpRequest, CompletableFuture<JsonNode>> transport) {
+        return exchange(httpRequest, estimatedTokens, failureMessage, transport).exceptionallyCompose(error -> {
+            AiClientException failure = translate(error, failureMessage);
+            Duration delay = isTransient(failure)
+                ? retryPolicy.delayBeforeRetry(attempt, failure instanceof HttpStatusException status ? status.retryAfter : null)
+                : null;
+            if (delay == null) {
+                return CompletableFuture.failedFuture(failure);
             }
+            logger.info("[GROQ] {} attempt {} failed ({}), retrying in {} ms",
+                breakerKey, attempt, failure.getMessage(), delay.toMillis());
+            return CompletableFuture.runAsync(() -> { },
+                    CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS, executor))
+                .thenCompose(ignored -> attempt(httpRequest, estimatedTokens, attempt + 1, breakerKey, failureMessage, transport));
+        });
+    }
 
-            String contentText = content.asText();
+    /**
+     * One HTTP exchange: take a rate-limit permit (on a virtual thread), send and read the
+     * envelope through the transport (the permit is held until the body is read) and
+     * reconcile token usage.
+     */
+    private CompletableFuture<JsonNode> exchange(
+            HttpRequest httpRequest,
+            int estimatedTokens,
+            String failureMessage,
+            Function<HttpRequest, CompletableFuture<JsonNode>> transport) {
+        return CompletableFuture.runAsync(() -> acquirePermit(estimatedTokens), executor)
+            .thenCompose(ignored -> transport.apply(httpRequest)
+                .whenComplete((root, error) -> rateLimiter.release()))
+            .handle((root, error) -> {
+                if (error != null) {
+                    throw translate(error, failureMessage);
+                }
+                rateLimiter.reconcile(estimatedTokens, root.path("usage").path("total_tokens").asInt(0));
+                return root;
+            });
+    }
+
+    private CompletableFuture<JsonNode> readWhole(HttpRequest httpRequest, String failureMessage) {
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            handleHttpErrors(response, response.body());
             try {
-                return objectMapper.readTree(contentText);
+                return objectMapper.readTree(response.body());
             } catch (JsonProcessingException e) {
-                throw new AiClientException("Model did not return valid JSON after function.", e);
+                throw new AiClientException(failureMessage, e);
             }
-        } catch (HttpTimeoutException e) {
-            Thread.currentThread().interrupt();
-            throw new AiClientException("Groq request timed out. Please retry.", e);
-        } catch (ConnectException e) {
+        });
+    }
+
+    /**
+     * Read a {@code stream: true} response line by line on a virtual thread. Errors before the
+     * first content delta keep their cause and may be retried; once content reached the listener
+     * a failure is final, so no field is reported twice.
+     */
+    private CompletableFuture<JsonNode> readStream(HttpRequest httpRequest, String failureMessage, GroqStreamListener listener) {
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofLines()).thenApplyAsync(response -> {
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() >= 400) {
+                    handleHttpErrors(response, lines.collect(Collectors.joining("\n")));
+                }
+                GroqStreamAccumulator accumulator = new GroqStreamAccumulator(objectMapper, listener);
+                try {
+                    var iterator = lines.iterator();
+                    while (iterator.hasNext()) {
+                        if (accumulator.accept(iterator.next())) {
+                            break;
+                        }
+                    }
+                } catch (UncheckedIOException e) {
+                    if (!accumulator.hasStarted()) {
+                        throw new AiClientException(failureMessage, e.getCause());
+                    }
+                    logger.warn("[GROQ] Stream broke after content started: {}", e.getMessage());
+                    throw new AiClientException("Groq stream interrupted.");
+                }
+                return accumulator.envelope();
+            } catch (IOException e) {
+                throw new AiClientException(failureMessage, e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 429, 5xx and network-level failures are worth retrying; client errors and
+     * malformed payloads are not.
+     */
+    private static boolean isTransient(AiClientException failure) {
+        if (failure instanceof HttpStatusException status) {
+            return status.statusCode == 429 || status.statusCode >= 500;
+        }
+        Throwable cause = failure.getCause();
+        return cause instanceof IOException && !(cause instanceof JsonProcessingException);
+    }
+
+    /**
+     * Metric tag of a failed call: "HTTP_<status>" for error responses, otherwise the class
+     * of the underlying exception (timeouts, connection and parse errors).
+     */
+    private static String errorTag(AiClientException failure) {
+        if (failure instanceof HttpStatusException status) {
+            return "HTTP_" + status.statusCode;
+        }
+        Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+        return cause.getClass().getSimpleName();
+    }
+
+    private void acquirePermit(int estimatedTokens) {
+        try {
+            rateLimiter.acquire(estimatedTokens);
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new AiClientException("Groq connectivity error. Check network.", e);
-        } catch (IOException | InterruptedException e) {
+            throw new AiClientException("Groq request interrupted.", e);
+        }
+    }
+
+    /**
+     * Block the calling thread on a Groq-backed future (the synchronous API and its callers).
+     * Only a real interrupt of the caller restores the interrupt flag; timeouts and I/O errors
+     * do not touch it. Failures surface as {@link AiClientException}.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
             Thread.currentThread().interrupt();
-            throw new AiClientException("Groq function result request failed.", e);
+            throw new AiClientException("Groq request interrupted.", e);
+        } catch (ExecutionException e) {
+            throw translate(e.getCause(), "Groq request failed.");
+        }
+    }
+
+    private static AiClientException translate(Throwable error, String failureMessage) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof AiClientException aiClientException) {
+            return aiClientException;
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return new AiClientException("Groq request timed out. Please retry.", cause);
         }
+        if (cause instanceof ConnectException) {
+            return new AiClientException("Groq connectivity error. Check network.", cause);
+        }
+        return new AiClientException(failureMessage, cause);
     }
 
-    private void handleHttpErrors(HttpResponse<String> response) {
-        String body = response.body();
-        if (response.statusCode() == 401) {
-            throw new AiClientException("Groq authentication failed. Check GROQ_API_KEY. " + body);
+    private void handleHttpErrors(HttpResponse<?> response, String body) {
+        int status = response.statusCode();
+        if (status == 401) {
+            throw new HttpStatusException(status, null, "Groq authentication failed. Check GROQ_API_KEY. " + body);
+        }
+        if (status == 429) {
+            throw new HttpStatusException(status, retryAfter(response),
+                "Groq rate limit reached. Please retry later. " + body);
         }
-        if (response.statusCode() == 429) {
-            throw new AiClientException("Groq rate limit reached. Please retry later. " + body);
+        if (status >= 500) {
+            throw new HttpStatusException(status, retryAfter(response),
+                "Groq service unavailable. Please try again later. " + body);
         }
-        if (response.statusCode() >= 500) {
-            throw new AiClientException("Groq service unavailable. Please try again later. " + body);
+        if (status >= 400) {
+            throw new HttpStatusException(status, null, "Groq request error: " + status + " " + body);
+        }
+    }
+
+    /**
+     * Retry-After as delta-seconds or HTTP-date (RFC 9110 §10.2.3); null when absent or unparsable.
+     */
+    static Duration retryAfter(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null || value.isBlank()) {
+            return null;
         }
-        if (response.statusCode() >= 400) {
-            throw new AiClientException("Groq request error: " + response.statusCode() + " " + body);
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Non-2xx response, with the server's Retry-After when it sent one.
+     */
+    private static final class HttpStatusException extends AiClientException {
+        private final int statusCode;
+        private final Duration retryAfter;
+
+        HttpStatusException(int statusCode, Duration retryAfter, String message) {
+            super(message);
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
         }
     }
 }
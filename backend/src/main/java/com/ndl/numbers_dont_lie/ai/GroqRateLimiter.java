@@ -0,0 +1,128 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side admission control for Groq calls, shared by every caller of a GroqClient.
+ *
+ * Design intent:
+ * - A semaphore caps requests in flight, so a burst of plan generations cannot open
+ *   an unbounded number of connections
+ * - Two token buckets mirror the account quotas: requests per minute and tokens per minute.
+ *   Both refill continuously; a request waits until both can pay for it
+ * - Token cost is estimated before the call (prompt length + completion allowance) and
+ *   reconciled with the reported usage afterwards, so estimates do not drift
+ * - Waiting happens on the calling thread (a virtual thread for the async API); an interrupt
+ *   ends the wait with InterruptedException and no permit held
+ */
+public class GroqRateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Bucket requests;
+    private final Bucket tokens;
+
+    public GroqRateLimiter(int maxInFlight, int requestsPerMinute, int tokensPerMinute) {
+        if (maxInFlight <= 0 || requestsPerMinute <= 0 || tokensPerMinute <= 0) {
+            throw new IllegalArgumentException("Groq rate limits must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.requests = new Bucket(requestsPerMinute);
+        this.tokens = new Bucket(tokensPerMinute);
+    }
+
+    /**
+     * Block until a request with the estimated token cost may start. Pair with {@link #release()}.
+     */
+    public void acquire(int estimatedTokens) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            // A single request larger than the minute budget still runs once the bucket is full
+            int cost = Math.min(Math.max(1, estimatedTokens), tokens.capacity);
+            synchronized (this) {
+                while (true) {
+                    long now = System.nanoTime();
+                    long waitNanos = Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(cost, now));
+                    if (waitNanos <= 0) {
+                        requests.take(1, now);
+                        tokens.take(cost, now);
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                }
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    public void release() {
+        inFlight.release();
+    }
+
+    /**
+     * Correct the token bucket once the real usage is known (refund or extra charge).
+     */
+    public synchronized void reconcile(int estimatedTokens, int actualTokens) {
+        if (actualTokens <= 0) {
+            return;
+        }
+        int charged = Math.min(Math.max(1, estimatedTokens), tokens.capacity);
+        tokens.adjust(charged - actualTokens, System.nanoTime());
+        notifyAll();
+    }
+
+    public int availablePermits() {
+        return inFlight.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Continuously refilled bucket; the level may go negative after an under-estimate.
+     */
+    private static final class Bucket {
+        private final int capacity;
+        private double level;
+        private long refilledAt;
+
+        Bucket(int perMinute) {
+            this.capacity = perMinute;
+            this.level = perMinute;
+            this.refilledAt = System.nanoTime();
+        }
+
+        long nanosUntil(int amount, long now) {
+            refill(now);
+            if (level >= amount) {
+                return 0;
+            }
+            return (long) Math.ceil((amount - level) * NANOS_PER_MINUTE / capacity);
+        }
+
+        void take(int amount, long now) {
+            refill(now);
+            level -= amount;
+        }
+
+        void adjust(int delta, long now) {
+            refill(now);
+            level = Math.min(capacity, level + delta);
+        }
+
+        private void refill(long now) {
+            long elapsed = now - refilledAt;
+            if (elapsed > 0) {
+                level = Math.min(capacity, level + (double) elapsed * capacity / NANOS_PER_MINUTE);
+                refilledAt = now;
+            }
+        }
+    }
+}
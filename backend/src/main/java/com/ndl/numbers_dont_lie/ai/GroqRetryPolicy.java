@@ -0,0 +1,48 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry schedule for transient Groq failures (429, 5xx, timeouts, connection errors).
+ *
+ * Design intent:
+ * - Exponential backoff with full jitter: attempt n waits a random time in
+ *   [0, min(maxDelay, baseDelay * 2^(n-1))], so clients that failed together do not retry together
+ * - A Retry-After from the server wins over the computed delay; when it asks for longer than
+ *   maxRetryAfter the call fails at once instead of holding a slot that long
+ *
+ * @param maxAttempts   total attempts including the first one
+ * @param baseDelay     backoff cap of the first retry
+ * @param maxDelay      backoff cap of any retry
+ * @param maxRetryAfter longest server-requested wait that is still honoured
+ */
+public record GroqRetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Duration maxRetryAfter) {
+
+    public GroqRetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+    }
+
+    public static GroqRetryPolicy defaults() {
+        return new GroqRetryPolicy(3, Duration.ofMillis(500), Duration.ofSeconds(8), Duration.ofSeconds(20));
+    }
+
+    /**
+     * Delay before the next attempt, or null when no further attempt should be made.
+     *
+     * @param failedAttempt 1-based number of the attempt that just failed
+     * @param retryAfter    server-requested delay, or null
+     */
+    public Duration delayBeforeRetry(int failedAttempt, Duration retryAfter) {
+        if (failedAttempt >= maxAttempts) {
+            return null;
+        }
+        if (retryAfter != null) {
+            return retryAfter.compareTo(maxRetryAfter) <= 0 ? retryAfter : null;
+        }
+        long capMillis = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(20, failedAttempt - 1));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(capMillis + 1));
+    }
+}
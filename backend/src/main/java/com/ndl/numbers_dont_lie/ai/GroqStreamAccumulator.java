@@ -0,0 +1,122 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Folds the server-sent events of a streamed chat completion ({@code stream: true}) back into
+ * the envelope a regular completion returns, so the usual content extraction applies.
+ *
+ * Design intent:
+ * - Content deltas are fed to an {@link IncrementalJsonObjectParser} as they arrive, which
+ *   reports completed top-level fields to the listener long before the last token
+ * - Function-call deltas (name, arguments) are concatenated; the listener is not involved
+ * - If the content is not a JSON object the incremental parse stops quietly; the final
+ *   extraction then fails exactly like a non-streamed call would
+ * - Usage is taken from the last chunk carrying it ("usage" or Groq's "x_groq.usage")
+ */
+final class GroqStreamAccumulator {
+    private static final Logger logger = LoggerFactory.getLogger(GroqStreamAccumulator.class);
+    private static final String DATA_PREFIX = "data:";
+    private static final String DONE = "[DONE]";
+
+    private final ObjectMapper objectMapper;
+    private final IncrementalJsonObjectParser contentParser;
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder functionName = new StringBuilder();
+    private final StringBuilder functionArguments = new StringBuilder();
+    private JsonNode usage;
+    private boolean started;
+    private boolean contentParserFailed;
+
+    GroqStreamAccumulator(ObjectMapper objectMapper, GroqStreamListener listener) throws IOException {
+        this.objectMapper = objectMapper;
+        this.contentParser = new IncrementalJsonObjectParser(objectMapper.getFactory(), listener);
+    }
+
+    /**
+     * Process one line of the event stream.
+     *
+     * @return true once the terminating [DONE] event was seen
+     */
+    boolean accept(String line) throws JsonProcessingException {
+        if (!line.startsWith(DATA_PREFIX)) {
+            return false; // blank separators, comments, other SSE fields
+        }
+        String data = line.substring(DATA_PREFIX.length()).trim();
+        if (DONE.equals(data)) {
+            return true;
+        }
+        JsonNode chunk = objectMapper.readTree(data);
+        if (chunk.has("error")) {
+            throw new AiClientException("Groq stream error: " + chunk.path("error").path("message").asText());
+        }
+
+        JsonNode delta = chunk.path("choices").path(0).path("delta");
+        JsonNode text = delta.path("content");
+        if (text.isTextual() && !text.asText().isEmpty()) {
+            started = true;
+            content.append(text.asText());
+            feedContent(text.asText());
+        }
+        JsonNode functionCall = delta.path("function_call");
+        if (functionCall.isObject()) {
+            started = true;
+            functionName.append(functionCall.path("name").asText(""));
+            functionArguments.append(functionCall.path("arguments").asText(""));
+        }
+
+        JsonNode chunkUsage = chunk.path("x_groq").path("usage");
+        if (!chunkUsage.isObject()) {
+            chunkUsage = chunk.path("usage");
+        }
+        if (chunkUsage.isObject()) {
+            usage = chunkUsage;
+        }
+        return false;
+    }
+
+    /**
+     * Whether any content reached the listener side; a failure after that must not be retried.
+     */
+    boolean hasStarted() {
+        return started;
+    }
+
+    ObjectNode envelope() {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        ObjectNode message = envelope.putArray("choices").addObject().putObject("message");
+        message.put("role", "assistant");
+        if (!functionName.isEmpty()) {
+            message.putNull("content");
+            ObjectNode functionCall = message.putObject("function_call");
+            functionCall.put("name", functionName.toString());
+            functionCall.put("arguments", functionArguments.toString());
+        } else {
+            message.put("content", content.toString());
+        }
+        if (usage != null) {
+            envelope.set("usage", usage);
+        }
+        return envelope;
+    }
+
+    private void feedContent(String fragment) {
+        if (contentParserFailed) {
+            return;
+        }
+        try {
+            contentParser.feed(fragment);
+        } catch (IOException e) {
+            contentParserFailed = true;
+            logger.debug("[GROQ] Streamed content is not an incremental JSON object: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Callback for streamed Groq completions whose content is a JSON object.
+ * Invoked on a client thread as soon as each top-level field of that object is complete,
+ * e.g. "title" after a few tokens and "ingredients" once the array closes.
+ * Throwing from the callback aborts the stream; the call then fails with that exception.
+ */
+@FunctionalInterface
+public interface GroqStreamListener {
+
+    void onField(String name, JsonNode value);
+
+    default GroqStreamListener andThen(GroqStreamListener next) {
+        if (next == null) {
+            return this;
+        }
+        return (name, value) -> {
+            onField(name, value);
+            next.onField(name, value);
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Builds a JSON object from text fragments as they arrive, using Jackson's non-blocking parser,
+ * and reports each top-level field the moment its value is complete.
+ * Not thread-safe: one instance per stream.
+ */
+final class IncrementalJsonObjectParser {
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final GroqStreamListener listener;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private ObjectNode root;
+
+    /**
+     * An open container, the field it was attached under (inside an object parent)
+     * and the field name its next value will be stored under (when it is an object).
+     */
+    private static final class Frame {
+        final ContainerNode<?> node;
+        final String attachedAs;
+        String pendingField;
+
+        Frame(ContainerNode<?> node, String attachedAs) {
+            this.node = node;
+            this.attachedAs = attachedAs;
+        }
+    }
+
+    IncrementalJsonObjectParser(JsonFactory jsonFactory, GroqStreamListener listener) throws IOException {
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.listener = listener;
+    }
+
+    /**
+     * Feed the next fragment and process every token it completes.
+     */
+    void feed(String fragment) throws IOException {
+        byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token);
+        }
+    }
+
+    /**
+     * The object parsed so far (complete once its closing brace was fed), or null.
+     */
+    ObjectNode root() {
+        return root;
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> open(NODES.objectNode());
+            case START_ARRAY -> open(NODES.arrayNode());
+            case END_OBJECT, END_ARRAY -> close();
+            case FIELD_NAME -> stack.peek().pendingField = parser.currentName();
+            case VALUE_STRING -> value(NODES.textNode(parser.getText()));
+            case VALUE_NUMBER_INT -> value(switch (parser.getNumberType()) {
+                case INT -> NODES.numberNode(parser.getIntValue());
+                case LONG -> NODES.numberNode(parser.getLongValue());
+                default -> NODES.numberNode(parser.getBigIntegerValue());
+            });
+            case VALUE_NUMBER_FLOAT -> value(NODES.numberNode(parser.getDoubleValue()));
+            case VALUE_TRUE -> value(NODES.booleanNode(true));
+            case VALUE_FALSE -> value(NODES.booleanNode(false));
+            case VALUE_NULL -> value(NODES.nullNode());
+            default -> {
+            }
+        }
+    }
+
+    private void open(ContainerNode<?> node) throws JsonParseException {
+        if (stack.isEmpty()) {
+            if (!(node instanceof ObjectNode object) || root != null) {
+                throw new JsonParseException(parser, "Expected a single JSON object");
+            }
+            root = object;
+            stack.push(new Frame(node, null));
+            return;
+        }
+        Frame parent = stack.peek();
+        attach(parent, node);
+        stack.push(new Frame(node, parent.pendingField));
+    }
+
+    private void close() {
+        Frame closed = stack.pop();
+        if (stack.size() == 1) {
+            listener.onField(closed.attachedAs, closed.node);
+        }
+    }
+
+    private void value(JsonNode value) throws JsonParseException {
+        Frame parent = stack.peek();
+        if (parent == null) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        attach(parent, value);
+        if (stack.size() == 1) {
+            listener.onField(parent.pendingField, value);
+        }
+    }
+
+    private static void attach(Frame parent, JsonNode value) {
+        if (parent.node instanceof ObjectNode object) {
+            object.set(parent.pendingField, value);
+        } else {
+            ((ArrayNode) parent.node).add(value);
+        }
+    }
+}
@@ -2,19 +2,25 @@ package com.ndl.numbers_dont_lie.ai;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.ndl.numbers_dont_lie.ai.dto.GeneratedRecipe;
 import com.ndl.numbers_dont_lie.ai.dto.RecipeGenerationRequest;
 import com.ndl.numbers_dont_lie.ai.dto.RetrievedRecipe;
+import com.ndl.numbers_dont_lie.ai.exception.AiCircuitOpenException;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
-import com.ndl.numbers_dont_lie.ai.function.NutritionCalculator;
 import com.ndl.numbers_dont_lie.ai.function.FunctionCallingOrchestrator;
 import com.ndl.numbers_dont_lie.ai.function.CalculateNutritionRequest;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * STEP 4.3.2: Recipe Generation with RAG + Function Calling
@@ -53,7 +59,6 @@ public class RecipeGenerationService {
     private static final Logger logger = LoggerFactory.getLogger(RecipeGenerationService.class);
     
     private final GroqClient groqClient;
-    private final NutritionCalculator nutritionCalculator;
     private final FunctionCallingOrchestrator functionOrchestrator;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
@@ -61,12 +66,35 @@ public class RecipeGenerationService {
     @Value("${app.debug.ai.mock:false}")
     private boolean mockMode;
 
+    // Stream completions so ingredients are checked before the model finishes the steps
+    @Value("${app.ai.recipe.streaming:true}")
+    private boolean streaming;
+
+    // Model returns structure and ingredients only; nutrition is computed here (no function round trip)
+    @Value("${app.ai.recipe.single-pass:true}")
+    private boolean singlePass;
+
+    // Fallback slots of a day generated together, at most this many per LLM call
+    @Value("${app.ai.recipe.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${app.ai.recipe.batch.max-slots:6}")
+    private int batchMaxSlots;
+
+    /**
+     * Per-slot futures of a batched generation (same order as the requests) and the number of
+     * LLM calls issued for them, final once every future has completed.
+     */
+    public record RecipeBatch(List<CompletableFuture<GeneratedRecipe>> recipes, AtomicInteger callCounter) {
+        public int llmCalls() {
+            return callCounter.get();
+        }
+    }
+
     public RecipeGenerationService(
             GroqClient groqClient,
-            NutritionCalculator nutritionCalculator,
             FunctionCallingOrchestrator functionOrchestrator) {
         this.groqClient = groqClient;
-        this.nutritionCalculator = nutritionCalculator;
         this.functionOrchestrator = functionOrchestrator;
     }
 
@@ -86,19 +114,69 @@ public class RecipeGenerationService {
      * @return Generated recipe with calculated nutrition
      */
     public GeneratedRecipe generate(RecipeGenerationRequest request) {
-        logger.info("[STEP 4.3.2] Starting recipe generation with strict function calling contract");
+        return GroqClient.await(generateAsync(request));
+    }
+
+    /**
+     * Non-blocking variant of {@link #generate}: both Groq round trips (and the nutrition
+     * function in between) run on the client's async pipeline, so callers can start one
+     * generation per slot and join them together.
+     */
+    public CompletableFuture<GeneratedRecipe> generateAsync(RecipeGenerationRequest request) {
+        return generateAsync(request, null);
+    }
+
+    /**
+     * Variant of {@link #generateAsync(RecipeGenerationRequest)} that reports the recipe's
+     * top-level fields (title, ingredients, ...) to partialListener while the answer streams.
+     * The ingredient list is validated as soon as it is complete; a violation aborts the stream
+     * and fails the future with {@link AiClientException}.
+     */
+    public CompletableFuture<GeneratedRecipe> generateAsync(
+            RecipeGenerationRequest request, GroqStreamListener partialListener) {
+        return generateAsync(request, partialListener, new AtomicInteger());
+    }
+
+    /**
+     * Every Groq call of a generation, including the function-result follow-up, is charged
+     * to the request's user.
+     */
+    private CompletableFuture<GeneratedRecipe> generateAsync(
+            RecipeGenerationRequest request, GroqStreamListener partialListener, AtomicInteger llmCalls) {
+        return AiCallScope.callAs(request.getUserId(), () -> startGeneration(request, partialListener, llmCalls));
+    }
+
+    private CompletableFuture<GeneratedRecipe> startGeneration(
+            RecipeGenerationRequest request, GroqStreamListener partialListener, AtomicInteger llmCalls) {
+        logger.info("[STEP 4.3.2] Starting recipe generation ({})",
+            singlePass ? "single pass, server-side nutrition" : "strict function calling contract");
         
         // DEBUG ONLY: Check mock mode first
         if (mockMode) {
             logger.warn("[DEBUG MOCK] Returning mock recipe for {} (Groq API bypassed)", request.getMealSlot().getMealType());
             GeneratedRecipe mockRecipe = createMockRecipe(request);
             logger.warn("[DEBUG MOCK] Generated mock recipe: {} ({} cal)", mockRecipe.getTitle(), mockRecipe.getNutrition().getCalories());
-            return mockRecipe;
+            return CompletableFuture.completedFuture(mockRecipe);
+        }
+
+        // Breaker open: fail before prompt building and retrieval, callers fall back to the DB
+        if (!groqClient.isAvailable(AiPromptType.RECIPE)) {
+            return CompletableFuture.failedFuture(
+                new AiCircuitOpenException("Recipe generation circuit open; skipping AI call."));
         }
         
         // Step 1: Build augmented prompt
-        String prompt = buildAugmentedPrompt(request);
+        String prompt = buildAugmentedPrompt(request, !singlePass);
         functionOrchestrator.logAiPrompt(prompt);
+        GroqStreamListener listener = ingredientGuard(request).andThen(partialListener);
+
+        if (singlePass) {
+            llmCalls.incrementAndGet();
+            CompletableFuture<JsonNode> response = streaming
+                ? groqClient.callForJsonStreamed(AiPromptType.RECIPE, prompt, null, 0.4, listener)
+                : groqClient.callForJsonAsync(AiPromptType.RECIPE, prompt, null, 0.4);
+            return response.thenApply(json -> withServerNutrition(parseRecipe(stripNutrition(json)), request));
+        }
 
         // Step 2: Define function via orchestrator
         Map<String, Object> functionDef = functionOrchestrator.defineCalculateNutritionFunction();
@@ -106,17 +184,189 @@ public class RecipeGenerationService {
 
         // Step 3: Initial AI call
         logger.info("[STEP 4.3.2] Calling AI with function definition");
-        JsonNode response = groqClient.callForJson(prompt, functions, 0.4);
+        llmCalls.incrementAndGet();
+        CompletableFuture<JsonNode> initial = streaming
+            ? groqClient.callForJsonStreamed(AiPromptType.RECIPE, prompt, functions, 0.4, listener)
+            : groqClient.callForJsonAsync(AiPromptType.RECIPE, prompt, functions, 0.4);
+        return initial.thenCompose(response -> {
+            // Step 4: Check for function call
+            if (response.has("function_call")) {
+                logger.info("[STEP 4.3.2] AI requested function call");
+                return AiCallScope.callAs(request.getUserId(),
+                    () -> handleFunctionCall(response, prompt, functions, request, listener, llmCalls));
+            }
+
+            // Step 5: Parse final recipe
+            logger.warn("[STEP 4.3.2] AI did not call function - this may indicate AI did not follow contract");
+            return CompletableFuture.completedFuture(parseRecipe(response));
+        });
+    }
 
-        // Step 4: Check for function call
-        if (response.has("function_call")) {
-            logger.info("[STEP 4.3.2] AI requested function call");
-            return handleFunctionCall(response, prompt, functions, request);
+    /**
+     * Generate the AI-fallback slots of one day together.
+     *
+     * Flow:
+     * 1. One prompt per chunk of up to batchMaxSlots slots: shared context (strategy, restrictions,
+     *    allergies) once, then meal type, calorie target, macro focus and inspiration per slot
+     * 2. The model answers {"recipes": [...]} with one recipe per slot and no nutrition
+     * 3. Each item is validated (ingredients, allergens) and nutrition is computed server-side
+     *    with the same orchestrator calculation the function call uses
+     * 4. Items that are missing or fail validation fall back to {@link #generateAsync} for that
+     *    slot only; if the whole call fails every slot of the chunk falls back, unless the
+     *    recipe circuit is open
+     *
+     * All requests are expected to belong to the same user and day.
+     */
+    public RecipeBatch generateBatchAsync(List<RecipeGenerationRequest> requests) {
+        AtomicInteger llmCalls = new AtomicInteger();
+        List<CompletableFuture<GeneratedRecipe>> recipes = new ArrayList<>(requests.size());
+        if (!batchEnabled || mockMode || requests.size() < 2) {
+            for (RecipeGenerationRequest request : requests) {
+                recipes.add(generateAsync(request, null, llmCalls));
+            }
+            return new RecipeBatch(recipes, llmCalls);
+        }
+
+        int chunkSize = Math.max(2, batchMaxSlots);
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            List<RecipeGenerationRequest> chunk = requests.subList(from, Math.min(requests.size(), from + chunkSize));
+            if (chunk.size() == 1) {
+                recipes.add(generateAsync(chunk.get(0), null, llmCalls));
+                continue;
+            }
+            CompletableFuture<List<GeneratedRecipe>> batch = generateChunk(chunk, llmCalls);
+            for (int i = 0; i < chunk.size(); i++) {
+                int index = i;
+                RecipeGenerationRequest request = chunk.get(i);
+                recipes.add(batch.handle((items, error) -> {
+                    if (error == null && items.get(index) != null) {
+                        return CompletableFuture.completedFuture(items.get(index));
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof AiCircuitOpenException) {
+                        return CompletableFuture.<GeneratedRecipe>failedFuture(cause);
+                    }
+                    logger.warn("[RECIPE_BATCH] Slot {} ({}) falls back to single generation{}",
+                        index + 1, request.getMealSlot().getMealType(), cause != null ? ": " + cause.getMessage() : "");
+                    return generateAsync(request, null, llmCalls);
+                }).thenCompose(Function.identity()));
+            }
         }
+        return new RecipeBatch(recipes, llmCalls);
+    }
 
-        // Step 5: Parse final recipe
-        logger.warn("[STEP 4.3.2] AI did not call function - this may indicate AI did not follow contract");
-        return parseRecipe(response);
+    private CompletableFuture<List<GeneratedRecipe>> generateChunk(
+            List<RecipeGenerationRequest> chunk, AtomicInteger llmCalls) {
+        if (!groqClient.isAvailable(AiPromptType.RECIPE)) {
+            return CompletableFuture.failedFuture(
+                new AiCircuitOpenException("Recipe generation circuit open; skipping AI call."));
+        }
+        String prompt = buildBatchPrompt(chunk);
+        functionOrchestrator.logAiPrompt(prompt);
+        logger.info("[RECIPE_BATCH] Generating {} slots in one call", chunk.size());
+        llmCalls.incrementAndGet();
+        return AiCallScope.callAs(chunk.get(0).getUserId(),
+                () -> groqClient.callForJsonAsync(AiPromptType.RECIPE, prompt, null, 0.4))
+            .thenApply(json -> splitBatch(json, chunk));
+    }
+
+    /**
+     * Match the returned items to the requested slots ("slot" is 1-based) and keep the valid ones;
+     * the list has a null for every slot that needs a single-slot retry.
+     */
+    private List<GeneratedRecipe> splitBatch(JsonNode json, List<RecipeGenerationRequest> chunk) {
+        Map<Integer, JsonNode> bySlot = new HashMap<>();
+        for (JsonNode item : json.path("recipes")) {
+            int slot = item.path("slot").asInt(0);
+            if (slot >= 1 && slot <= chunk.size()) {
+                bySlot.putIfAbsent(slot, item);
+            }
+        }
+        List<GeneratedRecipe> recipes = new ArrayList<>(chunk.size());
+        int valid = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            GeneratedRecipe recipe = validateBatchItem(bySlot.get(i + 1), chunk.get(i), i + 1);
+            recipes.add(recipe);
+            if (recipe != null) {
+                valid++;
+            }
+        }
+        logger.info("[RECIPE_BATCH] {} of {} slots valid", valid, chunk.size());
+        return recipes;
+    }
+
+    private GeneratedRecipe validateBatchItem(JsonNode item, RecipeGenerationRequest request, int slot) {
+        if (item == null || !item.isObject()) {
+            logger.warn("[RECIPE_BATCH] Slot {} missing from response", slot);
+            return null;
+        }
+        String problem = ingredientProblem(item.path("ingredients"), request.getAllergies());
+        if (problem != null) {
+            logger.warn("[RECIPE_BATCH] Slot {} rejected: {}", slot, problem);
+            return null;
+        }
+        ObjectNode recipeJson = stripNutrition(item);
+        recipeJson.remove("slot");
+        try {
+            return withServerNutrition(parseRecipe(recipeJson), request);
+        } catch (RuntimeException e) {
+            logger.warn("[RECIPE_BATCH] Slot {} rejected: {}", slot, e.getMessage());
+            return null;
+        }
+    }
+
+    private String buildBatchPrompt(List<RecipeGenerationRequest> chunk) {
+        RecipeGenerationRequest shared = chunk.get(0);
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Recipe Generation for ").append(chunk.size()).append(" meal slots of one day ===\n\n");
+
+        sb.append("SHARED CONTEXT (Strategy):\n");
+        sb.append("- Strategy: ").append(shared.getStrategy().getStrategyName()).append("\n");
+        sb.append("- Target Calories: ").append(shared.getStrategy().getTargetCalories()).append("\n");
+        sb.append("- Macro Split: ").append(shared.getStrategy().getMacroSplit()).append("\n\n");
+
+        sb.append("USER CONSTRAINTS (apply to every slot):\n");
+        if (shared.getDietaryRestrictions() != null && !shared.getDietaryRestrictions().isEmpty()) {
+            sb.append("- Dietary Restrictions: ").append(shared.getDietaryRestrictions()).append("\n");
+        }
+        if (shared.getAllergies() != null && !shared.getAllergies().isEmpty()) {
+            sb.append("- Allergies to avoid: ").append(shared.getAllergies()).append("\n");
+        }
+        if (shared.getServings() != null) {
+            sb.append("- Servings: ").append(shared.getServings()).append("\n");
+        }
+        sb.append("\n");
+
+        sb.append("SLOTS:\n");
+        for (int i = 0; i < chunk.size(); i++) {
+            var slot = chunk.get(i).getMealSlot();
+            sb.append("Slot ").append(i + 1).append(": ").append(slot.getMealType())
+                .append(", ~").append(slot.getCalorieTarget()).append(" kcal")
+                .append(", macro focus: ").append(slot.getMacroFocus());
+            if (slot.getTimingNote() != null) {
+                sb.append(", timing: ").append(slot.getTimingNote());
+            }
+            List<RetrievedRecipe> retrieved = chunk.get(i).getRetrievedRecipes();
+            if (retrieved != null && !retrieved.isEmpty()) {
+                sb.append("\n  Inspiration (adapt, do not copy): ");
+                for (int r = 0; r < Math.min(3, retrieved.size()); r++) {
+                    sb.append(r > 0 ? "; " : "").append(retrieved.get(r).getTitle());
+                }
+            }
+            sb.append("\n");
+        }
+        sb.append("\n");
+
+        sb.append("YOUR TASK:\n");
+        sb.append("Generate one distinct recipe per slot that matches its meal type, calorie target and macro focus\n");
+        sb.append("and respects all dietary restrictions and allergies. Do not repeat a dish across slots.\n");
+        sb.append("List ALL ingredients with EXACT quantities in grams/ml.\n");
+        sb.append("DO NOT include nutrition numbers: nutrition is calculated by the system from the ingredients.\n\n");
+
+        sb.append("Return STRICTLY valid JSON: {\"recipes\": [ ... ]} with one item per slot.\n");
+        sb.append("Each item has an integer \"slot\" (the slot number above) plus this schema:\n");
+        sb.append(getRecipeJsonSchema());
+        return sb.toString();
     }
 
     /**
@@ -128,7 +378,7 @@ public class RecipeGenerationService {
      * - Enforces dietary and macro constraints
      * - Requests structured JSON output
      */
-    private String buildAugmentedPrompt(RecipeGenerationRequest request) {
+    private String buildAugmentedPrompt(RecipeGenerationRequest request, boolean functionCalling) {
         StringBuilder sb = new StringBuilder();
 
         sb.append("=== STEP 4.3.2: Recipe Generation with RAG ===\n\n");
@@ -187,6 +437,15 @@ public class RecipeGenerationService {
         sb.append("4. Respects all dietary restrictions and allergies\n");
         sb.append("5. Is inspired by the retrieved recipes (if provided)\n\n");
 
+        if (!functionCalling) {
+            sb.append("NUTRITION:\n");
+            sb.append("- List ALL ingredients with EXACT quantities in grams/ml\n");
+            sb.append("- DO NOT include nutrition numbers: the system calculates them from the ingredients\n\n");
+            sb.append("OUTPUT FORMAT:\n");
+            sb.append(getRecipeJsonSchema());
+            return sb.toString();
+        }
+
         sb.append("STEP 6.1 - FUNCTION CALLING CONTRACT (CRITICAL):\n");
         sb.append("┌────────────────────────────────────────────────┐\n");
         sb.append("│ YOU MUST FOLLOW THIS CONTRACT STRICTLY         │\n");
@@ -230,15 +489,20 @@ public class RecipeGenerationService {
      * 3. Return result to AI
      * 4. Verify final recipe uses function output
      */
-    private GeneratedRecipe handleFunctionCall(
+    private CompletableFuture<GeneratedRecipe> handleFunctionCall(
             JsonNode response,
             String originalPrompt,
             List<Map<String, Object>> functions,
-            RecipeGenerationRequest request) {
+            RecipeGenerationRequest request,
+            GroqStreamListener listener,
+            AtomicInteger llmCalls) {
         
+        CalculateNutritionRequest.Output functionResult;
+        String functionName;
+        String functionResultJson;
         try {
             JsonNode functionCall = response.get("function_call");
-            String functionName = functionCall.get("name").asText();
+            functionName = functionCall.get("name").asText();
             
             if (!"calculateNutrition".equals(functionName)) {
                 throw new AiClientException("Unexpected function call: " + functionName);
@@ -249,41 +513,146 @@ public class RecipeGenerationService {
 
             // Execute function via orchestrator
             // This validates inputs and ensures database calculation
-            CalculateNutritionRequest.Output functionResult = 
-                functionOrchestrator.executeCalculateNutrition(functionCall);
+            functionResult = functionOrchestrator.executeCalculateNutrition(functionCall);
             
             logger.info("[STEP 6.1] Function executed successfully");
             functionOrchestrator.logFunctionResult(functionResult);
 
             // Convert to JSON string for AI context
-            String functionResultJson = objectMapper.writeValueAsString(functionResult);
-
-            // Call AI with function result
-            logger.info("[STEP 6.1] Injecting function result back into AI context");
-            JsonNode finalResponse = groqClient.callWithFunctionResult(
-                originalPrompt,
-                functionName,
-                functionResultJson,
-                functions
-            );
-
-            // Parse final recipe
-            GeneratedRecipe recipe = parseRecipe(finalResponse);
-            
-            // Verify nutrition comes from function output
-            logger.info("[STEP 6.1] Verifying recipe nutrition matches function output");
-            functionOrchestrator.verifyNutritionFromFunctionOutput(recipe, functionResult);
-            
-            logger.info("[STEP 6.1] Recipe generation complete with function calling contract enforced");
-            return recipe;
-            
+            functionResultJson = objectMapper.writeValueAsString(functionResult);
         } catch (IllegalArgumentException e) {
             logger.error("[STEP 6.1] Function call validation failed: {}", e.getMessage());
-            throw new AiClientException("Function call validation failed: " + e.getMessage(), e);
+            return CompletableFuture.failedFuture(
+                new AiClientException("Function call validation failed: " + e.getMessage(), e));
         } catch (Exception e) {
             logger.error("[STEP 6.1] Function call handling failed: {}", e.getMessage(), e);
-            throw new AiClientException("Function call handling failed: " + e.getMessage(), e);
+            return CompletableFuture.failedFuture(
+                new AiClientException("Function call handling failed: " + e.getMessage(), e));
+        }
+
+        // Call AI with function result
+        logger.info("[STEP 6.1] Injecting function result back into AI context");
+        llmCalls.incrementAndGet();
+        CompletableFuture<JsonNode> followUp = streaming
+            ? groqClient.callWithFunctionResultStreamed(
+                AiPromptType.RECIPE, originalPrompt, functionName, functionResultJson, listener)
+            : groqClient.callWithFunctionResultAsync(
+                AiPromptType.RECIPE, originalPrompt, functionName, functionResultJson, functions);
+        return followUp
+            .handle((finalResponse, error) -> {
+                try {
+                    if (error != null) {
+                        throw error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    }
+                    // Parse final recipe
+                    GeneratedRecipe recipe = parseRecipe(finalResponse);
+                    
+                    // Verify nutrition comes from function output
+                    logger.info("[STEP 6.1] Verifying recipe nutrition matches function output");
+                    functionOrchestrator.verifyNutritionFromFunctionOutput(recipe, functionResult);
+                    
+                    logger.info("[STEP 6.1] Recipe generation complete with function calling contract enforced");
+                    return recipe;
+                } catch (IllegalArgumentException e) {
+                    logger.error("[STEP 6.1] Function call validation failed: {}", e.getMessage());
+                    throw new AiClientException("Function call validation failed: " + e.getMessage(), e);
+                } catch (Throwable e) {
+                    logger.error("[STEP 6.1] Function call handling failed: {}", e.getMessage(), e);
+                    throw new AiClientException("Function call handling failed: " + e.getMessage(), e);
+                }
+            });
+    }
+
+    /**
+     * Early check of the streamed "ingredients" array: it must list named ingredients and none
+     * may mention an allergen of the request. Throwing here aborts the stream, so a rejected
+     * recipe does not cost the tokens of its preparation steps.
+     */
+    private GroqStreamListener ingredientGuard(RecipeGenerationRequest request) {
+        long startedAt = System.currentTimeMillis();
+        List<String> allergies = request.getAllergies();
+        return (name, value) -> {
+            if (!"ingredients".equals(name)) {
+                return;
+            }
+            String problem = ingredientProblem(value, allergies);
+            if (problem != null) {
+                throw new AiClientException("Generated recipe rejected early: " + problem);
+            }
+            logger.info("[STEP 4.3.2] {} ingredients validated after {} ms (recipe still streaming)",
+                value.size(), System.currentTimeMillis() - startedAt);
+        };
+    }
+
+    /**
+     * Single-pass / batch counterpart of the function call: compute nutrition from the
+     * recipe's ingredients with the orchestrator (same validation and database calculation)
+     * and merge it in. A recipe with no calories (no ingredient matched the catalog) is
+     * rejected on both paths.
+     */
+    private GeneratedRecipe withServerNutrition(GeneratedRecipe recipe, RecipeGenerationRequest request) {
+        int servings = recipe.getServings() != null && recipe.getServings() > 0
+            ? recipe.getServings()
+            : (request.getServings() != null ? request.getServings() : 1);
+        recipe.setServings(servings);
+        CalculateNutritionRequest.Output output;
+        try {
+            output = functionOrchestrator.calculateNutrition(recipe.getIngredients(), servings);
+        } catch (IllegalArgumentException e) {
+            throw new AiClientException("Nutrition calculation failed: " + e.getMessage(), e);
+        }
+        if (output.calories() <= 0) {
+            throw new AiClientException("Nutrition calculation failed: no ingredient matched the catalog");
+        }
+
+        GeneratedRecipe.NutritionInfo nutrition = new GeneratedRecipe.NutritionInfo();
+        nutrition.setCalories(output.calories());
+        nutrition.setProtein(output.protein());
+        nutrition.setCarbohydrates(output.carbohydrates());
+        nutrition.setFat(output.fats());
+        nutrition.setCaloriesPerServing(output.caloriesPerServing());
+        nutrition.setProteinPerServing(output.proteinPerServing());
+        nutrition.setCarbsPerServing(output.carbsPerServing());
+        nutrition.setFatPerServing(output.fatsPerServing());
+        recipe.setNutrition(nutrition);
+        return recipe;
+    }
+
+    /**
+     * Copy of a recipe node without any nutrition the model added despite instructions.
+     */
+    private static ObjectNode stripNutrition(JsonNode json) {
+        if (!json.isObject()) {
+            throw new AiClientException("Failed to parse generated recipe: not a JSON object");
+        }
+        ObjectNode copy = ((ObjectNode) json).deepCopy();
+        copy.remove("nutrition");
+        return copy;
+    }
+
+    /**
+     * Why an ingredients array is unusable (empty, unnamed item, allergen), or null when it is fine.
+     */
+    private static String ingredientProblem(JsonNode ingredients, List<String> allergies) {
+        if (!ingredients.isArray() || ingredients.isEmpty()) {
+            return "no ingredients";
+        }
+        for (JsonNode ingredient : ingredients) {
+            String ingredientName = ingredient.path("name").asText("").toLowerCase(Locale.ROOT);
+            if (ingredientName.isBlank()) {
+                return "unnamed ingredient";
+            }
+            if (allergies == null) {
+                continue;
+            }
+            for (String allergen : allergies) {
+                if (allergen != null && !allergen.isBlank()
+                        && ingredientName.contains(allergen.toLowerCase(Locale.ROOT))) {
+                    return "contains allergen " + allergen;
+                }
+            }
         }
+        return null;
     }
 
     /**
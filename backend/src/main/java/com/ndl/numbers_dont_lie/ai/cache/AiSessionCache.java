@@ -1,55 +1,309 @@
 package com.ndl.numbers_dont_lie.ai.cache;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ndl.numbers_dont_lie.ai.dto.AiMealStructureResult;
+import com.ndl.numbers_dont_lie.ai.dto.AiStrategyRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiStrategyResult;
+import com.ndl.numbers_dont_lie.ai.entity.AiSessionCacheEntry;
+import com.ndl.numbers_dont_lie.ai.repository.AiSessionCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.TreeMap;
 
 /**
- * Simple in-memory cache for AI session data across multiple prompt steps.
+ * Cache for AI session data across multiple prompt steps.
  * Supports sequential prompting: STEP 4.1 → STEP 4.2 → STEP 4.3.
- * Not for persistence.
+ *
+ * Design intent:
+ * - Tier 1: bounded in-process LRU whose entries expire after nearTtl, so an instance never
+ *   serves another instance's superseded result for long
+ * - Tier 2: ai_session_cache table (strategy and meal-structure JSON per user, expiring after
+ *   ttl), so a restart or a request routed to another instance does not have to call the
+ *   model twice again to bootstrap the user
+ * - Table misses are remembered in the near cache for missTtl, so users without a session do not
+ *   cost a query on every lookup
+ * - Every store and invalidate bumps a write generation; a table read only enters the near cache
+ *   if no write happened while it ran, so a concurrent invalidate is never undone by a stale row
+ * - Each entry carries the fingerprint of the profile inputs the strategy was generated from;
+ *   {@link #invalidateIfChanged} drops it only when those inputs really changed
+ * - Database errors degrade to a miss; the cache never fails a plan request
  */
 public class AiSessionCache {
-    
+    private static final Logger logger = LoggerFactory.getLogger(AiSessionCache.class);
+
+    /**
+     * Immutable snapshot of a user's session; updates replace it.
+     */
     public static class SessionData {
-        public AiStrategyResult strategyResult; // STEP 4.1
-        public AiMealStructureResult mealStructureResult; // STEP 4.2
-        public final Instant createdAt = Instant.now();
+        public final AiStrategyResult strategyResult; // STEP 4.1
+        public final AiMealStructureResult mealStructureResult; // STEP 4.2
+        public final String profileFingerprint;
+        public final Instant createdAt;
+
+        SessionData(AiStrategyResult strategyResult, AiMealStructureResult mealStructureResult,
+                    String profileFingerprint, Instant createdAt) {
+            this.strategyResult = strategyResult;
+            this.mealStructureResult = mealStructureResult;
+            this.profileFingerprint = profileFingerprint;
+            this.createdAt = createdAt;
+        }
+
+        /** Negative entry: the table had no session for the user. */
+        static SessionData miss(Instant at) {
+            return new SessionData(null, null, null, at);
+        }
+
+        boolean isMiss() {
+            return strategyResult == null && mealStructureResult == null;
+        }
     }
 
-    private final Map<String, SessionData> byUser = new ConcurrentHashMap<>();
+    private final AiSessionCacheRepository repository;
+    private final int maxEntries;
+    private final Duration nearTtl;
+    private final Duration ttl;
+    private final Duration missTtl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkedHashMap<String, SessionData> memory;
+    private long writeGeneration; // guarded by memory
+
+    /**
+     * Memory only, 10,000 users, entries kept for a day.
+     */
+    public AiSessionCache() {
+        this(null, 10_000, Duration.ofDays(1), Duration.ofDays(1));
+    }
+
+    /**
+     * Table misses are remembered for 30 seconds.
+     */
+    public AiSessionCache(AiSessionCacheRepository repository, int maxEntries, Duration nearTtl, Duration ttl) {
+        this(repository, maxEntries, nearTtl, ttl, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param repository persistent tier, or null for memory only
+     * @param maxEntries LRU capacity of the in-process tier
+     * @param nearTtl    lifetime of an in-process entry before it is reloaded from the table
+     * @param ttl        lifetime of a session in the table
+     * @param missTtl    lifetime of a remembered table miss
+     */
+    public AiSessionCache(AiSessionCacheRepository repository, int maxEntries, Duration nearTtl, Duration ttl,
+                          Duration missTtl) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.repository = repository;
+        this.maxEntries = maxEntries;
+        this.nearTtl = nearTtl;
+        this.ttl = ttl;
+        this.missTtl = missTtl;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SessionData> eldest) {
+                return size() > AiSessionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * SHA-256 of the inputs a strategy is generated from (everything but the user id).
+     */
+    public static String fingerprint(AiStrategyRequest request) {
+        Map<String, Object> inputs = new TreeMap<>();
+        inputs.put("timezone", request.getTimezone() != null ? request.getTimezone().getId() : null);
+        inputs.put("age", request.getAge());
+        inputs.put("sex", request.getSex());
+        inputs.put("heightCm", request.getHeightCm());
+        inputs.put("weightKg", request.getWeightKg());
+        inputs.put("goal", request.getGoal());
+        inputs.put("dietaryPreferences", request.getDietaryPreferences() != null
+            ? new TreeMap<>(request.getDietaryPreferences()) : null);
+        inputs.put("allergies", request.getAllergies() != null
+            ? request.getAllergies().stream().sorted().toList() : null);
+        inputs.put("mealFrequency", request.getMealFrequency() != null
+            ? new TreeMap<>(request.getMealFrequency()) : null);
+        try {
+            byte[] canonical = new ObjectMapper().writeValueAsBytes(inputs);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot compute profile fingerprint", e);
+        }
+    }
 
     // STEP 4.1: Strategy result
     public void putStrategyResult(String userId, AiStrategyResult result) {
+        putStrategyResult(userId, result, null);
+    }
+
+    /**
+     * Store a new strategy. A strategy for different profile inputs also drops the meal
+     * structure, which was derived from the previous strategy.
+     */
+    public void putStrategyResult(String userId, AiStrategyResult result, String profileFingerprint) {
         if (userId == null || result == null) return;
-        byUser.computeIfAbsent(userId, k -> new SessionData()).strategyResult = result;
+        SessionData current = getSession(userId);
+        boolean inputsChanged = current != null && profileFingerprint != null && current.profileFingerprint != null
+            && !profileFingerprint.equals(current.profileFingerprint);
+        AiMealStructureResult mealStructure = current != null && !inputsChanged ? current.mealStructureResult : null;
+        String fingerprint = profileFingerprint != null ? profileFingerprint
+            : current != null ? current.profileFingerprint : null;
+        store(userId, new SessionData(result, mealStructure, fingerprint, Instant.now()));
     }
 
     public AiStrategyResult getStrategyResult(String userId) {
-        SessionData data = byUser.get(userId);
+        SessionData data = getSession(userId);
         return data == null ? null : data.strategyResult;
     }
 
     // STEP 4.2: Meal structure result
     public void putMealStructureResult(String userId, AiMealStructureResult result) {
         if (userId == null || result == null) return;
-        byUser.computeIfAbsent(userId, k -> new SessionData()).mealStructureResult = result;
+        SessionData current = getSession(userId);
+        store(userId, current == null
+            ? new SessionData(null, result, null, Instant.now())
+            : new SessionData(current.strategyResult, result, current.profileFingerprint, Instant.now()));
     }
 
     public AiMealStructureResult getMealStructureResult(String userId) {
-        SessionData data = byUser.get(userId);
+        SessionData data = getSession(userId);
         return data == null ? null : data.mealStructureResult;
     }
 
     // Session management
+
+    /**
+     * Session of the user from the near cache, else from the table; null when neither has one.
+     */
     public SessionData getSession(String userId) {
-        return byUser.get(userId);
+        if (userId == null) {
+            return null;
+        }
+        Instant now = Instant.now();
+        long generation;
+        synchronized (memory) {
+            SessionData data = memory.get(userId);
+            if (data != null && data.createdAt.plus(data.isMiss() ? missTtl : nearTtl).isAfter(now)) {
+                return data.isMiss() ? null : data;
+            }
+            memory.remove(userId);
+            generation = writeGeneration;
+        }
+        SessionData loaded = load(userId, now);
+        synchronized (memory) {
+            // A store or invalidate ran meanwhile: the row may already be outdated, do not cache it
+            if (writeGeneration == generation) {
+                memory.put(userId, loaded != null ? loaded : SessionData.miss(now));
+            }
+        }
+        return loaded;
     }
 
     public void clear(String userId) {
-        byUser.remove(userId);
+        invalidate(userId);
+    }
+
+    /**
+     * Drop the user's session from both tiers (the next plan request bootstraps again).
+     */
+    public void invalidate(String userId) {
+        if (userId == null) return;
+        synchronized (memory) {
+            writeGeneration++;
+            memory.put(userId, SessionData.miss(Instant.now()));
+        }
+        if (repository != null) {
+            try {
+                repository.deleteById(userId);
+            } catch (RuntimeException e) {
+                logger.warn("[AI_SESSION] Invalidate failed for userId={}: {}", userId, e.getMessage());
+            }
+        }
+        logger.info("[AI_SESSION] Invalidated userId={}", userId);
+    }
+
+    /**
+     * Drop the session only if it was generated from other profile inputs than these.
+     *
+     * @return true if the session was dropped
+     */
+    public boolean invalidateIfChanged(String userId, String profileFingerprint) {
+        SessionData current = getSession(userId);
+        if (current == null || Objects.equals(current.profileFingerprint, profileFingerprint)) {
+            return false;
+        }
+        invalidate(userId);
+        return true;
+    }
+
+    /**
+     * Drop expired sessions from the persistent tier.
+     */
+    @Scheduled(cron = "${app.ai.session-cache.purge-cron:0 45 * * * *}")
+    public void purgeExpired() {
+        if (repository == null) {
+            return;
+        }
+        int purged = repository.deleteExpired(Instant.now());
+        int size;
+        synchronized (memory) {
+            size = memory.size();
+        }
+        logger.info("[AI_SESSION] purged={} nearCacheSize={}", purged, size);
+    }
+
+    private void store(String userId, SessionData data) {
+        synchronized (memory) {
+            writeGeneration++;
+            memory.put(userId, data);
+        }
+        if (repository == null) {
+            return;
+        }
+        try {
+            AiSessionCacheEntry row = new AiSessionCacheEntry();
+            row.setUserId(userId);
+            row.setProfileFingerprint(data.profileFingerprint);
+            row.setStrategyJson(data.strategyResult != null ? objectMapper.writeValueAsString(data.strategyResult) : null);
+            row.setMealStructureJson(data.mealStructureResult != null
+                ? objectMapper.writeValueAsString(data.mealStructureResult) : null);
+            row.setUpdatedAt(Instant.now());
+            row.setExpiresAt(Instant.now().plus(ttl));
+            repository.save(row);
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("[AI_SESSION] Store failed for userId={}: {}", userId, e.getMessage());
+        }
+    }
+
+    private SessionData load(String userId, Instant now) {
+        if (repository == null) {
+            return null;
+        }
+        try {
+            AiSessionCacheEntry row = repository.findByUserIdAndExpiresAtAfter(userId, now).orElse(null);
+            if (row == null) {
+                return null;
+            }
+            AiStrategyResult strategy = row.getStrategyJson() != null
+                ? objectMapper.readValue(row.getStrategyJson(), AiStrategyResult.class) : null;
+            AiMealStructureResult mealStructure = row.getMealStructureJson() != null
+                ? objectMapper.readValue(row.getMealStructureJson(), AiMealStructureResult.class) : null;
+            logger.debug("[AI_SESSION] Loaded userId={} from table", userId);
+            return new SessionData(strategy, mealStructure, row.getProfileFingerprint(), now);
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("[AI_SESSION] Load failed for userId={}, treating as miss: {}", userId, e.getMessage());
+            return null;
+        }
     }
 }
@@ -0,0 +1,219 @@
+package com.ndl.numbers_dont_lie.ai.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
+import com.ndl.numbers_dont_lie.ai.entity.LlmResponseCacheEntry;
+import com.ndl.numbers_dont_lie.ai.repository.LlmResponseCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache of Groq response envelopes, shared across users and retries.
+ *
+ * Design intent:
+ * - Key = SHA-256 of the canonical request body: model, temperature, top_p, messages with
+ *   whitespace-normalized content, and the function schema (map keys sorted)
+ * - Tier 1: in-process LRU (bounded entry count); tier 2: llm_response_cache table with TTL,
+ *   so hits survive restarts and are shared between instances
+ * - Requests above maxTemperature are creative (recipes) and bypass the cache entirely
+ * - Only responses whose content parsed are stored, so a malformed answer is not replayed
+ * - Database errors degrade to a miss; the cache never fails a call
+ */
+public class LlmResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(LlmResponseCache.class);
+    private static final Pattern HORIZONTAL_SPACE = Pattern.compile("[ \\t\\x0B\\f]+");
+    private static final Pattern TRAILING_SPACE = Pattern.compile("[ \\t]+\\n");
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n{3,}");
+
+    private final LlmResponseCacheRepository repository;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final double maxTemperature;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkedHashMap<String, Entry> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong tokensSaved = new AtomicLong();
+
+    public record Stats(long memoryHits, long databaseHits, long misses, long bypassed, long tokensSaved) {
+        public double hitRatio() {
+            long lookups = memoryHits + databaseHits + misses;
+            return lookups == 0 ? 0.0 : (double) (memoryHits + databaseHits) / lookups;
+        }
+    }
+
+    private record Entry(String responseJson, int totalTokens, Instant expiresAt) {
+    }
+
+    /**
+     * @param repository     persistent tier, or null for memory only
+     * @param maxEntries     LRU capacity of the in-process tier
+     * @param ttl            lifetime of an entry in both tiers
+     * @param maxTemperature requests with a higher temperature are never cached
+     */
+    public LlmResponseCache(LlmResponseCacheRepository repository, int maxEntries, Duration ttl, double maxTemperature) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.repository = repository;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.maxTemperature = maxTemperature;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > LlmResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Whether this request body may be served from / stored in the cache; counts a bypass if not.
+     */
+    public boolean isCacheable(Map<String, Object> requestBody) {
+        Object temperature = requestBody.get("temperature");
+        if (temperature instanceof Number number && number.doubleValue() > maxTemperature) {
+            bypassed.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public String key(Map<String, Object> requestBody) {
+        try {
+            byte[] canonical = objectMapper.writeValueAsBytes(canonical(null, requestBody));
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot compute LLM cache key", e);
+        }
+    }
+
+    /**
+     * Cached response envelope for this key, or null. Blocking (may query the database).
+     */
+    public String lookup(String key) {
+        Instant now = Instant.now();
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && !entry.expiresAt().isAfter(now)) {
+                memory.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            memoryHits.incrementAndGet();
+            tokensSaved.addAndGet(entry.totalTokens());
+            return entry.responseJson();
+        }
+
+        if (repository != null) {
+            try {
+                LlmResponseCacheEntry row = repository.findByKeyHashAndExpiresAtAfter(key, now).orElse(null);
+                if (row != null) {
+                    remember(key, new Entry(row.getResponseJson(), row.getTotalTokens(), row.getExpiresAt()));
+                    databaseHits.incrementAndGet();
+                    tokensSaved.addAndGet(row.getTotalTokens());
+                    return row.getResponseJson();
+                }
+            } catch (RuntimeException e) {
+                logger.warn("[LLM_CACHE] Lookup failed, treating as miss: {}", e.getMessage());
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a response envelope in both tiers. Blocking (writes the database).
+     */
+    public void store(String key, AiPromptType promptType, String responseJson, int totalTokens) {
+        Instant expiresAt = Instant.now().plus(ttl);
+        remember(key, new Entry(responseJson, totalTokens, expiresAt));
+        if (repository == null) {
+            return;
+        }
+        try {
+            LlmResponseCacheEntry row = new LlmResponseCacheEntry();
+            row.setKeyHash(key);
+            row.setPromptType(promptType.getKey());
+            row.setTotalTokens(totalTokens);
+            row.setExpiresAt(expiresAt);
+            row.setResponseJson(responseJson);
+            repository.save(row);
+        } catch (RuntimeException e) {
+            // Typically a concurrent insert of the same key; either copy is fine
+            logger.warn("[LLM_CACHE] Store failed for {}: {}", promptType.getKey(), e.getMessage());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(memoryHits.get(), databaseHits.get(), misses.get(), bypassed.get(), tokensSaved.get());
+    }
+
+    /**
+     * Drop expired rows from the persistent tier and log the running hit ratio.
+     */
+    @Scheduled(cron = "${groq.cache.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        int purged = repository != null ? repository.deleteExpired(Instant.now()) : 0;
+        Stats stats = stats();
+        logger.info("[LLM_CACHE] purged={} hitRatio={} memoryHits={} databaseHits={} misses={} bypassed={} tokensSaved={}",
+            purged, String.format("%.3f", stats.hitRatio()), stats.memoryHits(), stats.databaseHits(),
+            stats.misses(), stats.bypassed(), stats.tokensSaved());
+    }
+
+    /**
+     * Collapse whitespace that does not change meaning: line endings, runs of spaces/tabs,
+     * trailing spaces and runs of blank lines.
+     */
+    static String normalizePrompt(String prompt) {
+        String text = prompt.replace("\r\n", "\n").replace('\r', '\n');
+        text = HORIZONTAL_SPACE.matcher(text).replaceAll(" ");
+        text = TRAILING_SPACE.matcher(text).replaceAll("\n");
+        text = BLANK_LINES.matcher(text).replaceAll("\n\n");
+        return text.strip();
+    }
+
+    private void remember(String key, Entry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+    }
+
+    private static Object canonical(String field, Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), canonical(String.valueOf(k), v)));
+            return sorted;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> items = new ArrayList<>(list.size());
+            list.forEach(item -> items.add(canonical(null, item)));
+            return items;
+        }
+        if (value instanceof String text && "content".equals(field)) {
+            return normalizePrompt(text);
+        }
+        return value;
+    }
+}
@@ -71,7 +71,10 @@ public class AiController {
   public ResponseEntity<?> status(@RequestHeader(value = "Authorization", required = false) String auth) {
     try {
       emailFrom(auth); // just to validate access token
-      return ResponseEntity.ok(Map.of("enabled", availability.isEnabled()));
+      return ResponseEntity.ok(Map.of(
+        "enabled", availability.isEnabled(),
+        "circuits", availability.circuitStates(),
+        "responseCache", availability.responseCacheStats()));
     } catch (IllegalStateException e) {
       return ResponseEntity.status(401).body(Map.of("error", e.getMessage()));
     }
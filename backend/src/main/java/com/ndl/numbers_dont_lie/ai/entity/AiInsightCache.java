@@ -4,10 +4,19 @@ import com.ndl.numbers_dont_lie.entity.UserEntity;
 import jakarta.persistence.*;
 import java.time.Instant;
 
+/**
+ * Latest insights per (user, scope, goalKey): one row, overwritten on regeneration.
+ * dataJson holds the response JSON gzip-compressed (see AiInsightCacheStore).
+ */
 @Entity
-@Table(name = "ai_insight_cache", indexes = {
-  @Index(name = "idx_ai_cache_user_scope_goal", columnList = "user_id,scope,goal_key")
-})
+@Table(name = "ai_insight_cache",
+  uniqueConstraints = {
+    @UniqueConstraint(name = "uk_ai_insight_user_scope_goal", columnNames = {"user_id", "scope", "goal_key"})
+  },
+  indexes = {
+    // Purge scans expired ids only: answered from the index alone
+    @Index(name = "idx_ai_insight_expires_id", columnList = "expires_at,id")
+  })
 public class AiInsightCache {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,46 @@
+package com.ndl.numbers_dont_lie.ai.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Persistent tier of the AI session cache: a user's strategy (STEP 4.1) and meal structure
+ * (STEP 4.2) results, with the fingerprint of the profile inputs they were generated from.
+ */
+@Entity
+@Table(name = "ai_session_cache", indexes = {
+  @Index(name = "idx_ai_session_expires", columnList = "expires_at")
+})
+public class AiSessionCacheEntry {
+  @Id
+  @Column(name = "user_id", length = 64)
+  private String userId;
+
+  @Column(name = "profile_fingerprint", length = 64)
+  private String profileFingerprint; // SHA-256 hex of the strategy inputs; null if unknown
+
+  @Column(name = "strategy_json", columnDefinition = "TEXT")
+  private String strategyJson;
+
+  @Column(name = "meal_structure_json", columnDefinition = "TEXT")
+  private String mealStructureJson;
+
+  @Column(name = "updated_at", nullable = false)
+  private Instant updatedAt = Instant.now();
+
+  @Column(name = "expires_at", nullable = false)
+  private Instant expiresAt;
+
+  public String getUserId() { return userId; }
+  public void setUserId(String userId) { this.userId = userId; }
+  public String getProfileFingerprint() { return profileFingerprint; }
+  public void setProfileFingerprint(String profileFingerprint) { this.profileFingerprint = profileFingerprint; }
+  public String getStrategyJson() { return strategyJson; }
+  public void setStrategyJson(String strategyJson) { this.strategyJson = strategyJson; }
+  public String getMealStructureJson() { return mealStructureJson; }
+  public void setMealStructureJson(String mealStructureJson) { this.mealStructureJson = mealStructureJson; }
+  public Instant getUpdatedAt() { return updatedAt; }
+  public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+  public Instant getExpiresAt() { return expiresAt; }
+  public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,46 @@
+package com.ndl.numbers_dont_lie.ai.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Persistent tier of the LLM response cache: one Groq response envelope per request hash.
+ * Rows are shared by all users; the key covers everything the model sees.
+ */
+@Entity
+@Table(name = "llm_response_cache", indexes = {
+  @Index(name = "idx_llm_cache_expires", columnList = "expires_at")
+})
+public class LlmResponseCacheEntry {
+  @Id
+  @Column(name = "key_hash", length = 64)
+  private String keyHash; // SHA-256 hex of model, temperature, normalized prompt, function schema
+
+  @Column(name = "prompt_type", nullable = false, length = 32)
+  private String promptType;
+
+  @Column(name = "total_tokens", nullable = false)
+  private int totalTokens;
+
+  @Column(name = "created_at", nullable = false)
+  private Instant createdAt = Instant.now();
+
+  @Column(name = "expires_at", nullable = false)
+  private Instant expiresAt;
+
+  @Column(name = "response_json", nullable = false, columnDefinition = "TEXT")
+  private String responseJson;
+
+  public String getKeyHash() { return keyHash; }
+  public void setKeyHash(String keyHash) { this.keyHash = keyHash; }
+  public String getPromptType() { return promptType; }
+  public void setPromptType(String promptType) { this.promptType = promptType; }
+  public int getTotalTokens() { return totalTokens; }
+  public void setTotalTokens(int totalTokens) { this.totalTokens = totalTokens; }
+  public Instant getCreatedAt() { return createdAt; }
+  public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+  public Instant getExpiresAt() { return expiresAt; }
+  public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+  public String getResponseJson() { return responseJson; }
+  public void setResponseJson(String responseJson) { this.responseJson = responseJson; }
+}
@@ -0,0 +1,7 @@
+package com.ndl.numbers_dont_lie.ai.event;
+
+/**
+ * Published when a read found no unexpired precomputed insights for the user.
+ */
+public record AiInsightsStaleEvent(String email) {
+}
@@ -0,0 +1,12 @@
+package com.ndl.numbers_dont_lie.ai.exception;
+
+/**
+ * Groq was not called because the user has spent their daily token budget.
+ * Callers should take their non-AI path, as for an open circuit.
+ */
+public class AiBudgetExceededException extends AiClientException {
+
+    public AiBudgetExceededException(String userFriendlyMessage) {
+        super(userFriendlyMessage);
+    }
+}
@@ -0,0 +1,12 @@
+package com.ndl.numbers_dont_lie.ai.exception;
+
+/**
+ * Groq was not called because the circuit breaker for this endpoint and prompt type is open
+ * (recent calls kept failing). Callers should take their non-AI path immediately.
+ */
+public class AiCircuitOpenException extends AiClientException {
+
+    public AiCircuitOpenException(String userFriendlyMessage) {
+        super(userFriendlyMessage);
+    }
+}
@@ -2,26 +2,24 @@ package com.ndl.numbers_dont_lie.ai.function;
 
 import com.ndl.numbers_dont_lie.ai.dto.GeneratedRecipe;
 import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
-import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.service.IngredientResolver;
+import com.ndl.numbers_dont_lie.recipe.service.UnitConversion;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 /**
  * Implementation of nutrition calculation via ingredient database lookup.
  * 
  * Uses actual ingredient data, not AI estimates.
- * Supports fuzzy matching for ingredient names.
+ * Supports fuzzy matching for ingredient names (see IngredientResolver).
  */
 @Service
 public class DatabaseNutritionCalculator implements NutritionCalculator {
-    private final IngredientRepository ingredientRepository;
+    private final IngredientResolver ingredientResolver;
 
-    public DatabaseNutritionCalculator(IngredientRepository ingredientRepository) {
-        this.ingredientRepository = ingredientRepository;
+    public DatabaseNutritionCalculator(IngredientResolver ingredientResolver) {
+        this.ingredientResolver = ingredientResolver;
     }
 
     @Override
@@ -42,12 +40,11 @@ public class DatabaseNutritionCalculator implements NutritionCalculator {
         double totalSodium = 0.0;
 
         for (GeneratedRecipe.GeneratedIngredient genIng : ingredients) {
-            // Try to find ingredient in database
-            Ingredient dbIngredient = findIngredient(genIng);
+            // Resolve against the in-memory ingredient index (id, exact label, fuzzy)
+            Ingredient dbIngredient = ingredientResolver.resolve(genIng.getIngredientId(), genIng.getName());
             
             if (dbIngredient == null) {
-                // Log warning but continue (use zeros for this ingredient)
-                System.err.println("Warning: Ingredient not found in database: " + genIng.getName());
+                // Counted as a resolver miss; continue with zeros for this ingredient
                 continue;
             }
 
@@ -55,7 +52,7 @@ public class DatabaseNutritionCalculator implements NutritionCalculator {
             double quantityInStandardUnit = convertToStandardUnit(
                 genIng.getQuantity(), 
                 genIng.getUnit(), 
-                dbIngredient.getUnit()
+                dbIngredient
             );
 
             // Scale nutrition by quantity (ingredient nutrition is per 100g/ml)
@@ -95,75 +92,13 @@ public class DatabaseNutritionCalculator implements NutritionCalculator {
     }
 
     /**
-     * Find ingredient in database with fuzzy matching.
+     * Convert quantity to standard unit (grams or milliliters of the catalog ingredient).
+     * Uses the ingredient density to cross volume/mass when it is known.
      */
-    private Ingredient findIngredient(GeneratedRecipe.GeneratedIngredient genIng) {
-        // Try exact ID match first
-        if (genIng.getIngredientId() != null) {
-            Optional<Ingredient> byId = ingredientRepository.findByStableId(genIng.getIngredientId());
-            if (byId.isPresent()) {
-                return byId.get();
-            }
-        }
-
-        // Try exact label match
-        String normalizedName = genIng.getName().toLowerCase().trim();
-        Optional<Ingredient> byLabel = ingredientRepository.findByLabel(normalizedName);
-        if (byLabel.isPresent()) {
-            return byLabel.get();
-        }
-
-        // Try partial match (simple contains)
-        List<Ingredient> all = ingredientRepository.findAll();
-        for (Ingredient ing : all) {
-            if (ing.getLabel().contains(normalizedName) || 
-                normalizedName.contains(ing.getLabel())) {
-                return ing;
-            }
-        }
-
-        return null;
-    }
-
-    /**
-     * Convert quantity to standard unit (grams or milliliters).
-     */
-    private double convertToStandardUnit(Double quantity, String unit, String dbUnit) {
+    private double convertToStandardUnit(Double quantity, String unit, Ingredient dbIngredient) {
         if (quantity == null) return 0.0;
         if (unit == null) return quantity; // assume already in standard unit
 
-        String normalizedUnit = unit.toLowerCase().trim();
-        
-        // Direct matches
-        if (normalizedUnit.equals("g") || normalizedUnit.equals("gram") || 
-            normalizedUnit.equals("grams")) {
-            return quantity;
-        }
-        if (normalizedUnit.equals("ml") || normalizedUnit.equals("milliliter") || 
-            normalizedUnit.equals("milliliters")) {
-            return quantity;
-        }
-
-        // Common conversions
-        Map<String, Double> conversions = new HashMap<>();
-        conversions.put("kg", 1000.0);
-        conversions.put("kilogram", 1000.0);
-        conversions.put("l", 1000.0);
-        conversions.put("liter", 1000.0);
-        conversions.put("cup", 240.0); // ml
-        conversions.put("tbsp", 15.0);
-        conversions.put("tablespoon", 15.0);
-        conversions.put("tsp", 5.0);
-        conversions.put("teaspoon", 5.0);
-        conversions.put("oz", 28.35); // grams
-        conversions.put("ounce", 28.35);
-
-        Double factor = conversions.get(normalizedUnit);
-        if (factor != null) {
-            return quantity * factor;
-        }
-
-        // Default: return as-is
-        return quantity;
+        return UnitConversion.toBaseOf(quantity, unit, dbIngredient.getUnit(), dbIngredient.getDensity());
     }
 }
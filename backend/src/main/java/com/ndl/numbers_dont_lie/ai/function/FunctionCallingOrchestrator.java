@@ -3,6 +3,7 @@ package com.ndl.numbers_dont_lie.ai.function;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ndl.numbers_dont_lie.ai.dto.GeneratedRecipe;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiTelemetry;
 import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
 import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
 import org.slf4j.Logger;
@@ -38,14 +39,17 @@ public class FunctionCallingOrchestrator {
     private final DatabaseNutritionCalculator nutritionCalculator;
     private final IngredientRepository ingredientRepository;
     private final ObjectMapper objectMapper;
+    private final AiTelemetry telemetry;
     
     public FunctionCallingOrchestrator(
             DatabaseNutritionCalculator nutritionCalculator,
             IngredientRepository ingredientRepository,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            AiTelemetry telemetry) {
         this.nutritionCalculator = nutritionCalculator;
         this.ingredientRepository = ingredientRepository;
         this.objectMapper = objectMapper;
+        this.telemetry = telemetry;
     }
     
     /**
@@ -181,49 +185,8 @@ public class FunctionCallingOrchestrator {
             
             logger.debug("[FC] Servings: {}", servings);
             
-            // Validate all inputs
-            CalculateNutritionRequest.Input input = 
-                new CalculateNutritionRequest.Input(ingredients, servings);
-            input.validate();
-            
-            logger.info("[FC] Input validation passed. Executing calculation...");
-            
-            // Execute calculation via database
-            long calcStartTime = System.currentTimeMillis();
-            GeneratedRecipe.NutritionInfo nutrition = nutritionCalculator.calculate(
-                convertToGeneratedIngredients(ingredients),
-                servings
-            );
-            long calcTime = System.currentTimeMillis() - calcStartTime;
-            
-            logger.info("[FC] Calculation completed in {} ms", calcTime);
-            
-            // Build output
-            CalculateNutritionRequest.Output output = new CalculateNutritionRequest.Output(
-                nutrition.getCalories(),
-                nutrition.getProtein(),
-                nutrition.getCarbohydrates(),
-                nutrition.getFat(),
-                nutrition.getCaloriesPerServing(),
-                nutrition.getProteinPerServing(),
-                nutrition.getCarbsPerServing(),
-                nutrition.getFatPerServing(),
-                "database_lookup",
-                System.currentTimeMillis() - startTime
-            );
-            
-            logger.info("[FC] Output: calories={}, protein={}g, carbs={}g, fat={}g (per serving: " +
-                "{} cal, {}g P, {}g C, {}g F)",
-                (int)output.calories(),
-                (int)output.protein(),
-                (int)output.carbohydrates(),
-                (int)output.fats(),
-                (int)output.caloriesPerServing(),
-                (int)output.proteinPerServing(),
-                (int)output.carbsPerServing(),
-                (int)output.fatsPerServing());
-            
-            return output;
+            return calculateValidated(
+                ingredients, convertToGeneratedIngredients(ingredients), servings, "database_lookup", startTime);
             
         } catch (IllegalArgumentException e) {
             logger.error("[FC] Validation error: {}", e.getMessage());
@@ -234,6 +197,83 @@ public class FunctionCallingOrchestrator {
         }
     }
     
+    /**
+     * Single-pass mode: the same validation and database calculation as the function call,
+     * run on the ingredients of a recipe the model returned without nutrition.
+     * The output is what the function would have returned; the caller writes it into the
+     * recipe itself, so there is no model-embedded value to verify against it.
+     *
+     * @throws IllegalArgumentException if validation fails
+     */
+    public CalculateNutritionRequest.Output calculateNutrition(
+            List<GeneratedRecipe.GeneratedIngredient> ingredients, int servings) {
+        long startTime = System.currentTimeMillis();
+        List<CalculateNutritionRequest.IngredientInput> inputs = new ArrayList<>();
+        if (ingredients != null) {
+            for (GeneratedRecipe.GeneratedIngredient ingredient : ingredients) {
+                inputs.add(new CalculateNutritionRequest.IngredientInput(
+                    ingredient.getName(),
+                    ingredient.getQuantity() != null ? ingredient.getQuantity() : 0.0,
+                    ingredient.getUnit()));
+            }
+        }
+        // The model's own ingredient list goes to the calculator (the resolver matches ids and labels)
+        return calculateValidated(inputs, ingredients, servings, "server_side", startTime);
+    }
+
+    private CalculateNutritionRequest.Output calculateValidated(
+            List<CalculateNutritionRequest.IngredientInput> inputs,
+            List<GeneratedRecipe.GeneratedIngredient> ingredients,
+            int servings,
+            String calculationMethod,
+            long startTime) {
+        // Validate all inputs
+        CalculateNutritionRequest.Input input = 
+            new CalculateNutritionRequest.Input(inputs, servings);
+        try {
+            input.validate();
+        } catch (IllegalArgumentException e) {
+            telemetry.recordVerificationFailure("input_invalid");
+            throw e;
+        }
+        
+        logger.info("[FC] Input validation passed. Executing calculation...");
+        
+        // Execute calculation via database
+        long calcStartTime = System.currentTimeMillis();
+        GeneratedRecipe.NutritionInfo nutrition = nutritionCalculator.calculate(ingredients, servings);
+        long calcTime = System.currentTimeMillis() - calcStartTime;
+        
+        logger.info("[FC] Calculation completed in {} ms", calcTime);
+        
+        // Build output
+        CalculateNutritionRequest.Output output = new CalculateNutritionRequest.Output(
+            nutrition.getCalories(),
+            nutrition.getProtein(),
+            nutrition.getCarbohydrates(),
+            nutrition.getFat(),
+            nutrition.getCaloriesPerServing(),
+            nutrition.getProteinPerServing(),
+            nutrition.getCarbsPerServing(),
+            nutrition.getFatPerServing(),
+            calculationMethod,
+            System.currentTimeMillis() - startTime
+        );
+        
+        logger.info("[FC] Output: calories={}, protein={}g, carbs={}g, fat={}g (per serving: " +
+            "{} cal, {}g P, {}g C, {}g F)",
+            (int)output.calories(),
+            (int)output.protein(),
+            (int)output.carbohydrates(),
+            (int)output.fats(),
+            (int)output.caloriesPerServing(),
+            (int)output.proteinPerServing(),
+            (int)output.carbsPerServing(),
+            (int)output.fatsPerServing());
+        
+        return output;
+    }
+
     /**
      * Verify that final recipe nutrition comes only from function output.
      * 
@@ -248,6 +288,7 @@ public class FunctionCallingOrchestrator {
             CalculateNutritionRequest.Output functionOutput) {
         
         if (recipe.getNutrition() == null) {
+            telemetry.recordVerificationFailure("missing_nutrition");
             throw new IllegalStateException("Recipe missing nutrition info");
         }
         
@@ -260,6 +301,7 @@ public class FunctionCallingOrchestrator {
         if (Math.abs(recipeCals - outputCals) > outputCals * tolerance) {
             logger.warn("[FC] Recipe calories {} doesn't match function output {}", 
                 recipeCals, outputCals);
+            telemetry.recordVerificationFailure("calories_mismatch");
             // Could throw exception here for strict validation
             // For now, log warning
         }
@@ -1,10 +1,21 @@
 package com.ndl.numbers_dont_lie.ai.repository;
 import com.ndl.numbers_dont_lie.entity.UserEntity;
 import com.ndl.numbers_dont_lie.ai.entity.AiInsightCache;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 public interface AiInsightCacheRepository extends JpaRepository<AiInsightCache, Long> {
+  // Unique per key; the ordering only matters for rows written before the unique constraint
   Optional<AiInsightCache> findFirstByUserAndScopeAndGoalKeyOrderByGeneratedAtDesc(UserEntity user, String scope, String goalKey);
+
+  boolean existsByUserEmail(String email);
+
+  @Query("SELECT c.id FROM AiInsightCache c WHERE c.expiresAt < :cutoff ORDER BY c.expiresAt, c.id")
+  List<Long> findExpiredIds(@Param("cutoff") Instant cutoff, Pageable page);
 }
@@ -0,0 +1,20 @@
+package com.ndl.numbers_dont_lie.ai.repository;
+
+import com.ndl.numbers_dont_lie.ai.entity.AiSessionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface AiSessionCacheRepository extends JpaRepository<AiSessionCacheEntry, String> {
+  Optional<AiSessionCacheEntry> findByUserIdAndExpiresAtAfter(String userId, Instant now);
+
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM AiSessionCacheEntry e WHERE e.expiresAt <= :now")
+  int deleteExpired(@Param("now") Instant now);
+}
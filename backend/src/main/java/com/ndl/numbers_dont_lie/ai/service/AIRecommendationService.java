@@ -9,12 +9,14 @@ import com.ndl.numbers_dont_lie.repository.UserRepository;
 import com.ndl.numbers_dont_lie.weight.entity.WeightEntry;
 import com.ndl.numbers_dont_lie.weight.repository.WeightEntryRepository;
 import com.ndl.numbers_dont_lie.activity.service.ActivityService;
-import com.ndl.numbers_dont_lie.ai.repository.AiInsightCacheRepository;
 import com.ndl.numbers_dont_lie.ai.dto.AiInsightsResponse;
 import com.ndl.numbers_dont_lie.ai.dto.AiInsightItemDto;
 import com.ndl.numbers_dont_lie.ai.entity.AiInsightCache;
+import com.ndl.numbers_dont_lie.ai.event.AiInsightsStaleEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -28,39 +30,45 @@ import org.springframework.stereotype.Service;
  */
 @Service
 public class AIRecommendationService {
+  private static final List<String> SCOPES = List.of("weekly", "monthly");
+
   private final UserRepository users;
   private final ProfileRepository profiles;
   private final WeightEntryRepository weights;
   private final ActivityService activityService;
-  private final AiInsightCacheRepository cacheRepo;
+  private final AiInsightCacheStore cacheStore;
   private final ObjectMapper om;
   private final AiAvailabilityService availability;
+  private final ApplicationEventPublisher events;
 
   public AIRecommendationService(UserRepository users,
                                  ProfileRepository profiles,
                                  WeightEntryRepository weights,
                                  ActivityService activityService,
-                                 AiInsightCacheRepository cacheRepo,
+                                 AiInsightCacheStore cacheStore,
                                  ObjectMapper om,
-                                 AiAvailabilityService availability) {
+                                 AiAvailabilityService availability,
+                                 ApplicationEventPublisher events) {
     this.users = users; this.profiles = profiles; this.weights = weights; this.activityService = activityService;
-    this.cacheRepo = cacheRepo; this.om = om; this.availability = availability;
+    this.cacheStore = cacheStore; this.om = om; this.availability = availability; this.events = events;
   }
 
   /**
    * Load the latest cached recommendation for scope and current goal.
-   * Does NOT recompute.
+   * Does NOT recompute: a missing or expired row only requests a background precompute.
    */
   public Optional<AiInsightsResponse> loadLatest(String email, String scope) {
     String normalizedScope = normalizeScope(scope);
     UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
     ProfileEntity p = profiles.findByUser(user).orElse(null);
-    String goalKey = (p != null && p.getGoal() != null) ? p.getGoal() : "general_fitness";
 
-    Optional<AiInsightCache> latest = cacheRepo.findFirstByUserAndScopeAndGoalKeyOrderByGeneratedAtDesc(user, normalizedScope, goalKey);
+    Optional<AiInsightCache> latest = cacheStore.find(user, normalizedScope, goalKey(p));
+    if (latest.isEmpty() || latest.get().getExpiresAt() == null || !latest.get().getExpiresAt().isAfter(Instant.now())) {
+      events.publishEvent(new AiInsightsStaleEvent(email));
+    }
     if (latest.isEmpty()) return Optional.empty();
     try {
-      AiInsightsResponse resp = om.readValue(latest.get().getDataJson(), AiInsightsResponse.class);
+      AiInsightsResponse resp = om.readValue(cacheStore.json(latest.get()), AiInsightsResponse.class);
       resp.fromCache = true;
       if (resp.items != null) {
         for (var it : resp.items) { it.cached = true; }
@@ -77,9 +85,6 @@ public class AIRecommendationService {
    */
   public AiInsightsResponse regenerate(String email, String scope) {
     String normalizedScope = normalizeScope(scope);
-    UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
-    ProfileEntity p = profiles.findByUser(user).orElse(null);
-    String goalKey = (p != null && p.getGoal() != null) ? p.getGoal() : "general_fitness";
 
     // AI availability handling
     if (!availability.isEnabled()) {
@@ -88,28 +93,48 @@ public class AIRecommendationService {
       throw new IllegalStateException("AI unavailable and no cached recommendation");
     }
 
+    UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
+    ProfileEntity p = profiles.findByUser(user).orElse(null);
+    return computeAndStore(user, p, normalizedScope, weights.findTop6ByUserOrderByAtDesc(user));
+  }
+
+  /**
+   * Recompute and store both scopes for the user; called by AiInsightPrecomputeWorker after
+   * weight, activity and profile writes. Profile, weights and user are read once for both scopes.
+   *
+   * @return false if AI is disabled (stored rows are left as they are)
+   */
+  public boolean precompute(String email) {
+    if (!availability.isEnabled()) return false;
+    UserEntity user = users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"));
+    ProfileEntity p = profiles.findByUser(user).orElse(null);
+    List<WeightEntry> recentWeights = weights.findTop6ByUserOrderByAtDesc(user);
+    for (String scope : SCOPES) {
+      computeAndStore(user, p, scope, recentWeights);
+    }
+    return true;
+  }
+
+  private AiInsightsResponse computeAndStore(UserEntity user, ProfileEntity p, String scope, List<WeightEntry> recentWeights) {
     // Build non-PII metrics for the core rule engine
-    Metrics m = buildMetrics(email, p, normalizedScope);
+    Metrics m = buildMetrics(user, p, scope, recentWeights);
     AiInsightsResponse fresh = computeDeterministic(m);
 
-    // Persist in cache (TTL based on scope)
+    // Persist in cache (TTL based on scope; one row per user/scope/goal, overwritten)
     try {
-      AiInsightCache c = new AiInsightCache();
-      c.setUser(user);
-      c.setScope(normalizedScope);
-      c.setGoalKey(goalKey);
-      c.setGeneratedAt(Instant.now());
-      int ttlHours = normalizedScope.equals("weekly") ? 6 : 24;
-      c.setExpiresAt(Instant.now().plusSeconds(ttlHours * 3600L));
+      int ttlHours = scope.equals("weekly") ? 6 : 24;
       // Store JSON; fromCache flag set to false (will be computed on load)
       AiInsightsResponse toStore = new AiInsightsResponse(fresh.items, fresh.summary, false, fresh.generatedAt);
-      c.setDataJson(om.writeValueAsString(toStore));
-      cacheRepo.save(c);
+      cacheStore.put(user, scope, goalKey(p), om.writeValueAsString(toStore), Duration.ofHours(ttlHours));
     } catch (JsonProcessingException ignored) {}
 
     return fresh;
   }
 
+  private static String goalKey(ProfileEntity p) {
+    return (p != null && p.getGoal() != null) ? p.getGoal() : "general_fitness";
+  }
+
   private String normalizeScope(String scope) {
     if (scope == null || scope.isBlank()) return "weekly";
     return (scope.equals("weekly") || scope.equals("monthly")) ? scope : "weekly";
@@ -128,7 +153,10 @@ public class AIRecommendationService {
     int wellnessDeltaPoints;      // deterministic points change vs previous period
   }
 
-  private Metrics buildMetrics(String email, ProfileEntity p, String scope) {
+  /**
+   * @param recentWeights latest weight entries, newest first (at most 6 are used)
+   */
+  private Metrics buildMetrics(UserEntity user, ProfileEntity p, String scope, List<WeightEntry> recentWeights) {
     Metrics m = new Metrics();
     m.scope = scope;
     m.goal = (p != null && p.getGoal() != null) ? p.getGoal() : "general_fitness";
@@ -136,14 +164,14 @@ public class AIRecommendationService {
     // Determine activity metrics and level depending on scope; compute wellness delta vs previous period
     if ("monthly".equals(scope)) {
       var now = LocalDate.now(ZoneOffset.UTC);
-      var byDay = activityService.monthByDayMinutes(email, now.getYear(), now.getMonthValue());
+      var byDay = activityService.monthByDayMinutes(user, now.getYear(), now.getMonthValue());
       int total = byDay.values().stream().mapToInt(Integer::intValue).sum();
       long activeDays = byDay.values().stream().filter(v -> v > 0).count();
       m.totalMinutes = total;
       m.activeDays = (int) activeDays;
       // Previous month
       var prev = now.minusMonths(1);
-      var prevByDay = activityService.monthByDayMinutes(email, prev.getYear(), prev.getMonthValue());
+      var prevByDay = activityService.monthByDayMinutes(user, prev.getYear(), prev.getMonthValue());
       int prevTotal = prevByDay.values().stream().mapToInt(Integer::intValue).sum();
       m.wellnessDeltaPoints = clamp(Math.round((float)(total - prevTotal) / 30f), -10, 10);
       // Map monthly total to level
@@ -151,10 +179,12 @@ public class AIRecommendationService {
       else if (total < 900) m.weeklyActivityLevel = "medium";
       else m.weeklyActivityLevel = "high";
     } else {
-      var thisWeek = activityService.weekSummary(email, LocalDate.now());
+      // Previous and current week from one scan
+      var weeks = activityService.weekSummaries(user, LocalDate.now(), 2);
+      var prevWeek = weeks.get(0);
+      var thisWeek = weeks.get(1);
       m.totalMinutes = thisWeek.totalMinutes;
       m.activeDays = thisWeek.daysActive;
-      var prevWeek = activityService.weekSummary(email, LocalDate.now().minusWeeks(1));
       m.wellnessDeltaPoints = clamp(Math.round((float)(thisWeek.totalMinutes - prevWeek.totalMinutes) / 30f), -10, 10);
       int minutes = thisWeek.totalMinutes;
       if (minutes < 90) m.weeklyActivityLevel = "low";
@@ -162,8 +192,9 @@ public class AIRecommendationService {
       else m.weeklyActivityLevel = "high";
     }
 
-    // Progress status based on recent weight trend (last 28 days)
-    List<WeightEntry> list = weights.findAllByUserOrderByAtAsc(users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found")));
+    // Progress status based on recent weight trend (last 6 entries, oldest first)
+    List<WeightEntry> list = new ArrayList<>(recentWeights);
+    Collections.reverse(list);
     m.progressStatus = computeProgressStatus(list, p);
     return m;
   }
@@ -1,21 +1,71 @@
 package com.ndl.numbers_dont_lie.ai.service;
 
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
+import com.ndl.numbers_dont_lie.ai.GroqClient;
+import com.ndl.numbers_dont_lie.ai.cache.LlmResponseCache;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Holds AI availability flag with runtime override capability.
+ * Holds AI availability flag with runtime override capability,
+ * combined with the Groq circuit breaker state when a client is configured.
  */
 @Service
 public class AiAvailabilityService {
   private final AtomicBoolean enabled;
+  private final ObjectProvider<GroqClient> groqClient;
 
-  public AiAvailabilityService(@Value("${app.ai.enabled:true}") boolean initialEnabled) {
+  public AiAvailabilityService(@Value("${app.ai.enabled:true}") boolean initialEnabled,
+                               ObjectProvider<GroqClient> groqClient) {
     this.enabled = new AtomicBoolean(initialEnabled);
+    this.groqClient = groqClient;
   }
 
   public boolean isEnabled() { return enabled.get(); }
   public void setEnabled(boolean value) { enabled.set(value); }
+
+  /**
+   * Whether a Groq call of this type should be attempted now: AI enabled, client configured
+   * and its breaker not open. When false, callers go straight to their DB-only path.
+   */
+  public boolean isAiCallAllowed(AiPromptType promptType) {
+    GroqClient client = groqClient.getIfAvailable();
+    return enabled.get() && client != null && client.isAvailable(promptType);
+  }
+
+  /**
+   * Breaker state by "endpoint/prompt type"; empty when no Groq client is configured.
+   */
+  public Map<String, String> circuitStates() {
+    GroqClient client = groqClient.getIfAvailable();
+    Map<String, String> states = new LinkedHashMap<>();
+    if (client != null) {
+      client.getCircuitBreaker().snapshot().forEach((key, state) -> states.put(key, state.name()));
+    }
+    return states;
+  }
+
+  /**
+   * Response cache counters (hit ratio, tokens saved); empty when caching is off.
+   */
+  public Map<String, Object> responseCacheStats() {
+    GroqClient client = groqClient.getIfAvailable();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    LlmResponseCache cache = client != null ? client.getResponseCache() : null;
+    if (cache != null) {
+      LlmResponseCache.Stats s = cache.stats();
+      stats.put("hitRatio", s.hitRatio());
+      stats.put("memoryHits", s.memoryHits());
+      stats.put("databaseHits", s.databaseHits());
+      stats.put("misses", s.misses());
+      stats.put("bypassed", s.bypassed());
+      stats.put("tokensSaved", s.tokensSaved());
+    }
+    return stats;
+  }
 }
@@ -2,9 +2,11 @@ package com.ndl.numbers_dont_lie.ai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
 import com.ndl.numbers_dont_lie.ai.GroqClient;
 import com.ndl.numbers_dont_lie.ai.dto.AiIngredientSubstituteResponse;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
 import com.ndl.numbers_dont_lie.mealplan.repository.MealRepository;
 import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
@@ -76,7 +78,8 @@ public class AiIngredientSubstitutionService {
             cuisines,
             availableIngredients
         );
-        JsonNode response = groqClient.callForJson(prompt, 0.3);
+        JsonNode response = AiCallScope.callAs(userId,
+            () -> groqClient.callForJson(AiPromptType.SUBSTITUTION, prompt, 0.3));
         AiIngredientSubstituteResponse parsed = parseResponse(response);
 
         List<AiIngredientSubstituteResponse.Alternative> filtered = filterAlternatives(
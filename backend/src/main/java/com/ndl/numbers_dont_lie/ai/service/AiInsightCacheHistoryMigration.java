@@ -0,0 +1,66 @@
+package com.ndl.numbers_dont_lie.ai.service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Schema step for ai_insight_cache that runs before Hibernate updates the schema.
+ *
+ * Design intent:
+ * - The per-key history written before the upsert is deleted before ddl-auto adds
+ *   uk_ai_insight_user_scope_goal; with duplicates left in place that ALTER fails and the
+ *   constraint the store's insert race handling relies on would never be created
+ * - Deletes run in id batches, each in its own short transaction
+ * - Skipped on a fresh database (no table yet) and once the constraint exists, so normal starts
+ *   pay two catalog lookups and no table scan
+ */
+public class AiInsightCacheHistoryMigration {
+  private static final Logger logger = LoggerFactory.getLogger(AiInsightCacheHistoryMigration.class);
+  static final String UNIQUE_KEY = "uk_ai_insight_user_scope_goal";
+
+  private static final String TABLE_EXISTS =
+      "SELECT COUNT(*) FROM information_schema.tables"
+      + " WHERE table_schema = current_schema() AND lower(table_name) = 'ai_insight_cache'";
+  private static final String KEY_EXISTS =
+      "SELECT COUNT(*) FROM information_schema.table_constraints"
+      + " WHERE table_schema = current_schema() AND lower(constraint_name) = ?";
+  private static final String DELETE_SUPERSEDED =
+      "DELETE FROM ai_insight_cache WHERE id IN (SELECT c.id FROM ai_insight_cache c"
+      + " WHERE EXISTS (SELECT 1 FROM ai_insight_cache n WHERE n.user_id = c.user_id"
+      + " AND n.scope = c.scope AND n.goal_key = c.goal_key AND n.id > c.id)"
+      + " ORDER BY c.id LIMIT ?)";
+
+  private final JdbcTemplate jdbc;
+  private final int batchSize;
+
+  public AiInsightCacheHistoryMigration(DataSource dataSource, int batchSize) {
+    this.jdbc = new JdbcTemplate(dataSource);
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * Delete rows superseded by a newer row for the same key. Returns the number deleted.
+   */
+  public int migrate() {
+    if (count(TABLE_EXISTS) == 0 || count(KEY_EXISTS, UNIQUE_KEY) > 0) {
+      return 0;
+    }
+    long startedAt = System.currentTimeMillis();
+    int removed = 0;
+    int batch;
+    do {
+      batch = jdbc.update(DELETE_SUPERSEDED, batchSize);
+      removed += batch;
+    } while (batch > 0);
+    logger.info("[AI_INSIGHT_CACHE] Removed {} superseded row(s) before adding {} in {} ms",
+        removed, UNIQUE_KEY, System.currentTimeMillis() - startedAt);
+    return removed;
+  }
+
+  private int count(String sql, Object... args) {
+    Integer n = jdbc.queryForObject(sql, Integer.class, args);
+    return n == null ? 0 : n;
+  }
+}
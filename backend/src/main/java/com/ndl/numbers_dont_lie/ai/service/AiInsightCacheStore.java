@@ -0,0 +1,149 @@
+package com.ndl.numbers_dont_lie.ai.service;
+import com.ndl.numbers_dont_lie.entity.UserEntity;
+import com.ndl.numbers_dont_lie.ai.entity.AiInsightCache;
+import com.ndl.numbers_dont_lie.ai.repository.AiInsightCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistence of AI insight responses in ai_insight_cache.
+ *
+ * Design intent:
+ * - One row per (user, scope, goalKey), overwritten in place on regeneration, so the lookup
+ *   reads a single row instead of sorting the user's whole history
+ * - Payloads are stored gzip-compressed (base64 in the TEXT column, "gz:" prefix); rows written
+ *   before compression are still read as plain JSON
+ * - Expired rows stay readable for retainHours (fallback when AI is unavailable), then a
+ *   scheduled job deletes them in id batches to keep transactions short
+ * - History rows from before the upsert are removed by AiInsightCacheHistoryMigration before
+ *   Hibernate adds the unique key, so the key exists from the first start and the retry in put
+ *   covers the insert race
+ */
+@Service
+public class AiInsightCacheStore {
+  private static final Logger logger = LoggerFactory.getLogger(AiInsightCacheStore.class);
+  static final String COMPRESSED_PREFIX = "gz:";
+
+  private final AiInsightCacheRepository cacheRepo;
+
+  @Value("${app.ai.insight-cache.retain-hours:168}")
+  private long retainHours;
+
+  @Value("${app.ai.insight-cache.purge-batch-size:500}")
+  private int purgeBatchSize;
+
+  public AiInsightCacheStore(AiInsightCacheRepository cacheRepo) {
+    this.cacheRepo = cacheRepo;
+  }
+
+  public Optional<AiInsightCache> find(UserEntity user, String scope, String goalKey) {
+    return cacheRepo.findFirstByUserAndScopeAndGoalKeyOrderByGeneratedAtDesc(user, scope, goalKey);
+  }
+
+  /**
+   * Whether the user has any insight row (has read insights before).
+   */
+  public boolean hasInsights(String email) {
+    return cacheRepo.existsByUserEmail(email);
+  }
+
+  /**
+   * Response JSON of a row, decompressed.
+   */
+  public String json(AiInsightCache row) {
+    return decompress(row.getDataJson());
+  }
+
+  /**
+   * Insert or overwrite the row of (user, scope, goalKey).
+   */
+  public void put(UserEntity user, String scope, String goalKey, String json, Duration ttl) {
+    try {
+      write(user, scope, goalKey, json, ttl);
+    } catch (DataIntegrityViolationException e) {
+      // A concurrent regeneration inserted the row first: overwrite it
+      write(user, scope, goalKey, json, ttl);
+    }
+  }
+
+  /**
+   * Delete rows expired for longer than retainHours.
+   */
+  @Scheduled(cron = "${app.ai.insight-cache.purge-cron:0 20 4 * * *}")
+  public void purgeExpired() {
+    long startedAt = System.currentTimeMillis();
+    Instant cutoff = Instant.now().minus(Duration.ofHours(retainHours));
+    int purged = deleteInBatches(page -> cacheRepo.findExpiredIds(cutoff, page));
+    logger.info("[AI_INSIGHT_CACHE] purged={} cutoff={} durationMs={}",
+        purged, cutoff, System.currentTimeMillis() - startedAt);
+  }
+
+  private int deleteInBatches(Function<Pageable, List<Long>> nextBatch) {
+    int deleted = 0;
+    while (true) {
+      List<Long> ids = nextBatch.apply(PageRequest.of(0, Math.max(1, purgeBatchSize)));
+      if (ids.isEmpty()) {
+        return deleted;
+      }
+      cacheRepo.deleteAllByIdInBatch(ids);
+      deleted += ids.size();
+    }
+  }
+
+  static String compress(String json) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+      gzip.write(json.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return COMPRESSED_PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  static String decompress(String stored) {
+    if (stored == null || !stored.startsWith(COMPRESSED_PREFIX)) {
+      return stored;
+    }
+    byte[] gz = Base64.getDecoder().decode(stored.substring(COMPRESSED_PREFIX.length()));
+    try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(gz))) {
+      return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void write(UserEntity user, String scope, String goalKey, String json, Duration ttl) {
+    AiInsightCache c = find(user, scope, goalKey).orElseGet(() -> {
+      AiInsightCache nc = new AiInsightCache();
+      nc.setUser(user);
+      nc.setScope(scope);
+      nc.setGoalKey(goalKey);
+      return nc;
+    });
+    Instant now = Instant.now();
+    c.setGeneratedAt(now);
+    c.setExpiresAt(now.plus(ttl));
+    c.setDataJson(compress(json));
+    cacheRepo.saveAndFlush(c);
+  }
+}
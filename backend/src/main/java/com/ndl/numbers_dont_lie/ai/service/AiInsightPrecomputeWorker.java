@@ -0,0 +1,139 @@
+package com.ndl.numbers_dont_lie.ai.service;
+import com.ndl.numbers_dont_lie.activity.event.ActivityRecordedEvent;
+import com.ndl.numbers_dont_lie.ai.event.AiInsightsStaleEvent;
+import com.ndl.numbers_dont_lie.profile.event.ProfileUpdatedEvent;
+import com.ndl.numbers_dont_lie.weight.event.WeightRecordedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recomputes a user's insights in the background after the data they are built from changed.
+ *
+ * Design intent:
+ * - Listeners run after the writing transaction committed (or immediately without one) and
+ *   only enqueue, so weight/activity/profile requests never wait for the recomputation
+ * - Events for a user coalesce: the first one schedules a run after debounceMs, later ones
+ *   until that run starts are absorbed (a burst of logged entries costs one recomputation).
+ *   The user leaves the pending set before the run reads anything, so an event during the run
+ *   schedules another one and no write is missed
+ * - Weight, activity and profile events only refresh users who already have an insight row; a
+ *   user who never opened insights is computed on first read (the stale-read event), so
+ *   logging data costs nothing for them. The row check runs on the worker, not the request
+ * - Scheduling after shutdown started is dropped, never surfaced to the writing request
+ * - A single worker thread: the rule engine is a few indexed queries per user, and a backlog
+ *   only delays freshness, never a request
+ */
+@Service
+public class AiInsightPrecomputeWorker {
+  private static final Logger logger = LoggerFactory.getLogger(AiInsightPrecomputeWorker.class);
+
+  private final AIRecommendationService recommendations;
+  private final AiInsightCacheStore cacheStore;
+  private final boolean enabled;
+  private final long debounceMs;
+  // Pending users; true if the run must compute even without an existing insight row
+  private final ConcurrentHashMap<String, Boolean> pending = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService executor;
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicLong computed = new AtomicLong();
+
+  public AiInsightPrecomputeWorker(AIRecommendationService recommendations,
+                                   AiInsightCacheStore cacheStore,
+                                   @Value("${app.ai.insights.precompute.enabled:true}") boolean enabled,
+                                   @Value("${app.ai.insights.precompute.debounce-ms:2000}") long debounceMs) {
+    this.recommendations = recommendations;
+    this.cacheStore = cacheStore;
+    this.enabled = enabled;
+    this.debounceMs = debounceMs;
+    this.executor = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("insight-precompute").daemon().factory());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onWeightRecorded(WeightRecordedEvent event) {
+    request(event.email(), false);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onActivityRecorded(ActivityRecordedEvent event) {
+    request(event.email(), false);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onProfileUpdated(ProfileUpdatedEvent event) {
+    request(event.email(), false);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInsightsStale(AiInsightsStaleEvent event) {
+    request(event.email());
+  }
+
+  /**
+   * Schedule a recomputation for the user unless one is already pending.
+   *
+   * @return true if this call scheduled a run, false if it coalesced into a pending one
+   */
+  public boolean request(String email) {
+    return request(email, true);
+  }
+
+  /**
+   * @param evenWithoutRow compute even if the user has no insight row yet
+   */
+  private boolean request(String email, boolean evenWithoutRow) {
+    if (!enabled || email == null) return false;
+    requested.incrementAndGet();
+    boolean[] added = new boolean[1];
+    pending.compute(email, (key, previous) -> {
+      added[0] = previous == null;
+      return added[0] ? evenWithoutRow : previous || evenWithoutRow;
+    });
+    if (!added[0]) return false;
+    try {
+      executor.schedule(() -> run(email), debounceMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // Shutting down: the data is committed, the next read recomputes
+      pending.remove(email);
+      logger.debug("[INSIGHT_PRECOMPUTE] Not scheduled, worker is shut down");
+      return false;
+    }
+    return true;
+  }
+
+  public long getRequested() { return requested.get(); }
+  public long getComputed() { return computed.get(); }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void run(String email) {
+    boolean evenWithoutRow = Boolean.TRUE.equals(pending.remove(email));
+    long startedAt = System.currentTimeMillis();
+    try {
+      if (!evenWithoutRow && !cacheStore.hasInsights(email)) {
+        return;
+      }
+      if (recommendations.precompute(email)) {
+        computed.incrementAndGet();
+        logger.debug("[INSIGHT_PRECOMPUTE] durationMs={} requested={} computed={}",
+            System.currentTimeMillis() - startedAt, requested.get(), computed.get());
+      }
+    } catch (RuntimeException e) {
+      logger.warn("[INSIGHT_PRECOMPUTE] Recompute failed: {}", e.getMessage());
+    }
+  }
+}
@@ -8,7 +8,6 @@ import com.ndl.numbers_dont_lie.weight.repository.WeightEntryRepository;
 import com.ndl.numbers_dont_lie.activity.service.ActivityService;
 import com.ndl.numbers_dont_lie.privacy.service.PrivacyService;
 import com.ndl.numbers_dont_lie.ai.entity.AiInsightCache;
-import com.ndl.numbers_dont_lie.ai.repository.AiInsightCacheRepository;
 import com.ndl.numbers_dont_lie.ai.dto.AiInsightsResponse;
 import com.ndl.numbers_dont_lie.ai.dto.AiInsightItemDto;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -16,6 +15,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.ndl.numbers_dont_lie.health.HealthCalc;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -28,7 +28,7 @@ public class AiInsightsService {
   private final WeightEntryRepository weights;
   private final ActivityService activityService;
   private final PrivacyService privacyService;
-  private final AiInsightCacheRepository cacheRepo;
+  private final AiInsightCacheStore cacheStore;
   private final ObjectMapper om;
 
   @Value("${app.ai.disabled:false}")
@@ -36,9 +36,9 @@ public class AiInsightsService {
 
   public AiInsightsService(UserRepository users, ProfileRepository profiles, WeightEntryRepository weights,
                            ActivityService activityService, PrivacyService privacyService,
-                           AiInsightCacheRepository cacheRepo, ObjectMapper om) {
+                           AiInsightCacheStore cacheStore, ObjectMapper om) {
     this.users = users; this.profiles = profiles; this.weights = weights; this.activityService = activityService;
-    this.privacyService = privacyService; this.cacheRepo = cacheRepo; this.om = om;
+    this.privacyService = privacyService; this.cacheStore = cacheStore; this.om = om;
   }
 
   public AiInsightsResponse latest(String email, String scope, boolean forceRegenerate) {
@@ -49,13 +49,13 @@ public class AiInsightsService {
     String goalKey = "default"; // future: derive from profile goal
 
     if (!forceRegenerate) {
-      Optional<AiInsightCache> latest = cacheRepo.findFirstByUserAndScopeAndGoalKeyOrderByGeneratedAtDesc(user, scope, goalKey);
+      Optional<AiInsightCache> latest = cacheStore.find(user, scope, goalKey);
       if (latest.isPresent()) {
         AiInsightCache c = latest.get();
         if (c.getExpiresAt() == null || c.getExpiresAt().isAfter(Instant.now())) {
           // return cached
           try {
-            AiInsightsResponse resp = om.readValue(c.getDataJson(), AiInsightsResponse.class);
+            AiInsightsResponse resp = om.readValue(cacheStore.json(c), AiInsightsResponse.class);
             resp.fromCache = true;
             return resp;
           } catch (Exception e) {
@@ -65,25 +65,18 @@ public class AiInsightsService {
       }
     }
 
-    AiInsightsResponse fresh = generate(email, scope);
-    // persist in cache
+    AiInsightsResponse fresh = generate(user, email, scope);
+    // persist in cache (one row per user/scope/goal, overwritten)
     try {
-      AiInsightCache c = new AiInsightCache();
-      c.setUser(user);
-      c.setScope(scope);
-      c.setGoalKey(goalKey);
-      c.setGeneratedAt(Instant.now());
       int ttlHours = scope.equals("weekly") ? 6 : 24;
-      c.setExpiresAt(Instant.now().plusSeconds(ttlHours * 3600L));
       // store JSON without fromCache=true (it will be computed when loading)
       AiInsightsResponse toStore = new AiInsightsResponse(fresh.items, fresh.summary, false, fresh.generatedAt);
-      c.setDataJson(om.writeValueAsString(toStore));
-      cacheRepo.save(c);
+      cacheStore.put(user, scope, goalKey, om.writeValueAsString(toStore), Duration.ofHours(ttlHours));
     } catch (JsonProcessingException ignored) {}
     return fresh;
   }
 
-  private AiInsightsResponse generate(String email, String scope) {
+  private AiInsightsResponse generate(UserEntity user, String email, String scope) {
     var consent = privacyService.getOrCreate(email);
     boolean canUseProfile = consent.isAccepted() && consent.isAllowAiUseProfile();
     boolean canUseHistory = consent.isAccepted() && consent.isAllowAiUseHistory();
@@ -109,13 +102,13 @@ public class AiInsightsService {
       return finalizeResponse(items, summary, true);
     }
 
-    ProfileEntity p = profiles.findByUser(users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found"))).orElse(null);
+    ProfileEntity p = profiles.findByUser(user).orElse(null);
     List<WeightEntry> list = Collections.emptyList();
     if (canUseHistory) {
-      list = weights.findAllByUserOrderByAtAsc(users.findByEmail(email).orElseThrow(() -> new IllegalStateException("User not found")));
+      list = weights.findTop6ByUserOrderByAtDesc(user); // newest first
     }
 
-    Double latestWeight = (list.isEmpty() ? (p != null ? p.getWeightKg() : null) : list.get(list.size()-1).getWeightKg());
+    Double latestWeight = (list.isEmpty() ? (p != null ? p.getWeightKg() : null) : list.get(0).getWeightKg());
     Integer heightCm    = p != null ? p.getHeightCm() : null;
 
     // BMI-based insight
@@ -148,7 +141,7 @@ public class AiInsightsService {
     // Weekly or Monthly activity summary insights
     if (canUseHabits) {
       if (scope.equals("weekly")) {
-        var week = activityService.weekSummary(email, LocalDate.now());
+        var week = activityService.weekSummaries(user, LocalDate.now(), 1).get(0);
         if (week.totalMinutes < 150) {
           items.add(new AiInsightItemDto(
             "Increase activity",
@@ -171,7 +164,7 @@ public class AiInsightsService {
         }
       } else { // monthly
         var now = LocalDate.now(ZoneOffset.UTC);
-        var byDay = activityService.monthByDayMinutes(email, now.getYear(), now.getMonthValue());
+        var byDay = activityService.monthByDayMinutes(user, now.getYear(), now.getMonthValue());
         int total = byDay.values().stream().mapToInt(Integer::intValue).sum();
         long activeDays = byDay.values().stream().filter(v -> v > 0).count();
         if (total < 600) { // < 10 hours per month
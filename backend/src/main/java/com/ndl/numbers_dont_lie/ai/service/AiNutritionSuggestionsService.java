@@ -2,10 +2,12 @@ package com.ndl.numbers_dont_lie.ai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
 import com.ndl.numbers_dont_lie.ai.GroqClient;
 import com.ndl.numbers_dont_lie.ai.dto.AiNutritionSuggestionsRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiNutritionSuggestionsResponse;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -52,7 +54,8 @@ public class AiNutritionSuggestionsService {
             estimated
         );
 
-        JsonNode response = groqClient.callForJson(prompt, 0.3);
+        JsonNode response = AiCallScope.callAs(request.getUserId(),
+            () -> groqClient.callForJson(AiPromptType.SUGGESTIONS, prompt, 0.3));
         AiNutritionSuggestionsResponse parsed = parseResponse(response);
 
         logger.info(
@@ -2,10 +2,12 @@ package com.ndl.numbers_dont_lie.ai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
 import com.ndl.numbers_dont_lie.ai.GroqClient;
 import com.ndl.numbers_dont_lie.ai.dto.AiNutritionSummaryRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiNutritionSummaryResponse;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -50,7 +52,8 @@ public class AiNutritionSummaryService {
             estimated
         );
 
-        JsonNode response = groqClient.callForJson(prompt, 0.2);
+        JsonNode response = AiCallScope.callAs(request.getUserId(),
+            () -> groqClient.callForJson(AiPromptType.SUMMARY, prompt, 0.2));
         AiNutritionSummaryResponse parsed = parseResponse(response);
 
         logger.info(
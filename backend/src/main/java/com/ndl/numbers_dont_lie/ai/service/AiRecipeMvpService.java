@@ -2,14 +2,19 @@ package com.ndl.numbers_dont_lie.ai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
 import com.ndl.numbers_dont_lie.ai.GroqClient;
 import com.ndl.numbers_dont_lie.ai.dto.AiGeneratedRecipePayload;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
 import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
 import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
 import com.ndl.numbers_dont_lie.mealplan.repository.MealRepository;
+import com.ndl.numbers_dont_lie.mealplan.service.DayPlanNutritionService;
+import com.ndl.numbers_dont_lie.mealplan.service.MealPlanETagService;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanReadModelService;
 import com.ndl.numbers_dont_lie.recipe.entity.DifficultyLevel;
 import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
 import com.ndl.numbers_dont_lie.recipe.entity.MealType;
@@ -18,7 +23,9 @@ import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
 import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
 import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
 import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import com.ndl.numbers_dont_lie.recipe.service.IngredientResolver;
 import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import com.ndl.numbers_dont_lie.shoppinglist.service.DayShoppingListService;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -39,6 +46,11 @@ public class AiRecipeMvpService {
     private final IngredientRepository ingredientRepository;
     private final DayPlanRepository dayPlanRepository;
     private final MealRepository mealRepository;
+    private final DayPlanNutritionService dayPlanNutritionService;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final MealPlanETagService mealPlanETagService;
+    private final IngredientResolver ingredientResolver;
+    private final DayShoppingListService dayShoppingListService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public AiRecipeMvpService(
@@ -47,13 +59,23 @@ public class AiRecipeMvpService {
             RecipeRepository recipeRepository,
             IngredientRepository ingredientRepository,
             DayPlanRepository dayPlanRepository,
-            MealRepository mealRepository) {
+            MealRepository mealRepository,
+            DayPlanNutritionService dayPlanNutritionService,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            MealPlanETagService mealPlanETagService,
+            IngredientResolver ingredientResolver,
+            DayShoppingListService dayShoppingListService) {
         this.groqClient = groqClient;
         this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
         this.recipeRepository = recipeRepository;
         this.ingredientRepository = ingredientRepository;
         this.dayPlanRepository = dayPlanRepository;
         this.mealRepository = mealRepository;
+        this.dayPlanNutritionService = dayPlanNutritionService;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.ingredientResolver = ingredientResolver;
+        this.dayShoppingListService = dayShoppingListService;
     }
 
     @Transactional
@@ -75,7 +97,8 @@ public class AiRecipeMvpService {
         Integer calorieTarget = prefs != null ? prefs.getCalorieTarget() : null;
 
         String prompt = buildPrompt(mealTypeNormalized, dietaryPrefs, allergies, disliked, cuisines, calorieTarget);
-        JsonNode response = groqClient.callForJson(prompt, 0.6);
+        JsonNode response = AiCallScope.callAs(userId,
+            () -> groqClient.callForJson(AiPromptType.RECIPE, prompt, 0.6));
         AiGeneratedRecipePayload payload = parsePayload(response);
 
         Recipe recipe = persistRecipe(payload, mealType);
@@ -207,7 +230,9 @@ public class AiRecipeMvpService {
         String stableId = generateNextIngredientStableId();
         String normalizedUnit = unit != null ? unit.trim().toLowerCase(Locale.ROOT) : "gram";
         Ingredient ingredient = new Ingredient(stableId, normalized, normalizedUnit, 100.0, 0.0, 0.0, 0.0, 0.0);
-        return ingredientRepository.save(ingredient);
+        Ingredient saved = ingredientRepository.save(ingredient);
+        ingredientResolver.invalidate();
+        return saved;
     }
 
     private String generateNextRecipeStableId() {
@@ -236,14 +261,20 @@ public class AiRecipeMvpService {
             .findFirst()
             .orElseThrow(() -> new IllegalArgumentException("No meal of type " + mealTypeRaw + " found for today"));
 
+        dayPlanNutritionService.beforeMealChange(targetMeal);
+        dayShoppingListService.beforeMealChange(targetMeal);
         targetMeal.setRecipeId(recipe.getStableId());
         targetMeal.setCustomMealName(recipe.getTitle());
         targetMeal.setIsCustom(false);
         if (targetMeal.getPlannedCalories() == null && targetMeal.getCalorieTarget() != null) {
             targetMeal.setPlannedCalories(targetMeal.getCalorieTarget());
         }
+        dayPlanNutritionService.afterMealChange(targetMeal);
+        dayShoppingListService.afterMealChange(targetMeal);
 
         mealRepository.save(targetMeal);
+        weeklyPlanReadModelService.evictForDayPlan(dayPlan);
+        mealPlanETagService.dayPlanModified(dayPlan);
     }
 
     private void updateMealById(Long userId, Long mealId, Recipe recipe) {
@@ -254,13 +285,19 @@ public class AiRecipeMvpService {
             throw new IllegalArgumentException("Meal does not belong to user");
         }
 
+        dayPlanNutritionService.beforeMealChange(meal);
+        dayShoppingListService.beforeMealChange(meal);
         meal.setRecipeId(recipe.getStableId());
         meal.setCustomMealName(recipe.getTitle());
         meal.setIsCustom(false);
         if (meal.getPlannedCalories() == null && meal.getCalorieTarget() != null) {
             meal.setPlannedCalories(meal.getCalorieTarget());
         }
+        dayPlanNutritionService.afterMealChange(meal);
+        dayShoppingListService.afterMealChange(meal);
 
         mealRepository.save(meal);
+        weeklyPlanReadModelService.evictForDayPlan(meal.getDayPlan());
+        mealPlanETagService.dayPlanModified(meal.getDayPlan());
     }
 }
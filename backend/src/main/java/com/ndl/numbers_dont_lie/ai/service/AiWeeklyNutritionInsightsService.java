@@ -2,10 +2,12 @@ package com.ndl.numbers_dont_lie.ai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
 import com.ndl.numbers_dont_lie.ai.GroqClient;
 import com.ndl.numbers_dont_lie.ai.dto.AiWeeklyNutritionInsightsRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiWeeklyNutritionInsightsResponse;
 import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.telemetry.AiCallScope;
 import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
@@ -51,7 +53,8 @@ public class AiWeeklyNutritionInsightsService {
             estimated
         );
 
-        JsonNode response = groqClient.callForJson(prompt, 0.2);
+        JsonNode response = AiCallScope.callAs(request.getUserId(),
+            () -> groqClient.callForJson(AiPromptType.INSIGHTS, prompt, 0.2));
         AiWeeklyNutritionInsightsResponse parsed = parseResponse(response);
 
         logger.info(
@@ -0,0 +1,470 @@
+package com.ndl.numbers_dont_lie.ai.stub;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process stand-in for the Groq (OpenAI-compatible) chat completions endpoint, for load and
+ * latency tests that must not spend real quota. Point a GroqClient at {@link #baseUrl()} and the
+ * real HTTP, retry, streaming and JSON parsing path runs unchanged.
+ *
+ * Design intent:
+ * - Latency is log-normal, set by its median and 95th percentile; streamed answers spend half
+ *   of it before the first chunk and spread the rest over the chunks
+ * - 429 (with Retry-After) and 503 answers are injected at configurable rates before any work
+ * - Latency and faults come from one seeded generator, one draw per request in arrival order, so
+ *   a run with the same seed and request count injects the same faults and latencies
+ * - Token usage is reported like Groq does ("usage", and "x_groq.usage" on the last stream
+ *   chunk) and summed in {@link #stats()}
+ * - REPLAY serves recorded answers from the fixture directory, keyed by a hash of the request
+ *   without its "stream" flag; RECORD additionally forwards misses to the upstream API and
+ *   stores the answer; a miss in any mode gets a synthetic answer from the fallback responder
+ * - Handlers run on virtual threads, so simulated latency never limits concurrency
+ */
+public class GroqStubServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GroqStubServer.class);
+    public static final String API_ROOT = "/openai/v1";
+    private static final String CHAT_COMPLETIONS = API_ROOT + "/chat/completions";
+    private static final double Z_95 = 1.6449;
+    private static final int CHARS_PER_TOKEN = 4;
+
+    public enum Mode {
+        SYNTHETIC,
+        REPLAY,
+        RECORD
+    }
+
+    /**
+     * @param mode              where answers come from
+     * @param fixtureDir        recorded answers (REPLAY, RECORD); may be null for SYNTHETIC
+     * @param upstreamUrl       API root to record from, e.g. https://api.groq.com/openai/v1
+     * @param upstreamApiKey    key for the upstream API (RECORD only)
+     * @param medianLatency     median simulated latency per request
+     * @param p95Latency        95th percentile of simulated latency
+     * @param rateLimitedRate   share of requests answered with 429
+     * @param serverErrorRate   share of requests answered with 503
+     * @param retryAfter        Retry-After sent with injected 429s
+     * @param streamChunks      content deltas per streamed answer
+     * @param seed              seed of the latency and fault draws
+     */
+    public record Settings(
+            Mode mode,
+            Path fixtureDir,
+            String upstreamUrl,
+            String upstreamApiKey,
+            Duration medianLatency,
+            Duration p95Latency,
+            double rateLimitedRate,
+            double serverErrorRate,
+            Duration retryAfter,
+            int streamChunks,
+            long seed) {
+
+        public Settings {
+            if (mode != Mode.SYNTHETIC && fixtureDir == null) {
+                throw new IllegalArgumentException("A fixture directory is required in " + mode + " mode");
+            }
+            if (mode == Mode.RECORD && (upstreamUrl == null || upstreamUrl.isBlank())) {
+                throw new IllegalArgumentException("An upstream URL is required in RECORD mode");
+            }
+            if (p95Latency.compareTo(medianLatency) < 0) {
+                throw new IllegalArgumentException("p95 latency must not be below the median");
+            }
+            if (rateLimitedRate < 0 || serverErrorRate < 0 || rateLimitedRate + serverErrorRate > 1) {
+                throw new IllegalArgumentException("Fault rates must be between 0 and 1 in total");
+            }
+            if (streamChunks < 1) {
+                throw new IllegalArgumentException("streamChunks must be at least 1");
+            }
+        }
+
+        public static Settings synthetic() {
+            return new Settings(Mode.SYNTHETIC, null, null, null, Duration.ZERO, Duration.ZERO,
+                0, 0, Duration.ofSeconds(1), 8, 0L);
+        }
+    }
+
+    public record Stats(
+            long requests,
+            long rateLimited,
+            long serverErrors,
+            long replayed,
+            long recorded,
+            long synthetic,
+            long promptTokens,
+            long completionTokens,
+            long simulatedLatencyMs) {
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong synthetic = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong simulatedLatencyMs = new AtomicLong();
+    private final Random random;
+    private volatile Function<JsonNode, String> fallbackResponder = request -> "{}";
+    private HttpClient upstream;
+    private HttpServer server;
+
+    public GroqStubServer(Settings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.seed());
+    }
+
+    /**
+     * Content of synthetic answers, computed from the request body. Defaults to "{}".
+     */
+    public GroqStubServer withFallbackResponder(Function<JsonNode, String> responder) {
+        this.fallbackResponder = responder;
+        return this;
+    }
+
+    /**
+     * Bind to the loopback interface and start serving.
+     *
+     * @param port TCP port, or 0 for any free port
+     */
+    public synchronized GroqStubServer start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Groq stub server already started");
+        }
+        if (settings.mode() != Mode.SYNTHETIC) {
+            Files.createDirectories(settings.fixtureDir());
+        }
+        if (settings.mode() == Mode.RECORD) {
+            upstream = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext(CHAT_COMPLETIONS, this::handle);
+        server.start();
+        logger.info("[GROQ_STUB] Listening on {} (mode={}, latency p50={} ms p95={} ms, 429 rate={}, 5xx rate={}, seed={})",
+            baseUrl(), settings.mode(), settings.medianLatency().toMillis(), settings.p95Latency().toMillis(),
+            settings.rateLimitedRate(), settings.serverErrorRate(), settings.seed());
+        return this;
+    }
+
+    /**
+     * API root to configure as the Groq base URL.
+     */
+    public String baseUrl() {
+        if (server == null) {
+            throw new IllegalStateException("Groq stub server not started");
+        }
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + API_ROOT;
+    }
+
+    public Stats stats() {
+        return new Stats(requests.get(), rateLimited.get(), serverErrors.get(), replayed.get(),
+            recorded.get(), synthetic.get(), promptTokens.get(), completionTokens.get(), simulatedLatencyMs.get());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            logger.info("[GROQ_STUB] Stopped: {}", stats());
+        }
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "invalid_request_error", "Only POST is supported");
+                return;
+            }
+            JsonNode request;
+            try {
+                request = objectMapper.readTree(exchange.getRequestBody());
+            } catch (JsonProcessingException e) {
+                sendError(exchange, 400, "invalid_request_error", "Request body is not valid JSON");
+                return;
+            }
+            requests.incrementAndGet();
+            boolean stream = request.path("stream").asBoolean(false);
+            Draw draw = draw();
+            long latencyMs = draw.latencyMs();
+            double fault = draw.fault();
+            simulatedLatencyMs.addAndGet(latencyMs);
+            if (fault < settings.rateLimitedRate()) {
+                rateLimited.incrementAndGet();
+                pause(latencyMs / 4);
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.retryAfter().toSeconds()));
+                sendError(exchange, 429, "rate_limit_exceeded", "Rate limit reached (injected by stub)");
+                return;
+            }
+            if (fault < settings.rateLimitedRate() + settings.serverErrorRate()) {
+                serverErrors.incrementAndGet();
+                pause(latencyMs);
+                sendError(exchange, 503, "service_unavailable", "Service unavailable (injected by stub)");
+                return;
+            }
+
+            ObjectNode envelope = resolve(request, exchange);
+            if (envelope == null) {
+                return; // upstream error already relayed
+            }
+            JsonNode usage = account(request, envelope);
+            if (stream) {
+                sendStream(exchange, envelope, usage, latencyMs);
+            } else {
+                pause(latencyMs);
+                sendJson(exchange, 200, envelope);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("[GROQ_STUB] Request failed: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Answer envelope for a request: recorded, freshly recorded or synthetic.
+     */
+    private ObjectNode resolve(JsonNode request, HttpExchange exchange) throws IOException {
+        if (settings.mode() == Mode.SYNTHETIC) {
+            return syntheticEnvelope(request);
+        }
+        Path fixture = settings.fixtureDir().resolve(fixtureKey(request) + ".json");
+        if (Files.exists(fixture)) {
+            replayed.incrementAndGet();
+            return (ObjectNode) objectMapper.readTree(fixture.toFile()).path("response").deepCopy();
+        }
+        if (settings.mode() == Mode.REPLAY) {
+            logger.debug("[GROQ_STUB] No fixture {}, answering synthetically", fixture.getFileName());
+            return syntheticEnvelope(request);
+        }
+
+        ObjectNode upstreamRequest = request.deepCopy();
+        upstreamRequest.remove("stream");
+        HttpResponse<String> response;
+        try {
+            response = upstream.send(HttpRequest.newBuilder()
+                    .uri(URI.create(settings.upstreamUrl().replaceAll("/+$", "") + "/chat/completions"))
+                    .header("Authorization", "Bearer " + settings.upstreamApiKey())
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(upstreamRequest)))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recording", e);
+        }
+        if (response.statusCode() != 200) {
+            // Relay as is: a failed call is not a fixture
+            response.headers().firstValue("Retry-After")
+                .ifPresent(value -> exchange.getResponseHeaders().set("Retry-After", value));
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.statusCode(), body.length);
+            exchange.getResponseBody().write(body);
+            return null;
+        }
+        ObjectNode envelope = (ObjectNode) objectMapper.readTree(response.body());
+        ObjectNode record = objectMapper.createObjectNode();
+        record.set("request", upstreamRequest);
+        record.set("response", envelope);
+        Files.writeString(fixture, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(record));
+        recorded.incrementAndGet();
+        logger.info("[GROQ_STUB] Recorded {}", fixture.getFileName());
+        return envelope;
+    }
+
+    private ObjectNode syntheticEnvelope(JsonNode request) {
+        synthetic.incrementAndGet();
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("id", "chatcmpl-stub-" + UUID.randomUUID());
+        envelope.put("object", "chat.completion");
+        envelope.put("created", System.currentTimeMillis() / 1000);
+        envelope.put("model", request.path("model").asText("stub"));
+        ObjectNode choice = envelope.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message")
+            .put("role", "assistant")
+            .put("content", fallbackResponder.apply(request));
+        choice.put("finish_reason", "stop");
+        return envelope;
+    }
+
+    /**
+     * Fill in usage when the answer has none (synthetic answers) and add it to the totals.
+     */
+    private JsonNode account(JsonNode request, ObjectNode envelope) {
+        JsonNode usage = envelope.path("usage");
+        if (!usage.isObject()) {
+            int prompt = estimateTokens(request.path("messages").toString());
+            int completion = estimateTokens(envelope.path("choices").path(0).path("message").toString());
+            usage = envelope.putObject("usage")
+                .put("prompt_tokens", prompt)
+                .put("completion_tokens", completion)
+                .put("total_tokens", prompt + completion);
+        }
+        promptTokens.addAndGet(usage.path("prompt_tokens").asLong(0));
+        completionTokens.addAndGet(usage.path("completion_tokens").asLong(0));
+        return usage;
+    }
+
+    /**
+     * Replay an envelope as server-sent events: content (or the function call) in deltas,
+     * then a final chunk with finish_reason and usage, then [DONE].
+     */
+    private void sendStream(HttpExchange exchange, JsonNode envelope, JsonNode usage, long latencyMs) throws IOException {
+        JsonNode message = envelope.path("choices").path(0).path("message");
+        String content = message.path("content").isTextual() ? message.path("content").asText() : "";
+        int chunks = content.isEmpty() ? 1 : Math.min(settings.streamChunks(), content.length());
+        long firstChunkMs = latencyMs / 2;
+        long perChunkMs = (latencyMs - firstChunkMs) / chunks;
+
+        pause(firstChunkMs);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String id = envelope.path("id").asText("chatcmpl-stub");
+
+        if (message.has("function_call")) {
+            ObjectNode chunk = streamChunk(id);
+            choice(chunk).putObject("delta").set("function_call", message.path("function_call"));
+            writeEvent(out, chunk.toString());
+        } else {
+            int step = (int) Math.ceil((double) content.length() / chunks);
+            for (int start = 0; start < content.length(); start += step) {
+                ObjectNode chunk = streamChunk(id);
+                choice(chunk).putObject("delta")
+                    .put("content", content.substring(start, Math.min(content.length(), start + step)));
+                writeEvent(out, chunk.toString());
+                pause(perChunkMs);
+            }
+        }
+
+        ObjectNode last = streamChunk(id);
+        choice(last).put("finish_reason",
+            envelope.path("choices").path(0).path("finish_reason").asText("stop")).putObject("delta");
+        last.putObject("x_groq").set("usage", usage);
+        writeEvent(out, last.toString());
+        writeEvent(out, "[DONE]");
+    }
+
+    private ObjectNode streamChunk(String id) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        ArrayNode choices = chunk.putArray("choices");
+        choices.addObject().put("index", 0);
+        return chunk;
+    }
+
+    private static ObjectNode choice(ObjectNode chunk) {
+        return (ObjectNode) chunk.get("choices").get(0);
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String message) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.putObject("error").put("message", message).put("type", type);
+        sendJson(exchange, status, body);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Fixture name of a request: SHA-256 of its canonical JSON (keys sorted), ignoring "stream"
+     * so streamed and regular calls share recordings.
+     */
+    String fixtureKey(JsonNode request) {
+        ObjectNode body = request.deepCopy();
+        body.remove("stream");
+        try {
+            byte[] canonical = canonicalMapper.writeValueAsBytes(objectMapper.treeToValue(body, Object.class));
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot hash stub request", e);
+        }
+    }
+
+    /**
+     * Latency and fault of the next request. Synchronized so each request takes both values from
+     * the seeded sequence in one step.
+     */
+    private synchronized Draw draw() {
+        return new Draw(sampleLatencyMs(), random.nextDouble());
+    }
+
+    private long sampleLatencyMs() {
+        long median = settings.medianLatency().toMillis();
+        long p95 = settings.p95Latency().toMillis();
+        if (median <= 0) {
+            return 0;
+        }
+        double mu = Math.log(median);
+        double sigma = (Math.log(Math.max(p95, median)) - mu) / Z_95;
+        return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    private static int estimateTokens(String text) {
+        return Math.max(1, text.length() / CHARS_PER_TOKEN);
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Draw(long latencyMs, double fault) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.ndl.numbers_dont_lie.ai.telemetry;
+
+import java.util.function.Supplier;
+
+/**
+ * The user on whose behalf Groq calls are made on the current thread.
+ *
+ * GroqClient reads it when a call is issued (on the caller's thread) and keeps it for the whole
+ * call, so token usage is charged to that user even though the response completes elsewhere.
+ * Continuations that issue further calls (function results, per-slot fallbacks) must re-enter
+ * the scope with {@link #callAs}. Calls outside any scope are metered but charged to nobody.
+ */
+public final class AiCallScope {
+
+    private static final ThreadLocal<String> USER_ID = new ThreadLocal<>();
+
+    private AiCallScope() {
+    }
+
+    /**
+     * User of the enclosing {@link #callAs}, or null.
+     */
+    public static String currentUserId() {
+        return USER_ID.get();
+    }
+
+    /**
+     * Run a call on behalf of a user; a null user leaves the current scope unchanged.
+     */
+    public static <T> T callAs(String userId, Supplier<T> call) {
+        if (userId == null) {
+            return call.get();
+        }
+        String previous = USER_ID.get();
+        USER_ID.set(userId);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                USER_ID.remove();
+            } else {
+                USER_ID.set(previous);
+            }
+        }
+    }
+
+    public static <T> T callAs(Long userId, Supplier<T> call) {
+        return callAs(userId != null ? String.valueOf(userId) : null, call);
+    }
+}
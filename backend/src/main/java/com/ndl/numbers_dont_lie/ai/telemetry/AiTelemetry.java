@@ -0,0 +1,125 @@
+package com.ndl.numbers_dont_lie.ai.telemetry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
+import com.ndl.numbers_dont_lie.ai.exception.AiBudgetExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation of AI calls, plus the per-user daily token budget.
+ *
+ * Meters (exported at /actuator/prometheus):
+ * - ai.call.duration      timer (with histogram) by prompt_type, endpoint, outcome
+ *                         (success, error, cached)
+ * - ai.tokens             counter by prompt_type, endpoint, kind (prompt, completion),
+ *                         from the "usage" field of each response
+ * - ai.cost               counter in USD by prompt_type, from the configured per-token prices
+ * - ai.errors             counter by prompt_type, endpoint, error (HTTP status or exception class)
+ * - ai.budget.rejections  counter by prompt_type: calls refused by the daily token budget
+ * - ai.verification.failures counter by check: function-calling nutrition checks that failed
+ *
+ * The endpoint tag separates first calls ("chat") from function-result follow-ups.
+ */
+public class AiTelemetry {
+    private static final Logger logger = LoggerFactory.getLogger(AiTelemetry.class);
+    private static final double TOKENS_PER_MILLION = 1_000_000.0;
+
+    private final MeterRegistry registry;
+    private final AiTokenBudget budget;
+    private final double promptUsdPerMillion;
+    private final double completionUsdPerMillion;
+
+    public AiTelemetry(MeterRegistry registry, AiTokenBudget budget,
+                       double promptUsdPerMillion, double completionUsdPerMillion) {
+        this.registry = registry;
+        this.budget = budget;
+        this.promptUsdPerMillion = promptUsdPerMillion;
+        this.completionUsdPerMillion = completionUsdPerMillion;
+    }
+
+    public AiTokenBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Refuse the call when the user has spent today's token budget.
+     *
+     * @throws AiBudgetExceededException when over budget
+     */
+    public void checkBudget(String userId, AiPromptType promptType) {
+        if (!budget.allows(userId)) {
+            Counter.builder("ai.budget.rejections")
+                .tag("prompt_type", promptType.getKey())
+                .register(registry)
+                .increment();
+            logger.warn("[AI_BUDGET] userId={} spent {} of {} tokens today; skipping {} call",
+                userId, budget.spentToday(userId), budget.getDailyTokensPerUser(), promptType.getKey());
+            throw new AiBudgetExceededException("Daily AI allowance reached. Using non-AI results.");
+        }
+    }
+
+    public void recordCall(AiPromptType promptType, String endpoint, String outcome, long durationNanos) {
+        Timer.builder("ai.call.duration")
+            .description("Groq call latency including retries")
+            .tag("prompt_type", promptType.getKey())
+            .tag("endpoint", endpoint)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count the tokens of a completed response and charge them to the user.
+     */
+    public void recordUsage(String userId, AiPromptType promptType, String endpoint, JsonNode usage) {
+        long promptTokens = usage.path("prompt_tokens").asLong(0);
+        long completionTokens = usage.path("completion_tokens").asLong(0);
+        long totalTokens = usage.path("total_tokens").asLong(promptTokens + completionTokens);
+        tokens(promptType, endpoint, "prompt").increment(promptTokens);
+        tokens(promptType, endpoint, "completion").increment(completionTokens);
+        Counter.builder("ai.cost")
+            .baseUnit("usd")
+            .tag("prompt_type", promptType.getKey())
+            .register(registry)
+            .increment((promptTokens * promptUsdPerMillion + completionTokens * completionUsdPerMillion)
+                / TOKENS_PER_MILLION);
+        budget.charge(userId, totalTokens);
+    }
+
+    public void recordError(AiPromptType promptType, String endpoint, String error) {
+        Counter.builder("ai.errors")
+            .tag("prompt_type", promptType.getKey())
+            .tag("endpoint", endpoint)
+            .tag("error", error)
+            .register(registry)
+            .increment();
+    }
+
+    public void recordVerificationFailure(String check) {
+        Counter.builder("ai.verification.failures")
+            .tag("check", check)
+            .register(registry)
+            .increment();
+    }
+
+    @Scheduled(cron = "${app.ai.budget.evict-cron:0 5 0 * * *}")
+    public void evictPastBudgetDays() {
+        budget.evictPastDays();
+    }
+
+    private Counter tokens(AiPromptType promptType, String endpoint, String kind) {
+        return Counter.builder("ai.tokens")
+            .tag("prompt_type", promptType.getKey())
+            .tag("endpoint", endpoint)
+            .tag("kind", kind)
+            .register(registry);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ndl.numbers_dont_lie.ai.telemetry;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Daily Groq token allowance per user.
+ *
+ * Design intent:
+ * - Usage is charged after each call from the reported token counts; a call is refused up front
+ *   once the user's spend for the day (UTC by default) has reached the limit, so the last call
+ *   of a day may overshoot by one response
+ * - Counters live in memory and restart at zero on a new day or a restart of the instance:
+ *   this is a guard against runaway generation loops, not a billing record
+ * - A limit of 0 disables the guard
+ */
+public class AiTokenBudget {
+
+    private final long dailyTokensPerUser;
+    private final Clock clock;
+    private final Map<String, DailySpend> spend = new ConcurrentHashMap<>();
+
+    public AiTokenBudget(long dailyTokensPerUser, Clock clock) {
+        if (dailyTokensPerUser < 0) {
+            throw new IllegalArgumentException("dailyTokensPerUser must not be negative");
+        }
+        this.dailyTokensPerUser = dailyTokensPerUser;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return dailyTokensPerUser > 0;
+    }
+
+    public long getDailyTokensPerUser() {
+        return dailyTokensPerUser;
+    }
+
+    /**
+     * Whether the user may start another call today. Unattributed calls (null user) always may.
+     */
+    public boolean allows(String userId) {
+        return !isEnabled() || userId == null || spentToday(userId) < dailyTokensPerUser;
+    }
+
+    public void charge(String userId, long tokens) {
+        if (userId == null || tokens <= 0) {
+            return;
+        }
+        LocalDate today = LocalDate.now(clock);
+        spend.compute(userId, (id, current) -> current == null || !current.day().equals(today)
+            ? new DailySpend(today, tokens)
+            : new DailySpend(today, current.tokens() + tokens));
+    }
+
+    public long spentToday(String userId) {
+        DailySpend current = spend.get(userId);
+        return current != null && current.day().equals(LocalDate.now(clock)) ? current.tokens() : 0;
+    }
+
+    /**
+     * Drop the counters of past days (called periodically so idle users do not accumulate).
+     */
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now(clock);
+        spend.values().removeIf(current -> !current.day().equals(today));
+    }
+
+    private record DailySpend(LocalDate day, long tokens) {
+    }
+}
@@ -3,18 +3,23 @@ package com.ndl.numbers_dont_lie.mealplan.controller;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
 import com.ndl.numbers_dont_lie.mealplan.entity.MealPlan;
 import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.dto.PregenerationRunStats;
 import com.ndl.numbers_dont_lie.mealplan.service.DayPlanAssemblerService;
 import com.ndl.numbers_dont_lie.mealplan.service.WeeklyMealPlanService;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanPregenerationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -61,12 +66,15 @@ public class DebugMealPlanGenerationController {
     
     private final DayPlanAssemblerService dayPlanAssemblerService;
     private final WeeklyMealPlanService weeklyMealPlanService;
+    private final WeeklyPlanPregenerationService pregenerationService;
     
     public DebugMealPlanGenerationController(
             DayPlanAssemblerService dayPlanAssemblerService,
-            WeeklyMealPlanService weeklyMealPlanService) {
+            WeeklyMealPlanService weeklyMealPlanService,
+            WeeklyPlanPregenerationService pregenerationService) {
         this.dayPlanAssemblerService = dayPlanAssemblerService;
         this.weeklyMealPlanService = weeklyMealPlanService;
+        this.pregenerationService = pregenerationService;
     }
     
     /**
@@ -250,4 +258,42 @@ public class DebugMealPlanGenerationController {
             ));
         }
     }
+
+    /**
+     * Metrics of the nightly pre-generation: last run throughput/failures and job counts per status.
+     * 
+     * GET /api/debug/meal-plans/generate/pregeneration
+     */
+    @GetMapping("/pregeneration")
+    public ResponseEntity<?> pregenerationStatus() {
+        LocalDate weekStart = pregenerationService.upcomingWeekStart();
+        Map<String, Object> body = new HashMap<>();
+        body.put("running", pregenerationService.isRunning());
+        body.put("weekStart", weekStart.toString());
+        body.put("jobs", pregenerationService.jobCounts(weekStart));
+        body.put("lastRun", pregenerationService.getLastRun());
+        return ResponseEntity.ok(body);
+    }
+    
+    /**
+     * Run the nightly pre-generation now, ignoring the off-peak window (blocks until the run ends).
+     * 
+     * POST /api/debug/meal-plans/generate/pregeneration?startDate=YYYY-MM-DD
+     */
+    @PostMapping("/pregeneration")
+    public ResponseEntity<?> triggerPregeneration(
+            @RequestParam(name = "startDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate startDate) {
+        LocalDate weekStart = startDate != null ? startDate : pregenerationService.upcomingWeekStart();
+        logger.info("[DEBUG-GENERATE] Triggering weekly pre-generation for weekStart={}", weekStart);
+        PregenerationRunStats stats = pregenerationService.run(weekStart, true);
+        if (stats == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "status", "error",
+                    "error", "Pre-generation already running"
+            ));
+        }
+        return ResponseEntity.ok(stats);
+    }
 }
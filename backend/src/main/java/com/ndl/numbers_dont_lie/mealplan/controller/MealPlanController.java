@@ -1,5 +1,6 @@
 package com.ndl.numbers_dont_lie.mealplan.controller;
 
+import com.ndl.numbers_dont_lie.ai.AiProfileInputs;
 import com.ndl.numbers_dont_lie.ai.AiStrategyService;
 import com.ndl.numbers_dont_lie.ai.dto.AiMealStructureRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiMealStructureResult;
@@ -7,6 +8,7 @@ import com.ndl.numbers_dont_lie.ai.dto.AiStrategyRequest;
 import com.ndl.numbers_dont_lie.ai.dto.AiStrategyResult;
 import com.ndl.numbers_dont_lie.entity.UserEntity;
 import com.ndl.numbers_dont_lie.mealplan.dto.DailyNutritionSummary;
+import com.ndl.numbers_dont_lie.mealplan.dto.TrendGranularity;
 import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyCalorieTrendResponse;
 import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyPlanResponse;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
@@ -30,13 +32,22 @@ import com.ndl.numbers_dont_lie.mealplan.service.NutritionSummaryService;
 import com.ndl.numbers_dont_lie.mealplan.service.MealPlanVersionService;
 import com.ndl.numbers_dont_lie.mealplan.service.WeeklyMealPlanService;
 import com.ndl.numbers_dont_lie.mealplan.service.CustomMealService;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanReadModelService;
+import com.ndl.numbers_dont_lie.mealplan.service.MealPlanETagService;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyGenerationCoordinator;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanSnapshot;
 import com.ndl.numbers_dont_lie.mealplan.dto.AddCustomMealRequest;
+import com.ndl.numbers_dont_lie.mealplan.service.DayPlanNutritionService;
+import com.ndl.numbers_dont_lie.mealplan.service.NutritionTrendService;
 import com.ndl.numbers_dont_lie.profile.entity.ProfileEntity;
 import com.ndl.numbers_dont_lie.profile.repository.ProfileRepository;
 import com.ndl.numbers_dont_lie.repository.UserRepository;
+import com.ndl.numbers_dont_lie.shoppinglist.service.DayShoppingListService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
@@ -44,7 +55,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
@@ -73,6 +83,12 @@ public class MealPlanController {
     private final MealMoveService mealMoveService;
     private final NutritionalPreferencesRepository nutritionalPreferencesRepository;
     private final MealPlanVersionService mealPlanVersionService;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final MealPlanETagService mealPlanETagService;
+    private final WeeklyGenerationCoordinator weeklyGenerationCoordinator;
+    private final DayPlanNutritionService dayPlanNutritionService;
+    private final NutritionTrendService nutritionTrendService;
+    private final DayShoppingListService dayShoppingListService;
     
     public MealPlanController(
             DayPlanAssemblerService dayPlanAssemblerService,
@@ -90,7 +106,13 @@ public class MealPlanController {
             RecipeRepository recipeRepository,
             MealMoveService mealMoveService,
             NutritionalPreferencesRepository nutritionalPreferencesRepository,
-            MealPlanVersionService mealPlanVersionService) {
+            MealPlanVersionService mealPlanVersionService,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            MealPlanETagService mealPlanETagService,
+            WeeklyGenerationCoordinator weeklyGenerationCoordinator,
+            DayPlanNutritionService dayPlanNutritionService,
+            NutritionTrendService nutritionTrendService,
+            DayShoppingListService dayShoppingListService) {
         this.dayPlanAssemblerService = dayPlanAssemblerService;
         this.nutritionSummaryService = nutritionSummaryService;
         this.weeklyMealPlanService = weeklyMealPlanService;
@@ -107,6 +129,12 @@ public class MealPlanController {
         this.mealMoveService = mealMoveService;
         this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
         this.mealPlanVersionService = mealPlanVersionService;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.weeklyGenerationCoordinator = weeklyGenerationCoordinator;
+        this.dayPlanNutritionService = dayPlanNutritionService;
+        this.nutritionTrendService = nutritionTrendService;
+        this.dayShoppingListService = dayShoppingListService;
     }
     
     @GetMapping("/day")
@@ -115,12 +143,21 @@ public class MealPlanController {
             @RequestParam(name = "userId") Long userId,
             @RequestParam(name = "date", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-            LocalDate date) {
+            LocalDate date,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         // Use provided date or default to today
         if (date == null) {
             date = LocalDate.now();
         }
         
+        // 0) Conditional GET: answered from version stamps, before loading meals
+        String resource = "day:" + date;
+        String etag = mealPlanETagService.dailyTag(userId, resource, date, false);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            logger.info("[MEAL_PLAN] Day plan not modified for userId={}, date={}", userId, date);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         logger.info("[MEAL_PLAN] Fetching day plan for userId={}, date={}", userId, date);
         // 1) try existing persistent day plan (with meals eagerly loaded)
         Optional<DayPlan> existingPlan = dayPlanRepository.findByUserIdAndDateWithMealsAndDuration(
@@ -133,7 +170,7 @@ public class MealPlanController {
                 logger.info("[MEAL_PLAN_DEBUG] Meal: type={}, recipe_id={}, custom_name={}, id={}", 
                     meal.getMealType(), meal.getRecipeId(), meal.getCustomMealName(), meal.getId());
             }
-            return ResponseEntity.ok(plan);
+            return ResponseEntity.ok().eTag(etag).body(plan);
         }
         
         try {
@@ -160,7 +197,9 @@ public class MealPlanController {
                 logger.info("[MEAL_PLAN_DEBUG] Generated Meal: type={}, recipe_id={}, custom_name={}, id={}", 
                     meal.getMealType(), meal.getRecipeId(), meal.getCustomMealName(), meal.getId());
             }
-            return ResponseEntity.ok(saved);
+            return ResponseEntity.ok()
+                .eTag(mealPlanETagService.dailyTag(userId, resource, date, false))
+                .body(saved);
             
         } catch (IllegalStateException e) {
             // Check if this is "AI strategy not found" error
@@ -239,8 +278,10 @@ public class MealPlanController {
         // Attach assembled day plan to version and user
         assembled.setMealPlanVersion(version);
         assembled.setUserId(userId);
+        dayPlanNutritionService.recompute(assembled);
 
         DayPlan saved = dayPlanRepository.save(assembled);
+        mealPlanETagService.invalidateUser(userId);
         logger.info("[MEAL_PLAN] Persisted day plan id={}, meals={} for userId={}", saved.getId(), saved.getMeals().size(), userId);
         return saved;
     }
@@ -259,12 +300,20 @@ public class MealPlanController {
             @RequestParam(name = "userId") Long userId,
             @RequestParam(name = "date", required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-            LocalDate date) {
+            LocalDate date,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         // Use provided date or default to today
         if (date == null) {
             date = LocalDate.now();
         }
         
+        // 0) Conditional GET: targets come from preferences, so their timestamp is part of the tag
+        String etag = mealPlanETagService.dailyTag(userId, "day-nutrition:" + date, date, true);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            logger.info("[MEAL_PLAN] Nutrition summary not modified for userId={}, date={}", userId, date);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         logger.info("[MEAL_PLAN] Fetching nutrition summary for userId={}, date={}", userId, date);
         
         try {
@@ -273,6 +322,7 @@ public class MealPlanController {
                     userId, date, PlanDuration.DAILY);
             
             DayPlan dayPlan;
+            boolean persisted = existingPlan.isPresent();
             if (existingPlan.isPresent()) {
                 // Use existing plan - no need to regenerate
                 dayPlan = existingPlan.get();
@@ -298,7 +348,11 @@ public class MealPlanController {
             DailyNutritionSummary summary = nutritionSummaryService.generateSummary(dayPlan);
             
             logger.info("[MEAL_PLAN] Nutrition summary generated for userId={}, date={}", userId, date);
-            return ResponseEntity.ok(summary);
+            if (!persisted) {
+                // Transient plan: nothing versioned to validate against
+                return ResponseEntity.ok(summary);
+            }
+            return ResponseEntity.ok().eTag(etag).body(summary);
             
         } catch (IllegalStateException | IllegalArgumentException e) {
             logger.warn("[MEAL_PLAN] No plan found for date {}, returning empty summary: {}", date, e.getMessage());
@@ -325,12 +379,12 @@ public class MealPlanController {
      * Returns day plans plus aggregated weekly nutrition summary.
      */
     @GetMapping("/week")
-    @Transactional
     public ResponseEntity<?> getWeeklyPlan(
             @RequestParam(name = "userId") Long userId,
             @RequestParam(name = "startDate", required = true)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-            LocalDate startDate) {
+            LocalDate startDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         // Validation: startDate is required
         if (startDate == null) {
@@ -342,8 +396,22 @@ public class MealPlanController {
             ));
         }
 
+        String resource = "week:" + startDate;
+        String knownTag = mealPlanETagService.cachedTag(userId, resource);
+        if (MealPlanETagService.matches(ifNoneMatch, knownTag)) {
+            logger.info("[WEEK_PLAN] Not modified for userId={} startDate={}", userId, startDate);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(knownTag).build();
+        }
+
         logger.info("[WEEK_PLAN] Loading weekly plan for userId={} startDate={}", userId, startDate);
         try {
+            // 0) Serve the materialized read model of the current version if present
+            Optional<WeeklyPlanSnapshot> snapshot = weeklyPlanReadModelService.findCurrent(userId, startDate);
+            if (snapshot.isPresent()) {
+                logger.info("[WEEK_PLAN] Serving snapshot versionId={}", snapshot.get().getVersionId());
+                return snapshotResponse(userId, snapshot.get(), ifNoneMatch);
+            }
+
             LocalDate endDate = startDate.plusDays(6);
 
             // 1) Try to load most recent persisted weekly plan from DB
@@ -381,68 +449,44 @@ public class MealPlanController {
                     }
 
                     WeeklyPlanResponse response = weeklyMealPlanService.buildWeeklyPlanResponse(startDate, fullWeek);
-                    return ResponseEntity.ok(response);
+                    return materializeWeeklyResponse(userId, startDate, currentVersion.getId(), response);
                 }
 
                 // If plan exists but has no day plans, regenerate within the same plan.
                 if (currentVersion == null || persistedDays.isEmpty()) {
                     logger.info("[WEEK_PLAN] Existing plan has no day plans, regenerating for planId={}", plan.getId());
-                    if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null ||
-                        aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
-                        logger.info("[WEEK_PLAN] AI cache missing, bootstrapping for userId={}", userId);
-                        bootstrapAiForUser(userId);
-                    }
-
-                    MealPlan regenerated = mealPlanVersionService.regenerateMealPlan(plan.getId(), userId, startDate);
-                    MealPlanVersion regeneratedVersion = regenerated.getCurrentVersion();
-                    java.util.List<DayPlan> dayPlans = regeneratedVersion != null
-                        ? dayPlanRepository.findByMealPlanVersionIdAndDateRangeWithMeals(regeneratedVersion.getId(), startDate, endDate)
+                    Long regeneratedVersionId = weeklyGenerationCoordinator.generateOnce(userId, startDate,
+                            () -> existingWeekVersionId(userId, startDate), () -> {
+                        if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null ||
+                            aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
+                            logger.info("[WEEK_PLAN] AI cache missing, bootstrapping for userId={}", userId);
+                            bootstrapAiForUser(userId);
+                        }
+                        return currentVersionId(mealPlanVersionService.regenerateMealPlan(plan.getId(), userId, startDate));
+                    });
+                    java.util.List<DayPlan> dayPlans = regeneratedVersionId != null
+                        ? dayPlanRepository.findByMealPlanVersionIdAndDateRangeWithMeals(regeneratedVersionId, startDate, endDate)
                         : java.util.Collections.emptyList();
                     dayPlans.sort(java.util.Comparator.comparing(DayPlan::getDate));
                     WeeklyPlanResponse response = weeklyMealPlanService.buildWeeklyPlanResponse(startDate, dayPlans);
-                    return ResponseEntity.ok(response);
+                    return materializeWeeklyResponse(userId, startDate, regeneratedVersionId, response);
                 }
             }
 
             // 2) No persisted weekly plan found → generate and persist a new weekly plan
+            // Single-flight: concurrent requests for the same week share one generation
             logger.info("[WEEK_PLAN] No persisted weekly plan found, generating new plan");
-            if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null ||
-                aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
-                logger.info("[WEEK_PLAN] AI cache missing, bootstrapping for userId={}", userId);
-                bootstrapAiForUser(userId);
+            Long versionId = weeklyGenerationCoordinator.generateOnce(userId, startDate,
+                () -> existingWeekVersionId(userId, startDate), () -> generateWeekIfMissing(userId, startDate));
+            java.util.List<DayPlan> dayPlans = java.util.Collections.emptyList();
+            if (versionId != null) {
+                dayPlans = dayPlanRepository
+                    .findByMealPlanVersionIdAndDateRangeWithMeals(versionId, startDate, endDate);
             }
-            try {
-                MealPlan savedPlan = weeklyMealPlanService.generateWeeklyPlan(userId, startDate);
-                MealPlanVersion currentVersion = savedPlan.getCurrentVersion();
-                java.util.List<DayPlan> dayPlans = java.util.Collections.emptyList();
-                if (currentVersion != null) {
-                    dayPlans = dayPlanRepository
-                        .findByMealPlanVersionIdAndDateRangeWithMeals(currentVersion.getId(), startDate, endDate);
-                }
-                dayPlans.sort(java.util.Comparator.comparing(DayPlan::getDate));
-
-                WeeklyPlanResponse response = weeklyMealPlanService.buildWeeklyPlanResponse(startDate, dayPlans);
-                return ResponseEntity.ok(response);
-            } catch (IllegalStateException e) {
-                String message = e.getMessage() != null ? e.getMessage() : "";
-                if (message.contains("AI strategy not found") || message.contains("Meal structure not found")) {
-                    logger.info("[WEEK_PLAN] Missing AI cache, auto-bootstrapping for userId={}", userId);
-                    bootstrapAiForUser(userId);
-
-                    MealPlan savedPlan = weeklyMealPlanService.generateWeeklyPlan(userId, startDate);
-                    MealPlanVersion currentVersion = savedPlan.getCurrentVersion();
-                    java.util.List<DayPlan> dayPlans = java.util.Collections.emptyList();
-                    if (currentVersion != null) {
-                        dayPlans = dayPlanRepository
-                            .findByMealPlanVersionIdAndDateRangeWithMeals(currentVersion.getId(), startDate, endDate);
-                    }
-                    dayPlans.sort(java.util.Comparator.comparing(DayPlan::getDate));
+            dayPlans.sort(java.util.Comparator.comparing(DayPlan::getDate));
 
-                    WeeklyPlanResponse response = weeklyMealPlanService.buildWeeklyPlanResponse(startDate, dayPlans);
-                    return ResponseEntity.ok(response);
-                }
-                throw e;
-            }
+            WeeklyPlanResponse response = weeklyMealPlanService.buildWeeklyPlanResponse(startDate, dayPlans);
+            return materializeWeeklyResponse(userId, startDate, versionId, response);
         } catch (Exception e) {
             logger.error("[WEEK_PLAN] Failed to load week plan: {}", e.getMessage(), e);
             LocalDate endDate = startDate.plusDays(6);
@@ -574,7 +618,8 @@ public class MealPlanController {
             @RequestParam(name = "userId") Long userId,
             @RequestParam(name = "startDate", required = true)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
-            LocalDate startDate) {
+            LocalDate startDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (startDate == null) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "Missing required parameter: startDate",
@@ -582,6 +627,12 @@ public class MealPlanController {
             ));
         }
 
+        String etag = mealPlanETagService.weeklyTag(userId, "week-trends:" + startDate, startDate, true);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            logger.info("[WEEK_TREND] Not modified for userId={} startDate={}", userId, startDate);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         logger.info("[WEEK_TREND] Generating calorie trend for userId={} startDate={}", userId, startDate);
 
         LocalDate endDate = startDate.plusDays(6);
@@ -606,7 +657,7 @@ public class MealPlanController {
             byDate.put(day.getDate(), day);
         }
 
-        java.util.List<WeeklyCalorieTrendResponse.DayTrend> trendDays = new java.util.ArrayList<>();
+        java.util.List<DayPlan> weekDays = new java.util.ArrayList<>(7);
         for (int dayOffset = 0; dayOffset < 7; dayOffset++) {
             LocalDate date = startDate.plusDays(dayOffset);
             DayPlan dayPlan = byDate.get(date);
@@ -617,31 +668,85 @@ public class MealPlanController {
                 placeholder.setMeals(java.util.Collections.emptyList());
                 dayPlan = placeholder;
             }
+            weekDays.add(dayPlan);
+        }
 
-            int actualCalories = 0;
-            try {
-                DailyNutritionSummary summary = nutritionSummaryService.generateSummary(dayPlan);
-                if (summary != null) {
-                    actualCalories = (int) Math.round(summary.getTotalCalories());
-                }
-            } catch (Exception e) {
-                logger.warn("[WEEK_TREND] Nutrition summary unavailable for date {}: {}", date, e.getMessage());
-                actualCalories = 0;
-            }
+        // One batch for the whole week: targets loaded once, recipes of days without totals in one query
+        java.util.List<DailyNutritionSummary> summaries = null;
+        try {
+            summaries = nutritionSummaryService.generateSummaries(userId, weekDays);
+        } catch (Exception e) {
+            logger.warn("[WEEK_TREND] Nutrition summaries unavailable for week {}: {}", startDate, e.getMessage());
+        }
 
+        java.util.List<WeeklyCalorieTrendResponse.DayTrend> trendDays = new java.util.ArrayList<>();
+        for (int dayOffset = 0; dayOffset < 7; dayOffset++) {
+            LocalDate date = startDate.plusDays(dayOffset);
+            int actualCalories = summaries != null
+                ? (int) Math.round(summaries.get(dayOffset).getTotalCalories())
+                : 0;
             int delta = actualCalories - targetCalories;
             trendDays.add(new WeeklyCalorieTrendResponse.DayTrend(date, actualCalories, targetCalories, delta));
         }
 
         WeeklyCalorieTrendResponse response = new WeeklyCalorieTrendResponse(startDate, endDate, trendDays);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
+    }
+
+    /**
+     * Calorie and macro trends over an arbitrary range (month, quarter, year, or explicit dates).
+     * Aggregated in the database; returns one point per day, week or month.
+     * Conditional GET via a version-derived ETag over the range (day plan revisions, calorie target).
+     *
+     * GET /api/meal-plans/trends?userId=X&range=month|quarter|year&granularity=day|week|month
+     * GET /api/meal-plans/trends?userId=X&startDate=YYYY-MM-DD&endDate=YYYY-MM-DD&granularity=week
+     *
+     * endDate defaults to today; with range, startDate is derived from endDate.
+     */
+    @GetMapping("/trends")
+    public ResponseEntity<?> getNutritionTrends(
+            @RequestParam(name = "userId") Long userId,
+            @RequestParam(name = "range", required = false) String range,
+            @RequestParam(name = "granularity", required = false) String granularity,
+            @RequestParam(name = "startDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate startDate,
+            @RequestParam(name = "endDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate endDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            LocalDate end = endDate != null ? endDate : LocalDate.now();
+            LocalDate start = startDate;
+            if (start == null) {
+                String rangeKey = range != null ? range.trim().toLowerCase() : "month";
+                start = switch (rangeKey) {
+                    case "month" -> end.minusMonths(1).plusDays(1);
+                    case "quarter" -> end.minusMonths(3).plusDays(1);
+                    case "year" -> end.minusYears(1).plusDays(1);
+                    default -> throw new IllegalArgumentException(
+                        "Unknown range: " + range + " (expected month, quarter or year)");
+                };
+            }
+            TrendGranularity bucket = TrendGranularity.fromString(granularity);
+
+            // Conditional GET: day plan stamps of the range and the calorie target
+            String etag = mealPlanETagService.rangeTag(userId, "trends:" + start + ":" + end + ":" + bucket,
+                start, end, true);
+            if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+                logger.info("[TRENDS] Not modified for userId={} range={}..{}", userId, start, end);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(nutritionTrendService.getTrends(userId, start, end, bucket));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     /**
      * Force regenerate weekly plan (new version).
      */
     @PostMapping("/week/refresh")
-    @Transactional
     public ResponseEntity<?> refreshWeeklyPlan(
             @RequestParam(name = "userId") Long userId,
             @RequestParam(name = "startDate", required = true)
@@ -655,35 +760,33 @@ public class MealPlanController {
         }
 
         try {
-            if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null ||
-                aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
-                logger.info("[WEEK_PLAN] Refresh: AI cache missing, bootstrapping for userId={}", userId);
-                bootstrapAiForUser(userId);
-            }
+            // Single-flight: a double-clicked refresh produces one new version, both callers get it
+            Long refreshedVersionId = weeklyGenerationCoordinator.refreshOnce(userId, startDate, () -> {
+                if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null ||
+                    aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
+                    logger.info("[WEEK_PLAN] Refresh: AI cache missing, bootstrapping for userId={}", userId);
+                    bootstrapAiForUser(userId);
+                }
 
-            Optional<MealPlan> existingPlan = findWeeklyPlanByStartDate(userId, startDate);
-            MealPlan savedPlan;
-            if (existingPlan.isPresent()) {
-                savedPlan = mealPlanVersionService.regenerateMealPlan(existingPlan.get().getId(), userId, startDate);
-            } else {
-                savedPlan = weeklyMealPlanService.generateWeeklyPlan(userId, startDate);
-            }
+                Optional<MealPlan> existingPlan = findWeeklyPlanByStartDate(userId, startDate);
+                MealPlan savedPlan;
+                if (existingPlan.isPresent()) {
+                    savedPlan = mealPlanVersionService.regenerateMealPlan(existingPlan.get().getId(), userId, startDate);
+                } else {
+                    savedPlan = weeklyMealPlanService.generateWeeklyPlan(userId, startDate);
+                }
+                return currentVersionId(savedPlan);
+            });
             LocalDate endDate = startDate.plusDays(6);
             java.util.List<DayPlan> dayPlans = java.util.Collections.emptyList();
-            MealPlanVersion currentVersion = savedPlan.getCurrentVersion();
-            if (currentVersion != null) {
+            if (refreshedVersionId != null) {
                 dayPlans = dayPlanRepository
-                    .findByMealPlanVersionIdAndDateRangeWithMeals(currentVersion.getId(), startDate, endDate);
+                    .findByMealPlanVersionIdAndDateRangeWithMeals(refreshedVersionId, startDate, endDate);
             }
             if (dayPlans.isEmpty()) {
                 Optional<MealPlan> planOpt = findWeeklyPlanByStartDate(userId, startDate);
                 if (planOpt.isPresent() && planOpt.get().getCurrentVersion() != null) {
-                    MealPlanVersion currentVersionSnapshot = planOpt.get().getCurrentVersion();
-                    MealPlan restoredPlan = mealPlanVersionService.restoreVersion(
-                        planOpt.get().getId(),
-                        currentVersionSnapshot.getVersionNumber(),
-                        userId
-                    );
+                    MealPlan restoredPlan = mealPlanVersionService.restoreCurrentVersion(planOpt.get().getId(), userId);
                     MealPlanVersion restoredVersion = restoredPlan.getCurrentVersion();
                     if (restoredVersion != null) {
                         dayPlans = dayPlanRepository
@@ -726,11 +829,7 @@ public class MealPlanController {
                     MealPlan plan = planOpt.get();
                     MealPlanVersion currentVersion = plan.getCurrentVersion();
                     if (currentVersion != null) {
-                        MealPlan restoredPlan = mealPlanVersionService.restoreVersion(
-                            plan.getId(),
-                            currentVersion.getVersionNumber(),
-                            userId
-                        );
+                        MealPlan restoredPlan = mealPlanVersionService.restoreCurrentVersion(plan.getId(), userId);
                         LocalDate endDate = startDate.plusDays(6);
                         java.util.List<DayPlan> dayPlans = java.util.Collections.emptyList();
                         MealPlanVersion restoredVersion = restoredPlan.getCurrentVersion();
@@ -780,27 +879,7 @@ public class MealPlanController {
             profile.getAge(), profile.getGoal(), profile.getMealFrequency());
         
         // STEP 4.1: Build and execute AI Strategy Analysis
-        AiStrategyRequest strategyRequest = new AiStrategyRequest();
-        strategyRequest.setUserId(String.valueOf(userId));
-        strategyRequest.setTimezone(profile.getTimezone() != null 
-            ? ZoneId.of(profile.getTimezone()) 
-            : ZoneId.systemDefault());
-        strategyRequest.setAge(profile.getAge() != null ? profile.getAge() : 30);
-        strategyRequest.setSex(profile.getGender() != null ? profile.getGender() : "other");
-        strategyRequest.setHeightCm(profile.getHeightCm() != null ? profile.getHeightCm() : 170);
-        strategyRequest.setWeightKg(profile.getWeightKg() != null ? profile.getWeightKg() : 70);
-        strategyRequest.setGoal(profile.getGoal() != null ? profile.getGoal() : "general_fitness");
-        strategyRequest.setDietaryPreferences(Collections.emptyMap());
-        strategyRequest.setAllergies(Collections.emptyList());
-        
-        // Parse meal frequency
-        int mealCount = parseMealFrequency(profile.getMealFrequency());
-        Map<String, Integer> mealFreq = new HashMap<>();
-        mealFreq.put("breakfast", 1);
-        mealFreq.put("lunch", 1);
-        mealFreq.put("dinner", 1);
-        mealFreq.put("snacks", Math.max(0, mealCount - 3));
-        strategyRequest.setMealFrequency(mealFreq);
+        AiStrategyRequest strategyRequest = AiProfileInputs.strategyRequest(userId, profile);
         
         logger.info("[AI BOOTSTRAP] Executing STEP 4.1 - AI Strategy Analysis...");
         AiStrategyResult strategyResult = aiStrategyService.analyzeStrategy(strategyRequest);
@@ -1036,6 +1115,7 @@ public class MealPlanController {
                     userId, date, PlanDuration.DAILY);
             if (existingPlan.isPresent()) {
                 logger.info("[MEAL_PLAN] Deleting existing plan id={} for refresh", existingPlan.get().getId());
+                mealPlanETagService.dayPlanModified(existingPlan.get());
                 dayPlanRepository.delete(existingPlan.get());
             }
             
@@ -1251,12 +1331,18 @@ public class MealPlanController {
             Recipe newRecipe = recipeOpt.get();
             
             // Update meal
+            dayPlanNutritionService.beforeMealChange(oldMeal);
+            dayShoppingListService.beforeMealChange(oldMeal);
             oldMeal.setRecipeId(newRecipe.getStableId());
             oldMeal.setCustomMealName(newRecipe.getTitle());
             // Keep calorie target unchanged
+            dayPlanNutritionService.afterMealChange(oldMeal);
+            dayShoppingListService.afterMealChange(oldMeal);
             
             // Save updated meal
             Meal savedMeal = mealRepository.save(oldMeal);
+            weeklyPlanReadModelService.evictForDayPlan(oldMeal.getDayPlan());
+            mealPlanETagService.dayPlanModified(oldMeal.getDayPlan());
             
             logger.info("[MEAL_REPLACE] Old recipe={}, New recipe={}", oldRecipeId, newRecipe.getStableId());
             logger.info("[MEAL_REPLACE] Replace completed successfully");
@@ -1278,6 +1364,78 @@ public class MealPlanController {
         }
     }
 
+    /**
+     * Store the freshly built weekly response as the read model of its version and serve the stored bytes.
+     * Falls back to regular serialization if there is no version or the snapshot cannot be written.
+     */
+    private ResponseEntity<?> materializeWeeklyResponse(Long userId, LocalDate startDate, Long versionId,
+                                                        WeeklyPlanResponse response) {
+        if (versionId == null) {
+            return ResponseEntity.ok(response);
+        }
+        try {
+            WeeklyPlanSnapshot snapshot = weeklyPlanReadModelService.materialize(userId, startDate, versionId, response);
+            return snapshotResponse(userId, snapshot, null);
+        } catch (Exception e) {
+            logger.warn("[WEEK_SNAPSHOT] Failed to materialize userId={} startDate={} versionId={}: {}",
+                userId, startDate, versionId, e.getMessage());
+            return ResponseEntity.ok(response);
+        }
+    }
+
+    private ResponseEntity<?> snapshotResponse(Long userId, WeeklyPlanSnapshot snapshot, String ifNoneMatch) {
+        mealPlanETagService.remember(userId, "week:" + snapshot.getWeekStart(), snapshot.getEtag());
+        if (MealPlanETagService.matches(ifNoneMatch, snapshot.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+        }
+        return ResponseEntity.ok()
+            .eTag(snapshot.getEtag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(snapshot.getPayload());
+    }
+
+    /**
+     * Generation step of GET /week, run by WeeklyGenerationCoordinator while holding the week's lock.
+     * Re-checks first: a concurrent request (possibly on another node) may have generated the week meanwhile.
+     */
+    private Long generateWeekIfMissing(Long userId, LocalDate startDate) {
+        Optional<MealPlan> existing = findWeeklyPlanByStartDate(userId, startDate);
+        if (existing.isPresent() && existing.get().getCurrentVersion() != null) {
+            logger.info("[WEEK_PLAN] Week generated by a concurrent request, reusing planId={}", existing.get().getId());
+            return existing.get().getCurrentVersion().getId();
+        }
+        if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null ||
+            aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
+            logger.info("[WEEK_PLAN] AI cache missing, bootstrapping for userId={}", userId);
+            bootstrapAiForUser(userId);
+        }
+        try {
+            return currentVersionId(weeklyMealPlanService.generateWeeklyPlan(userId, startDate));
+        } catch (IllegalStateException e) {
+            String message = e.getMessage() != null ? e.getMessage() : "";
+            if (message.contains("AI strategy not found") || message.contains("Meal structure not found")) {
+                logger.info("[WEEK_PLAN] Missing AI cache, auto-bootstrapping for userId={}", userId);
+                bootstrapAiForUser(userId);
+                return currentVersionId(weeklyMealPlanService.generateWeeklyPlan(userId, startDate));
+            }
+            throw e;
+        }
+    }
+
+    private static Long currentVersionId(MealPlan plan) {
+        return plan != null && plan.getCurrentVersion() != null ? plan.getCurrentVersion().getId() : null;
+    }
+
+    /**
+     * Current version of the user's weekly plan for the week, or null if none has day plans yet.
+     */
+    private Long existingWeekVersionId(Long userId, LocalDate startDate) {
+        return findWeeklyPlanByStartDate(userId, startDate)
+            .map(MealPlan::getCurrentVersion)
+            .map(MealPlanVersion::getId)
+            .orElse(null);
+    }
+
     private Optional<MealPlan> findWeeklyPlanByStartDate(Long userId, LocalDate startDate) {
         LocalDate endDate = startDate.plusDays(6);
         MealPlan bestPlan = null;
@@ -1286,7 +1444,8 @@ public class MealPlanController {
         int bestVersionNumber = -1;
         Long bestPlanId = null;
 
-        List<MealPlan> plans = mealPlanRepository.findByUserId(userId);
+        // Current versions fetched with the plans: callers may run outside a transaction
+        List<MealPlan> plans = mealPlanRepository.findByUserIdWithCurrentVersion(userId);
         for (MealPlan plan : plans) {
             if (plan == null || plan.getDuration() != PlanDuration.WEEKLY) {
                 continue;
@@ -1330,12 +1489,11 @@ public class MealPlanController {
         if (candidates.isEmpty()) {
             return Optional.empty();
         }
-        DayPlan dayPlan = candidates.get(0);
-        MealPlanVersion version = dayPlan.getMealPlanVersion();
-        if (version == null || version.getMealPlan() == null) {
+        MealPlanVersion version = candidates.get(0).getMealPlanVersion();
+        if (version == null || version.getId() == null) {
             return Optional.empty();
         }
-        return Optional.of(version.getMealPlan());
+        return mealPlanRepository.findByVersionIdWithCurrentVersion(version.getId());
     }
 
     public static class VersionHistoryResponse {
@@ -1372,30 +1530,4 @@ public class MealPlanController {
         public LocalDateTime getCreatedAt() { return createdAt; }
         public Integer getDayCount() { return dayCount; }
     }
-    
-    /**
-     * Parse meal frequency string (e.g., "THREE_MEALS") to integer count.
-     */
-    private int parseMealFrequency(String mealFrequency) {
-        if (mealFrequency == null) {
-            return 3; // Default to 3 meals
-        }
-        
-        switch (mealFrequency.toUpperCase()) {
-            case "THREE_MEALS":
-            case "3":
-                return 3;
-            case "FOUR_MEALS":
-            case "4":
-                return 4;
-            case "FIVE_MEALS":
-            case "5":
-                return 5;
-            case "SIX_MEALS":
-            case "6":
-                return 6;
-            default:
-                return 3;
-        }
-    }
 }
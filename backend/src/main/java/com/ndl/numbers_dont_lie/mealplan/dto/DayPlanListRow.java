@@ -0,0 +1,13 @@
+package com.ndl.numbers_dont_lie.mealplan.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Day plan row streamed for range shopping lists (no meals loaded).
+ *
+ * @param dayPlanId    DayPlan id
+ * @param date         plan date
+ * @param shoppingList materialized list, or null when not built yet
+ */
+public record DayPlanListRow(Long dayPlanId, LocalDate date, String shoppingList) {
+}
@@ -0,0 +1,11 @@
+package com.ndl.numbers_dont_lie.mealplan.dto;
+
+/**
+ * Lightweight projection of a DayPlan used to derive ETags without loading meals.
+ *
+ * @param dayPlanId DayPlan id
+ * @param versionId owning MealPlanVersion id
+ * @param revision  per-DayPlan modification counter (null for rows written before the column existed)
+ */
+public record DayPlanStamp(Long dayPlanId, Long versionId, Long revision) {
+}
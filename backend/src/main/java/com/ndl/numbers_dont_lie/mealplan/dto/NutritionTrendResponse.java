@@ -0,0 +1,93 @@
+package com.ndl.numbers_dont_lie.mealplan.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Calorie and macro series of the user's current weekly plans over an arbitrary range.
+ *
+ * Each point covers one bucket (day, week or month); only planned days are counted,
+ * so targets are the daily targets multiplied by the number of planned days in the bucket.
+ */
+public class NutritionTrendResponse {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private TrendGranularity granularity;
+    private int dailyTargetCalories;
+    private List<TrendPoint> points;
+
+    public NutritionTrendResponse() {}
+
+    public NutritionTrendResponse(LocalDate startDate, LocalDate endDate, TrendGranularity granularity,
+                                  int dailyTargetCalories, List<TrendPoint> points) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.granularity = granularity;
+        this.dailyTargetCalories = dailyTargetCalories;
+        this.points = points;
+    }
+
+    public LocalDate getStartDate() { return startDate; }
+    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+
+    public LocalDate getEndDate() { return endDate; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+
+    public TrendGranularity getGranularity() { return granularity; }
+    public void setGranularity(TrendGranularity granularity) { this.granularity = granularity; }
+
+    public int getDailyTargetCalories() { return dailyTargetCalories; }
+    public void setDailyTargetCalories(int dailyTargetCalories) { this.dailyTargetCalories = dailyTargetCalories; }
+
+    public List<TrendPoint> getPoints() { return points; }
+    public void setPoints(List<TrendPoint> points) { this.points = points; }
+
+    public static class TrendPoint {
+        private LocalDate periodStart;
+        private int plannedDays;
+        private int calories;
+        private int protein;
+        private int carbs;
+        private int fats;
+        private int targetCalories;
+        private int delta;
+
+        public TrendPoint() {}
+
+        public TrendPoint(LocalDate periodStart, int plannedDays, int calories, int protein, int carbs, int fats,
+                          int targetCalories) {
+            this.periodStart = periodStart;
+            this.plannedDays = plannedDays;
+            this.calories = calories;
+            this.protein = protein;
+            this.carbs = carbs;
+            this.fats = fats;
+            this.targetCalories = targetCalories;
+            this.delta = calories - targetCalories;
+        }
+
+        public LocalDate getPeriodStart() { return periodStart; }
+        public void setPeriodStart(LocalDate periodStart) { this.periodStart = periodStart; }
+
+        public int getPlannedDays() { return plannedDays; }
+        public void setPlannedDays(int plannedDays) { this.plannedDays = plannedDays; }
+
+        public int getCalories() { return calories; }
+        public void setCalories(int calories) { this.calories = calories; }
+
+        public int getProtein() { return protein; }
+        public void setProtein(int protein) { this.protein = protein; }
+
+        public int getCarbs() { return carbs; }
+        public void setCarbs(int carbs) { this.carbs = carbs; }
+
+        public int getFats() { return fats; }
+        public void setFats(int fats) { this.fats = fats; }
+
+        public int getTargetCalories() { return targetCalories; }
+        public void setTargetCalories(int targetCalories) { this.targetCalories = targetCalories; }
+
+        public int getDelta() { return delta; }
+        public void setDelta(int delta) { this.delta = delta; }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ndl.numbers_dont_lie.mealplan.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Per-run metrics of the nightly weekly-plan pre-generation.
+ *
+ * @param throughputPerMinute generated plans per minute of wall-clock run time
+ * @param remaining           jobs still runnable when the run stopped (window closed or budget spent)
+ */
+public record PregenerationRunStats(
+    LocalDate weekStart,
+    LocalDateTime startedAt,
+    LocalDateTime finishedAt,
+    int attempted,
+    int generated,
+    int skipped,
+    int failed,
+    int remaining,
+    long durationMs,
+    double throughputPerMinute
+) {
+}
@@ -0,0 +1,38 @@
+package com.ndl.numbers_dont_lie.mealplan.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Bucket size of a nutrition trend series.
+ *
+ * WEEK buckets start on Monday (ISO week), MONTH buckets on the 1st.
+ */
+public enum TrendGranularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * First day of the bucket containing the date.
+     */
+    public LocalDate periodStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    public static TrendGranularity fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return DAY;
+        }
+        try {
+            return TrendGranularity.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown granularity: " + value + " (expected day, week or month)");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ndl.numbers_dont_lie.mealplan.entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.CascadeType;
@@ -10,10 +11,12 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,7 +32,8 @@ import java.util.List;
  * - Date is stored without timezone (interpreted using parent MealPlan's timezone)
  */
 @Entity
-@Table(name = "day_plans")
+@Table(name = "day_plans",
+    indexes = @Index(name = "idx_day_plan_user_date", columnList = "user_id, plan_date"))
 public class DayPlan {
 
     @Id
@@ -53,6 +57,43 @@ public class DayPlan {
     @JsonProperty("context_hash")
     private String contextHash; // SHA-256 hash of user preferences and meal structure
 
+    @Column(name = "revision")
+    @JsonIgnore
+    private Long revision; // Bumped on every meal edit; feeds version-derived ETags
+
+    // Running nutrition totals of the day's meals, maintained on every meal edit (null = not computed yet)
+    @Column(name = "total_calories")
+    @JsonIgnore
+    private Double totalCalories;
+
+    @Column(name = "total_protein")
+    @JsonIgnore
+    private Double totalProtein;
+
+    @Column(name = "total_carbs")
+    @JsonIgnore
+    private Double totalCarbs;
+
+    @Column(name = "total_fats")
+    @JsonIgnore
+    private Double totalFats;
+
+    @Column(name = "estimated_meals")
+    @JsonIgnore
+    private Integer estimatedMeals; // Meals counted from plannedCalories because no recipe vector was available
+
+    // Materialized shopping list "ingredientId:quantity;..." maintained on every meal edit (null = not built yet)
+    @Column(name = "shopping_list", columnDefinition = "text")
+    @JsonIgnore
+    private String shoppingList;
+
+    // Optimistic lock: the totals and shopping list are read-modify-write deltas, so a concurrent
+    // edit of the same day must fail instead of overwriting the other one's delta
+    @Version
+    @Column(name = "lock_version", columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private Long lockVersion;
+
     @OneToMany(mappedBy = "dayPlan", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonProperty("meals")
     @JsonManagedReference("dayplan-meals")
@@ -102,6 +143,69 @@ public class DayPlan {
         this.contextHash = contextHash;
     }
 
+    public long getRevision() {
+        return revision != null ? revision : 0L;
+    }
+
+    /**
+     * Record that the meals of this day changed (replace, move, custom add/delete).
+     */
+    public void markModified() {
+        revision = getRevision() + 1;
+    }
+
+    public boolean hasNutritionTotals() {
+        return totalCalories != null && totalProtein != null && totalCarbs != null && totalFats != null;
+    }
+
+    /**
+     * Running totals as {kcal, protein, carbs, fats}, or null if not computed yet.
+     */
+    public double[] getNutritionTotals() {
+        if (!hasNutritionTotals()) {
+            return null;
+        }
+        return new double[] {totalCalories, totalProtein, totalCarbs, totalFats};
+    }
+
+    public void setNutritionTotals(double[] totals, int estimatedMeals) {
+        this.totalCalories = totals[0];
+        this.totalProtein = totals[1];
+        this.totalCarbs = totals[2];
+        this.totalFats = totals[3];
+        this.estimatedMeals = estimatedMeals;
+    }
+
+    public int getEstimatedMeals() {
+        return estimatedMeals != null ? estimatedMeals : 0;
+    }
+
+    /**
+     * Copy running totals when cloning a day into a new version (meals are copied 1:1).
+     */
+    public void copyNutritionTotalsFrom(DayPlan source) {
+        this.totalCalories = source.totalCalories;
+        this.totalProtein = source.totalProtein;
+        this.totalCarbs = source.totalCarbs;
+        this.totalFats = source.totalFats;
+        this.estimatedMeals = source.estimatedMeals;
+    }
+
+    public boolean hasShoppingList() {
+        return shoppingList != null;
+    }
+
+    /**
+     * Encoded per-ingredient quantities (see DayShoppingList), or null if not built yet.
+     */
+    public String getShoppingList() {
+        return shoppingList;
+    }
+
+    public void setShoppingList(String shoppingList) {
+        this.shoppingList = shoppingList;
+    }
+
     public List<Meal> getMeals() {
         return meals;
     }
@@ -10,6 +10,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -26,7 +27,8 @@ import java.time.LocalDateTime;
  * - Meal frequency is determined dynamically from user profile, not hardcoded
  */
 @Entity
-@Table(name = "meals")
+@Table(name = "meals",
+    indexes = @Index(name = "idx_meal_day_plan", columnList = "day_plan_id"))
 public class Meal {
 
     @Id
@@ -0,0 +1,15 @@
+package com.ndl.numbers_dont_lie.mealplan.entity;
+
+/**
+ * Lifecycle of a nightly weekly-plan pre-generation job.
+ *
+ * PENDING and RUNNING jobs left behind by a restart are picked up again by the next run;
+ * FAILED jobs are retried until the attempt limit is reached.
+ */
+public enum PregenerationStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    SKIPPED,
+    FAILED
+}
@@ -0,0 +1,80 @@
+package com.ndl.numbers_dont_lie.mealplan.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Cross-node lease on generating the weekly plan of (userId, weekStart).
+ *
+ * Design intent:
+ * - Taken and released in short transactions, so no connection or transaction is held while
+ *   the multi-minute AI generation runs
+ * - expiresAt bounds how long a crashed node blocks the week; after it anyone may take the row
+ * - owner identifies one generation attempt, so a late release never drops another node's lease
+ */
+@Entity
+@Table(name = "weekly_generation_claims",
+    uniqueConstraints = @UniqueConstraint(name = "uk_weekly_generation_claim",
+        columnNames = {"user_id", "week_start"}))
+public class WeeklyGenerationClaim {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "week_start", nullable = false)
+    private LocalDate weekStart;
+
+    @Column(name = "owner", nullable = false, length = 36)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public WeeklyGenerationClaim() {
+    }
+
+    public WeeklyGenerationClaim(Long userId, LocalDate weekStart) {
+        this.userId = userId;
+        this.weekStart = weekStart;
+    }
+
+    public void take(String owner, LocalDateTime expiresAt) {
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isActive(LocalDateTime now) {
+        return expiresAt != null && expiresAt.isAfter(now);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+}
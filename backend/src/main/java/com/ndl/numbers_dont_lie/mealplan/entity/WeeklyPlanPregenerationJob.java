@@ -0,0 +1,131 @@
+package com.ndl.numbers_dont_lie.mealplan.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One nightly pre-generation job: "build the weekly plan starting weekStart for userId".
+ *
+ * Design intent:
+ * - Rows are the durable work queue of the scheduler, so a run interrupted by a restart
+ *   resumes where it stopped instead of starting over
+ * - One row per (userId, weekStart); DONE rows make re-runs for the same week no-ops
+ * - attempts bounds retries of failing users so one broken profile cannot burn the AI budget;
+ *   it is counted when a worker claims the job, so a job that crashes its worker counts too
+ * - RUNNING is a lease: updatedAt is when it was claimed, and a RUNNING row older than the
+ *   lease is claimable again while attempts are left
+ */
+@Entity
+@Table(name = "weekly_plan_pregeneration_jobs",
+    uniqueConstraints = @UniqueConstraint(name = "uk_weekly_plan_pregeneration_job",
+        columnNames = {"user_id", "week_start"}),
+    indexes = @Index(name = "idx_weekly_plan_pregeneration_week_status", columnList = "week_start, status"))
+public class WeeklyPlanPregenerationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "week_start", nullable = false)
+    private LocalDate weekStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16, nullable = false)
+    private PregenerationStatus status = PregenerationStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "version_id")
+    private Long versionId;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public WeeklyPlanPregenerationJob() {
+    }
+
+    public WeeklyPlanPregenerationJob(Long userId, LocalDate weekStart) {
+        this.userId = userId;
+        this.weekStart = weekStart;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public void markDone(Long versionId) {
+        status = PregenerationStatus.DONE;
+        this.versionId = versionId;
+        lastError = null;
+    }
+
+    public void markSkipped(String reason) {
+        status = PregenerationStatus.SKIPPED;
+        lastError = truncate(reason);
+    }
+
+    public void markFailed(String error) {
+        status = PregenerationStatus.FAILED;
+        lastError = truncate(error);
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public PregenerationStatus getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Long getVersionId() {
+        return versionId;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
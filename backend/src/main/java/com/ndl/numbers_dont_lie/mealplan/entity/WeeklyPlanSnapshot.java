@@ -0,0 +1,105 @@
+package com.ndl.numbers_dont_lie.mealplan.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Materialized read model of GET /api/meal-plans/week.
+ *
+ * Design intent:
+ * - One row per (userId, weekStart, versionId) holding the fully serialized WeeklyPlanResponse
+ * - Served as raw bytes: a hit costs one indexed lookup, no entity hydration, no Jackson tree building
+ * - Versions are immutable snapshots, so a row stays valid until a meal of that version is edited
+ * - Meal edits delete the rows of the affected version; the next read rebuilds them
+ * - ETag is a strong validator (SHA-256 of the payload)
+ */
+@Entity
+@Table(name = "weekly_plan_snapshots",
+    uniqueConstraints = @UniqueConstraint(name = "uk_weekly_plan_snapshot_key",
+        columnNames = {"user_id", "week_start", "version_id"}),
+    indexes = @Index(name = "idx_weekly_plan_snapshot_version", columnList = "version_id"))
+public class WeeklyPlanSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "week_start", nullable = false)
+    private LocalDate weekStart;
+
+    @Column(name = "version_id", nullable = false)
+    private Long versionId;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "bytea")
+    private byte[] payload;
+
+    @Column(name = "etag", nullable = false, length = 80)
+    private String etag;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public WeeklyPlanSnapshot() {
+    }
+
+    public WeeklyPlanSnapshot(Long userId, LocalDate weekStart, Long versionId) {
+        this.userId = userId;
+        this.weekStart = weekStart;
+        this.versionId = versionId;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public Long getVersionId() {
+        return versionId;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
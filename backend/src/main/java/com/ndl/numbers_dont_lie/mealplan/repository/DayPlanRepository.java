@@ -1,15 +1,24 @@
 package com.ndl.numbers_dont_lie.mealplan.repository;
 
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanListRow;
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
 import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DayPlanRepository extends JpaRepository<DayPlan, Long> {
@@ -105,6 +114,18 @@ public interface DayPlanRepository extends JpaRepository<DayPlan, Long> {
 			@Param("startDate") LocalDate startDate,
 			@Param("endDate") LocalDate endDate);
 
+	@Query("SELECT DISTINCT dp FROM DayPlan dp LEFT JOIN FETCH dp.meals WHERE dp.id IN :ids")
+	List<DayPlan> findByIdInWithMeals(@Param("ids") Collection<Long> ids);
+
+	/**
+	 * Keyset page of day plan ids from a date on (nightly nutrition reconciliation).
+	 */
+	@Query("SELECT dp.id FROM DayPlan dp WHERE dp.date >= :fromDate AND dp.id > :afterId ORDER BY dp.id ASC")
+	List<Long> findIdsFromDateAfterId(
+			@Param("fromDate") LocalDate fromDate,
+			@Param("afterId") Long afterId,
+			Pageable pageable);
+
 	/**
 	 * Find a day plan for a specific meal plan and date, with meals eagerly loaded.
 	 */
@@ -126,4 +147,89 @@ public interface DayPlanRepository extends JpaRepository<DayPlan, Long> {
 	Optional<DayPlan> findByMealPlanVersionIdAndDateWithMeals(
 			@Param("versionId") Long versionId,
 			@Param("date") LocalDate date);
+
+	/**
+	 * Version/revision stamps of day plans in a date range (no meals loaded).
+	 * Used to derive ETags before doing any heavy work.
+	 */
+	@Query("SELECT new com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp(dp.id, v.id, dp.revision) " +
+		   "FROM DayPlan dp " +
+		   "JOIN dp.mealPlanVersion v " +
+		   "JOIN v.mealPlan p " +
+		   "WHERE dp.userId = :userId AND p.duration = :duration AND dp.date BETWEEN :startDate AND :endDate " +
+		   "ORDER BY dp.id ASC")
+	List<DayPlanStamp> findStampsByUserIdAndDateRangeAndDuration(
+			@Param("userId") Long userId,
+			@Param("startDate") LocalDate startDate,
+			@Param("endDate") LocalDate endDate,
+			@Param("duration") PlanDuration duration);
+
+	/**
+	 * Version/revision stamp of the day plan owning a meal (no meals loaded).
+	 */
+	@Query("SELECT new com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp(dp.id, v.id, dp.revision) " +
+		   "FROM Meal m " +
+		   "JOIN m.dayPlan dp " +
+		   "JOIN dp.mealPlanVersion v " +
+		   "WHERE m.id = :mealId")
+	List<DayPlanStamp> findStampsByMealId(@Param("mealId") Long mealId);
+
+	/**
+	 * Forward-only cursor over the day plans of a date range (no meals loaded), ordered by date and
+	 * newest first within a date. Must be consumed inside a transaction and closed.
+	 */
+	@QueryHints({
+		@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "64"),
+		@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+	})
+	@Query("SELECT new com.ndl.numbers_dont_lie.mealplan.dto.DayPlanListRow(dp.id, dp.date, dp.shoppingList) " +
+		   "FROM DayPlan dp " +
+		   "JOIN dp.mealPlanVersion v " +
+		   "JOIN v.mealPlan p " +
+		   "WHERE dp.userId = :userId AND p.duration = :duration AND dp.date BETWEEN :startDate AND :endDate " +
+		   "ORDER BY dp.date ASC, dp.id DESC")
+	Stream<DayPlanListRow> streamListRowsByUserIdAndDateRange(
+			@Param("userId") Long userId,
+			@Param("startDate") LocalDate startDate,
+			@Param("endDate") LocalDate endDate,
+			@Param("duration") PlanDuration duration);
+
+	/**
+	 * Store a materialized shopping list built on read, unless the day was edited meanwhile
+	 * (revision moved on); the next read then rebuilds it from the committed meals. Does not bump
+	 * the lock version: it only fills a null list, and an edit that loaded the day before holds
+	 * null too, skips its delta and at most drops the fill on flush.
+	 */
+	@Modifying
+	@Query("UPDATE DayPlan dp SET dp.shoppingList = :shoppingList " +
+		   "WHERE dp.id = :id AND COALESCE(dp.revision, 0) = :revision")
+	int storeShoppingList(
+			@Param("id") Long id,
+			@Param("revision") Long revision,
+			@Param("shoppingList") String shoppingList);
+
+	/**
+	 * Bump the revision and drop the materialized shopping list and nutrition totals of every day
+	 * plan with a meal of the recipe (its ingredients changed). Moves the version-derived ETags of
+	 * those days on every instance, makes a shopping-list build that read the old revision skip its
+	 * store, and makes the next summary recompute the totals. VERSIONED bumps the lock version, so
+	 * a meal edit that loaded one of those days before fails instead of flushing its stale list.
+	 */
+	@Modifying
+	@Query("UPDATE VERSIONED DayPlan dp SET dp.revision = COALESCE(dp.revision, 0) + 1, dp.shoppingList = NULL, " +
+		   "dp.totalCalories = NULL, dp.totalProtein = NULL, dp.totalCarbs = NULL, dp.totalFats = NULL, " +
+		   "dp.estimatedMeals = NULL " +
+		   "WHERE dp.id IN (SELECT m.dayPlan.id FROM Meal m WHERE m.recipeId = :recipeId)")
+	int markModifiedByRecipeId(@Param("recipeId") String recipeId);
+
+	/**
+	 * Store backfilled nutrition totals, unless another writer stored totals first.
+	 */
+	@Modifying
+	@Query("UPDATE DayPlan dp SET dp.totalCalories = :calories, dp.totalProtein = :protein, " +
+		   "dp.totalCarbs = :carbs, dp.totalFats = :fats, dp.estimatedMeals = :estimated " +
+		   "WHERE dp.id = :id AND dp.totalCalories IS NULL")
+	int storeNutritionTotals(@Param("id") Long id, @Param("calories") double calories,
+							 @Param("protein") double protein, @Param("carbs") double carbs,
+							 @Param("fats") double fats, @Param("estimated") int estimated);
 }
@@ -17,10 +17,26 @@ public interface MealPlanRepository extends JpaRepository<MealPlan, Long> {
     
     List<MealPlan> findByUserId(Long userId);
 
+    /**
+     * Plans of a user with their current version loaded, usable outside a transaction.
+     */
+    @Query("SELECT p FROM MealPlan p LEFT JOIN FETCH p.currentVersion WHERE p.userId = :userId")
+    List<MealPlan> findByUserIdWithCurrentVersion(@Param("userId") Long userId);
+
+    /**
+     * Plan owning a version, with its current version loaded.
+     */
+    @Query("SELECT p FROM MealPlan p LEFT JOIN FETCH p.currentVersion " +
+           "WHERE p.id = (SELECT v.mealPlan.id FROM MealPlanVersion v WHERE v.id = :versionId)")
+    Optional<MealPlan> findByVersionIdWithCurrentVersion(@Param("versionId") Long versionId);
+
     Optional<MealPlan> findFirstByUserId(Long userId);
 
     Optional<MealPlan> findTopByUserIdAndDurationOrderByIdDesc(Long userId, PlanDuration duration);
 
+    @Query("SELECT v.id FROM MealPlan p JOIN p.currentVersion v WHERE p.userId = :userId AND p.duration = :duration ORDER BY v.id")
+    List<Long> findCurrentVersionIds(@Param("userId") Long userId, @Param("duration") PlanDuration duration);
+
     @Modifying
     @Query("UPDATE MealPlan p SET p.currentVersion = (SELECT v FROM MealPlanVersion v WHERE v.id = :versionId) WHERE p.id = :planId")
     int updateCurrentVersion(@Param("planId") Long planId, @Param("versionId") Long versionId);
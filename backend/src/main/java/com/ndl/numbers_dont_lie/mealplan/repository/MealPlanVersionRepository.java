@@ -2,8 +2,11 @@ package com.ndl.numbers_dont_lie.mealplan.repository;
 
 import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -12,4 +15,10 @@ public interface MealPlanVersionRepository extends JpaRepository<MealPlanVersion
     List<MealPlanVersion> findByMealPlanIdOrderByVersionNumberDesc(Long mealPlanId);
 
     MealPlanVersion findByMealPlanIdAndVersionNumber(Long mealPlanId, Integer versionNumber);
+
+    /**
+     * Users who generated, regenerated or restored any plan since the given time ("recently active").
+     */
+    @Query("SELECT DISTINCT v.mealPlan.userId FROM MealPlanVersion v WHERE v.createdAt >= :since")
+    List<Long> findUserIdsWithVersionsCreatedSince(@Param("since") LocalDateTime since);
 }
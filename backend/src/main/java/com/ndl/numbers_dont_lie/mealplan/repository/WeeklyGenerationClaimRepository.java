@@ -0,0 +1,30 @@
+package com.ndl.numbers_dont_lie.mealplan.repository;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyGenerationClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface WeeklyGenerationClaimRepository extends JpaRepository<WeeklyGenerationClaim, Long> {
+
+	Optional<WeeklyGenerationClaim> findByUserIdAndWeekStart(Long userId, LocalDate weekStart);
+
+	/**
+	 * Release a lease, only if it is still held by the given owner.
+	 */
+	@Modifying
+	@Transactional
+	@Query("DELETE FROM WeeklyGenerationClaim c " +
+		   "WHERE c.userId = :userId AND c.weekStart = :weekStart AND c.owner = :owner")
+	int release(
+			@Param("userId") Long userId,
+			@Param("weekStart") LocalDate weekStart,
+			@Param("owner") String owner);
+}
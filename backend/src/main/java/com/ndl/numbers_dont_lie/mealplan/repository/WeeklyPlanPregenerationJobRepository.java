@@ -0,0 +1,77 @@
+package com.ndl.numbers_dont_lie.mealplan.repository;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanPregenerationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WeeklyPlanPregenerationJobRepository extends JpaRepository<WeeklyPlanPregenerationJob, Long> {
+
+	@Query("SELECT j.userId FROM WeeklyPlanPregenerationJob j WHERE j.weekStart = :weekStart")
+	List<Long> findUserIdsByWeekStart(@Param("weekStart") LocalDate weekStart);
+
+	/**
+	 * Jobs still to do for a week, all with attempts left: never started, failed, or RUNNING with
+	 * an expired lease (the worker died or hung before finishing).
+	 */
+	@Query("SELECT j FROM WeeklyPlanPregenerationJob j " +
+		   "WHERE j.weekStart = :weekStart AND j.attempts < :maxAttempts " +
+		   "AND (j.status IN (com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.PENDING, " +
+		   "com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.FAILED) " +
+		   "OR (j.status = com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.RUNNING " +
+		   "AND j.updatedAt < :staleBefore)) " +
+		   "ORDER BY j.id")
+	List<WeeklyPlanPregenerationJob> findRunnable(
+			@Param("weekStart") LocalDate weekStart,
+			@Param("maxAttempts") int maxAttempts,
+			@Param("staleBefore") LocalDateTime staleBefore);
+
+	/**
+	 * Atomically take a runnable job: set it RUNNING and count the attempt before any work starts.
+	 * Returns 0 when another worker or instance took it first or it has no attempts left.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE WeeklyPlanPregenerationJob j " +
+		   "SET j.status = com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.RUNNING, " +
+		   "j.attempts = j.attempts + 1, j.updatedAt = :now " +
+		   "WHERE j.id = :id AND j.attempts < :maxAttempts " +
+		   "AND (j.status IN (com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.PENDING, " +
+		   "com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.FAILED) " +
+		   "OR (j.status = com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.RUNNING " +
+		   "AND j.updatedAt < :staleBefore))")
+	int claim(
+			@Param("id") Long id,
+			@Param("maxAttempts") int maxAttempts,
+			@Param("staleBefore") LocalDateTime staleBefore,
+			@Param("now") LocalDateTime now);
+
+	/**
+	 * Close RUNNING jobs whose lease expired on their last allowed attempt, so they are not left
+	 * open forever.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE WeeklyPlanPregenerationJob j " +
+		   "SET j.status = com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.FAILED, " +
+		   "j.lastError = 'Lease expired on the last attempt', j.updatedAt = :now " +
+		   "WHERE j.weekStart = :weekStart " +
+		   "AND j.status = com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus.RUNNING " +
+		   "AND j.updatedAt < :staleBefore AND j.attempts >= :maxAttempts")
+	int failAbandoned(
+			@Param("weekStart") LocalDate weekStart,
+			@Param("maxAttempts") int maxAttempts,
+			@Param("staleBefore") LocalDateTime staleBefore,
+			@Param("now") LocalDateTime now);
+
+	long countByWeekStartAndStatus(LocalDate weekStart, PregenerationStatus status);
+}
@@ -0,0 +1,39 @@
+package com.ndl.numbers_dont_lie.mealplan.repository;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WeeklyPlanSnapshotRepository extends JpaRepository<WeeklyPlanSnapshot, Long> {
+
+	Optional<WeeklyPlanSnapshot> findByUserIdAndWeekStartAndVersionId(Long userId, LocalDate weekStart, Long versionId);
+
+	/**
+	 * Find snapshots for a week whose version is still the current version of one of the user's weekly plans.
+	 * Restoring an older version makes its snapshot valid again without a rebuild.
+	 */
+	@Query("SELECT s FROM WeeklyPlanSnapshot s " +
+		   "WHERE s.userId = :userId AND s.weekStart = :weekStart AND s.versionId IN (" +
+		   "SELECT p.currentVersion.id FROM MealPlan p " +
+		   "WHERE p.userId = :userId AND p.duration = com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration.WEEKLY) " +
+		   "ORDER BY s.id DESC")
+	List<WeeklyPlanSnapshot> findCurrentByUserIdAndWeekStart(
+			@Param("userId") Long userId,
+			@Param("weekStart") LocalDate weekStart);
+
+	@Modifying
+	@Query("DELETE FROM WeeklyPlanSnapshot s WHERE s.versionId = :versionId")
+	int deleteByVersionId(@Param("versionId") Long versionId);
+
+	@Modifying
+	@Query("DELETE FROM WeeklyPlanSnapshot s WHERE s.userId = :userId")
+	int deleteByUserId(@Param("userId") Long userId);
+}
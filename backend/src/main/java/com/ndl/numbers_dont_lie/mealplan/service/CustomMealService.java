@@ -10,6 +10,7 @@ import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
 import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
 import com.ndl.numbers_dont_lie.mealplan.repository.MealRepository;
 import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.shoppinglist.service.DayShoppingListService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -41,14 +42,26 @@ public class CustomMealService {
     private final DayPlanRepository dayPlanRepository;
     private final MealRepository mealRepository;
     private final MealPlanRepository mealPlanRepository;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final MealPlanETagService mealPlanETagService;
+    private final DayPlanNutritionService dayPlanNutritionService;
+    private final DayShoppingListService dayShoppingListService;
     
     public CustomMealService(
             DayPlanRepository dayPlanRepository,
             MealRepository mealRepository,
-            MealPlanRepository mealPlanRepository) {
+            MealPlanRepository mealPlanRepository,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            MealPlanETagService mealPlanETagService,
+            DayPlanNutritionService dayPlanNutritionService,
+            DayShoppingListService dayShoppingListService) {
         this.dayPlanRepository = dayPlanRepository;
         this.mealRepository = mealRepository;
         this.mealPlanRepository = mealPlanRepository;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.dayPlanNutritionService = dayPlanNutritionService;
+        this.dayShoppingListService = dayShoppingListService;
     }
     
     /**
@@ -142,9 +155,13 @@ public class CustomMealService {
         
         // Append to DayPlan
         dayPlan.getMeals().add(customMeal);
+        dayPlanNutritionService.afterMealChange(customMeal);
+        dayShoppingListService.afterMealChange(customMeal);
         
         // Persist (cascade via DayPlan)
         mealRepository.save(customMeal);
+        weeklyPlanReadModelService.evictForDayPlan(dayPlan);
+        mealPlanETagService.dayPlanModified(dayPlan);
         
         logger.info("[CUSTOM_MEAL] Added custom meal '{}' id={} userId={} date={}", 
             request.getName(), customMeal.getId(), userId, request.getDate());
@@ -298,12 +315,16 @@ public class CustomMealService {
             throw new IllegalArgumentException("User not authorized to delete this meal");
         }
         
-        // Remove from DayPlan
+        // Remove from DayPlan (tags first, while the meal is still listed)
         DayPlan dayPlan = meal.getDayPlan();
+        mealPlanETagService.dayPlanModified(dayPlan);
+        dayPlanNutritionService.beforeMealChange(meal);
+        dayShoppingListService.beforeMealChange(meal);
         dayPlan.getMeals().remove(meal);
         
         // Delete from database
         mealRepository.delete(meal);
+        weeklyPlanReadModelService.evictForDayPlan(dayPlan);
         
         logger.info("[CUSTOM_MEAL] Deleted custom meal id={} userId={}", mealId, userId);
     }
@@ -1,9 +1,13 @@
 package com.ndl.numbers_dont_lie.mealplan.service;
 
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
 import com.ndl.numbers_dont_lie.ai.AiStrategyService;
+import com.ndl.numbers_dont_lie.ai.GroqClient;
 import com.ndl.numbers_dont_lie.ai.RecipeGenerationService;
 import com.ndl.numbers_dont_lie.ai.RecipeRetrievalService;
+import com.ndl.numbers_dont_lie.ai.service.AiAvailabilityService;
 import com.ndl.numbers_dont_lie.ai.dto.*;
+import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
 import com.ndl.numbers_dont_lie.entity.UserEntity;
 import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
@@ -28,6 +32,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * STEP 5.1: DayPlan Assembly Service
@@ -86,6 +91,7 @@ public class DayPlanAssemblerService {
     private final ProfileRepository profileRepository;
     private final NutritionalPreferencesRepository nutritionalPreferencesRepository;
     private final RecipeRepository recipeRepository;
+    private final AiAvailabilityService aiAvailabilityService;
     
     // Default meal times (can be customized per user in future)
     private static final LocalTime DEFAULT_BREAKFAST_TIME = LocalTime.of(8, 0);
@@ -100,7 +106,8 @@ public class DayPlanAssemblerService {
             UserRepository userRepository,
             ProfileRepository profileRepository,
             NutritionalPreferencesRepository nutritionalPreferencesRepository,
-            RecipeRepository recipeRepository) {
+            RecipeRepository recipeRepository,
+            AiAvailabilityService aiAvailabilityService) {
         this.aiStrategyService = aiStrategyService;
         this.recipeGenerationService = recipeGenerationService;
         this.recipeRetrievalService = recipeRetrievalService;
@@ -108,6 +115,7 @@ public class DayPlanAssemblerService {
         this.profileRepository = profileRepository;
         this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
         this.recipeRepository = recipeRepository;
+        this.aiAvailabilityService = aiAvailabilityService;
     }
     
     /**
@@ -249,6 +257,12 @@ public class DayPlanAssemblerService {
         int successCount = 0;
         int failureCount = 0;
         
+        // DB selection runs slot by slot (it updates usedRecipeTitles/excludeRecipeIds);
+        // AI fallbacks are collected and generated together in one batched call, then joined
+        // in slot order. While AI is disabled or its recipe circuit is open, fallbacks stay DB-only
+        boolean aiAllowed = aiAvailabilityService.isAiCallAllowed(AiPromptType.RECIPE);
+        List<AiMealStructureResult.MealSlot> aiSlots = new ArrayList<>();
+        List<RecipeGenerationRequest> aiRequests = new ArrayList<>();
         for (AiMealStructureResult.MealSlot slot : mealSlots) {
             try {
                 // Respect snack suppression: if snackCount is 0, skip snack slots entirely
@@ -257,9 +271,7 @@ public class DayPlanAssemblerService {
                     continue;
                 }
 
-                Meal meal = generateMealForSlot(
-                    user, 
-                    strategy, 
+                Meal meal = selectDatabaseMealForSlot(
                     slot, 
                     constraints, 
                     dayPlan, 
@@ -274,18 +286,47 @@ public class DayPlanAssemblerService {
                     successCount++;
                     logger.info("Successfully generated meal: {} (index {})", 
                         slot.getMealType(), slot.getIndex());
+                } else if (!aiAllowed) {
+                    generatedMeals.add(dbOnlyMealForSlot(slot, constraints, dayPlan, date, zoneId, usedRecipeTitles));
+                    successCount++;
+                } else {
+                    aiSlots.add(slot);
+                    aiRequests.add(buildAiRecipeRequest(user, strategy, slot, constraints));
                 }
             } catch (Exception e) {
-                logger.error("Failed to generate meal for slot: {} (index {}). Error: {}", 
-                    slot.getMealType(), slot.getIndex(), e.getMessage(), e);
-                
-                // Create placeholder meal on failure
-                Meal placeholderMeal = createPlaceholderMeal(slot, dayPlan, date, zoneId);
-                generatedMeals.add(placeholderMeal);
+                generatedMeals.add(placeholderAfterFailure(slot, dayPlan, date, zoneId, e));
+                failureCount++;
+            }
+        }
+
+        RecipeGenerationService.RecipeBatch aiBatch = recipeGenerationService.generateBatchAsync(aiRequests);
+        List<CompletableFuture<GeneratedRecipe>> aiRecipes = aiBatch.recipes();
+        for (int i = 0; i < aiSlots.size(); i++) {
+            AiMealStructureResult.MealSlot slot = aiSlots.get(i);
+            try {
+                GeneratedRecipe generatedRecipe = GroqClient.await(aiRecipes.get(i));
+                generatedMeals.add(finishAiRecipeForSlot(
+                    generatedRecipe, user, slot, constraints, dayPlan, date, zoneId, usedRecipeTitles));
+                successCount++;
+                logger.info("Successfully generated meal: {} (index {})", 
+                    slot.getMealType(), slot.getIndex());
+            } catch (AiClientException e) {
+                logger.warn("[RECIPE_FALLBACK] AI unavailable for {} ({}), using DB-only path",
+                    slot.getMealType(), e.getMessage());
+                generatedMeals.add(dbOnlyMealForSlot(slot, constraints, dayPlan, date, zoneId, usedRecipeTitles));
+                failureCount++;
+            } catch (Exception e) {
+                generatedMeals.add(placeholderAfterFailure(slot, dayPlan, date, zoneId, e));
                 failureCount++;
             }
         }
         
+        if (!aiSlots.isEmpty()) {
+            // The per-slot function-calling contract costs up to two calls per fallback slot
+            logger.info("[LLM_CALLS] date={} aiSlots={} llmCalls={} (per-slot generation: up to {})",
+                date, aiSlots.size(), aiBatch.llmCalls(), aiSlots.size() * 2);
+        }
+
         // Step 5: Sort meals by planned time
         generatedMeals.sort(Comparator.comparing(Meal::getPlannedTime));
         
@@ -366,16 +407,14 @@ public class DayPlanAssemblerService {
      * Generate a single meal for a meal slot.
      * 
      * Flow:
-     * 1. Build recipe query from slot and user preferences
-     * 2. Retrieve similar recipes (RAG - STEP 4.3.1)
-     * 3. Filter retrieved recipes based on user preferences (allergies, dislikes, dietary)
-     * 4. Build recipe generation request
-     * 5. Generate recipe with AI (STEP 4.3.2)
-     * 6. Convert to Meal entity
+     * 1. Try a database recipe ({@link #selectDatabaseMealForSlot})
+     * 2. Otherwise prepare the AI fallback ({@link #buildAiRecipeRequest}):
+     *    build recipe query, retrieve similar recipes (RAG - STEP 4.3.1), filter them by user
+     *    preferences and build the generation request; the day's requests are generated
+     *    together with AI (STEP 4.3.2, {@link RecipeGenerationService#generateBatchAsync})
+     * 3. Filter the generated recipe and convert it to a Meal entity ({@link #finishAiRecipeForSlot})
      */
-        private Meal generateMealForSlot(
-            UserEntity user,
-            AiStrategyResult strategy,
+    private Meal selectDatabaseMealForSlot(
             AiMealStructureResult.MealSlot slot,
             UserDietaryConstraints constraints,
             DayPlan dayPlan,
@@ -385,26 +424,34 @@ public class DayPlanAssemblerService {
             Set<String> excludeRecipeIds) {
         
         logger.debug("Generating meal for slot: {} (index {})", slot.getMealType(), slot.getIndex());
-        logger.info("[PREFERENCES] Loaded for userId={}: allergies={}, disliked={}, dietary={}, cuisines={}", 
-            user.getId(), constraints.allergies, constraints.dislikedIngredients, 
-            constraints.dietaryRestrictions, constraints.cuisinePreferences);
         
         // Step 1: Try to select from database first
         logger.info("[RECIPE_SELECTION] Attempting to select DB recipe for {}", slot.getMealType());
         Recipe dbRecipe = selectDatabaseRecipeForSlot(slot, constraints, usedRecipeTitles, Double.valueOf(slot.getCalorieTarget()), excludeRecipeIds);
-        if (dbRecipe != null) {
-            logger.info("[RECIPE_SELECTION] SUCCESS - Selected DB recipe: {} (stableId={})", dbRecipe.getTitle(), dbRecipe.getStableId());
-            if (excludeRecipeIds != null && dbRecipe.getStableId() != null) {
-                excludeRecipeIds.add(dbRecipe.getStableId());
-            }
-            GeneratedRecipe dbGenerated = convertRecipeToGeneratedRecipe(dbRecipe);
-            if (dbGenerated.getTitle() != null) {
-                usedRecipeTitles.add(dbGenerated.getTitle().toLowerCase());
-            }
-            return convertToMeal(dbGenerated, slot, dayPlan, date, zoneId, dbRecipe.getStableId());
+        if (dbRecipe == null) {
+            return null;
         }
+        logger.info("[RECIPE_SELECTION] SUCCESS - Selected DB recipe: {} (stableId={})", dbRecipe.getTitle(), dbRecipe.getStableId());
+        if (excludeRecipeIds != null && dbRecipe.getStableId() != null) {
+            excludeRecipeIds.add(dbRecipe.getStableId());
+        }
+        GeneratedRecipe dbGenerated = convertRecipeToGeneratedRecipe(dbRecipe);
+        if (dbGenerated.getTitle() != null) {
+            usedRecipeTitles.add(dbGenerated.getTitle().toLowerCase());
+        }
+        return convertToMeal(dbGenerated, slot, dayPlan, date, zoneId, dbRecipe.getStableId());
+    }
+
+    private RecipeGenerationRequest buildAiRecipeRequest(
+            UserEntity user,
+            AiStrategyResult strategy,
+            AiMealStructureResult.MealSlot slot,
+            UserDietaryConstraints constraints) {
 
         logger.warn("[RECIPE_FALLBACK] No suitable DB recipe found. Falling back to AI for {}", slot.getMealType());
+        logger.info("[PREFERENCES] Loaded for userId={}: allergies={}, disliked={}, dietary={}, cuisines={}", 
+            user.getId(), constraints.allergies, constraints.dislikedIngredients, 
+            constraints.dietaryRestrictions, constraints.cuisinePreferences);
 
         // Step 2: Build recipe query for RAG (AI fallback)
         RecipeQuery query = buildRecipeQuery(slot, constraints);
@@ -428,9 +475,18 @@ public class DayPlanAssemblerService {
         request.setDietaryPreferences(constraints.dietaryPreferences);
         request.setTargetCalories(slot.getCalorieTarget());
         request.setServings(1); // Default to 1 serving
+        return request;
+    }
 
-        // Step 5: Generate recipe (STEP 4.3.2)
-        GeneratedRecipe generatedRecipe = recipeGenerationService.generate(request);
+    private Meal finishAiRecipeForSlot(
+            GeneratedRecipe generatedRecipe,
+            UserEntity user,
+            AiMealStructureResult.MealSlot slot,
+            UserDietaryConstraints constraints,
+            DayPlan dayPlan,
+            LocalDate date,
+            ZoneId zoneId,
+            Set<String> usedRecipeTitles) {
         logger.debug("Generated recipe: {}", generatedRecipe.getTitle());
 
         // Step 5.5: EXPLICIT RECIPE FILTERING - Apply strict constraints to generated recipe
@@ -449,6 +505,42 @@ public class DayPlanAssemblerService {
         // Step 6: Convert to Meal entity
         return convertToMeal(filteredRecipe, slot, dayPlan, date, zoneId, null);
     }
+
+    /**
+     * Degraded path when AI cannot be used: the looser safe DB search, else a placeholder.
+     */
+    private Meal dbOnlyMealForSlot(
+            AiMealStructureResult.MealSlot slot,
+            UserDietaryConstraints constraints,
+            DayPlan dayPlan,
+            LocalDate date,
+            ZoneId zoneId,
+            Set<String> usedRecipeTitles) {
+        Recipe safeDbRecipe = findSafeDatabaseRecipe(
+            slot.getMealType(), constraints, Double.valueOf(slot.getCalorieTarget()), usedRecipeTitles);
+        if (safeDbRecipe == null) {
+            logger.warn("[RECIPE_FALLBACK] No safe DB recipe for {} without AI, using placeholder", slot.getMealType());
+            return createPlaceholderMeal(slot, dayPlan, date, zoneId);
+        }
+        GeneratedRecipe dbGenerated = convertRecipeToGeneratedRecipe(safeDbRecipe);
+        if (dbGenerated.getTitle() != null) {
+            usedRecipeTitles.add(dbGenerated.getTitle().toLowerCase());
+        }
+        return convertToMeal(dbGenerated, slot, dayPlan, date, zoneId, safeDbRecipe.getStableId());
+    }
+
+    private Meal placeholderAfterFailure(
+            AiMealStructureResult.MealSlot slot,
+            DayPlan dayPlan,
+            LocalDate date,
+            ZoneId zoneId,
+            Exception e) {
+        logger.error("Failed to generate meal for slot: {} (index {}). Error: {}", 
+            slot.getMealType(), slot.getIndex(), e.getMessage(), e);
+        
+        // Create placeholder meal on failure
+        return createPlaceholderMeal(slot, dayPlan, date, zoneId);
+    }
     
     /**
      * Apply explicit dietary constraint filtering to a generated recipe.
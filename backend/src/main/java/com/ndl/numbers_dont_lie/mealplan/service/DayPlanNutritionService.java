@@ -0,0 +1,213 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains the running nutrition totals stored on DayPlan.
+ *
+ * Design intent:
+ * - Summaries read DayPlan totals in O(1) per day instead of re-aggregating every meal
+ * - Meal edits apply a delta: subtract the meal's contribution before the change, add it after;
+ *   the delta joins the caller's transaction, so totals commit or roll back with the edit
+ * - Days without totals (created before this column existed, generated without them, or
+ *   cleared because a recipe's ingredients changed) are computed in full on first read and
+ *   stored in a write transaction of their own; summary reads run without a transaction
+ *   (open-in-view is off), so entity changes alone would never be flushed
+ * - A nightly reconciliation recomputes recent days and repairs any drift
+ *
+ * Meal moves only swap planned times within a day and do not change totals.
+ */
+@Service
+public class DayPlanNutritionService {
+    private static final Logger logger = LoggerFactory.getLogger(DayPlanNutritionService.class);
+
+    private static final double DRIFT_TOLERANCE = 0.5;
+
+    private final MealNutritionEngine mealNutritionEngine;
+    private final DayPlanRepository dayPlanRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate backfillTemplate;
+
+    @Value("${app.mealplan.nutrition-reconcile.days-back:60}")
+    private int reconcileDaysBack;
+
+    @Value("${app.mealplan.nutrition-reconcile.batch-size:200}")
+    private int reconcileBatchSize;
+
+    public DayPlanNutritionService(
+            MealNutritionEngine mealNutritionEngine,
+            DayPlanRepository dayPlanRepository,
+            PlatformTransactionManager transactionManager) {
+        this.mealNutritionEngine = mealNutritionEngine;
+        this.dayPlanRepository = dayPlanRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.backfillTemplate = new TransactionTemplate(transactionManager);
+        this.backfillTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Totals of a day as {kcal, protein, carbs, fats}; computed and stored on the entity if missing.
+     */
+    public double[] totalsFor(DayPlan dayPlan) {
+        double[] totals = dayPlan.getNutritionTotals();
+        if (totals != null) {
+            return totals;
+        }
+        ensureTotals(List.of(dayPlan));
+        return dayPlan.getNutritionTotals();
+    }
+
+    /**
+     * Make sure every day has totals, loading the recipes of all days missing them with one query,
+     * and store the computed totals of persisted days.
+     */
+    public void ensureTotals(Collection<DayPlan> dayPlans) {
+        List<DayPlan> missing = new ArrayList<>();
+        for (DayPlan dayPlan : dayPlans) {
+            if (!dayPlan.hasNutritionTotals()) {
+                missing.add(dayPlan);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        mealNutritionEngine.preload(missing);
+        for (DayPlan dayPlan : missing) {
+            recompute(dayPlan);
+        }
+        storeBackfill(missing);
+    }
+
+    /**
+     * Full recomputation from the day's meals (generation, backfill, reconciliation).
+     */
+    public double[] recompute(DayPlan dayPlan) {
+        double[] totals = MealNutritionEngine.newTotals();
+        int estimated = 0;
+        if (dayPlan.getMeals() != null && !dayPlan.getMeals().isEmpty()) {
+            mealNutritionEngine.preload(List.of(dayPlan));
+            for (Meal meal : dayPlan.getMeals()) {
+                if (!mealNutritionEngine.accumulateMeal(meal, totals)) {
+                    estimated++;
+                }
+            }
+        }
+        dayPlan.setNutritionTotals(totals, estimated);
+        return totals;
+    }
+
+    /**
+     * Call before a meal is removed from its day or changed in place (recipe, calories).
+     */
+    public void beforeMealChange(Meal meal) {
+        applyDelta(meal, -1);
+    }
+
+    /**
+     * Call after a meal was added to its day or changed in place.
+     */
+    public void afterMealChange(Meal meal) {
+        applyDelta(meal, 1);
+    }
+
+    /**
+     * Nightly reconciliation of recent days: recompute and repair totals that drifted.
+     */
+    @Scheduled(cron = "${app.mealplan.nutrition-reconcile.cron:0 30 3 * * *}")
+    public void reconcile() {
+        LocalDate fromDate = LocalDate.now().minusDays(reconcileDaysBack);
+        long startedAt = System.currentTimeMillis();
+        int checked = 0;
+        int repaired = 0;
+        Long afterId = 0L;
+        while (true) {
+            List<Long> ids = dayPlanRepository.findIdsFromDateAfterId(
+                fromDate, afterId, PageRequest.of(0, Math.max(1, reconcileBatchSize)));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer batchRepaired = transactionTemplate.execute(status -> {
+                int fixed = 0;
+                for (DayPlan dayPlan : dayPlanRepository.findByIdInWithMeals(ids)) {
+                    double[] stored = dayPlan.getNutritionTotals();
+                    double[] actual = recompute(dayPlan);
+                    if (stored == null || drifted(stored, actual)) {
+                        fixed++;
+                    }
+                }
+                return fixed;
+            });
+            checked += ids.size();
+            repaired += batchRepaired != null ? batchRepaired : 0;
+            afterId = ids.get(ids.size() - 1);
+        }
+        logger.info("[DAY_NUTRITION] Reconciliation checked={} repaired={} since={} durationMs={}",
+            checked, repaired, fromDate, System.currentTimeMillis() - startedAt);
+    }
+
+    // ========== Private ==========
+
+    private void storeBackfill(List<DayPlan> dayPlans) {
+        try {
+            Integer stored = backfillTemplate.execute(status -> {
+                int count = 0;
+                for (DayPlan dayPlan : dayPlans) {
+                    if (dayPlan.getId() == null) {
+                        continue;
+                    }
+                    double[] totals = dayPlan.getNutritionTotals();
+                    count += dayPlanRepository.storeNutritionTotals(dayPlan.getId(), totals[0], totals[1],
+                        totals[2], totals[3], dayPlan.getEstimatedMeals());
+                }
+                return count;
+            });
+            logger.debug("[DAY_NUTRITION] Backfilled totals of {} day(s)", stored);
+        } catch (RuntimeException e) {
+            // Totals stay computed for this read; the next read or the reconciliation stores them
+            logger.warn("[DAY_NUTRITION] Backfilled totals not stored: {}", e.getMessage());
+        }
+    }
+
+    private void applyDelta(Meal meal, int sign) {
+        DayPlan dayPlan = meal != null ? meal.getDayPlan() : null;
+        if (dayPlan == null || !dayPlan.hasNutritionTotals()) {
+            // Not computed yet: the next read computes the full totals
+            return;
+        }
+        double[] contribution = MealNutritionEngine.newTotals();
+        mealNutritionEngine.preload(meal);
+        boolean exact = mealNutritionEngine.accumulateMeal(meal, contribution);
+
+        double[] totals = dayPlan.getNutritionTotals();
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = Math.max(0.0, totals[i] + sign * contribution[i]);
+        }
+        int estimated = Math.max(0, dayPlan.getEstimatedMeals() + (exact ? 0 : sign));
+        dayPlan.setNutritionTotals(totals, estimated);
+    }
+
+    private static boolean drifted(double[] stored, double[] actual) {
+        for (int i = 0; i < stored.length; i++) {
+            if (Math.abs(stored[i] - actual[i]) > DRIFT_TOLERANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
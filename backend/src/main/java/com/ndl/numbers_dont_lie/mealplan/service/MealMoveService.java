@@ -18,10 +18,16 @@ import java.util.Optional;
 public class MealMoveService {
     private final MealRepository mealRepository;
     private final DayPlanRepository dayPlanRepository;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final MealPlanETagService mealPlanETagService;
 
-    public MealMoveService(MealRepository mealRepository, DayPlanRepository dayPlanRepository) {
+    public MealMoveService(MealRepository mealRepository, DayPlanRepository dayPlanRepository,
+                           WeeklyPlanReadModelService weeklyPlanReadModelService,
+                           MealPlanETagService mealPlanETagService) {
         this.mealRepository = mealRepository;
         this.dayPlanRepository = dayPlanRepository;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.mealPlanETagService = mealPlanETagService;
     }
 
     @Transactional
@@ -65,6 +71,8 @@ public class MealMoveService {
         LocalDateTime tmpTime = meal.getPlannedTime();
         meal.setPlannedTime(other.getPlannedTime());
         other.setPlannedTime(tmpTime);
+        weeklyPlanReadModelService.evictForDayPlan(dayPlan);
+        mealPlanETagService.dayPlanModified(dayPlan);
 
         meals.sort(Comparator.comparing(Meal::getPlannedTime));
         return dayPlanRepository.findByIdWithMeals(dayPlan.getId()).orElse(dayPlan);
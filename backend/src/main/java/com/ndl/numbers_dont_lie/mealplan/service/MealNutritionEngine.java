@@ -0,0 +1,127 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.recipe.service.RecipeNutritionCache;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ingredient-based nutrition of meals and days.
+ *
+ * Rules:
+ * - A meal's macros come from its linked recipe's per-serving vector (RecipeNutritionCache)
+ * - Portion = plannedCalories / recipe kcal per serving (the planner sizes each meal to its slot);
+ *   1 serving when the meal has no planned calories. A linked meal's kcal therefore always equals
+ *   its plannedCalories; only the macro split comes from the recipe, not the recipe's serving size
+ * - Custom meals are not counted (unchanged from the previous aggregation)
+ * - Meals without a usable recipe fall back to plannedCalories with a 25/45/30 macro split
+ *   and mark the result as estimated
+ *
+ * Totals are written into caller-provided double[RecipeNutritionCache.VECTOR_SIZE] arrays.
+ */
+@Service
+public class MealNutritionEngine {
+
+    static final double PROTEIN_SHARE = 0.25;
+    static final double CARBS_SHARE = 0.45;
+    static final double FATS_SHARE = 0.30;
+
+    private final RecipeNutritionCache recipeNutritionCache;
+
+    public MealNutritionEngine(RecipeNutritionCache recipeNutritionCache) {
+        this.recipeNutritionCache = recipeNutritionCache;
+    }
+
+    public static double[] newTotals() {
+        return new double[RecipeNutritionCache.VECTOR_SIZE];
+    }
+
+    /**
+     * Load the recipe vectors of all meals in the given days with one query.
+     */
+    public void preload(Collection<DayPlan> dayPlans) {
+        Set<String> recipeIds = new HashSet<>();
+        for (DayPlan dayPlan : dayPlans) {
+            collectRecipeIds(dayPlan.getMeals(), recipeIds);
+        }
+        recipeNutritionCache.preload(recipeIds);
+    }
+
+    /**
+     * Load the recipe vector of a single meal.
+     */
+    public void preload(Meal meal) {
+        if (!meal.getIsCustom() && meal.getRecipeId() != null) {
+            recipeNutritionCache.preload(List.of(meal.getRecipeId()));
+        }
+    }
+
+    /**
+     * Add the nutrition of all meals of a day into totals.
+     *
+     * @return true if every counted meal was computed from its recipe (nothing estimated)
+     */
+    public boolean accumulateDay(DayPlan dayPlan, double[] totals) {
+        List<Meal> meals = dayPlan.getMeals();
+        if (meals == null || meals.isEmpty()) {
+            return true;
+        }
+        Set<String> recipeIds = new HashSet<>();
+        collectRecipeIds(meals, recipeIds);
+        recipeNutritionCache.preload(recipeIds);
+
+        boolean exact = true;
+        for (Meal meal : meals) {
+            exact &= accumulateMeal(meal, totals);
+        }
+        return exact;
+    }
+
+    /**
+     * Add the nutrition of one meal into totals (expects its recipe to be preloaded).
+     *
+     * @return false if the meal had to be estimated from its planned calories
+     */
+    public boolean accumulateMeal(Meal meal, double[] totals) {
+        if (meal.getIsCustom()) {
+            return true;
+        }
+        Integer planned = meal.getPlannedCalories();
+        if (planned == null || planned == 0) {
+            planned = meal.getCalorieTarget();
+        }
+        double plannedCalories = planned != null && planned > 0 ? planned : 0.0;
+
+        double kcalPerServing = recipeNutritionCache.perServing(meal.getRecipeId(), RecipeNutritionCache.KCAL);
+        if (kcalPerServing > 0.0) {
+            double portion = plannedCalories > 0.0 ? plannedCalories / kcalPerServing : 1.0;
+            recipeNutritionCache.accumulate(meal.getRecipeId(), portion, totals);
+            return true;
+        }
+
+        if (plannedCalories > 0.0) {
+            totals[RecipeNutritionCache.KCAL] += plannedCalories;
+            totals[RecipeNutritionCache.PROTEIN] += plannedCalories * PROTEIN_SHARE / 4.0;
+            totals[RecipeNutritionCache.CARBS] += plannedCalories * CARBS_SHARE / 4.0;
+            totals[RecipeNutritionCache.FATS] += plannedCalories * FATS_SHARE / 9.0;
+            return false;
+        }
+        return true;
+    }
+
+    private static void collectRecipeIds(List<Meal> meals, Set<String> recipeIds) {
+        if (meals == null) {
+            return;
+        }
+        for (Meal meal : meals) {
+            if (!meal.getIsCustom() && meal.getRecipeId() != null) {
+                recipeIds.add(meal.getRecipeId());
+            }
+        }
+    }
+}
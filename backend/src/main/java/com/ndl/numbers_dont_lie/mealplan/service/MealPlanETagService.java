@@ -0,0 +1,306 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET support for meal-plan, nutrition and shopping-list endpoints.
+ *
+ * Design intent:
+ * - ETags are derived from MealPlanVersion ids plus the per-DayPlan revision counter,
+ *   never from the response body, so they can be computed before any heavy work
+ * - Every input is persisted, so all instances derive the same tag for the same state and an
+ *   edit made through one instance changes the tag everywhere
+ * - A small in-memory map (userId → resource → ETag) answers repeated polls with 304 without
+ *   touching the database; it is an LRU over users and its entries expire after ttl, which
+ *   bounds how long another instance may answer 304 for a plan edited elsewhere (ttl 0 turns
+ *   the map off)
+ * - On a map miss the tag is recomputed from one light stamp query (no meals loaded)
+ * - Writes invalidate the user's entries immediately and again after the transaction completes,
+ *   so a concurrent read cannot re-cache a tag of uncommitted state
+ *
+ * Extra inputs beyond version + revision:
+ * - Nutrition-based resources include NutritionalPreferences.updatedAt (targets live there)
+ * - Recipe edits bump the revision of every day plan using the recipe ({@link #recipeModified})
+ */
+@Service
+public class MealPlanETagService {
+    private static final Logger logger = LoggerFactory.getLogger(MealPlanETagService.class);
+
+    private final DayPlanRepository dayPlanRepository;
+    private final MealPlanRepository mealPlanRepository;
+    private final NutritionalPreferencesRepository nutritionalPreferencesRepository;
+    private final int maxUsers;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Long, Map<String, Stamped>> tagsByUser;
+    private final LinkedHashMap<Long, Stamped> tagsByMeal;
+
+    private record Stamped(String tag, long storedAt) {
+    }
+
+    public MealPlanETagService(
+            DayPlanRepository dayPlanRepository,
+            MealPlanRepository mealPlanRepository,
+            NutritionalPreferencesRepository nutritionalPreferencesRepository,
+            @Value("${app.mealplan.etag.max-users:5000}") int maxUsers,
+            @Value("${app.mealplan.etag.ttl-seconds:10}") long ttlSeconds) {
+        if (maxUsers <= 0) {
+            throw new IllegalArgumentException("maxUsers must be positive");
+        }
+        this.dayPlanRepository = dayPlanRepository;
+        this.mealPlanRepository = mealPlanRepository;
+        this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
+        this.maxUsers = maxUsers;
+        this.ttlMillis = Math.max(0, ttlSeconds) * 1000;
+        this.tagsByUser = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Stamped>> eldest) {
+                return size() > MealPlanETagService.this.maxUsers;
+            }
+        };
+        this.tagsByMeal = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Stamped> eldest) {
+                return size() > MealPlanETagService.this.maxUsers;
+            }
+        };
+    }
+
+    // ========== Lookup ==========
+
+    /**
+     * Tag of a DAILY-plan resource for one date (e.g. /day, /day/nutrition, /shopping-list/day).
+     */
+    public String dailyTag(Long userId, String resource, LocalDate date, boolean withPreferences) {
+        return userTag(userId, resource, () -> computeTag(userId, resource, PlanDuration.DAILY,
+            date, date, withPreferences));
+    }
+
+    /**
+     * Tag of a WEEKLY-plan resource for a 7-day range (e.g. /week/trends, /shopping-list/week).
+     */
+    public String weeklyTag(Long userId, String resource, LocalDate startDate, boolean withPreferences) {
+        return userTag(userId, resource, () -> computeTag(userId, resource, PlanDuration.WEEKLY,
+            startDate, startDate.plusDays(6), withPreferences));
+    }
+
+    /**
+     * Tag of a WEEKLY-plan resource over an arbitrary range (e.g. /shopping-list/range, /trends).
+     */
+    public String rangeTag(Long userId, String resource, LocalDate startDate, LocalDate endDate,
+                           boolean withPreferences) {
+        return userTag(userId, resource, () -> computeTag(userId, resource, PlanDuration.WEEKLY,
+            startDate, endDate, withPreferences));
+    }
+
+    /**
+     * Tag of a single-meal shopping list; keyed by meal id because the endpoint has no userId.
+     */
+    public String mealShoppingTag(Long mealId) {
+        synchronized (this) {
+            Stamped cached = fresh(tagsByMeal.get(mealId));
+            if (cached != null) {
+                return cached.tag();
+            }
+        }
+        StringBuilder sb = new StringBuilder("shopping-meal:").append(mealId);
+        appendStamps(sb, dayPlanRepository.findStampsByMealId(mealId));
+        String tag = hash(sb.toString());
+        if (ttlMillis > 0) {
+            synchronized (this) {
+                tagsByMeal.put(mealId, new Stamped(tag, System.currentTimeMillis()));
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * Last tag served for a resource whose tag is not derivable from stamps (the weekly snapshot).
+     */
+    public synchronized String cachedTag(Long userId, String resource) {
+        Map<String, Stamped> tags = tagsByUser.get(userId);
+        Stamped cached = tags != null ? fresh(tags.get(resource)) : null;
+        return cached != null ? cached.tag() : null;
+    }
+
+    public synchronized void remember(Long userId, String resource, String etag) {
+        if (userId == null || etag == null || ttlMillis == 0) {
+            return;
+        }
+        tagsByUser.computeIfAbsent(userId, id -> new HashMap<>())
+            .put(resource, new Stamped(etag, System.currentTimeMillis()));
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match (RFC 9110 §13.1.2).
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String target = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || stripWeak(trimmed).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ========== Invalidation ==========
+
+    /**
+     * Meals of a day plan changed: bump its revision and drop every cached tag that may cover it.
+     * Call before removing meals from the day plan so their per-meal tags are dropped too.
+     */
+    public void dayPlanModified(DayPlan dayPlan) {
+        if (dayPlan == null) {
+            return;
+        }
+        dayPlan.markModified();
+        if (dayPlan.getMeals() != null) {
+            for (Meal meal : dayPlan.getMeals()) {
+                if (meal.getId() != null) {
+                    invalidateMeal(meal.getId());
+                }
+            }
+        }
+        invalidateUser(dayPlan.getUserId());
+    }
+
+    /**
+     * A version was written, restored or deleted, or preferences changed.
+     */
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        forgetUser(userId);
+        afterCompletion(() -> forgetUser(userId));
+        logger.debug("[ETAG] Invalidated tags for userId={}", userId);
+    }
+
+    /**
+     * Ingredients of a recipe changed: bump the revision of every day plan using it, so the
+     * shopping-list tags of all users move on, on every instance. Must run inside the writing
+     * transaction.
+     */
+    public void recipeModified(String recipeStableId) {
+        int touched = dayPlanRepository.markModifiedByRecipeId(recipeStableId);
+        clearAll();
+        afterCompletion(this::clearAll);
+        logger.info("[ETAG] Recipe {} changed, dayPlans={}", recipeStableId, touched);
+    }
+
+    private void invalidateMeal(Long mealId) {
+        forgetMeal(mealId);
+        afterCompletion(() -> forgetMeal(mealId));
+    }
+
+    private synchronized void forgetUser(Long userId) {
+        tagsByUser.remove(userId);
+    }
+
+    private synchronized void forgetMeal(Long mealId) {
+        tagsByMeal.remove(mealId);
+    }
+
+    private synchronized void clearAll() {
+        tagsByUser.clear();
+        tagsByMeal.clear();
+    }
+
+    // ========== Private ==========
+
+    /**
+     * Cached tag of a user resource, or the computed one (computed outside the lock: it queries).
+     */
+    private String userTag(Long userId, String resource, Supplier<String> compute) {
+        String cached = cachedTag(userId, resource);
+        if (cached != null) {
+            return cached;
+        }
+        String tag = compute.get();
+        remember(userId, resource, tag);
+        return tag;
+    }
+
+    private Stamped fresh(Stamped stamped) {
+        if (stamped == null || System.currentTimeMillis() - stamped.storedAt() >= ttlMillis) {
+            return null;
+        }
+        return stamped;
+    }
+
+    private String computeTag(Long userId, String resource, PlanDuration duration,
+                              LocalDate startDate, LocalDate endDate, boolean withPreferences) {
+        StringBuilder sb = new StringBuilder(resource);
+        appendStamps(sb, dayPlanRepository
+            .findStampsByUserIdAndDateRangeAndDuration(userId, startDate, endDate, duration));
+        if (duration == PlanDuration.WEEKLY) {
+            // Restoring a version only moves the current pointer; include it explicitly
+            sb.append("|cur").append(mealPlanRepository.findCurrentVersionIds(userId, duration));
+        }
+        if (withPreferences) {
+            sb.append("|p").append(nutritionalPreferencesRepository.findUpdatedAtByUserId(userId).orElse(null));
+        }
+        return hash(sb.toString());
+    }
+
+    private void appendStamps(StringBuilder sb, List<DayPlanStamp> stamps) {
+        for (DayPlanStamp stamp : stamps) {
+            sb.append('|').append(stamp.versionId())
+              .append('.').append(stamp.dayPlanId())
+              .append('.').append(stamp.revision() != null ? stamp.revision() : 0L);
+        }
+    }
+
+    private static String hash(String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(bytes, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+}
@@ -11,7 +11,9 @@ import com.ndl.numbers_dont_lie.mealplan.service.DayPlanAssemblerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -114,14 +116,23 @@ public class MealPlanVersionService {
     private final MealPlanRepository mealPlanRepository;
     private final MealPlanVersionRepository mealPlanVersionRepository;
     private final DayPlanAssemblerService dayPlanAssembler;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final MealPlanETagService mealPlanETagService;
+    private final TransactionTemplate transactionTemplate;
     
     public MealPlanVersionService(
             MealPlanRepository mealPlanRepository,
             MealPlanVersionRepository mealPlanVersionRepository,
-            DayPlanAssemblerService dayPlanAssembler) {
+            DayPlanAssemblerService dayPlanAssembler,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            MealPlanETagService mealPlanETagService,
+            PlatformTransactionManager transactionManager) {
         this.mealPlanRepository = mealPlanRepository;
         this.mealPlanVersionRepository = mealPlanVersionRepository;
         this.dayPlanAssembler = dayPlanAssembler;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
     
     /**
@@ -151,45 +162,56 @@ public class MealPlanVersionService {
         return regenerateMealPlan(planId, userId, null);
     }
 
+    /**
+     * Same as {@link #regenerateMealPlan(Long, Long)} with an explicit start date. Outside a
+     * transaction the plan is read and the new version persisted in two short transactions,
+     * and the AI calls in between hold none.
+     */
     public MealPlan regenerateMealPlan(Long planId, Long userId, LocalDate startDateOverride) {
         logger.info("Starting meal plan regeneration for planId={}, userId={}", planId, userId);
         
-        // Step 1: Fetch current MealPlan
-        MealPlan mealPlan = mealPlanRepository.findById(planId)
-            .orElseThrow(() -> new IllegalStateException("MealPlan not found: " + planId));
-        
-        // Step 2: Validate ownership
-        if (!mealPlan.getUserId().equals(userId)) {
-            throw new IllegalStateException("User " + userId + " does not own MealPlan " + planId);
-        }
-        
-        // Step 3: Extract start date from current version (or override)
-        MealPlanVersion currentVersion = mealPlan.getCurrentVersion();
-        if (currentVersion == null || currentVersion.getDayPlans().isEmpty()) {
-            throw new IllegalStateException("Current version has no day plans");
-        }
-
-        LocalDate startDate = startDateOverride != null
-            ? startDateOverride
-            : currentVersion.getDayPlans().stream()
-                .map(DayPlan::getDate)
-                .min(LocalDate::compareTo)
-                .orElseThrow(() -> new IllegalStateException("Cannot determine start date"));
+        // Steps 1-4 read the lazy version history: one short read transaction
+        Regeneration regeneration = transactionTemplate.execute(status -> {
+            // Step 1: Fetch current MealPlan
+            MealPlan mealPlan = mealPlanRepository.findById(planId)
+                .orElseThrow(() -> new IllegalStateException("MealPlan not found: " + planId));
+            
+            // Step 2: Validate ownership
+            if (!mealPlan.getUserId().equals(userId)) {
+                throw new IllegalStateException("User " + userId + " does not own MealPlan " + planId);
+            }
+            
+            // Step 3: Check the current version
+            MealPlanVersion currentVersion = mealPlan.getCurrentVersion();
+            if (currentVersion == null || currentVersion.getDayPlans().isEmpty()) {
+                throw new IllegalStateException("Current version has no day plans");
+            }
+            
+            // Step 4: Create regeneration version for existing MealPlan
+            Integer newVersionNumber = mealPlan.getVersions().stream()
+                .map(MealPlanVersion::getVersionNumber)
+                .max(Integer::compareTo)
+                .orElse(0) + 1;
+            
+            MealPlanVersion version = new MealPlanVersion(
+                mealPlan,
+                newVersionNumber,
+                VersionReason.REGENERATED
+            );
+            LocalDate start = startDateOverride != null
+                ? startDateOverride
+                : currentVersion.getDayPlans().stream()
+                    .map(DayPlan::getDate)
+                    .min(LocalDate::compareTo)
+                    .orElseThrow(() -> new IllegalStateException("Cannot determine start date"));
+            return new Regeneration(version, start);
+        });
+        MealPlanVersion regeneratedVersion = regeneration.version();
+        LocalDate startDate = regeneration.startDate();
+        Integer newVersionNumber = regeneratedVersion.getVersionNumber();
         
         logger.debug("Extracted start date: {}", startDate);
         
-        // Step 4: Create regeneration version for existing MealPlan
-        Integer newVersionNumber = mealPlan.getVersions().stream()
-            .map(MealPlanVersion::getVersionNumber)
-            .max(Integer::compareTo)
-            .orElse(0) + 1;
-        
-        MealPlanVersion regeneratedVersion = new MealPlanVersion(
-            mealPlan,
-            newVersionNumber,
-            VersionReason.REGENERATED
-        );
-        
         // Step 5: Generate 7 day plans directly into this version
         java.util.Set<String> usedRecipeIds = new java.util.HashSet<>();
         java.util.Set<String> usedRecipeTitles = new java.util.HashSet<>();
@@ -217,15 +239,18 @@ public class MealPlanVersionService {
             }
         }
         
-        // Step 6: Persist new version (cascades DayPlans)
-        MealPlanVersion savedVersion = mealPlanVersionRepository.saveAndFlush(regeneratedVersion);
-
-        // Step 7: Update current version pointer
-        mealPlanRepository.updateCurrentVersion(mealPlan.getId(), savedVersion.getId());
+        // Step 6-7: Persist new version (cascades DayPlans) and move the current version pointer
+        MealPlan updatedPlan = transactionTemplate.execute(status -> {
+            MealPlanVersion savedVersion = mealPlanVersionRepository.saveAndFlush(regeneratedVersion);
+            mealPlanRepository.updateCurrentVersion(planId, savedVersion.getId());
+            mealPlanETagService.invalidateUser(userId);
+            return mealPlanRepository.findById(planId)
+                .orElseThrow(() -> new IllegalStateException("MealPlan not found: " + planId));
+        });
 
         logger.info("Meal plan regeneration complete. New version: {}", newVersionNumber);
         
-        return mealPlanRepository.findById(mealPlan.getId()).orElse(mealPlan);
+        return updatedPlan;
     }
 
     /**
@@ -253,7 +278,9 @@ public class MealPlanVersionService {
             throw new IllegalStateException("Version not found: " + versionNumber);
         }
 
+        weeklyPlanReadModelService.evictVersion(target.getId());
         mealPlanVersionRepository.delete(target);
+        mealPlanETagService.invalidateUser(userId);
         logger.info("Deleted meal plan version planId={} versionNumber={}", planId, versionNumber);
     }
     
@@ -280,10 +307,26 @@ public class MealPlanVersionService {
         }
 
         mealPlanRepository.updateCurrentVersion(mealPlan.getId(), target.getId());
+        mealPlanETagService.invalidateUser(userId);
         logger.info("Current version switched to {}", versionNumber);
 
         return mealPlanRepository.findById(mealPlan.getId()).orElse(mealPlan);
     }
+
+    /**
+     * Re-select the plan's current version (repairs the pointer after a failed refresh).
+     * Reads the lazy version inside the transaction, so callers may hold a detached plan.
+     */
+    @Transactional
+    public MealPlan restoreCurrentVersion(Long planId, Long userId) {
+        MealPlan mealPlan = mealPlanRepository.findById(planId)
+            .orElseThrow(() -> new IllegalStateException("MealPlan not found: " + planId));
+        MealPlanVersion currentVersion = mealPlan.getCurrentVersion();
+        if (currentVersion == null) {
+            return mealPlan;
+        }
+        return restoreVersion(planId, currentVersion.getVersionNumber(), userId);
+    }
     
     /**
      * Get all versions for a meal plan in chronological order.
@@ -349,6 +392,8 @@ public class MealPlanVersionService {
         clonedDay.setDate(source.getDate());
         clonedDay.setUserId(source.getUserId());
         clonedDay.setContextHash(source.getContextHash());
+        clonedDay.copyNutritionTotalsFrom(source);
+        clonedDay.setShoppingList(source.getShoppingList());
         
         // Clone all meals
         for (Meal sourceMeal : source.getMeals()) {
@@ -408,4 +453,7 @@ public class MealPlanVersionService {
                 versionNumber, reason.getJsonValue(), dayCount, createdAt);
         }
     }
+
+    private record Regeneration(MealPlanVersion version, LocalDate startDate) {
+    }
 }
@@ -9,6 +9,7 @@ import com.ndl.numbers_dont_lie.mealplan.repository.MealRepository;
 import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
 import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
 import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import com.ndl.numbers_dont_lie.shoppinglist.service.DayShoppingListService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -29,16 +30,28 @@ public class MealReplacementService {
     private final DayPlanRepository dayPlanRepository;
     private final RecipeRepository recipeRepository;
     private final NutritionalPreferencesRepository nutritionalPreferencesRepository;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final MealPlanETagService mealPlanETagService;
+    private final DayPlanNutritionService dayPlanNutritionService;
+    private final DayShoppingListService dayShoppingListService;
     
     public MealReplacementService(
             MealRepository mealRepository,
             DayPlanRepository dayPlanRepository,
             RecipeRepository recipeRepository,
-            NutritionalPreferencesRepository nutritionalPreferencesRepository) {
+            NutritionalPreferencesRepository nutritionalPreferencesRepository,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            MealPlanETagService mealPlanETagService,
+            DayPlanNutritionService dayPlanNutritionService,
+            DayShoppingListService dayShoppingListService) {
         this.mealRepository = mealRepository;
         this.dayPlanRepository = dayPlanRepository;
         this.recipeRepository = recipeRepository;
         this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.dayPlanNutritionService = dayPlanNutritionService;
+        this.dayShoppingListService = dayShoppingListService;
     }
     
     /**
@@ -105,16 +118,22 @@ public class MealReplacementService {
         
         logger.info("[MEAL_REPLACE] Selected replacement: {} source=DB", alternativeRecipe.getTitle());
         
-        // Update meal in place
+        // Update meal in place (day totals: remove old contribution, add new one)
+        dayPlanNutritionService.beforeMealChange(meal);
+        dayShoppingListService.beforeMealChange(meal);
         meal.setCustomMealName(alternativeRecipe.getTitle());
         meal.setRecipeId(alternativeRecipe.getStableId());
         // Keep same calorie target and planned calories
         if (meal.getPlannedCalories() == null) {
             meal.setPlannedCalories(targetCalories);
         }
+        dayPlanNutritionService.afterMealChange(meal);
+        dayShoppingListService.afterMealChange(meal);
         
         // Save updated meal
         Meal savedMeal = mealRepository.save(meal);
+        weeklyPlanReadModelService.evictForDayPlan(dayPlan);
+        mealPlanETagService.dayPlanModified(dayPlan);
         
         logger.info("[MEAL_REPLACE] Replacement successful: {} → {}", originalTitle, alternativeRecipe.getTitle());
         
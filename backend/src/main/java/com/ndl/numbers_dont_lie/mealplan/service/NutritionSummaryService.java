@@ -2,8 +2,9 @@ package com.ndl.numbers_dont_lie.mealplan.service;
 
 import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
 import com.ndl.numbers_dont_lie.mealplan.dto.DailyNutritionSummary;
+import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyNutritionSummary;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
-import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.recipe.service.RecipeNutritionCache;
 import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Propagation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Service for aggregating and summarizing daily nutrition data.
  * 
@@ -22,21 +27,17 @@ import org.springframework.transaction.annotation.Propagation;
  * - Compares totals to user-defined nutritional targets
  * - Calculates percentage progress towards goals
  * 
- * Current Limitations (MVP):
- * - Meal entity does NOT currently store GeneratedRecipe nutrition data
- * - Aggregation is read-only over existing DayPlan/Meal data; totals default to 0 when nutrition is absent
- * - Future enhancement: Add JSON field to Meal entity to store GeneratedRecipe with nutrition
- * 
- * Production Requirements:
- * - Persist GeneratedRecipe.NutritionInfo in Meal entity (JSON column)
- * - Load actual nutrition data from database
- * - Support portion adjustments and recalculations
- * - Historical tracking and trend analysis
+ * Nutrition Source:
+ * - Per-meal calories and macros come from MealNutritionEngine (linked recipe's ingredients,
+ *   scaled to the meal's planned portion) using cached per-recipe vectors
+ * - Day totals are maintained on DayPlan by DayPlanNutritionService and read in O(1)
+ * - Multi-day callers use generateSummaries: targets are loaded once per call and all days
+ *   share one scratch accumulator
+ * - Meals without a recipe are estimated from plannedCalories; the summary is then flagged as estimated
  * 
  * Why This Design:
  * - Separation of concerns: visualization logic separate from data storage
- * - Easy to enhance when Meal entity stores nutrition
- * - Enables UI development without waiting for full persistence layer
+ * - Summaries cost array lookups per meal, not recipe/ingredient joins
  * - Debug-friendly with clear logging
  */
 @Service
@@ -44,68 +45,127 @@ public class NutritionSummaryService {
     private static final Logger logger = LoggerFactory.getLogger(NutritionSummaryService.class);
     
     private final NutritionalPreferencesRepository nutritionalPreferencesRepository;
+    private final DayPlanNutritionService dayPlanNutritionService;
     
-    public NutritionSummaryService(NutritionalPreferencesRepository nutritionalPreferencesRepository) {
+    public NutritionSummaryService(
+            NutritionalPreferencesRepository nutritionalPreferencesRepository,
+            DayPlanNutritionService dayPlanNutritionService) {
         this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
+        this.dayPlanNutritionService = dayPlanNutritionService;
     }
     
     /**
      * Generate nutrition summary for a specific day.
      * 
-     * Process:
-     * 1. Load user nutritional targets from NutritionalPreferences
-     * 2. Aggregate nutrition from all meals in DayPlan
-     * 3. Calculate percentage of targets achieved
-     * 4. Build DailyNutritionSummary DTO
-     * 
-    * Current Implementation:
-    * - Aggregates using available DayPlan/Meal data (none stored → zeros)
-    * - Calculates percentages against user targets (avoids divide-by-zero)
+     * Single-day form of {@link #generateSummaries(Long, List)}.
      * 
      * @param dayPlan The day plan containing meals
      * @return DailyNutritionSummary with aggregated data and percentages
      */
     @Transactional(propagation = Propagation.NOT_SUPPORTED, readOnly = true)
     public DailyNutritionSummary generateSummary(DayPlan dayPlan) {
-        Long userId = dayPlan.getUserId();
-        logger.debug("[NUTRITION-SUMMARY] Generating summary for date: {}, user: {}", 
-            dayPlan.getDate(), userId);
-        
+        return generateSummaries(dayPlan.getUserId(), List.of(dayPlan)).get(0);
+    }
+
+    /**
+     * Generate nutrition summaries for several days of one user (a week, a trend range).
+     * 
+     * Process:
+     * 1. Load user nutritional targets from NutritionalPreferences (once per call)
+     * 2. Make sure every day has running totals, loading missing recipes with one query
+     * 3. Per day: normalize, calculate percentages against targets, build DailyNutritionSummary
+     * 
+     * @param userId Owner of the day plans
+     * @param dayPlans Day plans in the order the summaries should be returned
+     * @return One DailyNutritionSummary per day plan, same order
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED, readOnly = true)
+    public List<DailyNutritionSummary> generateSummaries(Long userId, List<DayPlan> dayPlans) {
+        List<DailyNutritionSummary> summaries = new ArrayList<>(dayPlans.size());
+        if (dayPlans.isEmpty()) {
+            return summaries;
+        }
+
         // Step 1: Load user nutritional targets
         NutritionalPreferences preferences = nutritionalPreferencesRepository
             .findByUserId(userId)
             .orElse(null);
-        
+
+        String emptyReason = null;
         if (preferences == null) {
             logger.warn("[NUTRITION-SUMMARY] No nutritional preferences found for user: {}", userId);
-            return createEmptySummary(dayPlan, "No nutritional targets set");
+            emptyReason = "No nutritional targets set";
+        } else if (preferences.getCalorieTarget() == null || preferences.getCalorieTarget() == 0) {
+            logger.warn("[NUTRITION-SUMMARY] User has no calorie target set");
+            emptyReason = "Please set your nutritional targets in Profile";
         }
-        
-        // Step 2: Get targets from profile
+        if (emptyReason != null) {
+            for (DayPlan dayPlan : dayPlans) {
+                summaries.add(createEmptySummary(dayPlan));
+            }
+            logger.info("[NUTRITION-SUMMARY] Returning {} empty summaries: {}", summaries.size(), emptyReason);
+            return summaries;
+        }
+
         Integer targetCalories = preferences.getCalorieTarget();
         Integer targetProtein = preferences.getProteinTarget();
         Integer targetCarbs = preferences.getCarbsTarget();
         Integer targetFats = preferences.getFatsTarget();
-        
-        logger.info("[NUTRITION_TARGETS] User {} targets: calories={}, protein={}, carbs={}, fats={}",
+        logger.debug("[NUTRITION_TARGETS] User {} targets: calories={}, protein={}, carbs={}, fats={}",
             userId, targetCalories, targetProtein, targetCarbs, targetFats);
-        
-        if (targetCalories == null || targetCalories == 0) {
-            logger.warn("[NUTRITION-SUMMARY] User has no calorie target set");
-            return createEmptySummary(dayPlan, "Please set your nutritional targets in Profile");
+
+        // Step 2: Running totals for all days (one recipe query for days that have none yet)
+        dayPlanNutritionService.ensureTotals(dayPlans);
+
+        // Step 3: Aggregate each day (read-only)
+        double[] totals = MealNutritionEngine.newTotals();
+        for (DayPlan dayPlan : dayPlans) {
+            DailyNutritionSummary summary = aggregateTotals(dayPlan, totals,
+                targetCalories, targetProtein, targetCarbs, targetFats);
+            summary.setDate(dayPlan.getDate());
+            summaries.add(summary);
         }
-        
-        // Step 3: Aggregate nutrition from meals (read-only)
-        DailyNutritionSummary summary = aggregateTotals(dayPlan, targetCalories, targetProtein, targetCarbs, targetFats);
-        summary.setDate(dayPlan.getDate());
-        
-        logger.debug("[NUTRITION-SUMMARY] Summary generated: meals={}, cal={}/{} ({}%)", 
-            dayPlan.getMeals().size(),
-            Math.round(summary.getTotalCalories()),
-            Math.round(summary.getTargetCalories()),
-            Math.round(summary.getCaloriesPercentage()));
-        
-        return summary;
+
+        logger.debug("[NUTRITION-SUMMARY] Generated {} summaries for user {}", summaries.size(), userId);
+        return summaries;
+    }
+
+    /**
+     * Aggregate daily summaries into a weekly (or any multi-day) summary.
+     * 
+     * Totals and targets are sums over the days; percentages are computed from those sums.
+     * The result is always flagged as estimated (days may be placeholders or partially planned).
+     */
+    public WeeklyNutritionSummary aggregateWeekly(List<DailyNutritionSummary> dailySummaries) {
+        double totalCal = 0, totalPro = 0, totalCarb = 0, totalFat = 0;
+        double targetCal = 0, targetPro = 0, targetCarb = 0, targetFat = 0;
+
+        for (DailyNutritionSummary day : dailySummaries) {
+            totalCal += day.getTotalCalories();
+            totalPro += day.getTotalProtein();
+            totalCarb += day.getTotalCarbs();
+            totalFat += day.getTotalFats();
+            targetCal += day.getTargetCalories();
+            targetPro += day.getTargetProtein();
+            targetCarb += day.getTargetCarbs();
+            targetFat += day.getTargetFats();
+        }
+
+        WeeklyNutritionSummary weekly = new WeeklyNutritionSummary();
+        weekly.setTotalCalories(totalCal);
+        weekly.setTotalProtein(totalPro);
+        weekly.setTotalCarbs(totalCarb);
+        weekly.setTotalFats(totalFat);
+        weekly.setTargetCalories(targetCal);
+        weekly.setTargetProtein(targetPro);
+        weekly.setTargetCarbs(targetCarb);
+        weekly.setTargetFats(targetFat);
+        weekly.setCaloriesPercentage(calculatePercentage(totalCal, targetCal));
+        weekly.setProteinPercentage(calculatePercentage(totalPro, targetPro));
+        weekly.setCarbsPercentage(calculatePercentage(totalCarb, targetCarb));
+        weekly.setFatsPercentage(calculatePercentage(totalFat, targetFat));
+        weekly.setNutritionEstimated(true);
+        return weekly;
     }
     
     /**
@@ -122,7 +182,7 @@ public class NutritionSummaryService {
     /**
      * Create empty summary when targets not set or data unavailable.
      */
-    private DailyNutritionSummary createEmptySummary(DayPlan dayPlan, String reason) {
+    private DailyNutritionSummary createEmptySummary(DayPlan dayPlan) {
         DailyNutritionSummary summary = new DailyNutritionSummary();
         summary.setDate(dayPlan.getDate());
         summary.setTotalCalories(0.0);
@@ -138,140 +198,74 @@ public class NutritionSummaryService {
         summary.setCarbsPercentage(0.0);
         summary.setFatsPercentage(0.0);
         summary.setNutritionEstimated(false);
-        
-        logger.info("[NUTRITION-SUMMARY] Returning empty summary: {}", reason);
         return summary;
     }
 
     /**
      * Read-only aggregation of actual DayPlan meals only.
      * 
-     * FIXED LOGIC (MVP):
+     * Logic:
      * - NutritionSummary is DERIVED from DayPlan.meals
-     * - Each meal has plannedCalories field
-     * - totalCalories = SUM(meal.plannedCalories)
-     * - totalCalories MUST be <= user.calorieTarget
+     * - Each meal contributes its recipe's per-serving macros scaled to plannedCalories
+     * - Custom meals are ignored
      * - When meals change (add/remove), totals recalculate automatically
      * 
      * Process:
-     * 1. Read meals from DayPlan
-     * 2. Sum plannedCalories from each meal
-     * 3. Normalize down if exceeds target (proportional to each meal)
-     * 4. Use profile macros as targets (NOT for calculating meal totals)
-     * 5. Calculate percentages against user targets
+     * 1. Copy the day's running totals (DayPlanNutritionService) into the caller's scratch array
+     * 2. Normalize down if calories exceed target (all components by the same factor)
+     * 3. Calculate percentages against user targets
      */
     private DailyNutritionSummary aggregateTotals(
             DayPlan dayPlan,
+            double[] totals,
             Integer targetCalories,
             Integer targetProtein,
             Integer targetCarbs,
             Integer targetFats) {
-        double totalCalories = 0.0;
-        double totalProtein = 0.0;
-        double totalCarbs = 0.0;
-        double totalFats = 0.0;
+        Arrays.fill(totals, 0.0);
         boolean isEstimated = false;
 
         int mealCount = dayPlan.getMeals().size();
-        
-        // Step 1: Calculate total calories from actual meal slots (plannedCalories)
-        logger.info("[NUTRITION] === AGGREGATION START ===");
-        logger.info("[NUTRITION] Meals count = {}", mealCount);
-        
+        logger.debug("[NUTRITION] Aggregating {} meals for {}", mealCount, dayPlan.getDate());
+
         if (mealCount > 0) {
-            // Sum plannedCalories from all meals (this is the SOURCE OF TRUTH)
-            totalCalories = 0.0;
-            logger.info("[NUTRITION] Planned calories per meal:");
-            
-            for (Meal meal : dayPlan.getMeals()) {
-                // IMPORTANT: Skip custom meals from nutrition calculations
-                if (meal.getIsCustom()) {
-                    logger.info("[NUTRITION] Ignoring custom meal id={} name='{}'", 
-                        meal.getId(), meal.getCustomMealName());
-                    continue;
-                }
-                
-                Integer plannedCal = meal.getPlannedCalories();
-                if (plannedCal == null || plannedCal == 0) {
-                    // Fallback to calorieTarget if plannedCalories not set
-                    plannedCal = meal.getCalorieTarget();
-                }
-                
-                if (plannedCal != null && plannedCal > 0) {
-                    logger.info("[NUTRITION]   {}{}: {} cal", 
-                        meal.getMealType(), "[" + meal.getIndex() + "]", plannedCal);
-                    totalCalories += plannedCal;
-                }
-            }
-            
-            logger.info("[NUTRITION] Total calories after summation = {} (target = {})", 
-                Math.round(totalCalories), targetCalories);
-            
+            // Step 1: Running totals maintained on DayPlan (computed once if missing)
+            double[] dayTotals = dayPlanNutritionService.totalsFor(dayPlan);
+            System.arraycopy(dayTotals, 0, totals, 0, totals.length);
+            isEstimated = dayPlan.getEstimatedMeals() > 0;
+
             // Step 2: Normalize down if exceeds target
-            if (totalCalories > targetCalories) {
-                logger.warn("[NUTRITION] Total exceeds target! Normalizing down proportionally");
-                double normalizationFactor = (double) targetCalories / totalCalories;
-                logger.info("[NUTRITION] Normalization factor = {}", 
+            if (totals[RecipeNutritionCache.KCAL] > targetCalories) {
+                double normalizationFactor = targetCalories / totals[RecipeNutritionCache.KCAL];
+                logger.debug("[NUTRITION] Total {} exceeds target {}, normalization factor = {}",
+                    Math.round(totals[RecipeNutritionCache.KCAL]), targetCalories,
                     String.format("%.2f", normalizationFactor));
-                totalCalories = targetCalories; // Set to target (already used for normalization)
-            }
-            
-            logger.info("[NUTRITION] Total calories after normalization = {}", Math.round(totalCalories));
-            
-            // Step 3: Estimate macros based on profile targets (if available)
-            // These are TARGETS for display, not derived from meals
-            if (targetProtein != null && targetProtein > 0) {
-                totalProtein = targetProtein.doubleValue();
-                logger.debug("[NUTRITION] Using profile protein target: {}g", Math.round(totalProtein));
-            } else {
-                // Fallback: estimate as 25% of calories
-                totalProtein = (totalCalories * 0.25) / 4.0;
-                logger.debug("[NUTRITION] Estimated protein (no user target): {}g", Math.round(totalProtein));
-            }
-            
-            if (targetCarbs != null && targetCarbs > 0) {
-                totalCarbs = targetCarbs.doubleValue();
-                logger.debug("[NUTRITION] Using profile carbs target: {}g", Math.round(totalCarbs));
-            } else {
-                // Fallback: estimate as 45% of calories
-                totalCarbs = (totalCalories * 0.45) / 4.0;
-                logger.debug("[NUTRITION] Estimated carbs (no user target): {}g", Math.round(totalCarbs));
-            }
-            
-            if (targetFats != null && targetFats > 0) {
-                totalFats = targetFats.doubleValue();
-                logger.debug("[NUTRITION] Using profile fats target: {}g", Math.round(totalFats));
-            } else {
-                // Fallback: estimate as 30% of calories
-                totalFats = (totalCalories * 0.30) / 9.0;
-                logger.debug("[NUTRITION] Estimated fats (no user target): {}g", Math.round(totalFats));
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] *= normalizationFactor;
+                }
             }
-            
-            isEstimated = false; // Not estimated since we use user targets
-            
         } else {
             logger.debug("[NUTRITION] No meal slots, returning zeros");
         }
 
-        // Step 4: Prepare targets for display (user's actual values)
+        double totalCalories = totals[RecipeNutritionCache.KCAL];
+        double totalProtein = totals[RecipeNutritionCache.PROTEIN];
+        double totalCarbs = totals[RecipeNutritionCache.CARBS];
+        double totalFats = totals[RecipeNutritionCache.FATS];
+
+        // Step 3: Prepare targets for display (user's actual values)
         double targetCal = targetCalories != null ? targetCalories.doubleValue() : totalCalories;
         double targetPro = targetProtein != null ? targetProtein.doubleValue() : totalProtein;
         double targetCarb = targetCarbs != null ? targetCarbs.doubleValue() : totalCarbs;
         double targetFat = targetFats != null ? targetFats.doubleValue() : totalFats;
         
-        logger.info("[NUTRITION_SUMMARY] Final Summary:");
-        logger.info("[NUTRITION_SUMMARY]   Calories: {} / {} ({}%)", 
-            Math.round(totalCalories), Math.round(targetCal), 
-            calculatePercentage(totalCalories, targetCal));
-        logger.info("[NUTRITION_SUMMARY]   Protein: {}g / {}g ({}%)", 
+        logger.debug("[NUTRITION_SUMMARY] {}: cal {}/{} protein {}g/{}g carbs {}g/{}g fats {}g/{}g estimated={}",
+            dayPlan.getDate(),
+            Math.round(totalCalories), Math.round(targetCal),
             Math.round(totalProtein), Math.round(targetPro),
-            calculatePercentage(totalProtein, targetPro));
-        logger.info("[NUTRITION_SUMMARY]   Carbs: {}g / {}g ({}%)", 
             Math.round(totalCarbs), Math.round(targetCarb),
-            calculatePercentage(totalCarbs, targetCarb));
-        logger.info("[NUTRITION_SUMMARY]   Fats: {}g / {}g ({}%)", 
             Math.round(totalFats), Math.round(targetFat),
-            calculatePercentage(totalFats, targetFat));
+            isEstimated);
 
         DailyNutritionSummary summary = new DailyNutritionSummary();
         summary.setTotalCalories(totalCalories);
@@ -290,35 +284,4 @@ public class NutritionSummaryService {
 
         return summary;
     }
-    
-    /**
-     * FUTURE ENHANCEMENT: Load actual nutrition from Meal entity.
-     * 
-     * When Meal entity is enhanced to store GeneratedRecipe.NutritionInfo:
-     * 
-     * 1. Add JSON column to meals table:
-     *    ALTER TABLE meals ADD COLUMN nutrition_data JSONB;
-     * 
-     * 2. Update Meal entity:
-     *    @Column(columnDefinition = "jsonb")
-     *    private GeneratedRecipe.NutritionInfo nutrition;
-     * 
-     * 3. Update DayPlanAssemblerService.convertToMeal():
-     *    meal.setNutrition(generatedRecipe.getNutrition());
-     * 
-     * 4. Implement this method:
-     *    private DailyNutritionSummary aggregateFromMeals(DayPlan dayPlan, targets) {
-     *        double totalCal = 0, totalPro = 0, totalCarb = 0, totalFat = 0;
-     *        for (Meal meal : dayPlan.getMeals()) {
-     *            if (meal.getNutrition() != null) {
-     *                totalCal += meal.getNutrition().getCaloriesPerServing();
-     *                totalPro += meal.getNutrition().getProteinPerServing();
-     *                // ... etc
-     *            }
-     *        }
-     *        return buildSummary(totalCal, totalPro, totalCarb, totalFat, targets);
-     *    }
-     * 
-     * 5. Replace placeholder logic with: aggregateFromMeals(dayPlan, preferences)
-     */
 }
@@ -0,0 +1,189 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.dto.NutritionTrendResponse;
+import com.ndl.numbers_dont_lie.mealplan.dto.TrendGranularity;
+import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-range calorie and macro trends of a user's current weekly plans.
+ *
+ * Design intent:
+ * - The aggregation runs in the database; one row per planned day comes back (at most
+ *   maxDays) and is folded into day/week/month buckets here
+ * - Standard SQL only (window function instead of DISTINCT ON, no date_trunc, typed
+ *   parameters), so the same statement runs on PostgreSQL and on H2 in PostgreSQL mode
+ * - Days are read from the running totals stored on day_plans (DayPlanNutritionService),
+ *   so cost grows with the number of days in the range, not with the number of meals
+ * - Days without stored totals (older rows) are computed in the same query from their meals
+ *   joined to per-recipe nutrition, following MealNutritionEngine's rules
+ * - Each day is capped at the calorie target exactly like NutritionSummaryService,
+ *   so a 7-day DAY series matches /week/trends
+ *
+ * Which day counts: for each date, the newest day plan of a WEEKLY plan's current version.
+ */
+@Service
+public class NutritionTrendService {
+    private static final Logger logger = LoggerFactory.getLogger(NutritionTrendService.class);
+
+    private static final String TREND_SQL = """
+        WITH ranked_days AS (
+            SELECT dp.id, dp.plan_date, dp.total_calories, dp.total_protein, dp.total_carbs, dp.total_fats,
+                   ROW_NUMBER() OVER (PARTITION BY dp.plan_date ORDER BY dp.id DESC) AS rn
+            FROM day_plans dp
+            JOIN meal_plans p ON p.current_version_id = dp.meal_plan_version_id
+            WHERE dp.user_id = :userId
+              AND p.user_id = :userId
+              AND p.duration = 'WEEKLY'
+              AND dp.plan_date BETWEEN :startDate AND :endDate
+        ),
+        current_days AS (
+            SELECT id, plan_date, total_calories, total_protein, total_carbs, total_fats
+            FROM ranked_days
+            WHERE rn = 1
+        ),
+        legacy_meals AS (
+            SELECT m.day_plan_id, m.recipe_id,
+                   CASE WHEN COALESCE(NULLIF(m.planned_calories, 0), m.calorie_target, 0) > 0
+                        THEN COALESCE(NULLIF(m.planned_calories, 0), m.calorie_target) ELSE 0 END AS planned
+            FROM meals m
+            JOIN current_days d ON d.id = m.day_plan_id
+            WHERE d.total_calories IS NULL AND m.is_custom = FALSE
+        ),
+        recipe_vectors AS (
+            SELECT r.stable_id,
+                   SUM(ri.quantity / 100.0 * COALESCE(i.calories, 0)) / GREATEST(COALESCE(r.servings, 1), 1) AS kcal,
+                   SUM(ri.quantity / 100.0 * COALESCE(i.protein, 0)) / GREATEST(COALESCE(r.servings, 1), 1) AS protein,
+                   SUM(ri.quantity / 100.0 * COALESCE(i.carbs, 0)) / GREATEST(COALESCE(r.servings, 1), 1) AS carbs,
+                   SUM(ri.quantity / 100.0 * COALESCE(i.fats, 0)) / GREATEST(COALESCE(r.servings, 1), 1) AS fats
+            FROM recipes r
+            JOIN recipe_ingredients ri ON ri.recipe_id = r.id
+            JOIN ingredients i ON i.id = ri.ingredient_id
+            WHERE r.stable_id IN (SELECT recipe_id FROM legacy_meals)
+            GROUP BY r.stable_id, r.servings
+        ),
+        legacy_days AS (
+            SELECT lm.day_plan_id,
+                   SUM(CASE WHEN rv.kcal > 0 THEN rv.kcal * (CASE WHEN lm.planned > 0 THEN lm.planned / rv.kcal ELSE 1 END)
+                            ELSE lm.planned END) AS kcal,
+                   SUM(CASE WHEN rv.kcal > 0 THEN rv.protein * (CASE WHEN lm.planned > 0 THEN lm.planned / rv.kcal ELSE 1 END)
+                            ELSE lm.planned * CAST(:proteinShare AS DOUBLE PRECISION) / 4.0 END) AS protein,
+                   SUM(CASE WHEN rv.kcal > 0 THEN rv.carbs * (CASE WHEN lm.planned > 0 THEN lm.planned / rv.kcal ELSE 1 END)
+                            ELSE lm.planned * CAST(:carbsShare AS DOUBLE PRECISION) / 4.0 END) AS carbs,
+                   SUM(CASE WHEN rv.kcal > 0 THEN rv.fats * (CASE WHEN lm.planned > 0 THEN lm.planned / rv.kcal ELSE 1 END)
+                            ELSE lm.planned * CAST(:fatsShare AS DOUBLE PRECISION) / 9.0 END) AS fats
+            FROM legacy_meals lm
+            LEFT JOIN recipe_vectors rv ON rv.stable_id = lm.recipe_id
+            GROUP BY lm.day_plan_id
+        ),
+        day_totals AS (
+            SELECT d.plan_date,
+                   COALESCE(d.total_calories, ld.kcal, 0) AS kcal,
+                   COALESCE(d.total_protein, ld.protein, 0) AS protein,
+                   COALESCE(d.total_carbs, ld.carbs, 0) AS carbs,
+                   COALESCE(d.total_fats, ld.fats, 0) AS fats
+            FROM current_days d
+            LEFT JOIN legacy_days ld ON ld.day_plan_id = d.id
+        ),
+        capped AS (
+            SELECT plan_date, kcal, protein, carbs, fats,
+                   CASE WHEN CAST(:targetCalories AS DOUBLE PRECISION) > 0 AND kcal > CAST(:targetCalories AS DOUBLE PRECISION)
+                        THEN CAST(:targetCalories AS DOUBLE PRECISION) / kcal ELSE 1.0 END AS factor
+            FROM day_totals
+        )
+        SELECT plan_date,
+               kcal * factor AS calories,
+               protein * factor AS protein,
+               carbs * factor AS carbs,
+               fats * factor AS fats
+        FROM capped
+        ORDER BY plan_date
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NutritionalPreferencesRepository nutritionalPreferencesRepository;
+
+    @Value("${app.mealplan.trends.max-days:731}")
+    private int maxDays;
+
+    public NutritionTrendService(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            NutritionalPreferencesRepository nutritionalPreferencesRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nutritionalPreferencesRepository = nutritionalPreferencesRepository;
+    }
+
+    /**
+     * Trend series for [startDate, endDate] (inclusive) bucketed by granularity.
+     *
+     * @throws IllegalArgumentException if the range is inverted or longer than the configured maximum
+     */
+    @Transactional(readOnly = true)
+    public NutritionTrendResponse getTrends(Long userId, LocalDate startDate, LocalDate endDate,
+                                            TrendGranularity granularity) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days > maxDays) {
+            throw new IllegalArgumentException("Range too long: " + days + " days (max " + maxDays + ")");
+        }
+
+        int targetCalories = nutritionalPreferencesRepository.findByUserId(userId)
+            .map(prefs -> prefs.getCalorieTarget() != null ? prefs.getCalorieTarget() : 0)
+            .orElse(0);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("startDate", startDate)
+            .addValue("endDate", endDate)
+            .addValue("targetCalories", (double) targetCalories)
+            .addValue("proteinShare", MealNutritionEngine.PROTEIN_SHARE)
+            .addValue("carbsShare", MealNutritionEngine.CARBS_SHARE)
+            .addValue("fatsShare", MealNutritionEngine.FATS_SHARE);
+
+        long startedAt = System.currentTimeMillis();
+        // Rows arrive ordered by date, so buckets are created in order
+        Map<LocalDate, double[]> buckets = new LinkedHashMap<>();
+        jdbcTemplate.query(TREND_SQL, params, rs -> {
+            LocalDate periodStart = granularity.periodStart(rs.getDate("plan_date").toLocalDate());
+            double[] bucket = buckets.computeIfAbsent(periodStart, date -> new double[5]);
+            bucket[0] += 1;
+            bucket[1] += rs.getDouble("calories");
+            bucket[2] += rs.getDouble("protein");
+            bucket[3] += rs.getDouble("carbs");
+            bucket[4] += rs.getDouble("fats");
+        });
+
+        List<NutritionTrendResponse.TrendPoint> points = new ArrayList<>(buckets.size());
+        for (Map.Entry<LocalDate, double[]> entry : buckets.entrySet()) {
+            double[] bucket = entry.getValue();
+            int plannedDays = (int) bucket[0];
+            points.add(new NutritionTrendResponse.TrendPoint(
+                entry.getKey(),
+                plannedDays,
+                (int) Math.round(bucket[1]),
+                (int) Math.round(bucket[2]),
+                (int) Math.round(bucket[3]),
+                (int) Math.round(bucket[4]),
+                targetCalories * plannedDays));
+        }
+
+        logger.info("[TRENDS] userId={} range={}..{} granularity={} points={} durationMs={}",
+            userId, startDate, endDate, granularity, points.size(), System.currentTimeMillis() - startedAt);
+        return new NutritionTrendResponse(startDate, endDate, granularity, targetCalories, points);
+    }
+}
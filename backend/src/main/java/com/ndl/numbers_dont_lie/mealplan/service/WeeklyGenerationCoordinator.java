@@ -0,0 +1,230 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyGenerationClaim;
+import com.ndl.numbers_dont_lie.mealplan.repository.WeeklyGenerationClaimRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coordinator for weekly plan generation per (userId, startDate).
+ *
+ * Design intent:
+ * - Concurrent callers for the same user and week (e.g. /week fired twice, double-clicked refresh)
+ *   await one in-flight generation and share its resulting MealPlanVersion id,
+ *   instead of each bootstrapping AI and creating its own MealPlan
+ * - In-process: the first caller registers a future, later callers of the same kind join it;
+ *   reads and refreshes are separate flights, so a refresh never returns the version a
+ *   concurrent read produced
+ * - Across nodes: a leader takes a lease row (weekly_generation_claims) in a short transaction
+ *   serialized by a Postgres advisory xact lock; the same transaction first checks whether the
+ *   week already exists, so a node that waited for another one returns its version
+ * - The generation itself runs outside any transaction and persists in its own short one;
+ *   no connection or lock is held during the AI calls
+ * - A lease expires after leaseSeconds, so a crashed node blocks the week only that long
+ */
+@Service
+public class WeeklyGenerationCoordinator {
+    private static final Logger logger = LoggerFactory.getLogger(WeeklyGenerationCoordinator.class);
+
+    /** High 32 bits of the advisory lock key, keeps these locks apart from any other advisory lock users. */
+    private static final long LOCK_NAMESPACE = 0x57474E31L; // "WGN1"
+
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final WeeklyGenerationClaimRepository claimRepository;
+    private final Map<FlightKey, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${spring.datasource.url:}")
+    private String datasourceUrl;
+
+    @Value("${app.mealplan.single-flight.wait-seconds:180}")
+    private long waitSeconds;
+
+    @Value("${app.mealplan.single-flight.lease-seconds:600}")
+    private long leaseSeconds;
+
+    @Value("${app.mealplan.single-flight.poll-millis:500}")
+    private long pollMillis;
+
+    public WeeklyGenerationCoordinator(PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate,
+                                       WeeklyGenerationClaimRepository claimRepository) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.claimRepository = claimRepository;
+    }
+
+    /**
+     * Return the existing version of (userId, startDate), or generate it once.
+     *
+     * @param existing   current version id of the week, or null if it has no plan yet
+     * @param generation generates and persists the week; returns the new current version id
+     */
+    public Long generateOnce(Long userId, LocalDate startDate, Supplier<Long> existing, Supplier<Long> generation) {
+        return flight(new FlightKey(userId, startDate, false), existing, generation);
+    }
+
+    /**
+     * Generate a new version of (userId, startDate) even if one exists; concurrent refreshes share it.
+     */
+    public Long refreshOnce(Long userId, LocalDate startDate, Supplier<Long> generation) {
+        return flight(new FlightKey(userId, startDate, true), null, generation);
+    }
+
+    public boolean isInFlight(Long userId, LocalDate startDate) {
+        return inFlight.containsKey(new FlightKey(userId, startDate, false))
+            || inFlight.containsKey(new FlightKey(userId, startDate, true));
+    }
+
+    // ========== Private ==========
+
+    private Long flight(FlightKey key, Supplier<Long> existing, Supplier<Long> generation) {
+        CompletableFuture<Long> mine = new CompletableFuture<>();
+        CompletableFuture<Long> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            logger.info("[WEEK_SINGLE_FLIGHT] Joining in-flight {} userId={} startDate={}",
+                key.refresh() ? "refresh" : "generation", key.userId(), key.startDate());
+            return await(running, key);
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            logger.warn("[WEEK_SINGLE_FLIGHT] Generation for userId={} startDate={} runs inside the caller's " +
+                "transaction; its connection stays open for the whole generation", key.userId(), key.startDate());
+        }
+        try {
+            Long versionId = lead(key, existing, generation);
+            mine.complete(versionId);
+            return versionId;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Long lead(FlightKey key, Supplier<Long> existing, Supplier<Long> generation) {
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitSeconds);
+        while (true) {
+            Claim claim = claim(key, owner, existing);
+            if (claim.versionId() != null) {
+                logger.info("[WEEK_SINGLE_FLIGHT] Week already generated userId={} startDate={} versionId={}",
+                    key.userId(), key.startDate(), claim.versionId());
+                return claim.versionId();
+            }
+            if (claim.acquired()) {
+                break;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out waiting for weekly generation of user "
+                    + key.userId() + " week " + key.startDate());
+            }
+            pause();
+        }
+        try {
+            return generation.get();
+        } finally {
+            release(key, owner);
+        }
+    }
+
+    /**
+     * One short transaction: under the advisory lock, return the existing week, or take the
+     * lease if nobody holds it.
+     */
+    private Claim claim(FlightKey key, String owner, Supplier<Long> existing) {
+        try {
+            return transactionTemplate.execute(status -> {
+                acquireAdvisoryLock(key);
+                if (existing != null) {
+                    Long versionId = existing.get();
+                    if (versionId != null) {
+                        return new Claim(false, versionId);
+                    }
+                }
+                LocalDateTime now = LocalDateTime.now();
+                WeeklyGenerationClaim row = claimRepository
+                    .findByUserIdAndWeekStart(key.userId(), key.startDate())
+                    .orElseGet(() -> new WeeklyGenerationClaim(key.userId(), key.startDate()));
+                if (row.isActive(now)) {
+                    return new Claim(false, null);
+                }
+                row.take(owner, now.plusSeconds(leaseSeconds));
+                claimRepository.saveAndFlush(row);
+                return new Claim(true, null);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node inserted the lease first (no advisory lock outside Postgres)
+            return new Claim(false, null);
+        }
+    }
+
+    private void release(FlightKey key, String owner) {
+        try {
+            claimRepository.release(key.userId(), key.startDate(), owner);
+        } catch (RuntimeException e) {
+            // The lease expires on its own
+            logger.warn("[WEEK_SINGLE_FLIGHT] Lease not released userId={} startDate={}: {}",
+                key.userId(), key.startDate(), e.getMessage());
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(Math.max(10, pollMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for weekly generation", e);
+        }
+    }
+
+    private Long await(CompletableFuture<Long> future, FlightKey key) {
+        try {
+            return future.get(waitSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for weekly generation", e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out waiting for weekly generation of user "
+                + key.userId() + " week " + key.startDate(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void acquireAdvisoryLock(FlightKey key) {
+        if (datasourceUrl == null || !datasourceUrl.startsWith("jdbc:postgresql")) {
+            return;
+        }
+        // Explicit hash: must be identical on every node (record hashCode is not specified)
+        int hash = 31 * Long.hashCode(key.userId()) + Long.hashCode(key.startDate().toEpochDay());
+        long lockKey = (LOCK_NAMESPACE << 32) | (hash & 0xffffffffL);
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", lockKey);
+    }
+
+    private record FlightKey(Long userId, LocalDate startDate, boolean refresh) {
+    }
+
+    private record Claim(boolean acquired, Long versionId) {
+    }
+}
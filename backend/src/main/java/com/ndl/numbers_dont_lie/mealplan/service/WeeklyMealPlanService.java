@@ -14,8 +14,10 @@ import com.ndl.numbers_dont_lie.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -95,6 +97,8 @@ public class WeeklyMealPlanService {
     private final UserRepository userRepository;
     private final ProfileRepository profileRepository;
     private final NutritionSummaryService nutritionSummaryService;
+    private final MealPlanETagService mealPlanETagService;
+    private final TransactionTemplate transactionTemplate;
     
     public WeeklyMealPlanService(
             DayPlanAssemblerService dayPlanAssembler,
@@ -102,13 +106,17 @@ public class WeeklyMealPlanService {
             MealPlanVersionRepository mealPlanVersionRepository,
             UserRepository userRepository,
             ProfileRepository profileRepository,
-            NutritionSummaryService nutritionSummaryService) {
+            NutritionSummaryService nutritionSummaryService,
+            MealPlanETagService mealPlanETagService,
+            PlatformTransactionManager transactionManager) {
         this.dayPlanAssembler = dayPlanAssembler;
         this.mealPlanRepository = mealPlanRepository;
         this.mealPlanVersionRepository = mealPlanVersionRepository;
         this.userRepository = userRepository;
         this.profileRepository = profileRepository;
         this.nutritionSummaryService = nutritionSummaryService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
     
     /**
@@ -129,13 +137,15 @@ public class WeeklyMealPlanService {
      *    c. Handle failures gracefully
      * 4. Persist MealPlan with all versions and days
      * 5. Return complete MealPlan
+     *
+     * Steps 1-3 (the AI calls, minutes) run outside any transaction; only step 4 opens one,
+     * so no connection is held while the model answers.
      * 
      * @param userId User ID
      * @param startDate First day of the week (ISO 8601 date)
      * @return Complete MealPlan with 7 DayPlans
      * @throws IllegalStateException if prerequisites not met
      */
-    @Transactional
     public MealPlan generateWeeklyPlan(Long userId, LocalDate startDate) {
         logger.info("[WEEK_PLAN] Generating week for userId={} startDate={}", 
             userId, startDate);
@@ -150,9 +160,8 @@ public class WeeklyMealPlanService {
         
         String timezone = profile.getTimezone() != null ? profile.getTimezone() : "UTC";
         
-        // Step 2: Create + persist MealPlan (root aggregate)
+        // Step 2: Create MealPlan (root aggregate), persisted with the version in step 6
         MealPlan mealPlan = new MealPlan(userId, PlanDuration.WEEKLY, timezone);
-        mealPlan = mealPlanRepository.save(mealPlan);
         
         // Step 3: Create MealPlanVersion (version 1, initial creation)
         MealPlanVersion version = new MealPlanVersion(
@@ -163,6 +172,7 @@ public class WeeklyMealPlanService {
         
         // Step 4: Generate 7 consecutive DayPlans
         List<DayPlan> dayPlans = new ArrayList<>();
+        List<DayPlan> generatedDays = new ArrayList<>();
         List<DailyNutritionSummary> dailySummaries = new ArrayList<>();
         int successCount = 0;
         int failureCount = 0;
@@ -195,8 +205,7 @@ public class WeeklyMealPlanService {
                 });
                 
                 dayPlans.add(dayPlan);
-                DailyNutritionSummary summary = nutritionSummaryService.generateSummary(dayPlan);
-                dailySummaries.add(summary);
+                generatedDays.add(dayPlan);
                 successCount++;
                 
                 logger.info("[WEEK_PLAN] Day {} generated with {} meals", 
@@ -218,21 +227,26 @@ public class WeeklyMealPlanService {
             }
         }
         
+        // Nutrition of all generated days in one pass (targets loaded once); also stores day totals
+        dailySummaries.addAll(nutritionSummaryService.generateSummaries(userId, generatedDays));
+        
         // Step 5: Add all DayPlans to version
         for (DayPlan dayPlan : dayPlans) {
             version.addDayPlan(dayPlan);
         }
         
-        // Step 6: Link version to MealPlan and persist version + day plans
-        mealPlan.setCurrentVersion(version);
-        mealPlan.getVersions().add(version);
-        version.setMealPlan(mealPlan);
-        MealPlanVersion savedVersion = mealPlanVersionRepository.save(version);
-        
-        // Step 7: Update MealPlan currentVersion reference
-        mealPlan.setCurrentVersion(savedVersion);
-        MealPlan savedPlan = mealPlanRepository.save(mealPlan);
-        WeeklyNutritionSummary weeklySummary = aggregateWeeklyNutrition(dailySummaries);
+        // Step 6-7: Persist plan, version + day plans and the currentVersion reference in one short transaction
+        MealPlan savedPlan = transactionTemplate.execute(status -> {
+            MealPlan persistedPlan = mealPlanRepository.save(mealPlan);
+            persistedPlan.getVersions().add(version);
+            version.setMealPlan(persistedPlan);
+            MealPlanVersion savedVersion = mealPlanVersionRepository.save(version);
+            persistedPlan.setCurrentVersion(savedVersion);
+            MealPlan plan = mealPlanRepository.save(persistedPlan);
+            mealPlanETagService.invalidateUser(userId);
+            return plan;
+        });
+        WeeklyNutritionSummary weeklySummary = nutritionSummaryService.aggregateWeekly(dailySummaries);
         logger.info("[WEEK_PLAN] Weekly nutrition: cal={} target={} est={}",
             Math.round(weeklySummary.getTotalCalories()),
             Math.round(weeklySummary.getTargetCalories()),
@@ -267,6 +281,7 @@ public class WeeklyMealPlanService {
         tempVersion.setReason(VersionReason.INITIAL_GENERATION);
 
         List<DayPlan> dayPlans = new ArrayList<>();
+        List<DayPlan> generatedDays = new ArrayList<>();
         List<DailyNutritionSummary> dailySummaries = new ArrayList<>();
         Set<String> weekUsedTitles = new java.util.HashSet<>();
         Set<String> usedRecipeIds = new java.util.HashSet<>();
@@ -292,7 +307,7 @@ public class WeeklyMealPlanService {
                 
                 logger.info("[WEEK_PLAN] Generated day {} with {} meals", currentDate, dayPlan.getMeals().size());
                 dayPlans.add(dayPlan);
-                dailySummaries.add(nutritionSummaryService.generateSummary(dayPlan));
+                generatedDays.add(dayPlan);
             } catch (Exception e) {
                 logger.error("[WEEK_PLAN] Failed to generate day {}: {}", currentDate, e.getMessage(), e);
                 DayPlan placeholderDay = createPlaceholderDayPlan(tempVersion, currentDate, userId);
@@ -305,7 +320,8 @@ public class WeeklyMealPlanService {
         }
 
         LocalDate endDate = startDate.plusDays(6);
-        WeeklyNutritionSummary weeklySummary = aggregateWeeklyNutrition(dailySummaries);
+        dailySummaries.addAll(nutritionSummaryService.generateSummaries(userId, generatedDays));
+        WeeklyNutritionSummary weeklySummary = nutritionSummaryService.aggregateWeekly(dailySummaries);
         logger.info("[WEEK_PLAN] Weekly plan complete (7 days)");
         
         // DEBUG: Log meals before serialization
@@ -322,58 +338,15 @@ public class WeeklyMealPlanService {
 
     /**
      * Build a WeeklyPlanResponse from existing day plans (already persisted).
-     * Computes daily and weekly nutrition summaries.
+     * Computes daily and weekly nutrition summaries in one batch.
      */
     public WeeklyPlanResponse buildWeeklyPlanResponse(LocalDate startDate, List<DayPlan> dayPlans) {
-        List<DailyNutritionSummary> dailySummaries = new ArrayList<>();
-        for (DayPlan dayPlan : dayPlans) {
-            dailySummaries.add(nutritionSummaryService.generateSummary(dayPlan));
-        }
-        WeeklyNutritionSummary weeklySummary = aggregateWeeklyNutrition(dailySummaries);
+        Long userId = dayPlans.isEmpty() ? null : dayPlans.get(0).getUserId();
+        WeeklyNutritionSummary weeklySummary = nutritionSummaryService.aggregateWeekly(
+            nutritionSummaryService.generateSummaries(userId, dayPlans));
         LocalDate endDate = startDate.plusDays(6);
         return new WeeklyPlanResponse(startDate, endDate, dayPlans, weeklySummary);
     }
-
-    private WeeklyNutritionSummary aggregateWeeklyNutrition(List<DailyNutritionSummary> dailySummaries) {
-        WeeklyNutritionSummary weekly = new WeeklyNutritionSummary();
-        double totalCal = 0, totalPro = 0, totalCarb = 0, totalFat = 0;
-        double targetCal = 0, targetPro = 0, targetCarb = 0, targetFat = 0;
-
-        for (DailyNutritionSummary day : dailySummaries) {
-            totalCal += safe(day.getTotalCalories());
-            totalPro += safe(day.getTotalProtein());
-            totalCarb += safe(day.getTotalCarbs());
-            totalFat += safe(day.getTotalFats());
-            targetCal += safe(day.getTargetCalories());
-            targetPro += safe(day.getTargetProtein());
-            targetCarb += safe(day.getTargetCarbs());
-            targetFat += safe(day.getTargetFats());
-        }
-
-        weekly.setTotalCalories(totalCal);
-        weekly.setTotalProtein(totalPro);
-        weekly.setTotalCarbs(totalCarb);
-        weekly.setTotalFats(totalFat);
-        weekly.setTargetCalories(targetCal);
-        weekly.setTargetProtein(targetPro);
-        weekly.setTargetCarbs(targetCarb);
-        weekly.setTargetFats(targetFat);
-        weekly.setCaloriesPercentage(percent(totalCal, targetCal));
-        weekly.setProteinPercentage(percent(totalPro, targetPro));
-        weekly.setCarbsPercentage(percent(totalCarb, targetCarb));
-        weekly.setFatsPercentage(percent(totalFat, targetFat));
-        weekly.setNutritionEstimated(true);
-        return weekly;
-    }
-
-    private double safe(Double value) {
-        return value != null ? value : 0.0;
-    }
-
-    private double percent(double actual, double target) {
-        if (target <= 0.0) return 0.0;
-        return (actual / target) * 100.0;
-    }
     
     /**
      * Create a placeholder DayPlan when daily generation fails.
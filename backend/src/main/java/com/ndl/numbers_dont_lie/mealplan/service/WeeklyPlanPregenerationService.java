@@ -0,0 +1,424 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.ai.AiStrategyService;
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp;
+import com.ndl.numbers_dont_lie.mealplan.dto.PregenerationRunStats;
+import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyPlanResponse;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanPregenerationJob;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanVersionRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.WeeklyPlanPregenerationJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nightly pre-generation of next week's plans for recently active users.
+ *
+ * Design intent:
+ * - Moves the Monday-morning burst of weekly generation (Groq calls + DB writes) into an off-peak window
+ * - Reuses WeeklyMealPlanService.generateWeeklyPlan() and materializes the weekly snapshot,
+ *   so GET /week serves the pre-built version without any generation
+ * - Work queue is the weekly_plan_pregeneration_jobs table: a restart mid-run loses nothing,
+ *   the next trigger (or startup inside the window) continues with the open jobs
+ * - A worker claims a job with one conditional UPDATE (status + attempts) before doing any work,
+ *   so two workers or two instances never run the same job, and a job that crashes or hangs
+ *   its worker still uses up an attempt; a RUNNING job whose lease expired is claimable again
+ *   until maxAttempts, then closed as FAILED
+ * - Bounded concurrency (fixed worker pool) and a global pacing gate keep the run inside the AI rate budget
+ * - Workers stop taking jobs when the off-peak window closes; leftovers are done the next night
+ *
+ * Users whose AI session (strategy + meal structure) is not cached are skipped: bootstrapping
+ * them would double the AI calls per user, and they are served on demand as before.
+ *
+ * Meters (exported at /actuator/prometheus):
+ * - mealplan.pregeneration.jobs          counter by outcome (done, skipped, failed, taken)
+ * - mealplan.pregeneration.job.duration  timer by outcome
+ * - mealplan.pregeneration.run.duration  timer of whole runs
+ * - mealplan.pregeneration.remaining     gauge: runnable jobs left after the last run
+ */
+@Service
+public class WeeklyPlanPregenerationService {
+    private static final Logger logger = LoggerFactory.getLogger(WeeklyPlanPregenerationService.class);
+
+    private final WeeklyMealPlanService weeklyMealPlanService;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final AiStrategyService aiStrategyService;
+    private final DayPlanRepository dayPlanRepository;
+    private final MealPlanVersionRepository mealPlanVersionRepository;
+    private final WeeklyPlanPregenerationJobRepository jobRepository;
+    private final WeeklyGenerationCoordinator weeklyGenerationCoordinator;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.mealplan.pregeneration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.mealplan.pregeneration.concurrency:2}")
+    private int concurrency;
+
+    @Value("${app.mealplan.pregeneration.max-per-minute:12}")
+    private int maxPerMinute;
+
+    @Value("${app.mealplan.pregeneration.max-per-run:500}")
+    private int maxPerRun;
+
+    @Value("${app.mealplan.pregeneration.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.mealplan.pregeneration.lease-minutes:30}")
+    private long leaseMinutes;
+
+    @Value("${app.mealplan.pregeneration.active-days:14}")
+    private int activeDays;
+
+    @Value("${app.mealplan.pregeneration.window-start:01:00}")
+    private String windowStart;
+
+    @Value("${app.mealplan.pregeneration.window-end:06:00}")
+    private String windowEnd;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Object pacingLock = new Object();
+    private long nextPermitAtNanos;
+    private volatile PregenerationRunStats lastRun;
+    private final AtomicInteger remainingGauge = new AtomicInteger();
+
+    public WeeklyPlanPregenerationService(
+            WeeklyMealPlanService weeklyMealPlanService,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            AiStrategyService aiStrategyService,
+            DayPlanRepository dayPlanRepository,
+            MealPlanVersionRepository mealPlanVersionRepository,
+            WeeklyPlanPregenerationJobRepository jobRepository,
+            WeeklyGenerationCoordinator weeklyGenerationCoordinator,
+            MeterRegistry meterRegistry) {
+        this.weeklyMealPlanService = weeklyMealPlanService;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.aiStrategyService = aiStrategyService;
+        this.dayPlanRepository = dayPlanRepository;
+        this.mealPlanVersionRepository = mealPlanVersionRepository;
+        this.jobRepository = jobRepository;
+        this.weeklyGenerationCoordinator = weeklyGenerationCoordinator;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("mealplan.pregeneration.remaining", remainingGauge, AtomicInteger::get)
+            .description("Runnable pre-generation jobs left after the last run")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.mealplan.pregeneration.cron:0 0 1 * * *}")
+    public void runNightly() {
+        if (!enabled) {
+            return;
+        }
+        run(nextWeekStart(LocalDate.now()), false);
+    }
+
+    /**
+     * Resume an interrupted run when the application restarts inside the off-peak window.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeAfterRestart() {
+        if (!enabled || !insideWindow(LocalTime.now())) {
+            return;
+        }
+        LocalDate weekStart = nextWeekStart(LocalDate.now());
+        if (jobRepository.findRunnable(weekStart, maxAttempts, staleBefore()).isEmpty()) {
+            return;
+        }
+        logger.info("[WEEK_PREGEN] Resuming interrupted run for weekStart={}", weekStart);
+        Thread.ofVirtual().name("week-pregen-resume").start(() -> run(weekStart, false));
+    }
+
+    /**
+     * Run pre-generation for the given week. Returns null if a run is already in progress.
+     *
+     * @param ignoreWindow true for manual triggers outside the off-peak window
+     */
+    public PregenerationRunStats run(LocalDate weekStart, boolean ignoreWindow) {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("[WEEK_PREGEN] Run already in progress, skipping trigger");
+            return null;
+        }
+        try {
+            return doRun(weekStart, ignoreWindow);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public PregenerationRunStats getLastRun() {
+        return lastRun;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Job counts per status for the week the next nightly run targets.
+     */
+    public Map<String, Long> jobCounts(LocalDate weekStart) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (PregenerationStatus status : PregenerationStatus.values()) {
+            counts.put(status.name().toLowerCase(), jobRepository.countByWeekStartAndStatus(weekStart, status));
+        }
+        return counts;
+    }
+
+    public LocalDate upcomingWeekStart() {
+        return nextWeekStart(LocalDate.now());
+    }
+
+    // ========== Private ==========
+
+    private PregenerationRunStats doRun(LocalDate weekStart, boolean ignoreWindow) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        int enqueued = enqueueActiveUsers(weekStart);
+        int abandoned = jobRepository.failAbandoned(weekStart, maxAttempts, staleBefore(), LocalDateTime.now());
+        if (abandoned > 0) {
+            logger.warn("[WEEK_PREGEN] Closed {} job(s) whose last attempt never finished", abandoned);
+        }
+
+        List<WeeklyPlanPregenerationJob> jobs = jobRepository.findRunnable(weekStart, maxAttempts, staleBefore());
+        List<WeeklyPlanPregenerationJob> batch = jobs.subList(0, Math.min(jobs.size(), Math.max(0, maxPerRun)));
+        logger.info("[WEEK_PREGEN] Run started weekStart={} enqueued={} runnable={} batch={} concurrency={}",
+            weekStart, enqueued, jobs.size(), batch.size(), concurrency);
+
+        AtomicInteger attempted = new AtomicInteger();
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        synchronized (pacingLock) {
+            nextPermitAtNanos = System.nanoTime();
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, concurrency),
+            Thread.ofPlatform().name("week-pregen-", 0).daemon(true).factory());
+        try {
+            List<Future<?>> futures = new ArrayList<>(batch.size());
+            for (WeeklyPlanPregenerationJob job : batch) {
+                futures.add(workers.submit(() -> {
+                    if (!ignoreWindow && !insideWindow(LocalTime.now())) {
+                        return null;
+                    }
+                    WeeklyPlanPregenerationJob claimed = claim(job);
+                    if (claimed == null) {
+                        return null;
+                    }
+                    awaitPermit();
+                    attempted.incrementAndGet();
+                    switch (process(claimed)) {
+                        case DONE -> generated.incrementAndGet();
+                        case SKIPPED -> skipped.incrementAndGet();
+                        default -> failed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    logger.warn("[WEEK_PREGEN] Worker failed: {}", e.getMessage());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long durationMs = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+        int remaining = jobRepository.findRunnable(weekStart, maxAttempts, staleBefore()).size();
+        remainingGauge.set(remaining);
+        Timer.builder("mealplan.pregeneration.run.duration")
+            .description("Duration of a nightly pre-generation run")
+            .register(meterRegistry)
+            .record(durationMs, TimeUnit.MILLISECONDS);
+        double throughput = durationMs > 0 ? generated.get() * 60_000.0 / durationMs : 0.0;
+        PregenerationRunStats stats = new PregenerationRunStats(
+            weekStart, startedAt, LocalDateTime.now(),
+            attempted.get(), generated.get(), skipped.get(), failed.get(), remaining,
+            durationMs, throughput);
+        lastRun = stats;
+        logger.info("[WEEK_PREGEN] Run finished weekStart={} attempted={} generated={} skipped={} failed={} " +
+                "remaining={} durationMs={} throughputPerMin={}",
+            weekStart, stats.attempted(), stats.generated(), stats.skipped(), stats.failed(),
+            stats.remaining(), durationMs, String.format("%.2f", throughput));
+        return stats;
+    }
+
+    private int enqueueActiveUsers(LocalDate weekStart) {
+        List<Long> activeUserIds = mealPlanVersionRepository
+            .findUserIdsWithVersionsCreatedSince(LocalDateTime.now().minusDays(activeDays));
+        Set<Long> known = new HashSet<>(jobRepository.findUserIdsByWeekStart(weekStart));
+        List<WeeklyPlanPregenerationJob> fresh = new ArrayList<>();
+        activeUserIds.stream()
+            .filter(userId -> userId != null && known.add(userId))
+            .sorted(Comparator.naturalOrder())
+            .forEach(userId -> fresh.add(new WeeklyPlanPregenerationJob(userId, weekStart)));
+        jobRepository.saveAll(fresh);
+        return fresh.size();
+    }
+
+    /**
+     * Claim a job for this worker; null if another worker or instance has it or it is used up.
+     * Returns the row as claimed (status RUNNING, attempt counted).
+     */
+    private WeeklyPlanPregenerationJob claim(WeeklyPlanPregenerationJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRepository.claim(job.getId(), maxAttempts, staleBefore(), now) == 0) {
+            record("taken", 0L);
+            logger.debug("[WEEK_PREGEN] Job {} taken elsewhere, skipping", job.getId());
+            return null;
+        }
+        return jobRepository.findById(job.getId()).orElse(null);
+    }
+
+    private PregenerationStatus process(WeeklyPlanPregenerationJob job) {
+        Long userId = job.getUserId();
+        LocalDate weekStart = job.getWeekStart();
+        long startNanos = System.nanoTime();
+        try {
+            if (!dayPlanRepository.findStampsByUserIdAndDateRangeAndDuration(
+                    userId, weekStart, weekStart.plusDays(6), PlanDuration.WEEKLY).isEmpty()) {
+                job.markSkipped("Weekly plan already exists");
+            } else if (aiStrategyService.getCachedStrategy(String.valueOf(userId)) == null
+                    || aiStrategyService.getCachedMealStructure(String.valueOf(userId)) == null) {
+                job.markSkipped("AI session not cached");
+            } else {
+                // Shares the user's /week single-flight: a user opening the app mid-run never doubles the work
+                Long versionId = weeklyGenerationCoordinator.generateOnce(userId, weekStart,
+                    () -> existingVersionId(userId, weekStart), () -> generate(userId, weekStart));
+                if (versionId != null) {
+                    materialize(userId, weekStart, versionId);
+                }
+                job.markDone(versionId);
+                logger.info("[WEEK_PREGEN] Generated userId={} weekStart={} versionId={}",
+                    userId, weekStart, job.getVersionId());
+            }
+        } catch (Exception e) {
+            logger.warn("[WEEK_PREGEN] Failed userId={} weekStart={} attempt={}: {}",
+                userId, weekStart, job.getAttempts(), e.getMessage());
+            job.markFailed(e.getMessage());
+        }
+        jobRepository.save(job);
+        record(job.getStatus().name().toLowerCase(), System.nanoTime() - startNanos);
+        return job.getStatus();
+    }
+
+    private void record(String outcome, long durationNanos) {
+        Counter.builder("mealplan.pregeneration.jobs")
+            .description("Pre-generation jobs by outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .increment();
+        if (durationNanos > 0) {
+            Timer.builder("mealplan.pregeneration.job.duration")
+                .description("Duration of one pre-generation job")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private LocalDateTime staleBefore() {
+        return LocalDateTime.now().minusMinutes(Math.max(1, leaseMinutes));
+    }
+
+    private Long existingVersionId(Long userId, LocalDate weekStart) {
+        List<DayPlanStamp> stamps = dayPlanRepository.findStampsByUserIdAndDateRangeAndDuration(
+            userId, weekStart, weekStart.plusDays(6), PlanDuration.WEEKLY);
+        return stamps.isEmpty() ? null : stamps.get(stamps.size() - 1).versionId();
+    }
+
+    private Long generate(Long userId, LocalDate weekStart) {
+        MealPlanVersion version = weeklyMealPlanService.generateWeeklyPlan(userId, weekStart).getCurrentVersion();
+        return version != null ? version.getId() : null;
+    }
+
+    private void materialize(Long userId, LocalDate weekStart, Long versionId) {
+        try {
+            List<DayPlan> dayPlans = new ArrayList<>(dayPlanRepository
+                .findByMealPlanVersionIdAndDateRangeWithMeals(versionId, weekStart, weekStart.plusDays(6)));
+            dayPlans.sort(Comparator.comparing(DayPlan::getDate));
+            WeeklyPlanResponse response = weeklyMealPlanService.buildWeeklyPlanResponse(weekStart, dayPlans);
+            weeklyPlanReadModelService.materialize(userId, weekStart, versionId, response);
+        } catch (Exception e) {
+            // The plan is saved; GET /week rebuilds the snapshot on first read
+            logger.warn("[WEEK_PREGEN] Snapshot not materialized userId={} versionId={}: {}",
+                userId, versionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Global pacing across workers: at most maxPerMinute generations start per minute.
+     */
+    private void awaitPermit() throws InterruptedException {
+        if (maxPerMinute <= 0) {
+            return;
+        }
+        long intervalNanos = Duration.ofMinutes(1).toNanos() / maxPerMinute;
+        long waitNanos;
+        synchronized (pacingLock) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextPermitAtNanos);
+            nextPermitAtNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        }
+    }
+
+    private boolean insideWindow(LocalTime now) {
+        LocalTime start = LocalTime.parse(windowStart);
+        LocalTime end = LocalTime.parse(windowEnd);
+        if (start.equals(end)) {
+            return true;
+        }
+        if (start.isBefore(end)) {
+            return !now.isBefore(start) && now.isBefore(end);
+        }
+        // Window wraps midnight (e.g. 22:00-05:00)
+        return !now.isBefore(start) || now.isBefore(end);
+    }
+
+    static LocalDate nextWeekStart(LocalDate today) {
+        return today.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+    }
+}
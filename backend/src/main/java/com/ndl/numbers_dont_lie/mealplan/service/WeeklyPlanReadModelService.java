@@ -0,0 +1,142 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyPlanResponse;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanSnapshot;
+import com.ndl.numbers_dont_lie.mealplan.repository.WeeklyPlanSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Maintains the materialized weekly plan read model (see {@link WeeklyPlanSnapshot}).
+ *
+ * Lifecycle:
+ * - Read: GET /week looks up the snapshot of the current version and streams its bytes
+ * - Build: on a miss the controller assembles WeeklyPlanResponse as before and materializes it here
+ * - Version written (generate/regenerate): new version id, so old rows simply stop matching
+ * - Version restored: the restored version's rows match again and are served as-is
+ * - Meal edited (replace/move/custom add/delete): rows of that version are evicted and rebuilt on next read
+ */
+@Service
+public class WeeklyPlanReadModelService {
+    private static final Logger logger = LoggerFactory.getLogger(WeeklyPlanReadModelService.class);
+
+    private final WeeklyPlanSnapshotRepository snapshotRepository;
+    private final ObjectMapper objectMapper;
+
+    public WeeklyPlanReadModelService(WeeklyPlanSnapshotRepository snapshotRepository, ObjectMapper objectMapper) {
+        this.snapshotRepository = snapshotRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Find the snapshot of the week built from a version that is still current.
+     */
+    @Transactional(readOnly = true)
+    public Optional<WeeklyPlanSnapshot> findCurrent(Long userId, LocalDate weekStart) {
+        List<WeeklyPlanSnapshot> snapshots = snapshotRepository.findCurrentByUserIdAndWeekStart(userId, weekStart);
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(0));
+    }
+
+    /**
+     * Serialize the response once and store it as the read model for (userId, weekStart, versionId).
+     *
+     * Runs in its own transaction so a failed write (e.g. concurrent rebuild hitting the unique key)
+     * never rolls back the caller's plan generation.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public WeeklyPlanSnapshot materialize(Long userId, LocalDate weekStart, Long versionId, WeeklyPlanResponse response) {
+        byte[] payload = serialize(response);
+        WeeklyPlanSnapshot snapshot = snapshotRepository
+            .findByUserIdAndWeekStartAndVersionId(userId, weekStart, versionId)
+            .orElseGet(() -> new WeeklyPlanSnapshot(userId, weekStart, versionId));
+        snapshot.setPayload(payload);
+        snapshot.setEtag(computeETag(payload));
+        WeeklyPlanSnapshot saved = snapshotRepository.save(snapshot);
+        logger.info("[WEEK_SNAPSHOT] Materialized userId={} weekStart={} versionId={} bytes={}",
+            userId, weekStart, versionId, payload.length);
+        return saved;
+    }
+
+    private byte[] serialize(WeeklyPlanResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize weekly plan: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drop all snapshots built from the given version.
+     * Joins the caller's transaction so an edit that rolls back keeps its snapshot.
+     */
+    @Transactional
+    public void evictVersion(Long versionId) {
+        if (versionId == null) {
+            return;
+        }
+        int deleted = snapshotRepository.deleteByVersionId(versionId);
+        if (deleted > 0) {
+            logger.info("[WEEK_SNAPSHOT] Evicted {} snapshot(s) for versionId={}", deleted, versionId);
+        }
+    }
+
+    /**
+     * Drop all snapshots of a user (nutrition targets in the payload come from preferences).
+     */
+    @Transactional
+    public void evictUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        int deleted = snapshotRepository.deleteByUserId(userId);
+        if (deleted > 0) {
+            logger.info("[WEEK_SNAPSHOT] Evicted {} snapshot(s) for userId={}", deleted, userId);
+        }
+    }
+
+    /**
+     * Drop every snapshot (recipe catalog changed: weekly nutrition is derived from recipe ingredients).
+     */
+    @Transactional
+    public void evictAll() {
+        snapshotRepository.deleteAllInBatch();
+        logger.info("[WEEK_SNAPSHOT] Evicted all snapshots");
+    }
+
+    /**
+     * Drop snapshots of the version owning this day plan (after one of its meals changed).
+     */
+    @Transactional
+    public void evictForDayPlan(DayPlan dayPlan) {
+        if (dayPlan == null) {
+            return;
+        }
+        MealPlanVersion version = dayPlan.getMealPlanVersion();
+        if (version != null) {
+            evictVersion(version.getId());
+        }
+    }
+
+    public static String computeETag(byte[] payload) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return "\"" + HexFormat.of().formatHex(digest.digest(payload)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.ndl.numbers_dont_lie.profile.event;
+
+/**
+ * Published after a profile was created or updated.
+ */
+public record ProfileUpdatedEvent(Long userId, String email) {
+}
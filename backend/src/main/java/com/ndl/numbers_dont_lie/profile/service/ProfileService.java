@@ -1,9 +1,12 @@
 package com.ndl.numbers_dont_lie.profile.service;
+import com.ndl.numbers_dont_lie.ai.AiProfileInputs;
+import com.ndl.numbers_dont_lie.ai.cache.AiSessionCache;
 import com.ndl.numbers_dont_lie.entity.UserEntity;
 import com.ndl.numbers_dont_lie.repository.UserRepository;
 import com.ndl.numbers_dont_lie.profile.entity.ProfileEntity;
 import com.ndl.numbers_dont_lie.profile.repository.ProfileRepository;
 import com.ndl.numbers_dont_lie.profile.dto.ProfileUpsertDto;
+import com.ndl.numbers_dont_lie.profile.event.ProfileUpdatedEvent;
 import com.ndl.numbers_dont_lie.weight.entity.WeightEntry;
 import com.ndl.numbers_dont_lie.weight.repository.WeightEntryRepository;
 
@@ -14,6 +17,7 @@ import com.ndl.numbers_dont_lie.weight.repository.WeightEntryRepository;
 
 
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -23,11 +27,16 @@ public class ProfileService {
   private final ProfileRepository profiles;
   private final UserRepository users;
   private final WeightEntryRepository weights;
+  private final AiSessionCache aiSessions;
+  private final ApplicationEventPublisher events;
 
-  public ProfileService(ProfileRepository profiles, UserRepository users, WeightEntryRepository weights) {
+  public ProfileService(ProfileRepository profiles, UserRepository users, WeightEntryRepository weights,
+                        AiSessionCache aiSessions, ApplicationEventPublisher events) {
     this.profiles = profiles;
     this.users = users;
     this.weights = weights;
+    this.aiSessions = aiSessions;
+    this.events = events;
   }
 
   public ProfileEntity upsert(String email, ProfileUpsertDto dto) {
@@ -59,6 +68,10 @@ public class ProfileService {
 
     ProfileEntity saved = profiles.save(p);
 
+    // стратегия ИИ строилась по старым данным профиля — сбрасываем, только если они изменились
+    aiSessions.invalidateIfChanged(String.valueOf(user.getId()),
+        AiSessionCache.fingerprint(AiProfileInputs.strategyRequest(user.getId(), saved)));
+
     // если в истории нет ни одной записи, а в профиле есть вес — создаём первую запись
     boolean hasNoHistory = weights.findAllByUserOrderByAtAsc(user).isEmpty();
     if (hasNoHistory && saved.getWeightKg() != null) {
@@ -74,6 +87,7 @@ public class ProfileService {
       }
     }
 
+    events.publishEvent(new ProfileUpdatedEvent(user.getId(), email));
     return saved;
   }
 
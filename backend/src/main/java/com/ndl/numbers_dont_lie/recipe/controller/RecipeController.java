@@ -2,23 +2,28 @@ package com.ndl.numbers_dont_lie.recipe.controller;
 
 import com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientReplaceRequest;
 import com.ndl.numbers_dont_lie.recipe.dto.RecipeServingsRequest;
-import com.ndl.numbers_dont_lie.ai.dto.GeneratedRecipe;
-import com.ndl.numbers_dont_lie.ai.function.DatabaseNutritionCalculator;
+import com.ndl.numbers_dont_lie.mealplan.service.MealPlanETagService;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanReadModelService;
 import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
 import com.ndl.numbers_dont_lie.recipe.entity.MealType;
 import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
 import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
 import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
 import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import com.ndl.numbers_dont_lie.recipe.service.IngredientResolver;
+import com.ndl.numbers_dont_lie.recipe.service.RecipeDetailCache;
+import com.ndl.numbers_dont_lie.recipe.service.RecipeNutritionCache;
 import java.util.Locale;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,7 +31,7 @@ import java.util.Map;
  * Recipe Controller
  * 
  * READ-ONLY API for fetching recipe details by ID.
- * No modifications, no generation, no caching - just fetch and return.
+ * No generation; details are served from RecipeDetailCache.
  * 
  * Endpoint:
  * - GET /api/recipes/{id} - Fetch recipe by stable ID (string ID like "r00001") or database ID (long)
@@ -39,15 +44,27 @@ public class RecipeController {
     
     private final RecipeRepository recipeRepository;
     private final IngredientRepository ingredientRepository;
-    private final DatabaseNutritionCalculator nutritionCalculator;
+    private final MealPlanETagService mealPlanETagService;
+    private final RecipeNutritionCache recipeNutritionCache;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final IngredientResolver ingredientResolver;
+    private final RecipeDetailCache recipeDetailCache;
     
     public RecipeController(
             RecipeRepository recipeRepository,
             IngredientRepository ingredientRepository,
-            DatabaseNutritionCalculator nutritionCalculator) {
+            MealPlanETagService mealPlanETagService,
+            RecipeNutritionCache recipeNutritionCache,
+            WeeklyPlanReadModelService weeklyPlanReadModelService,
+            IngredientResolver ingredientResolver,
+            RecipeDetailCache recipeDetailCache) {
         this.recipeRepository = recipeRepository;
         this.ingredientRepository = ingredientRepository;
-        this.nutritionCalculator = nutritionCalculator;
+        this.mealPlanETagService = mealPlanETagService;
+        this.recipeNutritionCache = recipeNutritionCache;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.ingredientResolver = ingredientResolver;
+        this.recipeDetailCache = recipeDetailCache;
     }
     
     /**
@@ -103,27 +120,32 @@ public class RecipeController {
      * Fetch a recipe by ID.
      * Supports both stable ID (String, e.g., "r00001") and database ID (Long).
      * Returns all fields from the Recipe entity as-is (raw data for debugging).
-     * 
+     * Served from the pre-rendered detail cache with a strong ETag (304 on If-None-Match).
+     *
      * @param id Recipe ID (stable string ID or database ID)
      * @return Recipe entity with all fields, or 404 if not found
      */
     @GetMapping("/{id}")
-    @Transactional(readOnly = true)
-    public ResponseEntity<?> getRecipeById(@PathVariable String id) {
-        logger.info("[RECIPE_API] GET /api/recipes/{} - Fetching recipe", id);
+    public ResponseEntity<?> getRecipeById(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.debug("[RECIPE_API] GET /api/recipes/{} - Fetching recipe", id);
         
         try {
-            var recipe = recipeRepository.findByStableId(id);
+            RecipeDetailCache.RecipeDetail detail = recipeDetailCache.getByStableId(id);
             
-            if (recipe.isEmpty()) {
+            if (detail == null) {
                 logger.warn("[RECIPE_API] Recipe not found for stable ID: {}", id);
                 return ResponseEntity.notFound().build();
             }
+            if (MealPlanETagService.matches(ifNoneMatch, detail.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(detail.etag()).build();
+            }
             
-            Recipe recipeEntity = recipe.get();
-            logger.info("[RECIPE_API] Found recipe: {} (stable ID: {})", recipeEntity.getTitle(), recipeEntity.getStableId());
-            
-            return ResponseEntity.ok(recipeToMap(recipeEntity));
+            return ResponseEntity.ok()
+                .eTag(detail.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(detail.json());
             
         } catch (Exception e) {
             logger.error("[RECIPE_API] Error fetching recipe ID {}: {}", id, e.getMessage(), e);
@@ -133,11 +155,11 @@ public class RecipeController {
 
     /**
      * Adjust recipe servings (read-only) and recalculate ingredient quantities + nutrition.
+     * Scales the cached base quantity and nutrition vectors of the recipe.
      *
      * POST /api/recipes/{recipeId}/servings
      */
     @PostMapping("/{recipeId}/servings")
-    @Transactional(readOnly = true)
     public ResponseEntity<?> adjustServings(
             @PathVariable Long recipeId,
             @RequestBody RecipeServingsRequest request) {
@@ -154,19 +176,12 @@ public class RecipeController {
             ));
         }
 
-        var recipeOpt = recipeRepository.findById(recipeId);
-        if (recipeOpt.isEmpty()) {
+        RecipeDetailCache.RecipeDetail detail = recipeDetailCache.getById(recipeId);
+        if (detail == null) {
             return ResponseEntity.notFound().build();
         }
 
-        Recipe recipe = recipeOpt.get();
-        int baseServings = recipe.getServings() != null && recipe.getServings() > 0
-            ? recipe.getServings()
-            : 1;
-        double ratio = (double) newServings / baseServings;
-
-        Map<String, Object> response = recipeToMapScaled(recipe, newServings, ratio);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(detail.scaled(newServings));
     }
 
     /**
@@ -214,6 +229,10 @@ public class RecipeController {
 
         target.setIngredient(replacement);
         Recipe saved = recipeRepository.save(recipe);
+        mealPlanETagService.recipeModified(saved.getStableId());
+        recipeNutritionCache.invalidate(saved.getStableId());
+        recipeDetailCache.invalidate(saved);
+        weeklyPlanReadModelService.evictAll();
         logger.info("[RECIPE_API] Replaced ingredient '{}' with '{}' for recipeId={}", oldName, newName, recipeId);
 
         return ResponseEntity.ok(recipeToMap(saved));
@@ -221,110 +240,19 @@ public class RecipeController {
     
     /**
      * Convert Recipe entity to a simple Map (avoiding circular references).
+     * Uses the cached detail entry when present.
      */
     private Map<String, Object> recipeToMap(Recipe recipe) {
-        var recipeMap = new HashMap<String, Object>();
-        recipeMap.put("id", recipe.getId());
-        recipeMap.put("stable_id", recipe.getStableId());
-        recipeMap.put("title", recipe.getTitle());
-        recipeMap.put("cuisine", recipe.getCuisine());
-        recipeMap.put("meal", recipe.getMeal());
-        recipeMap.put("servings", recipe.getServings());
-        recipeMap.put("summary", recipe.getSummary());
-        recipeMap.put("time", recipe.getTimeMinutes());
-        recipeMap.put("difficulty_level", recipe.getDifficultyLevel());
-        recipeMap.put("source", recipe.getSource());
-        recipeMap.put("img", recipe.getImageUrl());
-        recipeMap.put("dietary_tags", recipe.getDietaryTags());
-        
-        // Add ingredients as simple objects
-        var ingredientsList = new ArrayList<Map<String, Object>>();
-        for (var ri : recipe.getIngredients()) {
-            var ingMap = new HashMap<String, Object>();
-            var ingredient = ri.getIngredient();
-            ingMap.put("label", ingredient.getLabel());
-            ingMap.put("quantity", ri.getQuantity());
-            ingMap.put("unit", ingredient.getUnit());
-            ingMap.put("nutrition", ingredient.getNutrition());
-            ingredientsList.add(ingMap);
-        }
-        recipeMap.put("ingredients", ingredientsList);
-        
-        // Add preparation steps
-        var stepsList = new ArrayList<String>();
-        for (var step : recipe.getPreparationSteps()) {
-            stepsList.add(step.getDescription());
-        }
-        recipeMap.put("preparation", stepsList);
-        
-        return recipeMap;
-    }
-
-    private Map<String, Object> recipeToMapScaled(Recipe recipe, int newServings, double ratio) {
-        var recipeMap = new HashMap<String, Object>();
-        recipeMap.put("id", recipe.getId());
-        recipeMap.put("stable_id", recipe.getStableId());
-        recipeMap.put("title", recipe.getTitle());
-        recipeMap.put("cuisine", recipe.getCuisine());
-        recipeMap.put("meal", recipe.getMeal());
-        recipeMap.put("servings", newServings);
-        recipeMap.put("summary", recipe.getSummary());
-        recipeMap.put("time", recipe.getTimeMinutes());
-        recipeMap.put("difficulty_level", recipe.getDifficultyLevel());
-        recipeMap.put("source", recipe.getSource());
-        recipeMap.put("img", recipe.getImageUrl());
-        recipeMap.put("dietary_tags", recipe.getDietaryTags());
-
-        var ingredientsList = new ArrayList<Map<String, Object>>();
-        List<GeneratedRecipe.GeneratedIngredient> calcIngredients = new ArrayList<>();
-
-        for (var ri : recipe.getIngredients()) {
-            var ingredient = ri.getIngredient();
-            var ingMap = new HashMap<String, Object>();
-            ingMap.put("label", ingredient.getLabel());
-            double scaledQty = ri.getQuantity() * ratio;
-            ingMap.put("quantity", scaledQty);
-            ingMap.put("unit", ingredient.getUnit());
-            ingMap.put("nutrition", ingredient.getNutrition());
-            ingredientsList.add(ingMap);
-
-            GeneratedRecipe.GeneratedIngredient calcIng = new GeneratedRecipe.GeneratedIngredient();
-            calcIng.setName(ingredient.getLabel());
-            calcIng.setQuantity(scaledQty);
-            calcIng.setUnit(ingredient.getUnit());
-            if (ingredient.getStableId() != null) {
-                calcIng.setIngredientId(ingredient.getStableId());
-            }
-            calcIngredients.add(calcIng);
-        }
-        recipeMap.put("ingredients", ingredientsList);
-
-        var stepsList = new ArrayList<String>();
-        for (var step : recipe.getPreparationSteps()) {
-            stepsList.add(step.getDescription());
-        }
-        recipeMap.put("preparation", stepsList);
-
-        GeneratedRecipe.NutritionInfo nutrition = nutritionCalculator.calculate(calcIngredients, newServings);
-        Map<String, Object> nutritionSummary = new HashMap<>();
-        nutritionSummary.put("calories", nutrition.getCalories());
-        nutritionSummary.put("protein", nutrition.getProtein());
-        nutritionSummary.put("carbs", nutrition.getCarbohydrates());
-        nutritionSummary.put("fats", nutrition.getFat());
-        nutritionSummary.put("caloriesPerServing", nutrition.getCaloriesPerServing());
-        nutritionSummary.put("proteinPerServing", nutrition.getProteinPerServing());
-        nutritionSummary.put("carbsPerServing", nutrition.getCarbsPerServing());
-        nutritionSummary.put("fatsPerServing", nutrition.getFatPerServing());
-        recipeMap.put("nutrition_summary", nutritionSummary);
-
-        return recipeMap;
+        return recipeDetailCache.get(recipe).view();
     }
 
     private Ingredient createIngredient(String label, String fallbackUnit) {
         String stableId = generateNextIngredientStableId();
         String unit = fallbackUnit != null ? fallbackUnit : "gram";
         Ingredient ingredient = new Ingredient(stableId, label, unit, 100.0, 0.0, 0.0, 0.0, 0.0);
-        return ingredientRepository.save(ingredient);
+        Ingredient saved = ingredientRepository.save(ingredient);
+        ingredientResolver.invalidate();
+        return saved;
     }
 
     private String generateNextIngredientStableId() {
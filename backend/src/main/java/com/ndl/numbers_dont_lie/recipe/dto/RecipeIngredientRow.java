@@ -0,0 +1,24 @@
+package com.ndl.numbers_dont_lie.recipe.dto;
+
+import com.ndl.numbers_dont_lie.recipe.entity.IngredientCategory;
+
+/**
+ * Flat projection of one recipe ingredient line (no Recipe or Ingredient entity graph).
+ *
+ * @param recipeStableId stable id of the owning recipe (e.g. "r00001")
+ * @param ingredientId   catalog ingredient database id
+ * @param label          catalog ingredient label
+ * @param unit           catalog ingredient unit
+ * @param category       catalog ingredient aisle (null for rows not yet classified)
+ * @param density        catalog ingredient density in g/ml (optional)
+ * @param quantity       quantity of the ingredient in the recipe at base servings
+ */
+public record RecipeIngredientRow(
+        String recipeStableId,
+        Long ingredientId,
+        String label,
+        String unit,
+        IngredientCategory category,
+        Double density,
+        Double quantity) {
+}
@@ -4,9 +4,13 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Column;
 import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
 import org.hibernate.annotations.JdbcTypeCode;
@@ -49,6 +53,21 @@ public class Ingredient {
     @Column(name = "embedding", columnDefinition = "real[]")
     private float[] embedding; // vector for RAG search (populated later)
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    @JsonProperty("category")
+    private IngredientCategory category; // shopping aisle, classified from the label on write
+
+    @Column(name = "density_g_per_ml")
+    @JsonProperty("density")
+    private Double density; // optional g/ml, lets volume quantities merge with mass quantities
+
+    @PrePersist
+    @PreUpdate
+    protected void classify() {
+        category = IngredientCategory.classify(label);
+    }
+
     public Ingredient() {
     }
 
@@ -158,6 +177,22 @@ public class Ingredient {
         nutrition.setFats(fats);
     }
 
+    public IngredientCategory getCategory() {
+        return category;
+    }
+
+    public void setCategory(IngredientCategory category) {
+        this.category = category;
+    }
+
+    public Double getDensity() {
+        return density;
+    }
+
+    public void setDensity(Double density) {
+        this.density = density;
+    }
+
     public float[] getEmbedding() {
         return embedding;
     }
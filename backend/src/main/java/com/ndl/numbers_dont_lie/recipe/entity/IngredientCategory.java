@@ -0,0 +1,67 @@
+package com.ndl.numbers_dont_lie.recipe.entity;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import java.util.Locale;
+
+/**
+ * Shopping aisle of a catalog ingredient.
+ * Classified once from the label when the ingredient is written (see {@link Ingredient}),
+ * so list builders read it instead of scanning keywords per item per request.
+ */
+public enum IngredientCategory {
+    DAIRY("Dairy"),
+    PROTEIN("Protein"),
+    PRODUCE("Produce"),
+    GRAINS("Grains"),
+    PANTRY("Pantry"),
+    BEVERAGES("Beverages"),
+    OTHER("Other");
+
+    private final String displayName;
+
+    IngredientCategory(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @JsonValue
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Keyword classification of an ingredient label (first matching aisle wins).
+     */
+    public static IngredientCategory classify(String label) {
+        String n = label == null ? "" : label.trim().toLowerCase(Locale.ROOT);
+        if (n.isEmpty()) return OTHER;
+
+        if (containsAny(n, "milk", "cheese", "yogurt", "butter", "cream", "mozzarella", "parmesan", "cheddar", "feta", "ricotta")) {
+            return DAIRY;
+        }
+        if (containsAny(n, "chicken", "beef", "pork", "turkey", "ham", "bacon", "sausage", "fish", "salmon", "tuna", "shrimp", "egg", "tofu", "lentil", "bean", "chickpea")) {
+            return PROTEIN;
+        }
+        if (containsAny(n, "apple", "banana", "orange", "berry", "grape", "lemon", "lime", "avocado", "tomato", "onion", "garlic", "lettuce", "spinach", "kale", "pepper", "cucumber", "carrot", "broccoli", "cauliflower", "mushroom", "potato", "sweet potato", "zucchini", "corn", "pea")) {
+            return PRODUCE;
+        }
+        if (containsAny(n, "rice", "pasta", "noodle", "bread", "tortilla", "oat", "flour", "cereal", "quinoa", "barley", "couscous")) {
+            return GRAINS;
+        }
+        if (containsAny(n, "oil", "vinegar", "sauce", "ketchup", "mustard", "mayo", "sugar", "salt", "pepper", "spice", "herb", "basil", "oregano", "cumin", "paprika", "chili", "cocoa", "vanilla")) {
+            return PANTRY;
+        }
+        if (containsAny(n, "water", "juice", "soda", "tea", "coffee", "milkshake")) {
+            return BEVERAGES;
+        }
+        return OTHER;
+    }
+
+    private static boolean containsAny(String text, String... needles) {
+        for (String n : needles) {
+            if (text.contains(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -10,4 +10,5 @@ public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
     Optional<Ingredient> findByStableId(String stableId);
     List<Ingredient> findByLabelContainingIgnoreCase(String keyword);
     Optional<Ingredient> findTopByOrderByIdDesc();
+    List<Ingredient> findByCategoryIsNull();
 }
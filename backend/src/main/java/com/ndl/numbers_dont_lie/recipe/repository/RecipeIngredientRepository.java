@@ -1,10 +1,27 @@
 package com.ndl.numbers_dont_lie.recipe.repository;
 
+import com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientRow;
 import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
 import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface RecipeIngredientRepository extends JpaRepository<RecipeIngredient, Long> {
     List<RecipeIngredient> findByRecipe(Recipe recipe);
+
+    /**
+     * Ingredient lines of several recipes in one query, as flat rows ordered by recipe then line.
+     * Used by list builders that only need label/unit/category/quantity, not the EAGER recipe graph.
+     */
+    @Query("SELECT new com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientRow(" +
+           "r.stableId, i.id, i.label, i.unit, i.category, i.density, ri.quantity) " +
+           "FROM RecipeIngredient ri " +
+           "JOIN ri.recipe r " +
+           "JOIN ri.ingredient i " +
+           "WHERE r.stableId IN :stableIds " +
+           "ORDER BY r.stableId ASC, ri.id ASC")
+    List<RecipeIngredientRow> findRowsByRecipeStableIdIn(@Param("stableIds") Collection<String> stableIds);
 }
@@ -2,6 +2,7 @@ package com.ndl.numbers_dont_lie.recipe.repository;
 
 import com.ndl.numbers_dont_lie.recipe.entity.MealType;
 import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -13,5 +14,6 @@ public interface RecipeRepository extends JpaRepository<Recipe, Long> {
     List<Recipe> findByTimeMinutesLessThanEqual(Integer maxMinutes);
     List<Recipe> findByTitleContainingIgnoreCase(String keyword);
     Optional<Recipe> findByStableId(String stableId);
+    List<Recipe> findByStableIdIn(Collection<String> stableIds);
     Optional<Recipe> findTopByOrderByIdDesc();
 }
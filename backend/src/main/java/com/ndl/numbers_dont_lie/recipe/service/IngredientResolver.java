@@ -0,0 +1,356 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves free-text ingredient names (AI-generated recipes) to catalog ingredients in memory.
+ *
+ * Design intent:
+ * - One immutable index per catalog generation: stable id map, exact label map,
+ *   token index and trigram index; built with a single findAll on first use
+ * - Lookups never hit the database; ingredient writes call {@link #invalidate()} and the
+ *   next lookup rebuilds the index
+ * - Name → ingredient resolutions (hits and misses) are memoized in a bounded LRU that
+ *   belongs to the index, so a rebuild also drops stale memo entries
+ *
+ * Matching order (first tier with a candidate wins):
+ * 1. Stable id
+ * 2. Exact normalized label
+ * 3. All query tokens present in the label, or all label tokens present in the query
+ * 4. Substring containment either way (previous behaviour)
+ * 5. Trigram similarity (Dice) of at least {@link #MIN_TRIGRAM_SIMILARITY}
+ *
+ * Ranking inside a tier is deterministic: higher trigram similarity, then shorter label,
+ * then label alphabetically, then lower id.
+ *
+ * Meters (exported at /actuator/prometheus):
+ * - nutrition.ingredient.resolutions  counter by outcome (hit, miss)
+ */
+@Service
+public class IngredientResolver {
+    private static final Logger logger = LoggerFactory.getLogger(IngredientResolver.class);
+
+    static final double MIN_TRIGRAM_SIMILARITY = 0.5;
+
+    private final IngredientRepository ingredientRepository;
+
+    @Value("${app.nutrition.ingredient-resolver.cache-size:2048}")
+    private int cacheSize = 2048;
+
+    private volatile Index index;
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+
+    public IngredientResolver(IngredientRepository ingredientRepository, MeterRegistry meterRegistry) {
+        this.ingredientRepository = ingredientRepository;
+        FunctionCounter.builder("nutrition.ingredient.resolutions", this,
+                resolver -> resolver.getLookupCount() - resolver.getMissCount())
+            .description("Ingredient names resolved to a catalog ingredient")
+            .tag("outcome", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("nutrition.ingredient.resolutions", misses, AtomicLong::get)
+            .description("Ingredient names resolved to a catalog ingredient")
+            .tag("outcome", "miss")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Resolve by stable id first, then by name; null when nothing matches.
+     */
+    public Ingredient resolve(String stableId, String name) {
+        lookups.incrementAndGet();
+        Index current = currentIndex();
+        if (stableId != null) {
+            Ingredient byId = current.byStableId.get(stableId);
+            if (byId != null) {
+                return byId;
+            }
+        }
+        String normalized = normalize(name);
+        Ingredient match = normalized.isEmpty() ? null : current.resolveName(normalized);
+        if (match == null) {
+            misses.incrementAndGet();
+            logger.debug("[INGREDIENT_RESOLVER] No match for '{}'", name);
+        }
+        return match;
+    }
+
+    /**
+     * Catalog ingredient by database id from the in-memory index; null if unknown.
+     */
+    public Ingredient findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return currentIndex().byId(id);
+    }
+
+    /**
+     * Ingredient catalog changed (insert or edit); the next lookup rebuilds the index.
+     * Repeated after the surrounding transaction completes so a rebuild cannot keep uncommitted state out.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        index = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    index = null;
+                }
+            });
+        }
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    // ========== Private ==========
+
+    private Index currentIndex() {
+        Index current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    long startedAt = System.currentTimeMillis();
+                    long builtFor = generation.get();
+                    current = new Index(ingredientRepository.findAll(), Math.max(16, cacheSize));
+                    // Invalidated while loading: serve this lookup, rebuild on the next one
+                    index = generation.get() == builtFor ? current : null;
+                    logger.info("[INGREDIENT_RESOLVER] Indexed {} ingredients in {} ms",
+                        current.ingredients.length, System.currentTimeMillis() - startedAt);
+                }
+            }
+        }
+        return current;
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    static String[] tokens(String normalized) {
+        return Arrays.stream(normalized.split("[^\\p{L}\\p{N}]+"))
+            .filter(token -> !token.isEmpty())
+            .toArray(String[]::new);
+    }
+
+    static Set<String> trigrams(String normalized) {
+        String padded = "  " + normalized + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Immutable snapshot of the catalog plus its resolution memo.
+     */
+    private static final class Index {
+        private static final int[] NONE = new int[0];
+        private static final int MISS = -1;
+
+        private final Ingredient[] ingredients;
+        private final String[] labels;
+        private final int[] gramCounts;
+        private final Set<String>[] labelTokens;
+        private final Map<String, Ingredient> byStableId;
+        private final Map<String, Integer> byLabel;
+        private final Map<String, int[]> byToken;
+        private final Map<String, int[]> byTrigram;
+        private final Map<String, Integer> memo;
+
+        @SuppressWarnings("unchecked")
+        Index(List<Ingredient> catalog, int memoSize) {
+            List<Ingredient> sorted = new ArrayList<>(catalog);
+            sorted.removeIf(ingredient -> ingredient.getLabel() == null);
+            sorted.sort((a, b) -> Long.compare(
+                a.getId() != null ? a.getId() : Long.MAX_VALUE,
+                b.getId() != null ? b.getId() : Long.MAX_VALUE));
+
+            int size = sorted.size();
+            ingredients = sorted.toArray(new Ingredient[0]);
+            labels = new String[size];
+            gramCounts = new int[size];
+            labelTokens = new Set[size];
+            Map<String, Ingredient> stableIds = new HashMap<>(size * 2);
+            Map<String, Integer> exact = new HashMap<>(size * 2);
+            Map<String, List<Integer>> tokenPostings = new HashMap<>();
+            Map<String, List<Integer>> trigramPostings = new HashMap<>();
+
+            for (int i = 0; i < size; i++) {
+                String label = normalize(ingredients[i].getLabel());
+                labels[i] = label;
+                if (ingredients[i].getStableId() != null) {
+                    stableIds.putIfAbsent(ingredients[i].getStableId(), ingredients[i]);
+                }
+                exact.putIfAbsent(label, i);
+                labelTokens[i] = new HashSet<>(Arrays.asList(tokens(label)));
+                for (String token : labelTokens[i]) {
+                    tokenPostings.computeIfAbsent(token, key -> new ArrayList<>()).add(i);
+                }
+                Set<String> grams = trigrams(label);
+                gramCounts[i] = grams.size();
+                for (String gram : grams) {
+                    trigramPostings.computeIfAbsent(gram, key -> new ArrayList<>()).add(i);
+                }
+            }
+
+            byStableId = Collections.unmodifiableMap(stableIds);
+            byLabel = Collections.unmodifiableMap(exact);
+            byToken = toPostings(tokenPostings);
+            byTrigram = toPostings(trigramPostings);
+            memo = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > memoSize;
+                }
+            });
+        }
+
+        Ingredient byId(long id) {
+            // Ingredients are sorted by id
+            int low = 0;
+            int high = ingredients.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                Long midId = ingredients[mid].getId();
+                if (midId == null || midId > id) {
+                    high = mid - 1;
+                } else if (midId < id) {
+                    low = mid + 1;
+                } else {
+                    return ingredients[mid];
+                }
+            }
+            return null;
+        }
+
+        Ingredient resolveName(String name) {
+            Integer cached = memo.get(name);
+            if (cached == null) {
+                cached = lookup(name);
+                memo.put(name, cached);
+            }
+            return cached == MISS ? null : ingredients[cached];
+        }
+
+        private int lookup(String name) {
+            Integer exact = byLabel.get(name);
+            if (exact != null) {
+                return exact;
+            }
+
+            Set<String> queryGrams = trigrams(name);
+            Map<Integer, Integer> sharedGrams = new HashMap<>();
+            for (String gram : queryGrams) {
+                for (int candidate : byTrigram.getOrDefault(gram, NONE)) {
+                    sharedGrams.merge(candidate, 1, Integer::sum);
+                }
+            }
+
+            // Tier 3: token containment
+            Set<String> queryTokens = new HashSet<>(Arrays.asList(tokens(name)));
+            Set<Integer> tokenCandidates = new HashSet<>();
+            for (String token : queryTokens) {
+                for (int candidate : byToken.getOrDefault(token, NONE)) {
+                    tokenCandidates.add(candidate);
+                }
+            }
+            int best = MISS;
+            for (int candidate : tokenCandidates) {
+                Set<String> candidateTokens = labelTokens[candidate];
+                if (candidateTokens.containsAll(queryTokens) || queryTokens.containsAll(candidateTokens)) {
+                    best = better(best, candidate, sharedGrams, queryGrams.size());
+                }
+            }
+            if (best != MISS) {
+                return best;
+            }
+
+            // Tier 4: substring containment. Either side contained in the other shares its inner
+            // trigrams, so checking labels that share any trigram is enough (names of 3+ chars).
+            for (int candidate : sharedGrams.keySet()) {
+                if (labels[candidate].contains(name) || name.contains(labels[candidate])) {
+                    best = better(best, candidate, sharedGrams, queryGrams.size());
+                }
+            }
+            if (best != MISS) {
+                return best;
+            }
+
+            // Tier 5: trigram similarity
+            for (Map.Entry<Integer, Integer> entry : sharedGrams.entrySet()) {
+                if (similarity(entry.getKey(), entry.getValue(), queryGrams.size()) >= MIN_TRIGRAM_SIMILARITY) {
+                    best = better(best, entry.getKey(), sharedGrams, queryGrams.size());
+                }
+            }
+            return best;
+        }
+
+        private int better(int current, int candidate, Map<Integer, Integer> sharedGrams, int queryGramCount) {
+            if (current == MISS) {
+                return candidate;
+            }
+            double currentScore = similarity(current, sharedGrams.getOrDefault(current, 0), queryGramCount);
+            double candidateScore = similarity(candidate, sharedGrams.getOrDefault(candidate, 0), queryGramCount);
+            if (candidateScore != currentScore) {
+                return candidateScore > currentScore ? candidate : current;
+            }
+            if (labels[candidate].length() != labels[current].length()) {
+                return labels[candidate].length() < labels[current].length() ? candidate : current;
+            }
+            int byLabelOrder = labels[candidate].compareTo(labels[current]);
+            if (byLabelOrder != 0) {
+                return byLabelOrder < 0 ? candidate : current;
+            }
+            // Same label: ingredients are sorted by id, so the lower position has the lower id
+            return Math.min(candidate, current);
+        }
+
+        private double similarity(int candidate, int shared, int queryGramCount) {
+            return 2.0 * shared / (queryGramCount + gramCounts[candidate]);
+        }
+
+        private static Map<String, int[]> toPostings(Map<String, List<Integer>> postings) {
+            Map<String, int[]> result = new HashMap<>(postings.size() * 2);
+            for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            return Collections.unmodifiableMap(result);
+        }
+    }
+}
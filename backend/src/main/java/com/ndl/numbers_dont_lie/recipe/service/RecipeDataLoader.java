@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ndl.numbers_dont_lie.recipe.entity.DifficultyLevel;
 import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.IngredientCategory;
 import com.ndl.numbers_dont_lie.recipe.entity.MealType;
 import com.ndl.numbers_dont_lie.recipe.entity.Nutrition;
 import com.ndl.numbers_dont_lie.recipe.entity.PreparationStep;
@@ -15,7 +16,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,7 +34,7 @@ import org.springframework.core.io.ClassPathResource;
 /**
  * Intelligent DataLoader for recipe and ingredient data management.
  * Works with new JSON data structures:
- * - Ingredients: id, label, unit, quantity, nutrition{calories, carbs, protein, fats}
+ * - Ingredients: id, label, unit, quantity, nutrition{calories, carbs, protein, fats}, optional density (g/ml)
  * - Recipes: id, title, cuisine, meal, servings, ingredients[], summary, time, difficulty_level, dietary_tags[], source, img, preparation[]
  * 
  * On application startup, this component:
@@ -50,6 +53,8 @@ public class RecipeDataLoader implements CommandLineRunner {
     private final IngredientRepository ingredientRepository;
     private final RecipeRepository recipeRepository;
     private final ObjectMapper objectMapper;
+    private final IngredientResolver ingredientResolver;
+    private final TransactionTemplate transactionTemplate;
     
     // Statistics tracking
     private long ingredientsBeforeCount = 0;
@@ -69,10 +74,14 @@ public class RecipeDataLoader implements CommandLineRunner {
     
     public RecipeDataLoader(IngredientRepository ingredientRepository, 
                            RecipeRepository recipeRepository,
-                           ObjectMapper objectMapper) {
+                           ObjectMapper objectMapper,
+                           IngredientResolver ingredientResolver,
+                           PlatformTransactionManager transactionManager) {
         this.ingredientRepository = ingredientRepository;
         this.recipeRepository = recipeRepository;
         this.objectMapper = objectMapper;
+        this.ingredientResolver = ingredientResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
@@ -95,6 +104,7 @@ public class RecipeDataLoader implements CommandLineRunner {
                 loadRecipes(ingredientMap);
             } else {
                 loadStatus = "SKIPPED";
+                backfillIngredientCategories();
             }
             
             // Step 3: Print startup report
@@ -186,10 +196,32 @@ public class RecipeDataLoader implements CommandLineRunner {
         log.info("Ingredients loaded: {} inserted, {} skipped (total: {})", 
                  ingredientsInserted, ingredientsSkipped, ingredientsAfterCount);
         log.info("");
+        ingredientResolver.invalidate();
         
         return ingredientMap;
     }
 
+    /**
+     * Classify ingredients persisted before the category column existed (one-time, on restart).
+     * Called from run(), so it uses an explicit transaction: a @Transactional self-call would
+     * bypass the proxy.
+     */
+    private void backfillIngredientCategories() {
+        Integer classified = transactionTemplate.execute(status -> {
+            List<Ingredient> unclassified = ingredientRepository.findByCategoryIsNull();
+            for (Ingredient ingredient : unclassified) {
+                ingredient.setCategory(IngredientCategory.classify(ingredient.getLabel()));
+            }
+            ingredientRepository.saveAll(unclassified);
+            return unclassified.size();
+        });
+        if (classified == null || classified == 0) {
+            return;
+        }
+        ingredientResolver.invalidate();
+        log.info("Classified {} ingredients without a category", classified);
+    }
+
     /**
      * Rebuild ingredient map from existing database records
      */
@@ -225,6 +257,7 @@ public class RecipeDataLoader implements CommandLineRunner {
         // Extract fields with defaults
         String unit = node.has("unit") ? node.get("unit").asText() : "gram";
         Double quantity = node.has("quantity") ? node.get("quantity").asDouble() : 100.0;
+        Double density = node.hasNonNull("density") ? node.get("density").asDouble() : null;
         
         // Extract nutrition from nested object
         Double calories = 0.0;
@@ -250,7 +283,11 @@ public class RecipeDataLoader implements CommandLineRunner {
         
         // Create with new constructor that takes Nutrition object
         Nutrition nutritionObj = new Nutrition(calories, protein, carbs, fats);
-        return new Ingredient(stableId, label, unit, quantity, nutritionObj);
+        Ingredient ingredient = new Ingredient(stableId, label, unit, quantity, nutritionObj);
+        if (density != null && density > 0) {
+            ingredient.setDensity(density);
+        }
+        return ingredient;
     }
 
     /**
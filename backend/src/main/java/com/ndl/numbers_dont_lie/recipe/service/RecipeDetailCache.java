@@ -0,0 +1,280 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.dto.GeneratedRecipe;
+import com.ndl.numbers_dont_lie.ai.function.DatabaseNutritionCalculator;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanReadModelService;
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.PreparationStep;
+import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-rendered recipe detail and base vectors for servings scaling.
+ *
+ * Design intent:
+ * - One immutable entry per recipe: the detail view map, its serialized JSON and ETag,
+ *   the base ingredient quantities and the base nutrition totals
+ * - GET /api/recipes/{id} serves the cached bytes (no entity graph walk, no Jackson)
+ * - Servings scaling multiplies the base vectors by newServings / baseServings;
+ *   nutrition is linear in quantities, so this equals recalculating from scaled ingredients
+ * - Entries are built on first use inside a read-only transaction and kept in a bounded LRU
+ * - Ingredient replacement calls {@link #invalidate(Recipe)}; the next read rebuilds the entry
+ */
+@Service
+public class RecipeDetailCache {
+    private static final Logger logger = LoggerFactory.getLogger(RecipeDetailCache.class);
+
+    private final RecipeRepository recipeRepository;
+    private final DatabaseNutritionCalculator nutritionCalculator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Map<Long, RecipeDetail> entries;
+    private final Map<String, Long> idByStableId = new ConcurrentHashMap<>();
+
+    public RecipeDetailCache(
+            RecipeRepository recipeRepository,
+            DatabaseNutritionCalculator nutritionCalculator,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.recipes.detail-cache.max-entries:2000}") int maxEntries) {
+        this.recipeRepository = recipeRepository;
+        this.nutritionCalculator = nutritionCalculator;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        int capacity = Math.max(16, maxEntries);
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, RecipeDetail> eldest) {
+                if (size() > capacity) {
+                    idByStableId.remove(eldest.getValue().stableId(), eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Detail entry by stable id (e.g. "r00001"), loading it on a miss; null if the recipe does not exist.
+     */
+    public RecipeDetail getByStableId(String stableId) {
+        Long id = idByStableId.get(stableId);
+        RecipeDetail cached = id != null ? entries.get(id) : null;
+        if (cached != null) {
+            return cached;
+        }
+        return readOnlyTransaction.execute(status ->
+            recipeRepository.findByStableId(stableId).map(this::build).orElse(null));
+    }
+
+    /**
+     * Detail entry by database id, loading it on a miss; null if the recipe does not exist.
+     */
+    public RecipeDetail getById(Long id) {
+        RecipeDetail cached = entries.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        return readOnlyTransaction.execute(status ->
+            recipeRepository.findById(id).map(this::build).orElse(null));
+    }
+
+    /**
+     * Detail entry of an already loaded recipe (list endpoint); builds it from the entity on a miss.
+     */
+    public RecipeDetail get(Recipe recipe) {
+        RecipeDetail cached = recipe.getId() != null ? entries.get(recipe.getId()) : null;
+        return cached != null ? cached : build(recipe);
+    }
+
+    /**
+     * Recipe ingredients changed. Repeated after the transaction completes so a concurrent
+     * read cannot re-cache the pre-commit state.
+     */
+    public void invalidate(Recipe recipe) {
+        if (recipe == null || recipe.getId() == null) {
+            return;
+        }
+        Long id = recipe.getId();
+        entries.remove(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    entries.remove(id);
+                }
+            });
+        }
+        logger.debug("[RECIPE_DETAIL] Invalidated recipe {}", recipe.getStableId());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // ========== Private ==========
+
+    private RecipeDetail build(Recipe recipe) {
+        List<RecipeIngredient> recipeIngredients = recipe.getIngredients() != null
+            ? recipe.getIngredients()
+            : List.of();
+        int count = recipeIngredients.size();
+        List<Ingredient> ingredients = new ArrayList<>(count);
+        double[] baseQuantities = new double[count];
+        List<GeneratedRecipe.GeneratedIngredient> calcIngredients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RecipeIngredient ri = recipeIngredients.get(i);
+            Ingredient ingredient = ri.getIngredient();
+            ingredients.add(ingredient);
+            baseQuantities[i] = ri.getQuantity() != null ? ri.getQuantity() : 0.0;
+
+            GeneratedRecipe.GeneratedIngredient calcIng = new GeneratedRecipe.GeneratedIngredient();
+            calcIng.setName(ingredient.getLabel());
+            calcIng.setQuantity(baseQuantities[i]);
+            calcIng.setUnit(ingredient.getUnit());
+            if (ingredient.getStableId() != null) {
+                calcIng.setIngredientId(ingredient.getStableId());
+            }
+            calcIngredients.add(calcIng);
+        }
+
+        int baseServings = recipe.getServings() != null && recipe.getServings() > 0 ? recipe.getServings() : 1;
+        GeneratedRecipe.NutritionInfo nutrition = nutritionCalculator.calculate(calcIngredients, baseServings);
+        double[] baseTotals = {
+            nutrition.getCalories(), nutrition.getProtein(), nutrition.getCarbohydrates(), nutrition.getFat()
+        };
+
+        List<String> steps = new ArrayList<>();
+        if (recipe.getPreparationSteps() != null) {
+            for (PreparationStep step : recipe.getPreparationSteps()) {
+                steps.add(step.getDescription());
+            }
+        }
+
+        Map<String, Object> header = new HashMap<>();
+        header.put("id", recipe.getId());
+        header.put("stable_id", recipe.getStableId());
+        header.put("title", recipe.getTitle());
+        header.put("cuisine", recipe.getCuisine());
+        header.put("meal", recipe.getMeal());
+        header.put("servings", recipe.getServings());
+        header.put("summary", recipe.getSummary());
+        header.put("time", recipe.getTimeMinutes());
+        header.put("difficulty_level", recipe.getDifficultyLevel());
+        header.put("source", recipe.getSource());
+        header.put("img", recipe.getImageUrl());
+        header.put("dietary_tags", recipe.getDietaryTags() != null ? List.copyOf(recipe.getDietaryTags()) : null);
+        header.put("preparation", Collections.unmodifiableList(steps));
+
+        Map<String, Object> view = new HashMap<>(header);
+        view.put("ingredients", ingredientList(ingredients, baseQuantities, 1.0));
+        byte[] json = serialize(view);
+        RecipeDetail detail = new RecipeDetail(recipe.getId(), recipe.getStableId(), baseServings,
+            Collections.unmodifiableMap(header), List.copyOf(ingredients), baseQuantities, baseTotals,
+            json, WeeklyPlanReadModelService.computeETag(json));
+
+        if (recipe.getId() != null) {
+            entries.put(recipe.getId(), detail);
+            if (recipe.getStableId() != null) {
+                idByStableId.put(recipe.getStableId(), recipe.getId());
+            }
+        }
+        return detail;
+    }
+
+    private byte[] serialize(Map<String, Object> view) {
+        try {
+            return objectMapper.writeValueAsBytes(view);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize recipe detail: " + e.getMessage(), e);
+        }
+    }
+
+    private static List<Map<String, Object>> ingredientList(
+            List<Ingredient> ingredients, double[] quantities, double ratio) {
+        List<Map<String, Object>> list = new ArrayList<>(ingredients.size());
+        for (int i = 0; i < ingredients.size(); i++) {
+            Ingredient ingredient = ingredients.get(i);
+            Map<String, Object> ingMap = new HashMap<>();
+            ingMap.put("label", ingredient.getLabel());
+            ingMap.put("quantity", quantities[i] * ratio);
+            ingMap.put("unit", ingredient.getUnit());
+            ingMap.put("nutrition", ingredient.getNutrition());
+            list.add(ingMap);
+        }
+        return list;
+    }
+
+    /**
+     * Immutable cached recipe view.
+     *
+     * @param header       top-level fields (servings at base value, preparation steps)
+     * @param ingredients  catalog ingredients in recipe order
+     * @param baseQuantities quantity of each ingredient at base servings
+     * @param baseTotals   {calories, protein, carbs, fats} of the whole recipe at base servings
+     * @param json         pre-rendered detail JSON
+     */
+    public record RecipeDetail(
+            Long id,
+            String stableId,
+            int baseServings,
+            Map<String, Object> header,
+            List<Ingredient> ingredients,
+            double[] baseQuantities,
+            double[] baseTotals,
+            byte[] json,
+            String etag) {
+
+        /**
+         * Detail view as returned by GET /api/recipes/{id}.
+         */
+        public Map<String, Object> view() {
+            Map<String, Object> map = new HashMap<>(header);
+            map.put("ingredients", ingredientList(ingredients, baseQuantities, 1.0));
+            return map;
+        }
+
+        /**
+         * View scaled to another number of servings, with a nutrition summary.
+         */
+        public Map<String, Object> scaled(int newServings) {
+            double ratio = (double) newServings / baseServings;
+            Map<String, Object> map = new HashMap<>(header);
+            map.put("servings", newServings);
+            map.put("ingredients", ingredientList(ingredients, baseQuantities, ratio));
+
+            Map<String, Object> nutritionSummary = new HashMap<>();
+            nutritionSummary.put("calories", baseTotals[0] * ratio);
+            nutritionSummary.put("protein", baseTotals[1] * ratio);
+            nutritionSummary.put("carbs", baseTotals[2] * ratio);
+            nutritionSummary.put("fats", baseTotals[3] * ratio);
+            nutritionSummary.put("caloriesPerServing", baseTotals[0] * ratio / newServings);
+            nutritionSummary.put("proteinPerServing", baseTotals[1] * ratio / newServings);
+            nutritionSummary.put("carbsPerServing", baseTotals[2] * ratio / newServings);
+            nutritionSummary.put("fatsPerServing", baseTotals[3] * ratio / newServings);
+            map.put("nutrition_summary", nutritionSummary);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import com.ndl.numbers_dont_lie.recipe.entity.Nutrition;
+import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-serving nutrition vectors of recipes, computed once from their ingredients.
+ *
+ * Design intent:
+ * - Vector = {kcal, protein, carbs, fats} per serving, derived from RecipeIngredient quantities
+ *   (grams/ml) and Ingredient nutrition per 100 g/ml, divided by Recipe.servings
+ * - Stored flattened in one primitive double[] (VECTOR_SIZE slots per recipe); a lookup is
+ *   one map probe plus array reads, no entity hydration and no joins
+ * - Misses are loaded in one batch query (stableId IN ...) and the recipe graph is discarded;
+ *   ids the catalog does not know are remembered for missTtlSeconds so they are not queried
+ *   on every read. Recipes without ingredient nutrition are cached as a zero vector
+ * - Readers are lock-free: map and array live in one volatile Table, the array reference is
+ *   volatile and a slot becomes visible only after its values are written; writers are serialized
+ * - Slots are never reused inside a Table (a reader may still hold an invalidated slot); once
+ *   invalidated slots outnumber live ones, the live vectors are compacted into a new Table
+ * - Recipes whose ingredients change must be invalidated (see RecipeController)
+ *
+ * The vector is the recipe's own nutrition per serving. MealNutritionEngine scales it by the
+ * meal's portion, so meal totals are not this vector when the portion is not one serving.
+ */
+@Service
+public class RecipeNutritionCache {
+    private static final Logger logger = LoggerFactory.getLogger(RecipeNutritionCache.class);
+
+    public static final int KCAL = 0;
+    public static final int PROTEIN = 1;
+    public static final int CARBS = 2;
+    public static final int FATS = 3;
+    public static final int VECTOR_SIZE = 4;
+
+    private static final int INITIAL_SLOTS = 256;
+    private static final int MIN_DEAD_SLOTS_TO_COMPACT = 64;
+
+    private final RecipeRepository recipeRepository;
+
+    private volatile Table table = new Table(INITIAL_SLOTS);
+    private final Map<String, Long> missedAt = new ConcurrentHashMap<>();
+
+    @Value("${app.nutrition.recipe-cache.miss-ttl-seconds:600}")
+    private long missTtlSeconds = 600;
+
+    public RecipeNutritionCache(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+    }
+
+    /**
+     * Make sure vectors of the given recipes are cached, loading all misses with one query.
+     */
+    @Transactional(readOnly = true)
+    public void preload(Collection<String> stableIds) {
+        Table current = table;
+        long now = System.currentTimeMillis();
+        List<String> missing = new ArrayList<>();
+        for (String stableId : stableIds) {
+            if (stableId != null && !current.slots.containsKey(stableId) && !isKnownMiss(stableId, now)) {
+                missing.add(stableId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<Recipe> recipes = recipeRepository.findByStableIdIn(missing);
+        for (Recipe recipe : recipes) {
+            store(recipe.getStableId(), computePerServing(recipe));
+        }
+        if (recipes.size() < missing.size() && missTtlSeconds > 0) {
+            for (Recipe recipe : recipes) {
+                missing.remove(recipe.getStableId());
+            }
+            for (String stableId : missing) {
+                missedAt.put(stableId, now);
+            }
+        }
+        logger.debug("[RECIPE_NUTRITION] Cached {} recipe vector(s), {} requested id(s) unknown",
+            recipes.size(), missing.size() - recipes.size());
+    }
+
+    /**
+     * Add portion × per-serving vector of a recipe into totals[0..VECTOR_SIZE).
+     *
+     * @return false if the recipe is not cached (call {@link #preload} first) or unknown
+     */
+    public boolean accumulate(String stableId, double portion, double[] totals) {
+        Table current = table;
+        Integer slot = stableId != null ? current.slots.get(stableId) : null;
+        if (slot == null) {
+            return false;
+        }
+        double[] data = current.vectors;
+        int base = slot * VECTOR_SIZE;
+        for (int i = 0; i < VECTOR_SIZE; i++) {
+            totals[i] += data[base + i] * portion;
+        }
+        return true;
+    }
+
+    /**
+     * Per-serving value of one component (KCAL, PROTEIN, CARBS, FATS); NaN when not cached.
+     */
+    public double perServing(String stableId, int component) {
+        Table current = table;
+        Integer slot = stableId != null ? current.slots.get(stableId) : null;
+        return slot != null ? current.vectors[slot * VECTOR_SIZE + component] : Double.NaN;
+    }
+
+    /**
+     * Ingredients of the recipe changed (or it was created); the next lookup recomputes its vector.
+     */
+    public synchronized void invalidate(String stableId) {
+        if (stableId == null) {
+            return;
+        }
+        missedAt.remove(stableId);
+        Table current = table;
+        if (current.slots.remove(stableId) != null) {
+            current.deadSlots++;
+            logger.debug("[RECIPE_NUTRITION] Invalidated vector of recipe {}", stableId);
+            if (current.deadSlots >= Math.max(MIN_DEAD_SLOTS_TO_COMPACT, current.slots.size())) {
+                compact(current);
+            }
+        }
+    }
+
+    public int size() {
+        return table.slots.size();
+    }
+
+    /**
+     * Slots allocated in the current table, live and invalidated.
+     */
+    int allocatedSlots() {
+        return table.nextSlot;
+    }
+
+    // ========== Private ==========
+
+    private boolean isKnownMiss(String stableId, long now) {
+        Long since = missedAt.get(stableId);
+        if (since == null) {
+            return false;
+        }
+        if (now - since < missTtlSeconds * 1000L) {
+            return true;
+        }
+        missedAt.remove(stableId, since);
+        return false;
+    }
+
+    private synchronized void store(String stableId, double[] perServing) {
+        Table current = table;
+        Integer existing = current.slots.get(stableId);
+        int slot = existing != null ? existing : current.nextSlot++;
+        double[] data = current.vectors;
+        int base = slot * VECTOR_SIZE;
+        if (base + VECTOR_SIZE > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, base + VECTOR_SIZE));
+        }
+        System.arraycopy(perServing, 0, data, base, VECTOR_SIZE);
+        current.vectors = data;
+        current.slots.put(stableId, slot);
+    }
+
+    /**
+     * Copy the live vectors into a fresh table; readers holding the old one finish on it.
+     */
+    private void compact(Table current) {
+        Table compacted = new Table(Math.max(INITIAL_SLOTS, current.slots.size() * 2));
+        for (Map.Entry<String, Integer> entry : current.slots.entrySet()) {
+            int slot = compacted.nextSlot++;
+            System.arraycopy(current.vectors, entry.getValue() * VECTOR_SIZE,
+                compacted.vectors, slot * VECTOR_SIZE, VECTOR_SIZE);
+            compacted.slots.put(entry.getKey(), slot);
+        }
+        table = compacted;
+        logger.debug("[RECIPE_NUTRITION] Compacted {} live vector(s), reclaimed {} slot(s)",
+            compacted.nextSlot, current.deadSlots);
+    }
+
+    private static double[] computePerServing(Recipe recipe) {
+        double[] totals = new double[VECTOR_SIZE];
+        if (recipe.getIngredients() != null) {
+            for (RecipeIngredient recipeIngredient : recipe.getIngredients()) {
+                if (recipeIngredient.getIngredient() == null || recipeIngredient.getQuantity() == null) {
+                    continue;
+                }
+                Nutrition nutrition = recipeIngredient.getIngredient().getNutrition();
+                if (nutrition == null) {
+                    continue;
+                }
+                // Ingredient nutrition is per 100 g/ml, recipe quantities are in g/ml
+                double scale = recipeIngredient.getQuantity() / 100.0;
+                totals[KCAL] += valueOrZero(nutrition.getCalories()) * scale;
+                totals[PROTEIN] += valueOrZero(nutrition.getProtein()) * scale;
+                totals[CARBS] += valueOrZero(nutrition.getCarbs()) * scale;
+                totals[FATS] += valueOrZero(nutrition.getFats()) * scale;
+            }
+        }
+        int servings = recipe.getServings() != null && recipe.getServings() > 0 ? recipe.getServings() : 1;
+        for (int i = 0; i < VECTOR_SIZE; i++) {
+            totals[i] /= servings;
+        }
+        return totals;
+    }
+
+    private static double valueOrZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    /**
+     * Slot map and vectors that belong together; replaced as a whole on compaction.
+     * nextSlot and deadSlots are only touched by the (synchronized) writers.
+     */
+    private static final class Table {
+        final Map<String, Integer> slots = new ConcurrentHashMap<>();
+        volatile double[] vectors;
+        int nextSlot;
+        int deadSlots;
+
+        Table(int capacity) {
+            this.vectors = new double[VECTOR_SIZE * capacity];
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Canonical unit conversion for ingredient quantities.
+ *
+ * Design intent:
+ * - Every known unit maps to a dimension (mass or volume) and a factor to its base unit
+ *   (grams or milliliters), so "200 g" and "0.2 kg" become the same number
+ * - Volume converts to mass only when the ingredient has a density (g/ml); otherwise the
+ *   two dimensions stay apart
+ * - Unknown units ("clove", "piece", ...) have no canonical form; callers keep them as-is
+ * - {@link #friendly(double, Dimension)} is the single formatting pass back to display units
+ */
+public final class UnitConversion {
+
+    public enum Dimension {
+        MASS("g", "kg"),
+        VOLUME("ml", "l");
+
+        private final String baseUnit;
+        private final String largeUnit;
+
+        Dimension(String baseUnit, String largeUnit) {
+            this.baseUnit = baseUnit;
+            this.largeUnit = largeUnit;
+        }
+
+        public String getBaseUnit() {
+            return baseUnit;
+        }
+    }
+
+    /**
+     * @param dimension mass or volume
+     * @param factor    multiplier to grams (mass) or milliliters (volume)
+     */
+    public record Canonical(Dimension dimension, double factor) {
+    }
+
+    /**
+     * Display quantity after the formatting pass.
+     */
+    public record Quantity(double amount, String unit) {
+    }
+
+    private static final Map<String, Canonical> UNITS = Map.ofEntries(
+        Map.entry("g", mass(1.0)),
+        Map.entry("gr", mass(1.0)),
+        Map.entry("gram", mass(1.0)),
+        Map.entry("grams", mass(1.0)),
+        Map.entry("kg", mass(1000.0)),
+        Map.entry("kilogram", mass(1000.0)),
+        Map.entry("kilograms", mass(1000.0)),
+        Map.entry("mg", mass(0.001)),
+        Map.entry("oz", mass(28.35)),
+        Map.entry("ounce", mass(28.35)),
+        Map.entry("ounces", mass(28.35)),
+        Map.entry("lb", mass(453.59)),
+        Map.entry("lbs", mass(453.59)),
+        Map.entry("pound", mass(453.59)),
+        Map.entry("pounds", mass(453.59)),
+        Map.entry("ml", volume(1.0)),
+        Map.entry("milliliter", volume(1.0)),
+        Map.entry("milliliters", volume(1.0)),
+        Map.entry("l", volume(1000.0)),
+        Map.entry("liter", volume(1000.0)),
+        Map.entry("liters", volume(1000.0)),
+        Map.entry("cup", volume(240.0)),
+        Map.entry("cups", volume(240.0)),
+        Map.entry("tbsp", volume(15.0)),
+        Map.entry("tablespoon", volume(15.0)),
+        Map.entry("tablespoons", volume(15.0)),
+        Map.entry("tsp", volume(5.0)),
+        Map.entry("teaspoon", volume(5.0)),
+        Map.entry("teaspoons", volume(5.0))
+    );
+
+    private UnitConversion() {
+    }
+
+    /**
+     * Canonical form of a unit name; null when the unit is unknown or blank.
+     */
+    public static Canonical canonical(String unit) {
+        if (unit == null) {
+            return null;
+        }
+        return UNITS.get(unit.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Quantity expressed in the base unit of the target unit's dimension.
+     * Crosses volume → mass (or back) with the density when known, otherwise assumes 1 g/ml
+     * (the historical behaviour of the nutrition calculator). Unknown units pass through.
+     */
+    public static double toBaseOf(double quantity, String unit, String targetUnit, Double density) {
+        Canonical source = canonical(unit);
+        if (source == null) {
+            return quantity;
+        }
+        double base = quantity * source.factor();
+        Canonical target = canonical(targetUnit);
+        if (target == null || target.dimension() == source.dimension() || density == null || density <= 0) {
+            return base;
+        }
+        return source.dimension() == Dimension.VOLUME ? base * density : base / density;
+    }
+
+    /**
+     * Format a base-unit amount: kilograms/liters from 1000 up, grams/milliliters below.
+     * Rounded to the gram/milliliter (one decimal under 10).
+     */
+    public static Quantity friendly(double baseAmount, Dimension dimension) {
+        if (Math.abs(baseAmount) >= 1000.0) {
+            return new Quantity(Math.round(baseAmount) / 1000.0, dimension.largeUnit);
+        }
+        double rounded = Math.abs(baseAmount) < 10.0
+            ? Math.round(baseAmount * 10.0) / 10.0
+            : Math.round(baseAmount);
+        return new Quantity(rounded, dimension.baseUnit);
+    }
+
+    private static Canonical mass(double factor) {
+        return new Canonical(Dimension.MASS, factor);
+    }
+
+    private static Canonical volume(double factor) {
+        return new Canonical(Dimension.VOLUME, factor);
+    }
+}
@@ -1,10 +1,16 @@
 package com.ndl.numbers_dont_lie.repository.nutrition;
 import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface NutritionalPreferencesRepository extends JpaRepository<NutritionalPreferences, Long> {
     Optional<NutritionalPreferences> findByUserId(Long userId);
+
+    @Query("SELECT p.updatedAt FROM NutritionalPreferences p WHERE p.userId = :userId")
+    Optional<LocalDateTime> findUpdatedAtByUserId(@Param("userId") Long userId);
 }
@@ -1,8 +1,11 @@
 package com.ndl.numbers_dont_lie.service.nutrition;
 
+import com.ndl.numbers_dont_lie.ai.cache.AiSessionCache;
 import com.ndl.numbers_dont_lie.dto.nutrition.NutritionalPreferencesDto;
 import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
 import com.ndl.numbers_dont_lie.entity.UserEntity;
+import com.ndl.numbers_dont_lie.mealplan.service.MealPlanETagService;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanReadModelService;
 import com.ndl.numbers_dont_lie.model.nutrition.NutritionalPreferencesConstants;
 import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
 import com.ndl.numbers_dont_lie.repository.UserRepository;
@@ -16,10 +19,19 @@ import java.util.stream.Collectors;
 public class NutritionalPreferencesService {
     private final NutritionalPreferencesRepository preferencesRepo;
     private final UserRepository userRepo;
-
-    public NutritionalPreferencesService(NutritionalPreferencesRepository preferencesRepo, UserRepository userRepo) {
+    private final MealPlanETagService mealPlanETagService;
+    private final WeeklyPlanReadModelService weeklyPlanReadModelService;
+    private final AiSessionCache aiSessionCache;
+
+    public NutritionalPreferencesService(NutritionalPreferencesRepository preferencesRepo, UserRepository userRepo,
+                                         MealPlanETagService mealPlanETagService,
+                                         WeeklyPlanReadModelService weeklyPlanReadModelService,
+                                         AiSessionCache aiSessionCache) {
         this.preferencesRepo = preferencesRepo;
         this.userRepo = userRepo;
+        this.mealPlanETagService = mealPlanETagService;
+        this.weeklyPlanReadModelService = weeklyPlanReadModelService;
+        this.aiSessionCache = aiSessionCache;
     }
 
     public NutritionalPreferencesDto get(String email) {
@@ -145,6 +157,11 @@ public class NutritionalPreferencesService {
         }
 
         NutritionalPreferences saved = preferencesRepo.save(prefs);
+        // Targets feed nutrition summaries and the AI strategy: drop cached tags, weekly snapshots
+        // and the AI session of this user
+        mealPlanETagService.invalidateUser(user.getId());
+        weeklyPlanReadModelService.evictUser(user.getId());
+        aiSessionCache.invalidate(String.valueOf(user.getId()));
 
         NutritionalPreferencesDto result = new NutritionalPreferencesDto();
         result.dietaryPreferences = saved.getDietaryPreferences();
@@ -1,32 +1,51 @@
 package com.ndl.numbers_dont_lie.shoppinglist.controller;
 
+import com.ndl.numbers_dont_lie.mealplan.service.MealPlanETagService;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.DailyShoppingListResponse;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.MealShoppingListResponse;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.RangeShoppingListResponse;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.WeeklyShoppingListResponse;
 import com.ndl.numbers_dont_lie.shoppinglist.service.ShoppingListService;
+import com.ndl.numbers_dont_lie.shoppinglist.service.ShoppingListStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.Collections;
+import java.util.Locale;
 import java.util.Map;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/shopping-list")
 public class ShoppingListController {
     private final ShoppingListService shoppingListService;
+    private final MealPlanETagService mealPlanETagService;
+    private final ShoppingListStreamWriter shoppingListStreamWriter;
 
-    public ShoppingListController(ShoppingListService shoppingListService) {
+    public ShoppingListController(
+            ShoppingListService shoppingListService,
+            MealPlanETagService mealPlanETagService,
+            ShoppingListStreamWriter shoppingListStreamWriter) {
         this.shoppingListService = shoppingListService;
+        this.mealPlanETagService = mealPlanETagService;
+        this.shoppingListStreamWriter = shoppingListStreamWriter;
     }
 
     @GetMapping("/day")
     public ResponseEntity<?> getDailyShoppingList(
             @RequestParam(required = false) Long userId,
-            @RequestParam(required = false) String date) {
+            @RequestParam(required = false) String date,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (userId == null || date == null || date.isBlank()) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "userId and date are required"
@@ -42,17 +61,23 @@ public class ShoppingListController {
             ));
         }
 
+        String etag = mealPlanETagService.dailyTag(userId, "shopping-day:" + parsedDate, parsedDate, false);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         DailyShoppingListResponse response = shoppingListService.buildDailyShoppingList(userId, parsedDate);
         if (response.getItems() == null) {
             response.setItems(Collections.emptyList());
         }
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
     }
 
     @GetMapping("/week")
     public ResponseEntity<?> getWeeklyShoppingList(
             @RequestParam(required = false) Long userId,
-            @RequestParam(required = false) String startDate) {
+            @RequestParam(required = false) String startDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (userId == null || startDate == null || startDate.isBlank()) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "userId and startDate are required"
@@ -68,26 +93,102 @@ public class ShoppingListController {
             ));
         }
 
+        String etag = mealPlanETagService.weeklyTag(userId, "shopping-week:" + parsedStartDate, parsedStartDate, false);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         WeeklyShoppingListResponse response = shoppingListService.buildWeeklyShoppingList(userId, parsedStartDate);
         if (response.getItems() == null) {
             response.setItems(Collections.emptyList());
         }
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
+    }
+
+    /**
+     * Shopping list over an arbitrary date range (e.g. 14 or 28 days for bulk buying).
+     * The body is written with a streaming generator; format=csv returns printable CSV.
+     *
+     * GET /api/shopping-list/range?userId=X&startDate=YYYY-MM-DD&endDate=YYYY-MM-DD&format=json|csv
+     */
+    @GetMapping("/range")
+    public ResponseEntity<StreamingResponseBody> getRangeShoppingList(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false, defaultValue = "json") String format,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (userId == null || startDate == null || startDate.isBlank() || endDate == null || endDate.isBlank()) {
+            return badRequest("userId, startDate and endDate are required");
+        }
+
+        String outputFormat = format.trim().toLowerCase(Locale.ROOT);
+        if (!outputFormat.equals("json") && !outputFormat.equals("csv")) {
+            return badRequest("Invalid format. Use json or csv.");
+        }
+
+        LocalDate parsedStartDate;
+        LocalDate parsedEndDate;
+        try {
+            parsedStartDate = LocalDate.parse(startDate);
+            parsedEndDate = LocalDate.parse(endDate);
+        } catch (DateTimeParseException e) {
+            return badRequest("Invalid date format. Use YYYY-MM-DD.");
+        }
+
+        String etag = mealPlanETagService.rangeTag(userId,
+            "shopping-range:" + outputFormat + ":" + parsedStartDate + ":" + parsedEndDate,
+            parsedStartDate, parsedEndDate, false);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        RangeShoppingListResponse response;
+        try {
+            response = shoppingListService.buildRangeShoppingList(userId, parsedStartDate, parsedEndDate);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+
+        if (outputFormat.equals("csv")) {
+            String filename = "shopping-list-" + parsedStartDate + "-" + parsedEndDate + ".csv";
+            return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().filename(filename).build().toString())
+                .body(out -> shoppingListStreamWriter.writeCsv(response, out));
+        }
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> shoppingListStreamWriter.writeJson(response, out));
     }
 
     @GetMapping("/meal")
     public ResponseEntity<?> getMealShoppingList(
-            @RequestParam(required = false) Long mealId) {
+            @RequestParam(required = false) Long mealId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (mealId == null) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "mealId is required"
             ));
         }
 
+        String etag = mealPlanETagService.mealShoppingTag(mealId);
+        if (MealPlanETagService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         MealShoppingListResponse response = shoppingListService.buildMealShoppingList(mealId);
         if (response.getItems() == null) {
             response.setItems(Collections.emptyList());
         }
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
+    }
+
+    private ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        return ResponseEntity.badRequest()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> shoppingListStreamWriter.writeError(message, out));
     }
 }
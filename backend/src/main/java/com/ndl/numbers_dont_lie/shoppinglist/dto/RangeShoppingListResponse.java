@@ -0,0 +1,51 @@
+package com.ndl.numbers_dont_lie.shoppinglist.dto;
+
+import java.util.List;
+
+public class RangeShoppingListResponse {
+    private String startDate;
+    private String endDate;
+    private int daysPlanned;
+    private List<ShoppingListItemDto> items;
+
+    public RangeShoppingListResponse() {}
+
+    public RangeShoppingListResponse(String startDate, String endDate, int daysPlanned, List<ShoppingListItemDto> items) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.daysPlanned = daysPlanned;
+        this.items = items;
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(String startDate) {
+        this.startDate = startDate;
+    }
+
+    public String getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(String endDate) {
+        this.endDate = endDate;
+    }
+
+    public int getDaysPlanned() {
+        return daysPlanned;
+    }
+
+    public void setDaysPlanned(int daysPlanned) {
+        this.daysPlanned = daysPlanned;
+    }
+
+    public List<ShoppingListItemDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ShoppingListItemDto> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,100 @@
+package com.ndl.numbers_dont_lie.shoppinglist.service;
+
+import java.util.Arrays;
+
+/**
+ * Per-ingredient quantities of one day, as stored in DayPlan.shoppingList.
+ *
+ * Quantities are kept in the catalog unit of each ingredient (unit conversion happens when the
+ * list is rendered), so a meal change is a plain add/subtract per ingredient id.
+ * Encoded as "ingredientId:quantity;..." in first-added order; an empty day encodes to "".
+ */
+public final class DayShoppingList {
+    private static final double EPSILON = 1e-9;
+
+    private long[] ingredientIds;
+    private double[] quantities;
+    private int size;
+
+    public DayShoppingList() {
+        this(8);
+    }
+
+    private DayShoppingList(int capacity) {
+        ingredientIds = new long[Math.max(4, capacity)];
+        quantities = new double[Math.max(4, capacity)];
+    }
+
+    public static DayShoppingList decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new DayShoppingList();
+        }
+        String[] entries = encoded.split(";");
+        DayShoppingList list = new DayShoppingList(entries.length);
+        for (String entry : entries) {
+            int colon = entry.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalStateException("Malformed shopping list entry: " + entry);
+            }
+            list.add(Long.parseLong(entry.substring(0, colon)), Double.parseDouble(entry.substring(colon + 1)));
+        }
+        return list;
+    }
+
+    public String encode() {
+        StringBuilder sb = new StringBuilder(size * 12);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(';');
+            }
+            sb.append(ingredientIds[i]).append(':').append(quantities[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Add (or subtract, for a negative quantity) an ingredient amount. Entries that reach zero
+     * are dropped; they never go below zero.
+     */
+    public void add(long ingredientId, double quantity) {
+        for (int i = 0; i < size; i++) {
+            if (ingredientIds[i] == ingredientId) {
+                double updated = quantities[i] + quantity;
+                if (updated <= EPSILON) {
+                    remove(i);
+                } else {
+                    quantities[i] = updated;
+                }
+                return;
+            }
+        }
+        if (quantity <= EPSILON) {
+            return;
+        }
+        if (size == ingredientIds.length) {
+            ingredientIds = Arrays.copyOf(ingredientIds, size * 2);
+            quantities = Arrays.copyOf(quantities, size * 2);
+        }
+        ingredientIds[size] = ingredientId;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long ingredientIdAt(int index) {
+        return ingredientIds[index];
+    }
+
+    public double quantityAt(int index) {
+        return quantities[index];
+    }
+
+    private void remove(int index) {
+        System.arraycopy(ingredientIds, index + 1, ingredientIds, index, size - index - 1);
+        System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+        size--;
+    }
+}
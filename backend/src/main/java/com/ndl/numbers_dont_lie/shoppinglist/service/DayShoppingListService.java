@@ -0,0 +1,207 @@
+package com.ndl.numbers_dont_lie.shoppinglist.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientRow;
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeIngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.service.IngredientResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the materialized per-day shopping list stored on DayPlan.
+ *
+ * Design intent:
+ * - Shopping list reads decode the stored list of each day instead of walking meals and recipes;
+ *   the weekly list is the merge of the 7 day lists
+ * - Meal edits (replace, custom add/delete) apply a delta: subtract the meal's recipe lines before
+ *   the change, add them after; the delta joins the caller's transaction like the nutrition totals
+ * - Days without a list (generated before this column existed, or never read) are built on first
+ *   read with one recipe-line query for all of them, and stored only if the day was not edited
+ *   meanwhile (revision check)
+ * - Version restore needs no work: lists belong to day plans, and cloned days copy theirs
+ * - Deltas are read-modify-write on the day row: DayPlan is optimistically locked, so of two
+ *   concurrent edits of one day the second fails instead of dropping the first one's delta
+ * - Recipe ingredient edits drop the lists of the days using the recipe and bump their revision
+ *   and lock version (DayPlanRepository.markModifiedByRecipeId), so a build that read the old
+ *   recipe skips its store and an edit that loaded the old list fails
+ *
+ * Meal moves only swap planned times and portions do not scale recipe quantities,
+ * so neither changes a list.
+ */
+@Service
+public class DayShoppingListService {
+    private static final Logger logger = LoggerFactory.getLogger(DayShoppingListService.class);
+
+    private final DayPlanRepository dayPlanRepository;
+    private final RecipeIngredientRepository recipeIngredientRepository;
+    private final IngredientRepository ingredientRepository;
+    private final IngredientResolver ingredientResolver;
+    private final TransactionTemplate transactionTemplate;
+
+    public DayShoppingListService(
+            DayPlanRepository dayPlanRepository,
+            RecipeIngredientRepository recipeIngredientRepository,
+            IngredientRepository ingredientRepository,
+            IngredientResolver ingredientResolver,
+            PlatformTransactionManager transactionManager) {
+        this.dayPlanRepository = dayPlanRepository;
+        this.recipeIngredientRepository = recipeIngredientRepository;
+        this.ingredientRepository = ingredientRepository;
+        this.ingredientResolver = ingredientResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Lists of the given days in the same order, building and storing the missing ones.
+     */
+    public List<DayShoppingList> listsFor(List<DayPlan> dayPlans) {
+        List<DayShoppingList> lists = new ArrayList<>(dayPlans.size());
+        List<DayPlan> missing = new ArrayList<>();
+        for (DayPlan dayPlan : dayPlans) {
+            if (dayPlan.hasShoppingList()) {
+                lists.add(DayShoppingList.decode(dayPlan.getShoppingList()));
+            } else {
+                lists.add(null);
+                missing.add(dayPlan);
+            }
+        }
+        if (missing.isEmpty()) {
+            return lists;
+        }
+
+        Map<DayPlan, DayShoppingList> built = build(missing);
+        for (int i = 0; i < dayPlans.size(); i++) {
+            if (lists.get(i) == null) {
+                lists.set(i, built.get(dayPlans.get(i)));
+            }
+        }
+        store(built);
+        return lists;
+    }
+
+    /**
+     * Catalog ingredient of a list entry, from the in-memory index.
+     */
+    public Ingredient ingredient(long ingredientId) {
+        Ingredient ingredient = ingredientResolver.findById(ingredientId);
+        if (ingredient == null) {
+            // Inserted after the index was built
+            ingredient = ingredientRepository.findById(ingredientId).orElse(null);
+        }
+        return ingredient;
+    }
+
+    /**
+     * Call before a meal is removed from its day or its recipe is changed.
+     */
+    public void beforeMealChange(Meal meal) {
+        applyDelta(meal, -1);
+    }
+
+    /**
+     * Call after a meal was added to its day or its recipe was changed.
+     */
+    public void afterMealChange(Meal meal) {
+        applyDelta(meal, 1);
+    }
+
+    // ========== Private ==========
+
+    private Map<DayPlan, DayShoppingList> build(List<DayPlan> dayPlans) {
+        Set<String> recipeIds = new LinkedHashSet<>();
+        for (DayPlan dayPlan : dayPlans) {
+            if (dayPlan.getMeals() == null) {
+                continue;
+            }
+            for (Meal meal : dayPlan.getMeals()) {
+                if (meal.getRecipeId() != null && !meal.getRecipeId().isBlank()) {
+                    recipeIds.add(meal.getRecipeId());
+                }
+            }
+        }
+        Map<String, List<RecipeIngredientRow>> rowsByRecipe = loadRows(recipeIds);
+
+        Map<DayPlan, DayShoppingList> built = new HashMap<>();
+        for (DayPlan dayPlan : dayPlans) {
+            DayShoppingList list = new DayShoppingList();
+            if (dayPlan.getMeals() != null) {
+                for (Meal meal : dayPlan.getMeals()) {
+                    addRows(list, rowsByRecipe.get(meal.getRecipeId()), 1);
+                }
+            }
+            built.put(dayPlan, list);
+        }
+        return built;
+    }
+
+    /**
+     * Written with a guarded UPDATE only; the (possibly stale) read entity is left untouched so a
+     * flush can never overwrite a concurrent edit.
+     */
+    private void store(Map<DayPlan, DayShoppingList> built) {
+        Integer stored = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (Map.Entry<DayPlan, DayShoppingList> entry : built.entrySet()) {
+                DayPlan dayPlan = entry.getKey();
+                if (dayPlan.getId() != null) {
+                    count += dayPlanRepository.storeShoppingList(
+                        dayPlan.getId(), dayPlan.getRevision(), entry.getValue().encode());
+                }
+            }
+            return count;
+        });
+        logger.debug("[DAY_SHOPPING] Materialized {} of {} day list(s)", stored, built.size());
+    }
+
+    private void applyDelta(Meal meal, int sign) {
+        DayPlan dayPlan = meal != null ? meal.getDayPlan() : null;
+        if (dayPlan == null || !dayPlan.hasShoppingList()) {
+            // Not built yet: the next read builds the full list
+            return;
+        }
+        String recipeId = meal.getRecipeId();
+        if (recipeId == null || recipeId.isBlank()) {
+            return;
+        }
+        DayShoppingList list = DayShoppingList.decode(dayPlan.getShoppingList());
+        addRows(list, loadRows(Set.of(recipeId)).get(recipeId), sign);
+        dayPlan.setShoppingList(list.encode());
+    }
+
+    private Map<String, List<RecipeIngredientRow>> loadRows(Set<String> recipeIds) {
+        Map<String, List<RecipeIngredientRow>> rowsByRecipe = new HashMap<>();
+        if (recipeIds.isEmpty()) {
+            return rowsByRecipe;
+        }
+        for (RecipeIngredientRow row : recipeIngredientRepository.findRowsByRecipeStableIdIn(recipeIds)) {
+            rowsByRecipe.computeIfAbsent(row.recipeStableId(), key -> new ArrayList<>()).add(row);
+        }
+        return rowsByRecipe;
+    }
+
+    private static void addRows(DayShoppingList list, List<RecipeIngredientRow> rows, int sign) {
+        if (rows == null) {
+            return;
+        }
+        for (RecipeIngredientRow row : rows) {
+            if (row.ingredientId() == null || row.quantity() == null) {
+                continue;
+            }
+            list.add(row.ingredientId(), sign * row.quantity());
+        }
+    }
+}
@@ -1,38 +1,66 @@
 package com.ndl.numbers_dont_lie.shoppinglist.service;
 
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanListRow;
 import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
 import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
 import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
 import com.ndl.numbers_dont_lie.mealplan.repository.MealRepository;
-import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
-import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
-import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientRow;
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.IngredientCategory;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeIngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.service.UnitConversion;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.ShoppingListItemDto;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.DailyShoppingListResponse;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.MealShoppingListResponse;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.RangeShoppingListResponse;
 import com.ndl.numbers_dont_lie.shoppinglist.dto.WeeklyShoppingListResponse;
 import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class ShoppingListService {
     private static final Logger logger = LoggerFactory.getLogger(ShoppingListService.class);
     private final DayPlanRepository dayPlanRepository;
-    private final RecipeRepository recipeRepository;
     private final MealRepository mealRepository;
-
-    public ShoppingListService(DayPlanRepository dayPlanRepository, RecipeRepository recipeRepository, MealRepository mealRepository) {
+    private final RecipeIngredientRepository recipeIngredientRepository;
+    private final DayShoppingListService dayShoppingListService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${app.shopping-list.range.max-days:92}")
+    private int rangeMaxDays;
+
+    @Value("${app.shopping-list.range.build-batch-size:14}")
+    private int rangeBuildBatchSize;
+
+    public ShoppingListService(
+            DayPlanRepository dayPlanRepository,
+            MealRepository mealRepository,
+            RecipeIngredientRepository recipeIngredientRepository,
+            DayShoppingListService dayShoppingListService,
+            PlatformTransactionManager transactionManager) {
         this.dayPlanRepository = dayPlanRepository;
-        this.recipeRepository = recipeRepository;
         this.mealRepository = mealRepository;
+        this.recipeIngredientRepository = recipeIngredientRepository;
+        this.dayShoppingListService = dayShoppingListService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     public DailyShoppingListResponse buildDailyShoppingList(Long userId, LocalDate date) {
@@ -46,32 +74,88 @@ public class ShoppingListService {
         return new DailyShoppingListResponse(date.toString(), items);
     }
 
+    /**
+     * Weekly list = merge of the 7 materialized day lists (see {@link DayShoppingListService}).
+     * One range query for the week's day plans; days without a stored list are built together
+     * with one recipe-line query. Quantities are summed per catalog ingredient id in a
+     * primitive-keyed slot table (see {@link IngredientTotals}).
+     */
     public WeeklyShoppingListResponse buildWeeklyShoppingList(Long userId, LocalDate startDate) {
         logger.info("[SHOPPING_LIST] Generating weekly shopping list for userId={} startDate={}", userId, startDate);
 
-        Map<String, ShoppingListItemDto> aggregated = new LinkedHashMap<>();
+        LocalDate endDate = startDate.plusDays(6);
+        List<DayPlan> dayPlans = latestPerDate(dayPlanRepository.findByUserIdAndDateRangeWithMealsAndDuration(
+            userId,
+            startDate,
+            endDate,
+            PlanDuration.WEEKLY
+        ));
+
         int totalMealsProcessed = 0;
         int daysProcessed = 0;
-
-        for (int i = 0; i < 7; i++) {
-            LocalDate date = startDate.plusDays(i);
-            AggregationResult dayResult = aggregateDay(userId, date, PlanDuration.WEEKLY);
-            if (dayResult.mealsProcessed > 0) {
+        for (DayPlan dayPlan : dayPlans) {
+            if (dayPlan.getMeals() != null && !dayPlan.getMeals().isEmpty()) {
                 daysProcessed++;
+                totalMealsProcessed += dayPlan.getMeals().size();
             }
-            totalMealsProcessed += dayResult.mealsProcessed;
-            mergeAggregates(aggregated, dayResult.aggregated);
         }
 
+        IngredientTotals totals = new IngredientTotals(64);
+        for (DayShoppingList dayList : dayShoppingListService.listsFor(dayPlans)) {
+            addList(totals, dayList);
+        }
+        Map<String, ShoppingListItemDto> aggregated = totals.toItems();
+
         logger.info("[SHOPPING_LIST] Days processed: {}", daysProcessed);
         logger.info("[SHOPPING_LIST] Total meals processed: {}", totalMealsProcessed);
         logger.info("[SHOPPING_LIST] Unique ingredients: {}", aggregated.size());
 
         List<ShoppingListItemDto> items = new ArrayList<>(aggregated.values());
-        LocalDate endDate = startDate.plusDays(6);
         return new WeeklyShoppingListResponse(startDate.toString(), endDate.toString(), items);
     }
 
+    /**
+     * Shopping list over [startDate, endDate] (inclusive), e.g. 14 or 28 days for bulk buying.
+     *
+     * Day plans are read through a forward-only cursor of (id, date, stored list) rows; each
+     * stored list is merged into the totals as it arrives, so memory is bounded by the number
+     * of distinct ingredients, not by the range. Days without a stored list are collected by id
+     * and built afterwards in small batches (their meals are only loaded for those batches).
+     *
+     * @throws IllegalArgumentException if the range is inverted or longer than the configured maximum
+     */
+    public RangeShoppingListResponse buildRangeShoppingList(Long userId, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days > rangeMaxDays) {
+            throw new IllegalArgumentException("Range too long: " + days + " days (max " + rangeMaxDays + ")");
+        }
+
+        long startedAt = System.currentTimeMillis();
+        IngredientTotals totals = new IngredientTotals(64);
+        List<Long> unbuilt = new ArrayList<>();
+        Integer daysPlanned = readOnlyTransaction.execute(status ->
+            scanRange(userId, startDate, endDate, totals, unbuilt));
+
+        int batchSize = Math.max(1, rangeBuildBatchSize);
+        for (int from = 0; from < unbuilt.size(); from += batchSize) {
+            List<Long> batch = unbuilt.subList(from, Math.min(unbuilt.size(), from + batchSize));
+            List<DayPlan> dayPlans = dayPlanRepository.findByIdInWithMeals(batch);
+            for (DayShoppingList dayList : dayShoppingListService.listsFor(dayPlans)) {
+                addList(totals, dayList);
+            }
+        }
+
+        List<ShoppingListItemDto> items = new ArrayList<>(totals.toItems().values());
+        logger.info("[SHOPPING_LIST] Range list userId={} range={}..{} days={} built={} items={} durationMs={}",
+            userId, startDate, endDate, daysPlanned, unbuilt.size(), items.size(),
+            System.currentTimeMillis() - startedAt);
+        return new RangeShoppingListResponse(startDate.toString(), endDate.toString(),
+            daysPlanned != null ? daysPlanned : 0, items);
+    }
+
     public MealShoppingListResponse buildMealShoppingList(Long mealId) {
         logger.info("[SHOPPING_LIST] Generating meal shopping list for mealId={}", mealId);
 
@@ -95,80 +179,77 @@ public class ShoppingListService {
     }
 
     public AggregationResult aggregateDay(Long userId, LocalDate date, PlanDuration duration) {
-        Map<String, ShoppingListItemDto> aggregated = new LinkedHashMap<>();
+        IngredientTotals totals = new IngredientTotals(32);
         int mealsProcessed = 0;
 
         DayPlan dayPlan = resolveDayPlan(userId, date, duration);
-        if (dayPlan != null && dayPlan.getMeals() != null) {
-            for (Meal meal : dayPlan.getMeals()) {
-                mealsProcessed++;
-                String recipeId = meal.getRecipeId();
-                if (recipeId == null || recipeId.isBlank()) {
-                    continue;
-                }
-                Recipe recipe = recipeRepository.findByStableId(recipeId).orElse(null);
-                if (recipe == null || recipe.getIngredients() == null) {
-                    continue;
-                }
-                for (RecipeIngredient ri : recipe.getIngredients()) {
-                    if (ri.getIngredient() == null || ri.getIngredient().getLabel() == null) {
-                        continue;
-                    }
-                    String name = normalize(ri.getIngredient().getLabel());
-                    if (name.isEmpty()) {
-                        continue;
-                    }
-                    String unit = normalizeUnit(ri.getIngredient().getUnit());
-                    String key = name + "|" + unit;
-                    double qty = ri.getQuantity() != null ? ri.getQuantity() : 0.0;
-
-                    ShoppingListItemDto existing = aggregated.get(key);
-                    if (existing == null) {
-                        aggregated.put(key, new ShoppingListItemDto(name, qty, unit, categorizeIngredient(name)));
-                    } else {
-                        existing.setTotalQuantity(existing.getTotalQuantity() + qty);
-                    }
-                }
-            }
+        if (dayPlan != null) {
+            mealsProcessed = dayPlan.getMeals() != null ? dayPlan.getMeals().size() : 0;
+            addList(totals, dayShoppingListService.listsFor(List.of(dayPlan)).get(0));
         }
 
-        return new AggregationResult(aggregated, mealsProcessed);
+        return new AggregationResult(totals.toItems(), mealsProcessed);
     }
 
     private AggregationResult aggregateMeal(Meal meal) {
-        Map<String, ShoppingListItemDto> aggregated = new LinkedHashMap<>();
+        IngredientTotals totals = new IngredientTotals(16);
         int mealsProcessed = 0;
 
         if (meal != null) {
             mealsProcessed = 1;
             String recipeId = meal.getRecipeId();
             if (recipeId != null && !recipeId.isBlank()) {
-                Recipe recipe = recipeRepository.findByStableId(recipeId).orElse(null);
-                if (recipe != null && recipe.getIngredients() != null) {
-                    for (RecipeIngredient ri : recipe.getIngredients()) {
-                        if (ri.getIngredient() == null || ri.getIngredient().getLabel() == null) {
-                            continue;
-                        }
-                        String name = normalize(ri.getIngredient().getLabel());
-                        if (name.isEmpty()) {
-                            continue;
-                        }
-                        String unit = normalizeUnit(ri.getIngredient().getUnit());
-                        String key = name + "|" + unit;
-                        double qty = ri.getQuantity() != null ? ri.getQuantity() : 0.0;
-
-                        ShoppingListItemDto existing = aggregated.get(key);
-                        if (existing == null) {
-                            aggregated.put(key, new ShoppingListItemDto(name, qty, unit, categorizeIngredient(name)));
-                        } else {
-                            existing.setTotalQuantity(existing.getTotalQuantity() + qty);
-                        }
+                for (RecipeIngredientRow row : recipeIngredientRepository.findRowsByRecipeStableIdIn(List.of(recipeId))) {
+                    if (row.ingredientId() == null || row.label() == null) {
+                        continue;
                     }
+                    totals.add(row.ingredientId(), row.label(), row.unit(), row.category(), row.density(),
+                        row.quantity() != null ? row.quantity() : 0.0);
                 }
             }
         }
 
-        return new AggregationResult(aggregated, mealsProcessed);
+        return new AggregationResult(totals.toItems(), mealsProcessed);
+    }
+
+    private void addList(IngredientTotals totals, DayShoppingList dayList) {
+        for (int i = 0; i < dayList.size(); i++) {
+            long ingredientId = dayList.ingredientIdAt(i);
+            Ingredient ingredient = dayShoppingListService.ingredient(ingredientId);
+            if (ingredient == null || ingredient.getLabel() == null) {
+                continue;
+            }
+            totals.add(ingredientId, ingredient.getLabel(), ingredient.getUnit(), ingredient.getCategory(),
+                ingredient.getDensity(), dayList.quantityAt(i));
+        }
+    }
+
+    /**
+     * One pass over the cursor: rows come newest first within a date, so the first row of each
+     * date is the plan that counts (same choice as {@link #latestPerDate}).
+     */
+    private int scanRange(Long userId, LocalDate startDate, LocalDate endDate,
+                          IngredientTotals totals, List<Long> unbuilt) {
+        int daysPlanned = 0;
+        LocalDate lastDate = null;
+        try (Stream<DayPlanListRow> rows = dayPlanRepository.streamListRowsByUserIdAndDateRange(
+                userId, startDate, endDate, PlanDuration.WEEKLY)) {
+            Iterator<DayPlanListRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                DayPlanListRow row = iterator.next();
+                if (row.date().equals(lastDate)) {
+                    continue;
+                }
+                lastDate = row.date();
+                daysPlanned++;
+                if (row.shoppingList() != null) {
+                    addList(totals, DayShoppingList.decode(row.shoppingList()));
+                } else {
+                    unbuilt.add(row.dayPlanId());
+                }
+            }
+        }
+        return daysPlanned;
     }
 
     private DayPlan resolveDayPlan(Long userId, LocalDate date, PlanDuration duration) {
@@ -180,21 +261,18 @@ public class ShoppingListService {
         return candidates.isEmpty() ? null : candidates.get(0);
     }
 
-    private void mergeAggregates(Map<String, ShoppingListItemDto> target, Map<String, ShoppingListItemDto> source) {
-        for (Map.Entry<String, ShoppingListItemDto> entry : source.entrySet()) {
-            ShoppingListItemDto existing = target.get(entry.getKey());
-            if (existing == null) {
-                ShoppingListItemDto item = entry.getValue();
-                target.put(entry.getKey(), new ShoppingListItemDto(
-                    item.getIngredient(),
-                    item.getTotalQuantity(),
-                    item.getUnit(),
-                    item.getCategory()
-                ));
-            } else {
-                existing.setTotalQuantity(existing.getTotalQuantity() + entry.getValue().getTotalQuantity());
+    /**
+     * Keep the newest day plan per date (same choice as {@link #resolveDayPlan}), in date order.
+     */
+    private List<DayPlan> latestPerDate(List<DayPlan> candidates) {
+        Map<LocalDate, DayPlan> byDate = new TreeMap<>();
+        for (DayPlan dayPlan : candidates) {
+            DayPlan current = byDate.get(dayPlan.getDate());
+            if (current == null || (dayPlan.getId() != null && (current.getId() == null || dayPlan.getId() > current.getId()))) {
+                byDate.put(dayPlan.getDate(), dayPlan);
             }
         }
+        return new ArrayList<>(byDate.values());
     }
 
     public static class AggregationResult {
@@ -207,46 +285,140 @@ public class ShoppingListService {
         }
     }
 
-    private String normalize(String value) {
-        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
-    }
-
-    private String normalizeUnit(String unit) {
-        String normalized = normalize(unit);
-        return normalized.isEmpty() ? "unit" : normalized;
-    }
-
-    private String categorizeIngredient(String name) {
-        String n = normalize(name);
-        if (n.isEmpty()) return "Other";
-
-        if (containsAny(n, "milk", "cheese", "yogurt", "butter", "cream", "mozzarella", "parmesan", "cheddar", "feta", "ricotta")) {
-            return "Dairy";
+    /**
+     * Open-addressing ingredient id → slot table with parallel per-slot arrays.
+     *
+     * Each catalog ingredient is converted once, on first sight, to its canonical dimension
+     * (grams or milliliters; volume becomes grams when the ingredient has a density) and every
+     * recipe line is then a multiply-add into its slot. Unknown units keep their own name.
+     */
+    private final class IngredientTotals {
+        private long[] keys;
+        private int[] slots;
+        private boolean[] used;
+        private double[] quantities;
+        private double[] factors;
+        private String[] names;
+        private String[] units;
+        private IngredientCategory[] categories;
+        private int size;
+
+        IngredientTotals(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            used = new boolean[capacity];
+            allocateSlots(capacity / 2);
         }
-        if (containsAny(n, "chicken", "beef", "pork", "turkey", "ham", "bacon", "sausage", "fish", "salmon", "tuna", "shrimp", "egg", "tofu", "lentil", "bean", "chickpea")) {
-            return "Protein";
-        }
-        if (containsAny(n, "apple", "banana", "orange", "berry", "berry", "grape", "lemon", "lime", "avocado", "tomato", "onion", "garlic", "lettuce", "spinach", "kale", "pepper", "cucumber", "carrot", "broccoli", "cauliflower", "mushroom", "potato", "sweet potato", "zucchini", "corn", "pea")) {
-            return "Produce";
+
+        void add(long ingredientId, String label, String unit, IngredientCategory category, Double density, double quantity) {
+            int mask = keys.length - 1;
+            int pos = Long.hashCode(ingredientId * 0x9E3779B97F4A7C15L) & mask;
+            while (used[pos]) {
+                if (keys[pos] == ingredientId) {
+                    int slot = slots[pos];
+                    quantities[slot] += quantity * factors[slot];
+                    return;
+                }
+                pos = (pos + 1) & mask;
+            }
+            used[pos] = true;
+            keys[pos] = ingredientId;
+            slots[pos] = size;
+            describe(size, label, unit, category, density);
+            quantities[size] = quantity * factors[size];
+            size++;
+            if (size * 2 >= keys.length) {
+                grow();
+            }
         }
-        if (containsAny(n, "rice", "pasta", "noodle", "bread", "tortilla", "oat", "flour", "cereal", "quinoa", "barley", "couscous")) {
-            return "Grains";
+
+        /**
+         * Items in first-seen order, grouped by normalized name and canonical unit, then
+         * formatted into friendly units (kg/l from 1000 g/ml up).
+         */
+        Map<String, ShoppingListItemDto> toItems() {
+            Map<String, ShoppingListItemDto> aggregated = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                if (names[i].isEmpty()) {
+                    continue;
+                }
+                String key = names[i] + "|" + units[i];
+                ShoppingListItemDto existing = aggregated.get(key);
+                if (existing == null) {
+                    aggregated.put(key, new ShoppingListItemDto(names[i], quantities[i], units[i],
+                        categories[i].getDisplayName()));
+                } else {
+                    existing.setTotalQuantity(existing.getTotalQuantity() + quantities[i]);
+                }
+            }
+            for (ShoppingListItemDto item : aggregated.values()) {
+                // Canonical units are the base units "g"/"ml"; anything else was left as-is
+                UnitConversion.Canonical canonical = UnitConversion.canonical(item.getUnit());
+                if (canonical != null) {
+                    UnitConversion.Quantity display = UnitConversion.friendly(item.getTotalQuantity(), canonical.dimension());
+                    item.setTotalQuantity(display.amount());
+                    item.setUnit(display.unit());
+                }
+            }
+            return aggregated;
         }
-        if (containsAny(n, "oil", "vinegar", "sauce", "ketchup", "mustard", "mayo", "sugar", "salt", "pepper", "spice", "herb", "basil", "oregano", "cumin", "paprika", "chili", "cocoa", "vanilla")) {
-            return "Pantry";
+
+        private void describe(int slot, String label, String unit, IngredientCategory category, Double density) {
+            names[slot] = normalize(label);
+            categories[slot] = category != null ? category : IngredientCategory.classify(label);
+            UnitConversion.Canonical canonical = UnitConversion.canonical(unit);
+            if (canonical == null) {
+                units[slot] = normalizeUnit(unit);
+                factors[slot] = 1.0;
+            } else if (canonical.dimension() == UnitConversion.Dimension.VOLUME && density != null && density > 0) {
+                units[slot] = UnitConversion.Dimension.MASS.getBaseUnit();
+                factors[slot] = canonical.factor() * density;
+            } else {
+                units[slot] = canonical.dimension().getBaseUnit();
+                factors[slot] = canonical.factor();
+            }
         }
-        if (containsAny(n, "water", "juice", "soda", "tea", "coffee", "milkshake")) {
-            return "Beverages";
+
+        private void allocateSlots(int count) {
+            quantities = quantities == null ? new double[count] : Arrays.copyOf(quantities, count);
+            factors = factors == null ? new double[count] : Arrays.copyOf(factors, count);
+            names = names == null ? new String[count] : Arrays.copyOf(names, count);
+            units = units == null ? new String[count] : Arrays.copyOf(units, count);
+            categories = categories == null ? new IngredientCategory[count] : Arrays.copyOf(categories, count);
         }
-        return "Other";
-    }
 
-    private boolean containsAny(String text, String... needles) {
-        for (String n : needles) {
-            if (text.contains(n)) {
-                return true;
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            boolean[] oldUsed = used;
+            int capacity = oldKeys.length * 2;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            used = new boolean[capacity];
+            allocateSlots(capacity / 2);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (!oldUsed[i]) {
+                    continue;
+                }
+                int pos = Long.hashCode(oldKeys[i] * 0x9E3779B97F4A7C15L) & mask;
+                while (used[pos]) {
+                    pos = (pos + 1) & mask;
+                }
+                used[pos] = true;
+                keys[pos] = oldKeys[i];
+                slots[pos] = oldSlots[i];
             }
         }
-        return false;
+    }
+
+    private String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private String normalizeUnit(String unit) {
+        String normalized = normalize(unit);
+        return normalized.isEmpty() ? "unit" : normalized;
     }
 }
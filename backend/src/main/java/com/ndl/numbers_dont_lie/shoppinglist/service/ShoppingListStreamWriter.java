@@ -0,0 +1,106 @@
+package com.ndl.numbers_dont_lie.shoppinglist.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.RangeShoppingListResponse;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.ShoppingListItemDto;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes range shopping lists straight to the response stream.
+ *
+ * Design intent:
+ * - JSON goes through a Jackson generator token by token (same shape as RangeShoppingListResponse),
+ *   so no intermediate tree or String of the whole document is built
+ * - CSV is one header plus one line per item, for printing or spreadsheets
+ * - The caller owns the stream; it is flushed, not closed
+ */
+@Component
+public class ShoppingListStreamWriter {
+    private static final String CSV_HEADER = "ingredient,quantity,unit,category";
+
+    private final ObjectMapper objectMapper;
+
+    public ShoppingListStreamWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void writeJson(RangeShoppingListResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("startDate", response.getStartDate());
+            generator.writeStringField("endDate", response.getEndDate());
+            generator.writeNumberField("daysPlanned", response.getDaysPlanned());
+            generator.writeArrayFieldStart("items");
+            for (ShoppingListItemDto item : response.getItems()) {
+                generator.writeStartObject();
+                generator.writeStringField("ingredient", item.getIngredient());
+                if (item.getTotalQuantity() != null) {
+                    generator.writeNumberField("totalQuantity", item.getTotalQuantity());
+                } else {
+                    generator.writeNullField("totalQuantity");
+                }
+                generator.writeStringField("unit", item.getUnit());
+                generator.writeStringField("category", item.getCategory());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    public void writeCsv(RangeShoppingListResponse response, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        for (ShoppingListItemDto item : response.getItems()) {
+            writer.write(csvField(item.getIngredient()));
+            writer.write(',');
+            writer.write(item.getTotalQuantity() != null
+                ? BigDecimal.valueOf(item.getTotalQuantity()).stripTrailingZeros().toPlainString()
+                : "");
+            writer.write(',');
+            writer.write(csvField(item.getUnit()));
+            writer.write(',');
+            writer.write(csvField(item.getCategory()));
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Error body with the same shape as the other endpoints' {@code {"error": ...}}.
+     */
+    public void writeError(String message, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("error", message);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * RFC 4180 quoting; leading formula characters are neutralised so spreadsheets show text.
+     */
+    private static String csvField(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = "=+-@".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,9 @@
+package com.ndl.numbers_dont_lie.weight.event;
+
+import java.time.Instant;
+
+/**
+ * Published after a weight entry was saved.
+ */
+public record WeightRecordedEvent(Long userId, String email, Instant at) {
+}
@@ -9,5 +9,7 @@ import java.util.Optional;
 
 public interface WeightEntryRepository extends JpaRepository<WeightEntry, Long> {
   List<WeightEntry> findAllByUserOrderByAtAsc(UserEntity user);
+  // Latest entries first; bounded read for trend checks
+  List<WeightEntry> findTop6ByUserOrderByAtDesc(UserEntity user);
   Optional<WeightEntry> findByUserAndAt(UserEntity user, Instant at);
 }
@@ -3,6 +3,7 @@ import com.ndl.numbers_dont_lie.entity.UserEntity;
 import com.ndl.numbers_dont_lie.repository.UserRepository;
 import com.ndl.numbers_dont_lie.weight.entity.WeightEntry;
 import com.ndl.numbers_dont_lie.weight.dto.WeightDto;
+import com.ndl.numbers_dont_lie.weight.event.WeightRecordedEvent;
 import com.ndl.numbers_dont_lie.weight.repository.WeightEntryRepository;
 
 
@@ -10,6 +11,7 @@ import com.ndl.numbers_dont_lie.weight.repository.WeightEntryRepository;
 
 
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -19,10 +21,12 @@ import java.util.List;
 public class WeightService {
   private final UserRepository users;
   private final WeightEntryRepository weights;
+  private final ApplicationEventPublisher events;
 
-  public WeightService(UserRepository users, WeightEntryRepository weights) {
+  public WeightService(UserRepository users, WeightEntryRepository weights, ApplicationEventPublisher events) {
     this.users = users;
     this.weights = weights;
+    this.events = events;
   }
 
   public WeightEntry add(String email, WeightDto dto) {
@@ -51,7 +55,9 @@ public class WeightService {
     } else {
       e.setDietaryRestrictions(null);
     }
-    return weights.save(e);
+    WeightEntry saved = weights.save(e);
+    events.publishEvent(new WeightRecordedEvent(user.getId(), email, at));
+    return saved;
   }
 
   public List<WeightEntry> list(String email) {
@@ -0,0 +1,75 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Breaker state transitions per endpoint/prompt type and the retry schedule.
+ */
+class GroqCircuitBreakerTest {
+
+	private static final String RECIPE = GroqCircuitBreaker.key("chat", AiPromptType.RECIPE);
+	private static final String STRATEGY = GroqCircuitBreaker.key("chat", AiPromptType.STRATEGY);
+
+	@Test
+	void opensAfterThresholdAndOnlyForThatKey() {
+		GroqCircuitBreaker breaker = new GroqCircuitBreaker(3, Duration.ofMinutes(1));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire(RECIPE));
+			breaker.onFailure(RECIPE);
+		}
+
+		assertEquals(GroqCircuitBreaker.State.OPEN, breaker.state(RECIPE));
+		assertFalse(breaker.tryAcquire(RECIPE));
+		assertTrue(breaker.tryAcquire(STRATEGY));
+		assertEquals(GroqCircuitBreaker.State.CLOSED, breaker.state(STRATEGY));
+	}
+
+	@Test
+	void halfOpenLetsOneProbeThrough() throws Exception {
+		GroqCircuitBreaker breaker = new GroqCircuitBreaker(1, Duration.ofMillis(20));
+		breaker.tryAcquire(RECIPE);
+		breaker.onFailure(RECIPE);
+		Thread.sleep(40);
+
+		assertEquals(GroqCircuitBreaker.State.HALF_OPEN, breaker.state(RECIPE));
+		assertTrue(breaker.tryAcquire(RECIPE));
+		assertFalse(breaker.tryAcquire(RECIPE));
+
+		// Failed probe re-opens, successful probe closes
+		breaker.onFailure(RECIPE);
+		assertEquals(GroqCircuitBreaker.State.OPEN, breaker.state(RECIPE));
+		Thread.sleep(40);
+		assertTrue(breaker.tryAcquire(RECIPE));
+		breaker.onSuccess(RECIPE);
+		assertEquals(GroqCircuitBreaker.State.CLOSED, breaker.state(RECIPE));
+	}
+
+	@Test
+	void clientErrorsDoNotCount() {
+		GroqCircuitBreaker breaker = new GroqCircuitBreaker(1, Duration.ofMinutes(1));
+		breaker.tryAcquire(RECIPE);
+		breaker.onIgnored(RECIPE);
+
+		assertEquals(GroqCircuitBreaker.State.CLOSED, breaker.state(RECIPE));
+	}
+
+	@Test
+	void retryScheduleIsCappedAndHonoursRetryAfter() {
+		GroqRetryPolicy policy = new GroqRetryPolicy(4, Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofSeconds(5));
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(policy.delayBeforeRetry(1, null).toMillis() <= 100);
+			assertTrue(policy.delayBeforeRetry(3, null).toMillis() <= 250);
+		}
+		assertEquals(Duration.ofSeconds(2), policy.delayBeforeRetry(1, Duration.ofSeconds(2)));
+		assertNull(policy.delayBeforeRetry(1, Duration.ofSeconds(30)));
+		assertNull(policy.delayBeforeRetry(4, null));
+	}
+}
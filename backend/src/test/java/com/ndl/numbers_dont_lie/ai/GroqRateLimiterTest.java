@@ -0,0 +1,82 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Admission control of Groq calls: in-flight cap, request pacing and token reconciliation.
+ */
+class GroqRateLimiterTest {
+
+	@Test
+	void fanOutNeverExceedsInFlightCap() throws Exception {
+		GroqRateLimiter limiter = new GroqRateLimiter(4, 60_000, 1_000_000);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> calls = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				calls.add(executor.submit(() -> {
+					limiter.acquire(100);
+					try {
+						peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+						Thread.sleep(5);
+						running.decrementAndGet();
+					} finally {
+						limiter.release();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> call : calls) {
+				call.get(10, TimeUnit.SECONDS);
+			}
+		}
+
+		assertTrue(peak.get() <= 4, "peak=" + peak.get());
+		assertEquals(4, limiter.availablePermits());
+	}
+
+	@Test
+	void requestBucketPacesBeyondBurst() throws Exception {
+		// 600 requests/minute = one every 100 ms once the initial burst is spent
+		GroqRateLimiter limiter = new GroqRateLimiter(1000, 600, 1_000_000);
+		for (int i = 0; i < 600; i++) {
+			limiter.acquire(1);
+			limiter.release();
+		}
+
+		long startedAt = System.nanoTime();
+		limiter.acquire(1);
+		limiter.release();
+		long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+		assertTrue(waitedMs >= 50, "waited " + waitedMs + " ms");
+	}
+
+	@Test
+	void reconcileRefundsOverEstimate() throws Exception {
+		GroqRateLimiter limiter = new GroqRateLimiter(10, 1000, 1000);
+		limiter.acquire(1000);
+		limiter.release();
+		// Reported usage was 100 tokens: 900 go back, so the next call does not wait a minute
+		limiter.reconcile(1000, 100);
+
+		long startedAt = System.nanoTime();
+		limiter.acquire(500);
+		limiter.release();
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 1000);
+	}
+}
@@ -0,0 +1,92 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Server-sent event folding and incremental field reporting of streamed completions.
+ */
+class GroqStreamAccumulatorTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String RECIPE = "{\"title\":\"Lentil Soup\",\"servings\":2,"
+		+ "\"ingredients\":[{\"name\":\"lentils\",\"quantity\":120.5,\"unit\":\"g\"},{\"name\":\"onion \\u00e9\",\"quantity\":50,\"unit\":\"g\"}],"
+		+ "\"preparationSteps\":[{\"stepNumber\":1,\"instruction\":\"Simmer.\"}]}";
+
+	private static String chunk(String content) throws Exception {
+		ObjectNode chunk = MAPPER.createObjectNode();
+		chunk.putArray("choices").addObject().putObject("delta").put("content", content);
+		return "data: " + MAPPER.writeValueAsString(chunk);
+	}
+
+	@Test
+	void reportsFieldsAsSoonAsTheyCloseAndRebuildsEnvelope() throws Exception {
+		List<String> fields = new ArrayList<>();
+		int[] fedWhenIngredientsClosed = {-1};
+		int[] fed = {0};
+		GroqStreamAccumulator accumulator = new GroqStreamAccumulator(MAPPER, (name, value) -> {
+			fields.add(name);
+			if ("ingredients".equals(name)) {
+				fedWhenIngredientsClosed[0] = fed[0];
+				assertEquals(2, value.size());
+				assertEquals(120.5, value.get(0).path("quantity").asDouble());
+			}
+		});
+
+		// 7-character deltas split tokens, numbers and escapes at arbitrary points
+		for (int i = 0; i < RECIPE.length(); i += 7) {
+			fed[0] = Math.min(RECIPE.length(), i + 7);
+			assertFalse(accumulator.accept(chunk(RECIPE.substring(i, fed[0]))));
+			assertFalse(accumulator.accept(""));
+		}
+		assertFalse(accumulator.accept("data: {\"choices\":[],\"x_groq\":{\"usage\":{\"total_tokens\":321}}}"));
+		assertTrue(accumulator.accept("data: [DONE]"));
+
+		assertEquals(List.of("title", "servings", "ingredients", "preparationSteps"), fields);
+		assertTrue(fedWhenIngredientsClosed[0] < RECIPE.indexOf("preparationSteps"),
+			"ingredients reported after " + fedWhenIngredientsClosed[0] + " chars");
+		ObjectNode envelope = accumulator.envelope();
+		assertEquals(MAPPER.readTree(RECIPE), MAPPER.readTree(envelope.at("/choices/0/message/content").asText()));
+		assertEquals(321, envelope.at("/usage/total_tokens").asInt());
+	}
+
+	@Test
+	void functionCallDeltasAreConcatenated() throws Exception {
+		GroqStreamAccumulator accumulator = new GroqStreamAccumulator(MAPPER,
+			(name, value) -> { throw new AssertionError("no content expected"); });
+		accumulator.accept("data: {\"choices\":[{\"delta\":{\"function_call\":{\"name\":\"calculateNutrition\",\"arguments\":\"{\\\"ingr\"}}}]}");
+		accumulator.accept("data: {\"choices\":[{\"delta\":{\"function_call\":{\"arguments\":\"edients\\\":[]}\"}}}]}");
+
+		JsonNode functionCall = accumulator.envelope().at("/choices/0/message/function_call");
+		assertEquals("calculateNutrition", functionCall.path("name").asText());
+		assertEquals("{\"ingredients\":[]}", functionCall.path("arguments").asText());
+	}
+
+	@Test
+	void listenerFailureAbortsAndNonJsonContentIsLeftToFinalParse() throws Exception {
+		GroqStreamAccumulator rejecting = new GroqStreamAccumulator(MAPPER, (name, value) -> {
+			throw new AiClientException("rejected " + name);
+		});
+		AiClientException error = assertThrows(AiClientException.class,
+			() -> rejecting.accept(chunk("{\"title\":\"x\",")));
+		assertEquals("rejected title", error.getMessage());
+
+		List<String> fields = new ArrayList<>();
+		GroqStreamAccumulator prose = new GroqStreamAccumulator(MAPPER, (name, value) -> fields.add(name));
+		prose.accept(chunk("Sure! Here is "));
+		prose.accept(chunk("{\"title\":\"x\"}"));
+		assertTrue(fields.isEmpty());
+		assertEquals("Sure! Here is {\"title\":\"x\"}", prose.envelope().at("/choices/0/message/content").asText());
+	}
+}
@@ -0,0 +1,231 @@
+package com.ndl.numbers_dont_lie.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ndl.numbers_dont_lie.ai.dto.AiMealStructureResult;
+import com.ndl.numbers_dont_lie.ai.dto.AiStrategyResult;
+import com.ndl.numbers_dont_lie.ai.dto.GeneratedRecipe;
+import com.ndl.numbers_dont_lie.ai.dto.RecipeGenerationRequest;
+import com.ndl.numbers_dont_lie.ai.exception.AiClientException;
+import com.ndl.numbers_dont_lie.ai.function.CalculateNutritionRequest;
+import com.ndl.numbers_dont_lie.ai.function.FunctionCallingOrchestrator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batched generation of a day's AI-fallback slots: one call for the day, per-slot fallback only
+ * for items that fail validation; single-pass generation with server-side nutrition.
+ */
+class RecipeGenerationServiceBatchTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String[] MEALS = {"breakfast", "snack", "lunch", "snack", "dinner"};
+
+	private GroqClient groqClient;
+	private FunctionCallingOrchestrator orchestrator;
+	private RecipeGenerationService service;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		groqClient = mock(GroqClient.class);
+		orchestrator = mock(FunctionCallingOrchestrator.class);
+		service = new RecipeGenerationService(groqClient, orchestrator);
+		ReflectionTestUtils.setField(service, "streaming", false);
+		ReflectionTestUtils.setField(service, "singlePass", false);
+		ReflectionTestUtils.setField(service, "batchEnabled", true);
+		ReflectionTestUtils.setField(service, "batchMaxSlots", 6);
+
+		when(groqClient.isAvailable(AiPromptType.RECIPE)).thenReturn(true);
+		when(orchestrator.defineCalculateNutritionFunction()).thenReturn(Map.of("name", "calculateNutrition"));
+		when(orchestrator.executeCalculateNutrition(any())).thenReturn(
+			new CalculateNutritionRequest.Output(500, 30, 50, 15, 500, 30, 50, 15, "database_lookup", 1));
+		when(orchestrator.calculateNutrition(anyList(), anyInt())).thenReturn(
+			new CalculateNutritionRequest.Output(480, 28, 48, 14, 480, 28, 48, 14, "server_side", 1));
+
+		// Single-slot contract: function call first, final recipe after the function result
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), anyList(), eq(0.4)))
+			.thenAnswer(inv -> CompletableFuture.completedFuture(MAPPER.readTree(
+				"{\"function_call\":{\"name\":\"calculateNutrition\",\"arguments\":{}}}")));
+		when(groqClient.callWithFunctionResultAsync(eq(AiPromptType.RECIPE), anyString(), anyString(), anyString(), anyList()))
+			.thenAnswer(inv -> CompletableFuture.completedFuture(recipe(0, "Single dish", "oats")));
+	}
+
+	private static ObjectNode recipe(int slot, String title, String ingredient) {
+		ObjectNode recipe = MAPPER.createObjectNode();
+		if (slot > 0) {
+			recipe.put("slot", slot);
+		}
+		recipe.put("title", title);
+		recipe.put("meal", "lunch");
+		recipe.put("servings", 1);
+		recipe.putArray("ingredients").addObject().put("name", ingredient).put("quantity", 100).put("unit", "g");
+		recipe.putArray("preparationSteps").addObject().put("stepNumber", 1).put("instruction", "Cook.");
+		return recipe;
+	}
+
+	private static List<RecipeGenerationRequest> day() {
+		AiStrategyResult strategy = new AiStrategyResult();
+		strategy.setStrategyName("balanced");
+		List<RecipeGenerationRequest> requests = new ArrayList<>();
+		for (int i = 0; i < MEALS.length; i++) {
+			AiMealStructureResult.MealSlot slot = new AiMealStructureResult.MealSlot();
+			slot.setMealType(MEALS[i]);
+			slot.setIndex(i);
+			slot.setCalorieTarget(400);
+			RecipeGenerationRequest request = new RecipeGenerationRequest();
+			request.setStrategy(strategy);
+			request.setMealSlot(slot);
+			request.setAllergies(List.of("peanut"));
+			request.setServings(1);
+			requests.add(request);
+		}
+		return requests;
+	}
+
+	private static List<GeneratedRecipe> join(RecipeGenerationService.RecipeBatch batch) {
+		return batch.recipes().stream().map(GroqClient::await).toList();
+	}
+
+	@Test
+	void batchesDayAndRetriesOnlyInvalidSlots() {
+		// Slot 3 violates the allergy, slot 5 is missing: only those two use the single-slot path
+		ObjectNode response = MAPPER.createObjectNode();
+		ArrayNode items = response.putArray("recipes");
+		items.add(recipe(1, "Dish 1", "oats"));
+		items.add(recipe(2, "Dish 2", "apple"));
+		items.add(recipe(3, "Dish 3", "peanut butter"));
+		items.add(recipe(4, "Dish 4", "yogurt"));
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), isNull(), eq(0.4)))
+			.thenReturn(CompletableFuture.completedFuture(response));
+
+		RecipeGenerationService.RecipeBatch batch = service.generateBatchAsync(day());
+		List<GeneratedRecipe> recipes = join(batch);
+
+		assertEquals(List.of("Dish 1", "Dish 2", "Single dish", "Dish 4", "Single dish"),
+			recipes.stream().map(GeneratedRecipe::getTitle).toList());
+		assertEquals(480.0, recipes.get(0).getNutrition().getCalories());
+		assertEquals(5, batch.llmCalls());
+
+		ReflectionTestUtils.setField(service, "batchEnabled", false);
+		RecipeGenerationService.RecipeBatch perSlot = service.generateBatchAsync(day());
+		join(perSlot);
+		assertEquals(10, perSlot.llmCalls());
+		assertTrue(batch.llmCalls() < perSlot.llmCalls(),
+			"batched " + batch.llmCalls() + " calls, per-slot " + perSlot.llmCalls() + " calls");
+	}
+
+	@Test
+	void allValidDayIsOneCall() {
+		ObjectNode response = MAPPER.createObjectNode();
+		ArrayNode items = response.putArray("recipes");
+		for (int slot = MEALS.length; slot >= 1; slot--) {
+			items.add(recipe(slot, "Dish " + slot, "rice"));
+		}
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), isNull(), eq(0.4)))
+			.thenReturn(CompletableFuture.completedFuture(response));
+
+		RecipeGenerationService.RecipeBatch batch = service.generateBatchAsync(day());
+		List<GeneratedRecipe> recipes = join(batch);
+
+		assertEquals(1, batch.llmCalls());
+		for (int i = 0; i < recipes.size(); i++) {
+			assertEquals("Dish " + (i + 1), recipes.get(i).getTitle());
+			assertTrue(recipes.get(i).getNutrition() != null);
+		}
+	}
+
+	@Test
+	void failedBatchFallsBackPerSlot() {
+		JsonNode notRecipes = MAPPER.createObjectNode().put("message", "sorry");
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), isNull(), eq(0.4)))
+			.thenReturn(CompletableFuture.completedFuture(notRecipes));
+
+		RecipeGenerationService.RecipeBatch batch = service.generateBatchAsync(day());
+
+		assertEquals(5, join(batch).size());
+		assertEquals(1 + 2 * MEALS.length, batch.llmCalls());
+	}
+
+	@Test
+	void singlePassIsOneCallWithServerNutrition() {
+		ReflectionTestUtils.setField(service, "batchEnabled", false);
+		RecipeGenerationService.RecipeBatch contract = service.generateBatchAsync(day());
+		join(contract);
+		ArgumentCaptor<String> contractPrompt = ArgumentCaptor.forClass(String.class);
+		verify(groqClient, org.mockito.Mockito.atLeastOnce())
+			.callForJsonAsync(eq(AiPromptType.RECIPE), contractPrompt.capture(), anyList(), eq(0.4));
+
+		// The model adds nutrition anyway: it is discarded in favour of the computed values
+		ObjectNode answer = recipe(0, "Single pass dish", "oats");
+		answer.putObject("nutrition").put("calories", 9999);
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), isNull(), eq(0.4)))
+			.thenReturn(CompletableFuture.completedFuture(answer));
+		ReflectionTestUtils.setField(service, "singlePass", true);
+		RecipeGenerationService.RecipeBatch singlePass = service.generateBatchAsync(day());
+		List<GeneratedRecipe> recipes = join(singlePass);
+		ArgumentCaptor<String> singlePassPrompt = ArgumentCaptor.forClass(String.class);
+		verify(groqClient, org.mockito.Mockito.atLeastOnce())
+			.callForJsonAsync(eq(AiPromptType.RECIPE), singlePassPrompt.capture(), isNull(), eq(0.4));
+
+		assertEquals(MEALS.length, singlePass.llmCalls());
+		assertEquals(2 * MEALS.length, contract.llmCalls());
+		assertEquals(480.0, recipes.get(0).getNutrition().getCalories());
+		assertEquals(28.0, recipes.get(0).getNutrition().getProteinPerServing());
+		assertFalse(singlePassPrompt.getValue().contains("FUNCTION CALLING CONTRACT"));
+
+		// Contract mode sends the prompt twice: once for the function call, again with the result
+		int contractChars = 2 * contractPrompt.getValue().length();
+		int singlePassChars = singlePassPrompt.getValue().length();
+		assertTrue(singlePassChars < contractChars / 2,
+			"single pass " + singlePassChars + " chars, contract " + contractChars + " chars");
+	}
+
+	@Test
+	void recipeWithoutCatalogMatchIsRejectedOnBothPaths() {
+		when(orchestrator.calculateNutrition(anyList(), anyInt())).thenReturn(
+			new CalculateNutritionRequest.Output(0, 0, 0, 0, 0, 0, 0, 0, "server_side", 1));
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), isNull(), eq(0.4)))
+			.thenReturn(CompletableFuture.completedFuture(recipe(0, "Unknown dish", "moon dust")));
+		ReflectionTestUtils.setField(service, "singlePass", true);
+
+		ReflectionTestUtils.setField(service, "batchEnabled", false);
+		RecipeGenerationService.RecipeBatch singlePass = service.generateBatchAsync(day());
+		assertThrows(AiClientException.class, () -> GroqClient.await(singlePass.recipes().get(0)));
+
+		// Batch items with 0 kcal fall back to the single-slot path, which rejects them the same way
+		ObjectNode response = MAPPER.createObjectNode();
+		ArrayNode items = response.putArray("recipes");
+		for (int slot = 1; slot <= MEALS.length; slot++) {
+			items.add(recipe(slot, "Unknown dish " + slot, "moon dust"));
+		}
+		when(groqClient.callForJsonAsync(eq(AiPromptType.RECIPE), anyString(), isNull(), eq(0.4)))
+			.thenReturn(CompletableFuture.completedFuture(response));
+		ReflectionTestUtils.setField(service, "batchEnabled", true);
+		RecipeGenerationService.RecipeBatch batch = service.generateBatchAsync(day());
+		assertThrows(AiClientException.class, () -> GroqClient.await(batch.recipes().get(0)));
+		assertEquals(1 + MEALS.length, batch.llmCalls());
+	}
+}
@@ -0,0 +1,195 @@
+package com.ndl.numbers_dont_lie.ai.cache;
+
+import com.ndl.numbers_dont_lie.ai.dto.AiMealStructureResult;
+import com.ndl.numbers_dont_lie.ai.dto.AiStrategyRequest;
+import com.ndl.numbers_dont_lie.ai.dto.AiStrategyResult;
+import com.ndl.numbers_dont_lie.ai.entity.AiSessionCacheEntry;
+import com.ndl.numbers_dont_lie.ai.repository.AiSessionCacheRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tiers, eviction and profile-fingerprint invalidation of the AI session cache.
+ */
+class AiSessionCacheTest {
+
+	private static AiStrategyRequest request(double weightKg) {
+		AiStrategyRequest request = new AiStrategyRequest();
+		request.setUserId("7");
+		request.setTimezone(ZoneId.of("Europe/Tallinn"));
+		request.setAge(34);
+		request.setSex("female");
+		request.setHeightCm(168);
+		request.setWeightKg(weightKg);
+		request.setGoal("lose_weight");
+		request.setDietaryPreferences(Map.of());
+		request.setAllergies(List.of());
+		request.setMealFrequency(Map.of("breakfast", 1, "lunch", 1, "dinner", 1, "snacks", 1));
+		return request;
+	}
+
+	private static AiStrategyResult strategy(String name) {
+		AiStrategyResult result = new AiStrategyResult();
+		result.setStrategyName(name);
+		result.setTargetCalories(Map.of("daily", 1900));
+		return result;
+	}
+
+	private static AiMealStructureResult structure() {
+		AiMealStructureResult.MealSlot slot = new AiMealStructureResult.MealSlot();
+		slot.setMealType("breakfast");
+		slot.setCalorieTarget(450);
+		AiMealStructureResult result = new AiMealStructureResult();
+		result.setMeals(List.of(slot));
+		return result;
+	}
+
+	@Test
+	void fingerprintIgnoresUserIdButNotProfileInputs() {
+		AiStrategyRequest other = request(72);
+		other.setUserId("8");
+
+		assertEquals(AiSessionCache.fingerprint(request(72)), AiSessionCache.fingerprint(other));
+		assertNotEquals(AiSessionCache.fingerprint(request(72)), AiSessionCache.fingerprint(request(71)));
+	}
+
+	@Test
+	void restartIsServedFromTheTable() {
+		AiSessionCacheRepository repository = mock(AiSessionCacheRepository.class);
+		AiSessionCache before = new AiSessionCache(repository, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		before.putStrategyResult("7", strategy("Moderate Deficit"), AiSessionCache.fingerprint(request(72)));
+		before.putMealStructureResult("7", structure());
+
+		ArgumentCaptor<AiSessionCacheEntry> saved = ArgumentCaptor.forClass(AiSessionCacheEntry.class);
+		verify(repository, atLeastOnce()).save(saved.capture());
+		AiSessionCacheEntry row = saved.getValue();
+		assertNotNull(row.getStrategyJson());
+		assertNotNull(row.getMealStructureJson());
+		when(repository.findByUserIdAndExpiresAtAfter(eq("7"), any(Instant.class))).thenReturn(Optional.of(row));
+
+		AiSessionCache after = new AiSessionCache(repository, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		assertEquals("Moderate Deficit", after.getStrategyResult("7").getStrategyName());
+		assertEquals(450, after.getMealStructureResult("7").getMeals().get(0).getCalorieTarget());
+		assertEquals(AiSessionCache.fingerprint(request(72)), after.getSession("7").profileFingerprint);
+	}
+
+	@Test
+	void sizeAndTtlEvictTheNearCache() throws Exception {
+		AiSessionCache bySize = new AiSessionCache(null, 2, Duration.ofMinutes(10), Duration.ofDays(7));
+		bySize.putStrategyResult("1", strategy("a"));
+		bySize.putStrategyResult("2", strategy("b"));
+		bySize.getStrategyResult("1");
+		bySize.putStrategyResult("3", strategy("c"));
+
+		assertNotNull(bySize.getStrategyResult("1"));
+		assertNull(bySize.getStrategyResult("2"));
+
+		AiSessionCache byTtl = new AiSessionCache(null, 10, Duration.ofMillis(20), Duration.ofDays(7));
+		byTtl.putStrategyResult("1", strategy("a"));
+		Thread.sleep(40);
+		assertNull(byTtl.getStrategyResult("1"));
+	}
+
+	@Test
+	void onlyChangedProfileInputsInvalidate() {
+		AiSessionCacheRepository repository = mock(AiSessionCacheRepository.class);
+		AiSessionCache cache = new AiSessionCache(repository, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		cache.putStrategyResult("7", strategy("Moderate Deficit"), AiSessionCache.fingerprint(request(72)));
+		cache.putMealStructureResult("7", structure());
+
+		assertFalse(cache.invalidateIfChanged("7", AiSessionCache.fingerprint(request(72))));
+		verify(repository, never()).deleteById("7");
+		assertNotNull(cache.getMealStructureResult("7"));
+
+		assertTrue(cache.invalidateIfChanged("7", AiSessionCache.fingerprint(request(70))));
+		verify(repository).deleteById("7");
+		assertNull(cache.getStrategyResult("7"));
+	}
+
+	@Test
+	void newStrategyForOtherInputsDropsTheMealStructure() {
+		AiSessionCache cache = new AiSessionCache(null, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		cache.putStrategyResult("7", strategy("Moderate Deficit"), AiSessionCache.fingerprint(request(72)));
+		cache.putMealStructureResult("7", structure());
+
+		cache.putStrategyResult("7", strategy("Moderate Deficit"), AiSessionCache.fingerprint(request(72)));
+		assertNotNull(cache.getMealStructureResult("7"));
+
+		cache.putStrategyResult("7", strategy("Maintenance"), AiSessionCache.fingerprint(request(65)));
+		assertNull(cache.getMealStructureResult("7"));
+	}
+
+	@Test
+	void invalidateDuringTableReadIsNotUndone() {
+		AiSessionCacheRepository repository = mock(AiSessionCacheRepository.class);
+		AiSessionCache writer = new AiSessionCache(repository, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		writer.putStrategyResult("7", strategy("Moderate Deficit"));
+		ArgumentCaptor<AiSessionCacheEntry> saved = ArgumentCaptor.forClass(AiSessionCacheEntry.class);
+		verify(repository).save(saved.capture());
+
+		AiSessionCacheRepository table = mock(AiSessionCacheRepository.class);
+		AiSessionCache cache = new AiSessionCache(table, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		when(table.findByUserIdAndExpiresAtAfter(eq("7"), any(Instant.class))).thenAnswer(invocation -> {
+			// The profile changes after the row was read, before it enters the near cache
+			cache.invalidate("7");
+			return Optional.of(saved.getValue());
+		});
+
+		assertNotNull(cache.getStrategyResult("7"));
+		assertNull(cache.getStrategyResult("7"));
+		verify(table, times(1)).findByUserIdAndExpiresAtAfter(eq("7"), any(Instant.class));
+	}
+
+	@Test
+	void tableMissesAreRememberedForMissTtl() throws Exception {
+		AiSessionCacheRepository repository = mock(AiSessionCacheRepository.class);
+		when(repository.findByUserIdAndExpiresAtAfter(eq("7"), any(Instant.class))).thenReturn(Optional.empty());
+		AiSessionCache cache = new AiSessionCache(repository, 10, Duration.ofMinutes(10), Duration.ofDays(7),
+			Duration.ofMillis(20));
+
+		assertNull(cache.getSession("7"));
+		assertNull(cache.getSession("7"));
+		verify(repository, times(1)).findByUserIdAndExpiresAtAfter(eq("7"), any(Instant.class));
+
+		Thread.sleep(40);
+		assertNull(cache.getSession("7"));
+		verify(repository, times(2)).findByUserIdAndExpiresAtAfter(eq("7"), any(Instant.class));
+
+		cache.putStrategyResult("7", strategy("Moderate Deficit"));
+		assertEquals("Moderate Deficit", cache.getStrategyResult("7").getStrategyName());
+	}
+
+	@Test
+	void mealStructureUpdateRefreshesTheEntryAge() throws Exception {
+		AiSessionCache cache = new AiSessionCache(null, 10, Duration.ofMinutes(10), Duration.ofDays(7));
+		cache.putStrategyResult("7", strategy("Moderate Deficit"));
+		Instant strategyStoredAt = cache.getSession("7").createdAt;
+		Thread.sleep(5);
+
+		cache.putMealStructureResult("7", structure());
+
+		assertTrue(cache.getSession("7").createdAt.isAfter(strategyStoredAt));
+	}
+}
@@ -0,0 +1,119 @@
+package com.ndl.numbers_dont_lie.ai.cache;
+
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
+import com.ndl.numbers_dont_lie.ai.entity.LlmResponseCacheEntry;
+import com.ndl.numbers_dont_lie.ai.repository.LlmResponseCacheRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keying, tiers and bypass of the LLM response cache.
+ */
+class LlmResponseCacheTest {
+
+	private static Map<String, Object> body(String prompt, double temperature) {
+		Map<String, Object> body = new HashMap<>();
+		body.put("model", "llama-3.3-70b-versatile");
+		body.put("messages", List.of(
+			Map.of("role", "system", "content", "Respond with JSON."),
+			Map.of("role", "user", "content", prompt)));
+		body.put("temperature", temperature);
+		body.put("top_p", 0.95);
+		return body;
+	}
+
+	@Test
+	void keyIgnoresWhitespaceAndMapOrderButNotTemperature() {
+		LlmResponseCache cache = new LlmResponseCache(null, 10, Duration.ofHours(1), 0.3);
+		Map<String, Object> reordered = new LinkedHashMap<>();
+		reordered.put("top_p", 0.95);
+		reordered.put("temperature", 0.2);
+		reordered.put("messages", List.of(
+			Map.of("content", "Respond with JSON.", "role", "system"),
+			Map.of("content", "  age: 30\r\n\r\n\r\ngoal:\t lose  \n", "role", "user")));
+		reordered.put("model", "llama-3.3-70b-versatile");
+
+		assertEquals(cache.key(body("age: 30\n\ngoal: lose", 0.2)), cache.key(reordered));
+		assertNotEquals(cache.key(body("age: 30", 0.2)), cache.key(body("age: 30", 0.1)));
+		assertNotEquals(cache.key(body("age: 30", 0.2)), cache.key(body("age: 31", 0.2)));
+	}
+
+	@Test
+	void hotPromptsBypass() {
+		LlmResponseCache cache = new LlmResponseCache(null, 10, Duration.ofHours(1), 0.3);
+
+		assertTrue(cache.isCacheable(body("x", 0.2)));
+		assertFalse(cache.isCacheable(body("x", 0.6)));
+		assertEquals(1, cache.stats().bypassed());
+	}
+
+	@Test
+	void lruEvictsLeastRecentlyUsedThenFallsBackToDatabase() {
+		LlmResponseCacheRepository repository = mock(LlmResponseCacheRepository.class);
+		LlmResponseCache cache = new LlmResponseCache(repository, 2, Duration.ofHours(1), 0.3);
+		cache.store("a", AiPromptType.STRATEGY, "{\"a\":1}", 100);
+		cache.store("b", AiPromptType.STRATEGY, "{\"b\":1}", 100);
+		cache.lookup("a");
+		cache.store("c", AiPromptType.STRATEGY, "{\"c\":1}", 100);
+
+		LlmResponseCacheEntry row = new LlmResponseCacheEntry();
+		row.setKeyHash("b");
+		row.setResponseJson("{\"b\":1}");
+		row.setTotalTokens(100);
+		row.setExpiresAt(Instant.now().plusSeconds(60));
+		when(repository.findByKeyHashAndExpiresAtAfter(eq("b"), any())).thenReturn(Optional.of(row));
+
+		assertEquals("{\"b\":1}", cache.lookup("b"));
+		assertEquals("{\"c\":1}", cache.lookup("c"));
+		verify(repository, never()).findByKeyHashAndExpiresAtAfter(eq("c"), any());
+		assertEquals(1, cache.stats().databaseHits());
+	}
+
+	@Test
+	void databaseErrorsAreMisses() {
+		LlmResponseCacheRepository repository = mock(LlmResponseCacheRepository.class);
+		when(repository.findByKeyHashAndExpiresAtAfter(any(), any())).thenThrow(new IllegalStateException("down"));
+		LlmResponseCache cache = new LlmResponseCache(repository, 10, Duration.ofHours(1), 0.3);
+
+		assertNull(cache.lookup("k"));
+		assertEquals(1, cache.stats().misses());
+	}
+
+	@Test
+	void repeatedProfilesHitAfterFirstCall() {
+		LlmResponseCache cache = new LlmResponseCache(null, 100, Duration.ofHours(1), 0.3);
+		int calls = 0;
+		// 200 requests over 20 distinct profiles, ~900 tokens per strategy call
+		for (int i = 0; i < 200; i++) {
+			String key = cache.key(body("age: " + (25 + i % 20) + "\ngoal: lose", 0.2));
+			if (cache.lookup(key) == null) {
+				calls++;
+				cache.store(key, AiPromptType.STRATEGY, "{\"strategyName\":\"s\"}", 900);
+			}
+		}
+
+		LlmResponseCache.Stats stats = cache.stats();
+		assertEquals(20, calls);
+		assertEquals(0.9, stats.hitRatio(), 1e-9);
+		assertEquals(180L * 900, stats.tokensSaved());
+	}
+}
@@ -0,0 +1,72 @@
+package com.ndl.numbers_dont_lie.ai.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Superseded insight rows are deleted before the unique key is added, and the step is a no-op
+ * on a fresh database and once the key exists.
+ */
+class AiInsightCacheHistoryMigrationTest {
+
+	private DriverManagerDataSource dataSource;
+	private JdbcTemplate jdbc;
+
+	@BeforeEach
+	void setUp() {
+		dataSource = new DriverManagerDataSource(
+			"jdbc:h2:mem:insight-migration-" + System.nanoTime() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+		jdbc = new JdbcTemplate(dataSource);
+	}
+
+	private void createTable() {
+		jdbc.execute("CREATE TABLE ai_insight_cache (id BIGINT PRIMARY KEY, user_id BIGINT, scope VARCHAR(50),"
+			+ " goal_key VARCHAR(100), data_json TEXT)");
+	}
+
+	private void insert(long id, long userId, String scope) {
+		jdbc.update("INSERT INTO ai_insight_cache (id, user_id, scope, goal_key, data_json) VALUES (?, ?, ?, 'default', '{}')",
+			id, userId, scope);
+	}
+
+	@Test
+	void freshDatabaseIsSkipped() {
+		assertEquals(0, new AiInsightCacheHistoryMigration(dataSource, 2).migrate());
+	}
+
+	@Test
+	void keepsTheNewestRowPerKeySoTheUniqueKeyCanBeAdded() {
+		createTable();
+		for (long id = 1; id <= 5; id++) {
+			insert(id, 1L, "weekly");
+		}
+		insert(6L, 1L, "daily");
+		insert(7L, 2L, "weekly");
+		insert(8L, 2L, "weekly");
+
+		int removed = new AiInsightCacheHistoryMigration(dataSource, 2).migrate();
+
+		assertEquals(5, removed);
+		assertEquals(List.of(5L, 6L, 8L),
+			jdbc.queryForList("SELECT id FROM ai_insight_cache ORDER BY id", Long.class));
+		jdbc.execute("ALTER TABLE ai_insight_cache ADD CONSTRAINT " + AiInsightCacheHistoryMigration.UNIQUE_KEY
+			+ " UNIQUE (user_id, scope, goal_key)");
+	}
+
+	@Test
+	void skippedOnceTheUniqueKeyExists() {
+		createTable();
+		jdbc.execute("ALTER TABLE ai_insight_cache ADD CONSTRAINT " + AiInsightCacheHistoryMigration.UNIQUE_KEY
+			+ " UNIQUE (user_id, scope, goal_key)");
+		insert(1L, 1L, "weekly");
+
+		assertEquals(0, new AiInsightCacheHistoryMigration(dataSource, 2).migrate());
+		assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM ai_insight_cache", Integer.class));
+	}
+}
@@ -0,0 +1,115 @@
+package com.ndl.numbers_dont_lie.ai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.dto.AiInsightItemDto;
+import com.ndl.numbers_dont_lie.ai.dto.AiInsightsResponse;
+import com.ndl.numbers_dont_lie.ai.entity.AiInsightCache;
+import com.ndl.numbers_dont_lie.ai.repository.AiInsightCacheRepository;
+import com.ndl.numbers_dont_lie.entity.UserEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Upsert (with the retry after a lost insert race), compression and batched purge of the
+ * insight cache.
+ */
+class AiInsightCacheStoreTest {
+
+	private static String insightsJson() throws Exception {
+		List<AiInsightItemDto> items = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			items.add(new AiInsightItemDto("Increase activity",
+				"Add 1–2 short walks or a 20–30 minute session to reach 150+ minutes/week.",
+				"medium", List.of("activity", "weekly")));
+		}
+		return new ObjectMapper().writeValueAsString(
+			new AiInsightsResponse(items, Map.of("medium", 5), false, Instant.now().toString()));
+	}
+
+	@Test
+	void storesCompressedAndReadsLegacyPlainRows() throws Exception {
+		String json = insightsJson();
+		String stored = AiInsightCacheStore.compress(json);
+
+		assertTrue(stored.startsWith(AiInsightCacheStore.COMPRESSED_PREFIX));
+		assertTrue(stored.length() < json.length());
+		assertEquals(json, AiInsightCacheStore.decompress(stored));
+		assertEquals(json, AiInsightCacheStore.decompress(json));
+	}
+
+	@Test
+	void regenerationOverwritesTheExistingRow() throws Exception {
+		AiInsightCacheRepository repository = mock(AiInsightCacheRepository.class);
+		AiInsightCacheStore store = new AiInsightCacheStore(repository);
+		UserEntity user = new UserEntity();
+		AiInsightCache existing = new AiInsightCache();
+		existing.setId(42L);
+		existing.setExpiresAt(Instant.now().minusSeconds(60));
+		when(repository.findFirstByUserAndScopeAndGoalKeyOrderByGeneratedAtDesc(user, "weekly", "default"))
+			.thenReturn(Optional.of(existing));
+
+		String json = insightsJson();
+		store.put(user, "weekly", "default", json, Duration.ofHours(6));
+
+		verify(repository).saveAndFlush(existing);
+		assertEquals(42L, existing.getId());
+		assertTrue(existing.getExpiresAt().isAfter(Instant.now()));
+		assertEquals(json, store.json(existing));
+	}
+
+	@Test
+	void purgeDeletesExpiredRowsInBatches() {
+		AiInsightCacheRepository repository = mock(AiInsightCacheRepository.class);
+		AiInsightCacheStore store = new AiInsightCacheStore(repository);
+		ReflectionTestUtils.setField(store, "retainHours", 168L);
+		ReflectionTestUtils.setField(store, "purgeBatchSize", 2);
+		when(repository.findExpiredIds(any(Instant.class), any(Pageable.class)))
+			.thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+
+		store.purgeExpired();
+
+		verify(repository).deleteAllByIdInBatch(eq(List.of(1L, 2L)));
+		verify(repository).deleteAllByIdInBatch(eq(List.of(3L)));
+		verify(repository, times(3)).findExpiredIds(any(Instant.class), any(Pageable.class));
+	}
+
+	@Test
+	void concurrentInsertIsRetriedAsAnUpdate() throws Exception {
+		AiInsightCacheRepository repository = mock(AiInsightCacheRepository.class);
+		AiInsightCacheStore store = new AiInsightCacheStore(repository);
+		UserEntity user = new UserEntity();
+		AiInsightCache winner = new AiInsightCache();
+		winner.setId(42L);
+		// No row on the first read; the concurrent regeneration's row on the retry
+		when(repository.findFirstByUserAndScopeAndGoalKeyOrderByGeneratedAtDesc(user, "weekly", "default"))
+			.thenReturn(Optional.empty(), Optional.of(winner));
+		when(repository.saveAndFlush(any(AiInsightCache.class)))
+			.thenThrow(new DataIntegrityViolationException("uk_ai_insight_user_scope_goal"))
+			.thenAnswer(invocation -> invocation.getArgument(0));
+
+		String json = insightsJson();
+		store.put(user, "weekly", "default", json, Duration.ofHours(6));
+
+		verify(repository, times(2)).saveAndFlush(any(AiInsightCache.class));
+		verify(repository).saveAndFlush(winner);
+		assertEquals(json, store.json(winner));
+	}
+}
@@ -0,0 +1,127 @@
+package com.ndl.numbers_dont_lie.ai.service;
+
+import com.ndl.numbers_dont_lie.activity.event.ActivityRecordedEvent;
+import com.ndl.numbers_dont_lie.ai.event.AiInsightsStaleEvent;
+import com.ndl.numbers_dont_lie.weight.event.WeightRecordedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Coalescing of insight recomputations triggered by domain events, the existing-row filter for
+ * data events, and shutdown.
+ */
+class AiInsightPrecomputeWorkerTest {
+
+	@Test
+	void burstOfWritesCostsOneRecomputationPerUser() {
+		AIRecommendationService recommendations = mock(AIRecommendationService.class);
+		when(recommendations.precompute("a@x.io")).thenReturn(true);
+		when(recommendations.precompute("b@x.io")).thenReturn(true);
+		AiInsightCacheStore cacheStore = mock(AiInsightCacheStore.class);
+		when(cacheStore.hasInsights("a@x.io")).thenReturn(true);
+		AiInsightPrecomputeWorker worker = new AiInsightPrecomputeWorker(recommendations, cacheStore, true, 100);
+		try {
+			for (int i = 0; i < 10; i++) {
+				worker.onWeightRecorded(new WeightRecordedEvent(1L, "a@x.io", Instant.now()));
+			}
+			worker.request("b@x.io");
+
+			verify(recommendations, timeout(2000)).precompute("a@x.io");
+			verify(recommendations, timeout(2000)).precompute("b@x.io");
+			verify(recommendations, timeout(300).times(1)).precompute("a@x.io");
+			assertEquals(11, worker.getRequested());
+			assertEquals(2, worker.getComputed());
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	@Test
+	void writeDuringARunSchedulesAnotherRun() throws Exception {
+		AIRecommendationService recommendations = mock(AIRecommendationService.class);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(recommendations.precompute("a@x.io")).thenAnswer(invocation -> {
+			running.countDown();
+			release.await(2, TimeUnit.SECONDS);
+			return true;
+		}).thenReturn(true);
+		AiInsightPrecomputeWorker worker = new AiInsightPrecomputeWorker(
+			recommendations, mock(AiInsightCacheStore.class), true, 10);
+		try {
+			assertTrue(worker.request("a@x.io"));
+			assertTrue(running.await(2, TimeUnit.SECONDS));
+			assertTrue(worker.request("a@x.io"));
+			assertFalse(worker.request("a@x.io"));
+			release.countDown();
+
+			verify(recommendations, timeout(2000).times(2)).precompute("a@x.io");
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	@Test
+	void dataEventsSkipUsersWithoutInsights() {
+		AIRecommendationService recommendations = mock(AIRecommendationService.class);
+		AiInsightCacheStore cacheStore = mock(AiInsightCacheStore.class);
+		when(cacheStore.hasInsights("reader@x.io")).thenReturn(true);
+		AiInsightPrecomputeWorker worker = new AiInsightPrecomputeWorker(recommendations, cacheStore, true, 10);
+		try {
+			worker.onWeightRecorded(new WeightRecordedEvent(1L, "reader@x.io", Instant.now()));
+			worker.onWeightRecorded(new WeightRecordedEvent(2L, "logger@x.io", Instant.now()));
+			// A stale read is the first read: computed even though no row exists yet
+			worker.onInsightsStale(new AiInsightsStaleEvent("new@x.io"));
+
+			verify(recommendations, timeout(2000)).precompute("reader@x.io");
+			verify(recommendations, timeout(2000)).precompute("new@x.io");
+			verify(cacheStore, timeout(2000)).hasInsights("logger@x.io");
+			verify(recommendations, after(200).never()).precompute("logger@x.io");
+			verify(cacheStore, never()).hasInsights("new@x.io");
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	@Test
+	void staleReadCoalescedIntoADataEventStillComputes() {
+		AIRecommendationService recommendations = mock(AIRecommendationService.class);
+		AiInsightPrecomputeWorker worker = new AiInsightPrecomputeWorker(
+			recommendations, mock(AiInsightCacheStore.class), true, 100);
+		try {
+			worker.onWeightRecorded(new WeightRecordedEvent(1L, "new@x.io", Instant.now()));
+			assertFalse(worker.request("new@x.io"));
+
+			verify(recommendations, timeout(2000)).precompute("new@x.io");
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	@Test
+	void requestsAfterShutdownAreDropped() {
+		AIRecommendationService recommendations = mock(AIRecommendationService.class);
+		AiInsightPrecomputeWorker worker = new AiInsightPrecomputeWorker(
+			recommendations, mock(AiInsightCacheStore.class), true, 10);
+		worker.shutdown();
+
+		assertFalse(worker.request("a@x.io"));
+		worker.onActivityRecorded(new ActivityRecordedEvent(1L, "a@x.io", Instant.now()));
+		assertFalse(worker.request("a@x.io"));
+		verify(recommendations, never()).precompute("a@x.io");
+	}
+}
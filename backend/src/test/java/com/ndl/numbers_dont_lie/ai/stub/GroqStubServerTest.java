@@ -0,0 +1,139 @@
+package com.ndl.numbers_dont_lie.ai.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
+import com.ndl.numbers_dont_lie.ai.GroqCircuitBreaker;
+import com.ndl.numbers_dont_lie.ai.GroqClient;
+import com.ndl.numbers_dont_lie.ai.GroqRateLimiter;
+import com.ndl.numbers_dont_lie.ai.GroqRetryPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The real GroqClient against the local stub: record/replay, fault injection with retries,
+ * streaming and simulated latency.
+ */
+class GroqStubServerTest {
+
+	private static final long SEED = 7L;
+
+	private static GroqStubServer.Settings settings(GroqStubServer.Mode mode, Path fixtures, String upstreamUrl,
+			long medianMs, long p95Ms, double rateLimitedRate, double serverErrorRate) {
+		return new GroqStubServer.Settings(mode, fixtures, upstreamUrl, "upstream-key",
+			Duration.ofMillis(medianMs), Duration.ofMillis(p95Ms), rateLimitedRate, serverErrorRate,
+			Duration.ZERO, 4, SEED);
+	}
+
+	private static GroqClient client(GroqStubServer stub) {
+		return new GroqClient(stub.baseUrl(), "stub-key",
+			new GroqRateLimiter(16, 100_000, 100_000_000),
+			new GroqRetryPolicy(8, Duration.ofMillis(1), Duration.ofMillis(20), Duration.ofSeconds(5)),
+			new GroqCircuitBreaker(1000, Duration.ofSeconds(30)),
+			null,
+			null);
+	}
+
+	@Test
+	void recordsOnceThenReplays(@TempDir Path fixtures) throws Exception {
+		AtomicInteger upstreamAnswers = new AtomicInteger();
+		try (GroqStubServer upstream = new GroqStubServer(GroqStubServer.Settings.synthetic())
+				.withFallbackResponder(request -> "{\"answer\":" + upstreamAnswers.incrementAndGet() + ",\"note\":\"recorded\"}")
+				.start(0);
+			 GroqStubServer recorder = new GroqStubServer(
+				settings(GroqStubServer.Mode.RECORD, fixtures, upstream.baseUrl(), 0, 0, 0, 0)).start(0);
+			 GroqClient client = client(recorder)) {
+
+			assertEquals(1, client.callForJson("Plan my day").path("answer").asInt());
+			assertEquals(1, client.callForJson("Plan my day").path("answer").asInt());
+
+			assertEquals(1, upstream.stats().requests());
+			assertEquals(1, recorder.stats().recorded());
+			assertEquals(1, recorder.stats().replayed());
+			try (var files = Files.list(fixtures)) {
+				assertEquals(1, files.count());
+			}
+		}
+
+		// Replay only, streamed: the recording is served as events, unknown prompts are synthetic
+		try (GroqStubServer replay = new GroqStubServer(
+				settings(GroqStubServer.Mode.REPLAY, fixtures, null, 0, 0, 0, 0))
+				.withFallbackResponder(request -> "{\"answer\":0}")
+				.start(0);
+			 GroqClient client = client(replay)) {
+
+			Map<String, JsonNode> fields = new ConcurrentHashMap<>();
+			JsonNode streamed = GroqClient.await(client.callForJsonStreamed(
+				AiPromptType.GENERAL, "Plan my day", null, null, fields::put));
+			JsonNode unknown = client.callForJson("Something else");
+
+			assertEquals(1, streamed.path("answer").asInt());
+			assertEquals("recorded", fields.get("note").asText());
+			assertEquals(0, unknown.path("answer").asInt());
+			assertEquals(1, replay.stats().replayed());
+			assertEquals(1, replay.stats().synthetic());
+			assertTrue(replay.stats().promptTokens() > 0);
+		}
+	}
+
+	/** Sequential calls: with a fixed seed the same requests get the same faults on every run. */
+	private static GroqStubServer.Stats faultyRun() throws Exception {
+		try (GroqStubServer stub = new GroqStubServer(
+				settings(GroqStubServer.Mode.SYNTHETIC, null, null, 0, 0, 0.3, 0.2))
+				.withFallbackResponder(request -> "{\"ok\":true}")
+				.start(0);
+			 GroqClient client = client(stub)) {
+
+			for (int i = 0; i < 40; i++) {
+				assertTrue(client.callForJson("Call " + i).path("ok").asBoolean());
+			}
+			return stub.stats();
+		}
+	}
+
+	@Test
+	void injectedFaultsAreRetriedByClient() throws Exception {
+		GroqStubServer.Stats stats = faultyRun();
+
+		assertEquals(40, stats.synthetic());
+		assertEquals(stats.requests(), 40 + stats.rateLimited() + stats.serverErrors());
+		assertTrue(stats.rateLimited() > 0 && stats.serverErrors() > 0, stats.toString());
+		assertEquals(stats, faultyRun());
+	}
+
+	@Test
+	void simulatedLatencyUnderConcurrency() throws Exception {
+		try (GroqStubServer stub = new GroqStubServer(
+				settings(GroqStubServer.Mode.SYNTHETIC, null, null, 40, 120, 0, 0))
+				.withFallbackResponder(request -> "{\"ok\":true}")
+				.start(0);
+			 GroqClient client = client(stub)) {
+
+			int calls = 48;
+			List<CompletableFuture<JsonNode>> futures = new ArrayList<>();
+			for (int i = 0; i < calls; i++) {
+				futures.add(client.callForJsonAsync(AiPromptType.GENERAL, "Call " + i));
+			}
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+			// One draw per request: the total is fixed by the seed, whatever order the requests arrived in
+			GroqStubServer.Stats stats = stub.stats();
+			assertEquals(calls, stats.requests());
+			long meanMs = stats.simulatedLatencyMs() / calls;
+			assertTrue(meanMs >= 30 && meanMs <= 80, "mean=" + meanMs);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.ndl.numbers_dont_lie.ai.telemetry;
+
+import com.ndl.numbers_dont_lie.ai.AiPromptType;
+import com.ndl.numbers_dont_lie.ai.GroqCircuitBreaker;
+import com.ndl.numbers_dont_lie.ai.GroqClient;
+import com.ndl.numbers_dont_lie.ai.GroqRateLimiter;
+import com.ndl.numbers_dont_lie.ai.GroqRetryPolicy;
+import com.ndl.numbers_dont_lie.ai.exception.AiBudgetExceededException;
+import com.ndl.numbers_dont_lie.ai.stub.GroqStubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Metrics and daily token budget of GroqClient calls, against the local stub server.
+ */
+class AiTelemetryTest {
+
+	private static GroqClient client(GroqStubServer stub, AiTelemetry telemetry, int maxAttempts) {
+		return new GroqClient(stub.baseUrl(), "stub-key",
+			new GroqRateLimiter(8, 10_000, 10_000_000),
+			new GroqRetryPolicy(maxAttempts, Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(1)),
+			new GroqCircuitBreaker(100, Duration.ofSeconds(30)),
+			null,
+			telemetry);
+	}
+
+	@Test
+	void callsAreTimedCountedAndCharged() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AiTelemetry telemetry = new AiTelemetry(registry, new AiTokenBudget(0, Clock.systemUTC()), 0.59, 0.79);
+		try (GroqStubServer stub = new GroqStubServer(GroqStubServer.Settings.synthetic())
+				.withFallbackResponder(request -> "{\"ok\":true}")
+				.start(0);
+			 GroqClient client = client(stub, telemetry, 1)) {
+
+			for (int i = 0; i < 3; i++) {
+				String prompt = "Insight " + i;
+				AiCallScope.callAs(7L, () -> client.callForJson(AiPromptType.INSIGHTS, prompt, 0.2));
+			}
+
+			assertEquals(3, registry.get("ai.call.duration")
+				.tags("prompt_type", "insights", "endpoint", GroqClient.ENDPOINT_CHAT, "outcome", "success")
+				.timer().count());
+			assertEquals(stub.stats().promptTokens(), (long) registry.get("ai.tokens")
+				.tags("prompt_type", "insights", "kind", "prompt").counter().count());
+			assertEquals(stub.stats().completionTokens(), (long) registry.get("ai.tokens")
+				.tags("prompt_type", "insights", "kind", "completion").counter().count());
+			assertTrue(registry.get("ai.cost").tags("prompt_type", "insights").counter().count() > 0);
+			assertEquals(stub.stats().promptTokens() + stub.stats().completionTokens(),
+				telemetry.getBudget().spentToday("7"));
+		}
+	}
+
+	@Test
+	void budgetRefusesCallsOnceSpent() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AiTelemetry telemetry = new AiTelemetry(registry, new AiTokenBudget(5, Clock.systemUTC()), 0, 0);
+		try (GroqStubServer stub = new GroqStubServer(GroqStubServer.Settings.synthetic())
+				.withFallbackResponder(request -> "{\"ok\":true}")
+				.start(0);
+			 GroqClient client = client(stub, telemetry, 1)) {
+
+			AiCallScope.callAs(7L, () -> client.callForJson(AiPromptType.SUGGESTIONS, "First", 0.3));
+			assertThrows(AiBudgetExceededException.class,
+				() -> AiCallScope.callAs(7L, () -> client.callForJson(AiPromptType.SUGGESTIONS, "Second", 0.3)));
+			// Other users and unattributed calls are not affected
+			AiCallScope.callAs(8L, () -> client.callForJson(AiPromptType.SUGGESTIONS, "Third", 0.3));
+			client.callForJson(AiPromptType.SUGGESTIONS, "Fourth", 0.3);
+
+			assertEquals(3, stub.stats().requests());
+			assertEquals(1.0, registry.get("ai.budget.rejections").tags("prompt_type", "suggestions").counter().count());
+		}
+	}
+
+	@Test
+	void errorsAreCountedByKind() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AiTelemetry telemetry = new AiTelemetry(registry, new AiTokenBudget(0, Clock.systemUTC()), 0, 0);
+		GroqStubServer.Settings failing = new GroqStubServer.Settings(GroqStubServer.Mode.SYNTHETIC, null, null, null,
+			Duration.ZERO, Duration.ZERO, 0, 1.0, Duration.ZERO, 1, 0L);
+		try (GroqStubServer stub = new GroqStubServer(failing).start(0);
+			 GroqClient client = client(stub, telemetry, 1)) {
+
+			assertThrows(RuntimeException.class, () -> client.callForJson(AiPromptType.SUBSTITUTION, "Swap", 0.3));
+
+			assertEquals(1.0, registry.get("ai.errors")
+				.tags("prompt_type", "substitution", "error", "HTTP_503").counter().count());
+			assertEquals(1, registry.get("ai.call.duration").tags("outcome", "error").timer().count());
+		}
+	}
+
+	@Test
+	void budgetStartsOverNextDay() {
+		MutableClock clock = new MutableClock(Instant.parse("2026-03-01T23:59:00Z"));
+		AiTokenBudget budget = new AiTokenBudget(100, clock);
+		budget.charge("7", 150);
+		assertFalse(budget.allows("7"));
+
+		clock.advance(Duration.ofMinutes(2));
+		assertTrue(budget.allows("7"));
+		assertEquals(0, budget.spentToday("7"));
+		budget.evictPastDays();
+		budget.charge("7", 10);
+		assertEquals(10, budget.spentToday("7"));
+	}
+
+	private static final class MutableClock extends Clock {
+		private Instant now;
+
+		MutableClock(Instant now) {
+			this.now = now;
+		}
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
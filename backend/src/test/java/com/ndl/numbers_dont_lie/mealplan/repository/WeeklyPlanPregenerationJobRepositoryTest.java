@@ -0,0 +1,87 @@
+package com.ndl.numbers_dont_lie.mealplan.repository;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanPregenerationJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Claiming, lease expiry and attempt limits of the pre-generation work queue.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WeeklyPlanPregenerationJobRepositoryTest {
+
+	private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+	private static final int MAX_ATTEMPTS = 2;
+
+	@Autowired
+	private WeeklyPlanPregenerationJobRepository jobs;
+
+	@AfterEach
+	void cleanUp() {
+		jobs.deleteAll();
+	}
+
+	private static LocalDateTime leaseStart() {
+		return LocalDateTime.now().minusMinutes(30);
+	}
+
+	@Test
+	void onlyOneWorkerClaimsAJob() {
+		Long id = jobs.save(new WeeklyPlanPregenerationJob(1L, WEEK)).getId();
+
+		assertEquals(1, jobs.claim(id, MAX_ATTEMPTS, leaseStart(), LocalDateTime.now()));
+		assertEquals(0, jobs.claim(id, MAX_ATTEMPTS, leaseStart(), LocalDateTime.now()));
+
+		WeeklyPlanPregenerationJob claimed = jobs.findById(id).orElseThrow();
+		assertEquals(PregenerationStatus.RUNNING, claimed.getStatus());
+		assertEquals(1, claimed.getAttempts());
+		assertTrue(jobs.findRunnable(WEEK, MAX_ATTEMPTS, leaseStart()).isEmpty());
+	}
+
+	@Test
+	void expiredLeaseIsClaimableUntilAttemptsRunOut() {
+		Long id = jobs.save(new WeeklyPlanPregenerationJob(1L, WEEK)).getId();
+		LocalDateTime longAgo = LocalDateTime.now().minusHours(2);
+
+		assertEquals(1, jobs.claim(id, MAX_ATTEMPTS, leaseStart(), longAgo));
+		assertEquals(1, jobs.findRunnable(WEEK, MAX_ATTEMPTS, leaseStart()).size());
+		assertEquals(1, jobs.claim(id, MAX_ATTEMPTS, leaseStart(), longAgo));
+
+		assertTrue(jobs.findRunnable(WEEK, MAX_ATTEMPTS, leaseStart()).isEmpty());
+		assertEquals(0, jobs.claim(id, MAX_ATTEMPTS, leaseStart(), LocalDateTime.now()));
+
+		assertEquals(1, jobs.failAbandoned(WEEK, MAX_ATTEMPTS, leaseStart(), LocalDateTime.now()));
+		WeeklyPlanPregenerationJob closed = jobs.findById(id).orElseThrow();
+		assertEquals(PregenerationStatus.FAILED, closed.getStatus());
+		assertEquals(MAX_ATTEMPTS, closed.getAttempts());
+	}
+
+	@Test
+	void failedJobIsRetriedWithinTheLimit() {
+		WeeklyPlanPregenerationJob job = jobs.save(new WeeklyPlanPregenerationJob(1L, WEEK));
+		jobs.claim(job.getId(), MAX_ATTEMPTS, leaseStart(), LocalDateTime.now());
+		WeeklyPlanPregenerationJob running = jobs.findById(job.getId()).orElseThrow();
+		running.markFailed("Groq timeout");
+		jobs.save(running);
+
+		assertEquals(1, jobs.findRunnable(WEEK, MAX_ATTEMPTS, leaseStart()).size());
+		assertEquals(1, jobs.claim(job.getId(), MAX_ATTEMPTS, leaseStart(), LocalDateTime.now()));
+		assertEquals(0, jobs.failAbandoned(WEEK, MAX_ATTEMPTS, leaseStart(), LocalDateTime.now()));
+	}
+}
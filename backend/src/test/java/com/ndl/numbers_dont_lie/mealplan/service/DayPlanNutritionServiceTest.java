@@ -0,0 +1,129 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealType;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.entity.VersionReason;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanVersionRepository;
+import com.ndl.numbers_dont_lie.recipe.service.RecipeNutritionCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Backfilled day totals are persisted outside the (transaction-less) summary read, and a recipe
+ * change clears the totals of the days using it.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DayPlanNutritionService.class, MealNutritionEngine.class, RecipeNutritionCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DayPlanNutritionServiceTest {
+
+	private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+	@Autowired
+	private DayPlanNutritionService nutritionService;
+	@Autowired
+	private DayPlanRepository dayPlans;
+	@Autowired
+	private MealPlanRepository plans;
+	@Autowired
+	private MealPlanVersionRepository versions;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void cleanUp() {
+		dayPlans.deleteAll();
+		versions.deleteAll();
+		plans.deleteAll();
+	}
+
+	/** A day with a 500 kcal and a 700 kcal meal; recipeId is set on the second one. */
+	private Long savedDay(String recipeId, double[] totals) {
+		MealPlan plan = plans.save(new MealPlan(1L, PlanDuration.DAILY, "UTC"));
+		MealPlanVersion version = versions.save(new MealPlanVersion(plan, 1, VersionReason.INITIAL_GENERATION));
+		DayPlan day = new DayPlan(version, DAY);
+		day.setUserId(1L);
+		day.addMeal(meal(day, MealType.BREAKFAST, 0, 500, null));
+		day.addMeal(meal(day, MealType.LUNCH, 1, 700, recipeId));
+		if (totals != null) {
+			day.setNutritionTotals(totals, 0);
+		}
+		return dayPlans.save(day).getId();
+	}
+
+	private static Meal meal(DayPlan day, MealType type, int index, int calories, String recipeId) {
+		Meal meal = new Meal(day, type, index, DAY.atTime(8 + 4 * index, 0));
+		meal.setIsCustom(false);
+		meal.setPlannedCalories(calories);
+		meal.setRecipeId(recipeId);
+		return meal;
+	}
+
+	private DayPlan load(Long id) {
+		return dayPlans.findByIdInWithMeals(List.of(id)).get(0);
+	}
+
+	@Test
+	void backfilledTotalsArePersisted() {
+		Long id = savedDay(null, null);
+		assertFalse(load(id).hasNutritionTotals());
+
+		double[] totals = nutritionService.totalsFor(load(id));
+
+		assertEquals(1200.0, totals[0], 1e-9);
+		DayPlan stored = load(id);
+		assertEquals(1200.0, stored.getNutritionTotals()[0], 1e-9);
+		assertEquals(2, stored.getEstimatedMeals());
+	}
+
+	@Test
+	void backfillDoesNotOverwriteStoredTotals() {
+		Long id = savedDay(null, new double[] {900.0, 50.0, 100.0, 30.0});
+
+		Integer updated = new TransactionTemplate(transactionManager).execute(
+			status -> dayPlans.storeNutritionTotals(id, 1.0, 1.0, 1.0, 1.0, 0));
+
+		assertEquals(0, updated);
+
+		assertEquals(900.0, load(id).getNutritionTotals()[0], 1e-9);
+	}
+
+	@Test
+	void recipeChangeClearsTotalsOfDaysUsingIt() {
+		Long using = savedDay("recipe-a", new double[] {900.0, 50.0, 100.0, 30.0});
+		Long other = savedDay("recipe-b", new double[] {800.0, 40.0, 90.0, 20.0});
+		long revision = load(using).getRevision();
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(
+			status -> dayPlans.markModifiedByRecipeId("recipe-a"));
+
+		DayPlan changed = load(using);
+		assertNull(changed.getNutritionTotals());
+		assertEquals(revision + 1, changed.getRevision());
+		assertEquals(800.0, load(other).getNutritionTotals()[0], 1e-9);
+	}
+}
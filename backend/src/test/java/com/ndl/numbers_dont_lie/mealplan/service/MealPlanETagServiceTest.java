@@ -0,0 +1,123 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Derivation, memoization bounds and invalidation of version-derived ETags.
+ */
+class MealPlanETagServiceTest {
+
+	private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+	private DayPlanRepository dayPlans;
+	private MealPlanRepository plans;
+	private NutritionalPreferencesRepository preferences;
+
+	@BeforeEach
+	void setUp() {
+		dayPlans = mock(DayPlanRepository.class);
+		plans = mock(MealPlanRepository.class);
+		preferences = mock(NutritionalPreferencesRepository.class);
+	}
+
+	private MealPlanETagService service(int maxUsers, long ttlSeconds) {
+		return new MealPlanETagService(dayPlans, plans, preferences, maxUsers, ttlSeconds);
+	}
+
+	private void stamps(long userId, long revision) {
+		when(dayPlans.findStampsByUserIdAndDateRangeAndDuration(eq(userId), any(), any(), eq(PlanDuration.DAILY)))
+			.thenReturn(List.of(new DayPlanStamp(10L + userId, 100L + userId, revision)));
+	}
+
+	@Test
+	void tagFollowsThePersistedRevision() {
+		stamps(1L, 3L);
+		String first = service(10, 0).dailyTag(1L, "day:" + DAY, DAY, false);
+
+		stamps(1L, 3L);
+		assertEquals(first, service(10, 0).dailyTag(1L, "day:" + DAY, DAY, false));
+
+		stamps(1L, 4L);
+		assertNotEquals(first, service(10, 0).dailyTag(1L, "day:" + DAY, DAY, false));
+	}
+
+	@Test
+	void rememberedTagIsServedUntilInvalidated() {
+		MealPlanETagService service = service(10, 60);
+		stamps(1L, 3L);
+		String first = service.dailyTag(1L, "day:" + DAY, DAY, false);
+		stamps(1L, 4L);
+
+		assertEquals(first, service.dailyTag(1L, "day:" + DAY, DAY, false));
+		verify(dayPlans, times(1)).findStampsByUserIdAndDateRangeAndDuration(anyLong(), any(), any(), any());
+
+		service.invalidateUser(1L);
+		assertNotEquals(first, service.dailyTag(1L, "day:" + DAY, DAY, false));
+	}
+
+	@Test
+	void zeroTtlAlwaysRecomputes() {
+		MealPlanETagService service = service(10, 0);
+		stamps(1L, 3L);
+		service.dailyTag(1L, "day:" + DAY, DAY, false);
+		service.dailyTag(1L, "day:" + DAY, DAY, false);
+		service.remember(1L, "week:" + DAY, "\"abc\"");
+
+		verify(dayPlans, times(2)).findStampsByUserIdAndDateRangeAndDuration(anyLong(), any(), any(), any());
+		assertNull(service.cachedTag(1L, "week:" + DAY));
+	}
+
+	@Test
+	void leastRecentlyUsedUsersAreDropped() {
+		MealPlanETagService service = service(2, 60);
+		service.remember(1L, "week:" + DAY, "\"a\"");
+		service.remember(2L, "week:" + DAY, "\"b\"");
+		service.cachedTag(1L, "week:" + DAY);
+		service.remember(3L, "week:" + DAY, "\"c\"");
+
+		assertEquals("\"a\"", service.cachedTag(1L, "week:" + DAY));
+		assertNull(service.cachedTag(2L, "week:" + DAY));
+		assertEquals("\"c\"", service.cachedTag(3L, "week:" + DAY));
+	}
+
+	@Test
+	void recipeEditBumpsPersistedRevisionsAndDropsRememberedTags() {
+		MealPlanETagService service = service(10, 60);
+		service.remember(1L, "shopping-week:" + DAY, "\"a\"");
+
+		service.recipeModified("r-123");
+
+		verify(dayPlans).markModifiedByRecipeId("r-123");
+		assertNull(service.cachedTag(1L, "shopping-week:" + DAY));
+	}
+
+	@Test
+	void weakComparison() {
+		assertTrue(MealPlanETagService.matches("W/\"a\", \"b\"", "\"a\""));
+		assertTrue(MealPlanETagService.matches("*", "\"a\""));
+		assertFalse(MealPlanETagService.matches("\"b\"", "\"a\""));
+		assertFalse(MealPlanETagService.matches(null, "\"a\""));
+	}
+}
@@ -0,0 +1,147 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
+import com.ndl.numbers_dont_lie.mealplan.dto.DailyNutritionSummary;
+import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyNutritionSummary;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealType;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import com.ndl.numbers_dont_lie.recipe.service.RecipeNutritionCache;
+import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batch summaries over a 12-week range: one preferences lookup, one recipe query,
+ * same numbers as the per-day path, which loads targets once per day.
+ */
+class NutritionSummaryServiceBatchTest {
+
+	private static final long USER_ID = 7L;
+	private static final int DAYS = 12 * 7;
+	private static final int RECIPES = 20;
+
+	private NutritionalPreferencesRepository preferencesRepository;
+	private RecipeRepository recipeRepository;
+	private NutritionSummaryService service;
+
+	@BeforeEach
+	void setUp() {
+		preferencesRepository = mock(NutritionalPreferencesRepository.class);
+		recipeRepository = mock(RecipeRepository.class);
+
+		NutritionalPreferences preferences = new NutritionalPreferences(USER_ID);
+		preferences.setCalorieTarget(2200);
+		preferences.setProteinTarget(140);
+		preferences.setCarbsTarget(250);
+		preferences.setFatsTarget(70);
+		when(preferencesRepository.findByUserId(USER_ID)).thenReturn(Optional.of(preferences));
+		when(recipeRepository.findByStableIdIn(anyCollection())).thenReturn(recipes());
+
+		MealNutritionEngine engine = new MealNutritionEngine(new RecipeNutritionCache(recipeRepository));
+		DayPlanNutritionService dayPlanNutritionService = new DayPlanNutritionService(
+			engine, mock(DayPlanRepository.class), mock(PlatformTransactionManager.class));
+		service = new NutritionSummaryService(preferencesRepository, dayPlanNutritionService);
+	}
+
+	@Test
+	void twelveWeeksLoadTargetsAndRecipesOnce() {
+		List<DayPlan> days = dayPlans();
+
+		List<DailyNutritionSummary> summaries = service.generateSummaries(USER_ID, days);
+
+		assertEquals(DAYS, summaries.size());
+		assertEquals(days.get(DAYS - 1).getDate(), summaries.get(DAYS - 1).getDate());
+		verify(preferencesRepository, times(1)).findByUserId(USER_ID);
+		verify(recipeRepository, times(1)).findByStableIdIn(anyCollection());
+	}
+
+	@Test
+	void batchMatchesPerDayPath() {
+		List<DayPlan> batchDays = dayPlans();
+		List<DayPlan> singleDays = dayPlans();
+
+		List<DailyNutritionSummary> batch = service.generateSummaries(USER_ID, batchDays);
+		List<DailyNutritionSummary> single = new ArrayList<>();
+		for (DayPlan day : singleDays) {
+			single.add(service.generateSummary(day));
+		}
+
+		WeeklyNutritionSummary batchTotal = service.aggregateWeekly(batch);
+		WeeklyNutritionSummary singleTotal = service.aggregateWeekly(single);
+		assertEquals(singleTotal.getTotalCalories(), batchTotal.getTotalCalories(), 1e-6);
+		assertEquals(singleTotal.getTotalProtein(), batchTotal.getTotalProtein(), 1e-6);
+		assertEquals(singleTotal.getTargetCalories(), batchTotal.getTargetCalories(), 1e-6);
+		assertEquals(singleTotal.getCaloriesPercentage(), batchTotal.getCaloriesPercentage(), 1e-6);
+	}
+
+	@Test
+	void perDayPathLoadsTargetsForEveryDay() {
+		for (DayPlan day : dayPlans()) {
+			service.generateSummary(day);
+		}
+
+		verify(preferencesRepository, times(DAYS)).findByUserId(USER_ID);
+		verify(recipeRepository, times(1)).findByStableIdIn(anyCollection());
+	}
+
+	// ========== Fixtures ==========
+
+	private static List<DayPlan> dayPlans() {
+		LocalDate start = LocalDate.of(2025, 1, 6);
+		MealType[] types = {MealType.BREAKFAST, MealType.LUNCH, MealType.DINNER, MealType.SNACK};
+		int[] calories = {500, 700, 800, 200};
+		List<DayPlan> days = new ArrayList<>(DAYS);
+		for (int d = 0; d < DAYS; d++) {
+			DayPlan day = new DayPlan(null, start.plusDays(d));
+			day.setUserId(USER_ID);
+			List<Meal> meals = new ArrayList<>();
+			for (int m = 0; m < types.length; m++) {
+				Meal meal = new Meal(day, types[m], m, start.plusDays(d).atTime(8 + 4 * m, 0));
+				meal.setIsCustom(false);
+				// Every fifth meal has no recipe and is estimated from planned calories
+				meal.setRecipeId((d * 4 + m) % 5 == 0 ? null : "recipe-" + ((d + m) % RECIPES));
+				meal.setPlannedCalories(calories[m]);
+				meals.add(meal);
+			}
+			day.setMeals(meals);
+			days.add(day);
+		}
+		return days;
+	}
+
+	private static List<Recipe> recipes() {
+		List<Recipe> recipes = new ArrayList<>();
+		for (int r = 0; r < RECIPES; r++) {
+			Recipe recipe = new Recipe();
+			recipe.setStableId("recipe-" + r);
+			recipe.setServings(2);
+			Ingredient grain = new Ingredient("grain-" + r, "grain", "g", 100.0, 350.0, 12.0, 70.0, 2.0);
+			Ingredient protein = new Ingredient("protein-" + r, "protein", "g", 100.0, 180.0, 25.0, 0.0, 8.0 + r);
+			List<RecipeIngredient> ingredients = new ArrayList<>();
+			ingredients.add(new RecipeIngredient(recipe, grain, 150.0));
+			ingredients.add(new RecipeIngredient(recipe, protein, 200.0));
+			recipe.setIngredients(ingredients);
+			recipes.add(recipe);
+		}
+		return recipes;
+	}
+}
@@ -0,0 +1,164 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.entity.nutrition.NutritionalPreferences;
+import com.ndl.numbers_dont_lie.mealplan.dto.NutritionTrendResponse;
+import com.ndl.numbers_dont_lie.mealplan.dto.TrendGranularity;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealType;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.entity.VersionReason;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanVersionRepository;
+import com.ndl.numbers_dont_lie.repository.nutrition.NutritionalPreferencesRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The trend aggregation SQL against the H2 (PostgreSQL mode) schema: current-version days only,
+ * stored totals, legacy days computed from meals and recipes, calorie cap and bucketing.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(NutritionTrendService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NutritionTrendServiceTest {
+
+	private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+
+	@Autowired
+	private NutritionTrendService trendService;
+	@Autowired
+	private DayPlanRepository dayPlans;
+	@Autowired
+	private MealPlanRepository plans;
+	@Autowired
+	private MealPlanVersionRepository versions;
+	@Autowired
+	private NutritionalPreferencesRepository preferences;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		// The recipe tables carry vector columns H2 cannot create; the query needs only these columns
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS recipes (id BIGINT PRIMARY KEY, stable_id VARCHAR(16), servings INT)");
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS ingredients (id BIGINT PRIMARY KEY, calories DOUBLE PRECISION, "
+			+ "protein DOUBLE PRECISION, carbs DOUBLE PRECISION, fats DOUBLE PRECISION)");
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS recipe_ingredients (id BIGINT PRIMARY KEY, recipe_id BIGINT, "
+			+ "ingredient_id BIGINT, quantity DOUBLE PRECISION)");
+		jdbcTemplate.update("INSERT INTO recipes (id, stable_id, servings) VALUES (1, 'r1', 2)");
+		jdbcTemplate.update("INSERT INTO ingredients (id, calories, protein, carbs, fats) VALUES (1, 350, 10, 70, 2)");
+		jdbcTemplate.update("INSERT INTO recipe_ingredients (id, recipe_id, ingredient_id, quantity) VALUES (1, 1, 1, 200)");
+
+		NutritionalPreferences target = new NutritionalPreferences(1L);
+		target.setCalorieTarget(1800);
+		preferences.save(target);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM recipe_ingredients");
+		jdbcTemplate.update("DELETE FROM ingredients");
+		jdbcTemplate.update("DELETE FROM recipes");
+		dayPlans.deleteAll();
+		for (MealPlan plan : plans.findAll()) {
+			plan.setCurrentVersion(null);
+			plans.save(plan);
+		}
+		versions.deleteAll();
+		plans.deleteAll();
+		preferences.deleteAll();
+	}
+
+	private MealPlanVersion version(MealPlan plan, int number) {
+		return versions.save(new MealPlanVersion(plan, number, VersionReason.INITIAL_GENERATION));
+	}
+
+	private DayPlan day(MealPlanVersion version, Long userId, LocalDate date, Double calories) {
+		DayPlan day = new DayPlan(version, date);
+		day.setUserId(userId);
+		if (calories != null) {
+			day.setNutritionTotals(new double[] {calories, 100.0, 200.0, 50.0}, 0);
+		}
+		return day;
+	}
+
+	private static Meal meal(DayPlan day, int index, int calories, String recipeId) {
+		Meal meal = new Meal(day, MealType.LUNCH, index, day.getDate().atTime(12 + index, 0));
+		meal.setIsCustom(false);
+		meal.setPlannedCalories(calories);
+		meal.setRecipeId(recipeId);
+		return meal;
+	}
+
+	/** Current version: 2000 kcal (capped to 1800), 1500 kcal, and a legacy day of 600 + 400 kcal. */
+	private void weekOfUserOne() {
+		MealPlan plan = plans.save(new MealPlan(1L, PlanDuration.WEEKLY, "UTC"));
+		MealPlanVersion old = version(plan, 1);
+		MealPlanVersion current = version(plan, 2);
+		dayPlans.save(day(old, 1L, WEEK, 9999.0));
+		dayPlans.save(day(current, 1L, WEEK, 2000.0));
+		dayPlans.save(day(current, 1L, WEEK.plusDays(1), 1500.0));
+		DayPlan legacy = day(current, 1L, WEEK.plusDays(2), null);
+		legacy.addMeal(meal(legacy, 0, 600, "r1"));
+		legacy.addMeal(meal(legacy, 1, 400, null));
+		dayPlans.save(legacy);
+		plan.setCurrentVersion(current);
+		plans.save(plan);
+
+		MealPlan other = plans.save(new MealPlan(2L, PlanDuration.WEEKLY, "UTC"));
+		MealPlanVersion otherVersion = version(other, 1);
+		dayPlans.save(day(otherVersion, 2L, WEEK, 2500.0));
+		other.setCurrentVersion(otherVersion);
+		plans.save(other);
+	}
+
+	@Test
+	void dailySeriesReadsCurrentVersionTotalsAndLegacyMeals() {
+		weekOfUserOne();
+
+		NutritionTrendResponse trends = trendService.getTrends(1L, WEEK, WEEK.plusDays(6), TrendGranularity.DAY);
+
+		List<NutritionTrendResponse.TrendPoint> points = trends.getPoints();
+		assertEquals(3, points.size());
+		assertEquals(WEEK, points.get(0).getPeriodStart());
+		assertEquals(1800, points.get(0).getCalories());
+		assertEquals(1500, points.get(1).getCalories());
+		// 600 kcal of r1 (10 g protein per 350 kcal) plus 400 kcal estimated at 25 % protein
+		assertEquals(1000, points.get(2).getCalories());
+		assertEquals(Math.round(10.0 * 600 / 350 + 400 * 0.25 / 4), points.get(2).getProtein());
+	}
+
+	@Test
+	void weeklySeriesSumsTheWeek() {
+		weekOfUserOne();
+
+		NutritionTrendResponse trends = trendService.getTrends(1L, WEEK, WEEK.plusDays(6), TrendGranularity.WEEK);
+
+		assertEquals(1, trends.getPoints().size());
+		NutritionTrendResponse.TrendPoint week = trends.getPoints().get(0);
+		assertEquals(WEEK, week.getPeriodStart());
+		assertEquals(3, week.getPlannedDays());
+		assertEquals(4300, week.getCalories());
+		assertEquals(3 * 1800, week.getTargetCalories());
+	}
+}
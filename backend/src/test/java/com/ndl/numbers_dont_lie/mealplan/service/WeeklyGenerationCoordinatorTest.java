@@ -0,0 +1,178 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyGenerationClaim;
+import com.ndl.numbers_dont_lie.mealplan.repository.WeeklyGenerationClaimRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Single-flight and cross-node lease behaviour of weekly generation against the H2 schema.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(WeeklyGenerationCoordinator.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WeeklyGenerationCoordinatorTest {
+
+	private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+
+	@Autowired
+	private WeeklyGenerationCoordinator coordinator;
+	@Autowired
+	private WeeklyGenerationClaimRepository claims;
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(coordinator, "waitSeconds", 5L);
+		ReflectionTestUtils.setField(coordinator, "leaseSeconds", 600L);
+		ReflectionTestUtils.setField(coordinator, "pollMillis", 20L);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		claims.deleteAll();
+	}
+
+	private void foreignLease(LocalDateTime expiresAt) {
+		WeeklyGenerationClaim row = new WeeklyGenerationClaim(1L, WEEK);
+		row.take("other-node", expiresAt);
+		claims.save(row);
+	}
+
+	@Test
+	void existingWeekIsReturnedWithoutGenerating() {
+		AtomicInteger generations = new AtomicInteger();
+
+		Long versionId = coordinator.generateOnce(1L, WEEK, () -> 42L, () -> (long) generations.incrementAndGet());
+
+		assertEquals(42L, versionId);
+		assertEquals(0, generations.get());
+	}
+
+	@Test
+	void generationRunsOutsideATransactionAndReleasesTheLease() {
+		AtomicReference<Boolean> inTransaction = new AtomicReference<>();
+		AtomicReference<Boolean> leaseHeld = new AtomicReference<>();
+
+		Long versionId = coordinator.generateOnce(1L, WEEK, () -> null, () -> {
+			inTransaction.set(TransactionSynchronizationManager.isActualTransactionActive());
+			leaseHeld.set(claims.findByUserIdAndWeekStart(1L, WEEK).isPresent());
+			return 7L;
+		});
+
+		assertEquals(7L, versionId);
+		assertFalse(inTransaction.get());
+		assertTrue(leaseHeld.get());
+		assertTrue(claims.findByUserIdAndWeekStart(1L, WEEK).isEmpty());
+	}
+
+	@Test
+	void concurrentReadsShareOneGeneration() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger generations = new AtomicInteger();
+		CompletableFuture<Long> leader = CompletableFuture.supplyAsync(() ->
+			coordinator.generateOnce(1L, WEEK, () -> null, () -> {
+				generations.incrementAndGet();
+				started.countDown();
+				await(release);
+				return 11L;
+			}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<Long> joiner = CompletableFuture.supplyAsync(() ->
+			coordinator.generateOnce(1L, WEEK, () -> null, () -> (long) generations.incrementAndGet()));
+		release.countDown();
+
+		assertEquals(11L, leader.get(5, TimeUnit.SECONDS));
+		assertEquals(11L, joiner.get(5, TimeUnit.SECONDS));
+		assertEquals(1, generations.get());
+	}
+
+	@Test
+	void refreshDoesNotJoinARunningRead() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Long> read = CompletableFuture.supplyAsync(() ->
+			coordinator.generateOnce(1L, WEEK, () -> null, () -> {
+				started.countDown();
+				await(release);
+				return 11L;
+			}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<Long> refresh = CompletableFuture.supplyAsync(() ->
+			coordinator.refreshOnce(1L, WEEK, () -> 12L));
+		release.countDown();
+
+		assertEquals(11L, read.get(5, TimeUnit.SECONDS));
+		assertEquals(12L, refresh.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void waiterReturnsTheWeekAnotherNodeProduced() {
+		foreignLease(LocalDateTime.now().plusMinutes(5));
+		AtomicInteger checks = new AtomicInteger();
+		AtomicInteger generations = new AtomicInteger();
+
+		Long versionId = coordinator.generateOnce(1L, WEEK, () -> {
+			if (checks.incrementAndGet() < 3) {
+				return null;
+			}
+			return 21L;
+		}, () -> (long) generations.incrementAndGet());
+
+		assertEquals(21L, versionId);
+		assertEquals(0, generations.get());
+	}
+
+	@Test
+	void expiredLeaseIsTakenOver() {
+		foreignLease(LocalDateTime.now().minusMinutes(1));
+
+		assertEquals(5L, coordinator.generateOnce(1L, WEEK, () -> null, () -> 5L));
+		assertTrue(claims.findByUserIdAndWeekStart(1L, WEEK).isEmpty());
+	}
+
+	@Test
+	void waitingForAnActiveLeaseTimesOut() {
+		ReflectionTestUtils.setField(coordinator, "waitSeconds", 0L);
+		foreignLease(LocalDateTime.now().plusMinutes(5));
+
+		assertThrows(IllegalStateException.class,
+			() -> coordinator.generateOnce(1L, WEEK, () -> null, () -> 5L));
+		assertEquals("other-node", claims.findByUserIdAndWeekStart(1L, WEEK).orElseThrow().getOwner());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
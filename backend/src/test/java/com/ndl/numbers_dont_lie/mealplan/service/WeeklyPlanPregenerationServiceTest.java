@@ -0,0 +1,107 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.ndl.numbers_dont_lie.ai.AiStrategyService;
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanStamp;
+import com.ndl.numbers_dont_lie.mealplan.dto.PregenerationRunStats;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.entity.PregenerationStatus;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanPregenerationJob;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanVersionRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.WeeklyPlanPregenerationJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Claim-before-work and outcome metrics of the nightly pre-generation run.
+ */
+class WeeklyPlanPregenerationServiceTest {
+
+	private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+
+	private DayPlanRepository dayPlans;
+	private MealPlanVersionRepository versions;
+	private WeeklyPlanPregenerationJobRepository jobs;
+	private WeeklyGenerationCoordinator coordinator;
+	private SimpleMeterRegistry meters;
+	private WeeklyPlanPregenerationService service;
+
+	@BeforeEach
+	void setUp() {
+		dayPlans = mock(DayPlanRepository.class);
+		versions = mock(MealPlanVersionRepository.class);
+		jobs = mock(WeeklyPlanPregenerationJobRepository.class);
+		coordinator = mock(WeeklyGenerationCoordinator.class);
+		meters = new SimpleMeterRegistry();
+		service = new WeeklyPlanPregenerationService(mock(WeeklyMealPlanService.class),
+			mock(WeeklyPlanReadModelService.class), mock(AiStrategyService.class), dayPlans, versions,
+			jobs, coordinator, meters);
+		ReflectionTestUtils.setField(service, "concurrency", 1);
+		ReflectionTestUtils.setField(service, "maxPerMinute", 0);
+		ReflectionTestUtils.setField(service, "maxPerRun", 10);
+		ReflectionTestUtils.setField(service, "maxAttempts", 3);
+		ReflectionTestUtils.setField(service, "leaseMinutes", 30L);
+		ReflectionTestUtils.setField(service, "activeDays", 14);
+		when(versions.findUserIdsWithVersionsCreatedSince(any())).thenReturn(List.of());
+	}
+
+	private static WeeklyPlanPregenerationJob job(long id, long userId) {
+		WeeklyPlanPregenerationJob job = new WeeklyPlanPregenerationJob(userId, WEEK);
+		ReflectionTestUtils.setField(job, "id", id);
+		return job;
+	}
+
+	private double jobsCounted(String outcome) {
+		return meters.counter("mealplan.pregeneration.jobs", "outcome", outcome).count();
+	}
+
+	@Test
+	void jobTakenByAnotherInstanceIsNotProcessed() {
+		when(jobs.findRunnable(eq(WEEK), eq(3), any())).thenReturn(List.of(job(1L, 5L)), List.of());
+		when(jobs.claim(eq(1L), eq(3), any(), any())).thenReturn(0);
+
+		PregenerationRunStats stats = service.run(WEEK, true);
+
+		assertEquals(0, stats.attempted());
+		verify(jobs, never()).findById(anyLong());
+		verify(dayPlans, never()).findStampsByUserIdAndDateRangeAndDuration(anyLong(), any(), any(), any());
+		assertEquals(1.0, jobsCounted("taken"));
+	}
+
+	@Test
+	void claimedJobIsProcessedAndCounted() {
+		WeeklyPlanPregenerationJob claimed = job(1L, 5L);
+		when(jobs.findRunnable(eq(WEEK), eq(3), any())).thenReturn(List.of(job(1L, 5L)), List.of());
+		when(jobs.claim(eq(1L), eq(3), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+		when(jobs.findById(1L)).thenReturn(Optional.of(claimed));
+		when(dayPlans.findStampsByUserIdAndDateRangeAndDuration(5L, WEEK, WEEK.plusDays(6), PlanDuration.WEEKLY))
+			.thenReturn(List.of(new DayPlanStamp(11L, 21L, 0L)));
+
+		PregenerationRunStats stats = service.run(WEEK, true);
+
+		assertEquals(1, stats.attempted());
+		assertEquals(1, stats.skipped());
+		assertEquals(PregenerationStatus.SKIPPED, claimed.getStatus());
+		verify(jobs).save(claimed);
+		verify(jobs).failAbandoned(eq(WEEK), anyInt(), any(), any());
+		assertEquals(1.0, jobsCounted("skipped"));
+		assertEquals(0.0, meters.get("mealplan.pregeneration.remaining").gauge().value());
+	}
+}
@@ -0,0 +1,156 @@
+package com.ndl.numbers_dont_lie.mealplan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.mealplan.dto.WeeklyPlanResponse;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.entity.VersionReason;
+import com.ndl.numbers_dont_lie.mealplan.entity.WeeklyPlanSnapshot;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanVersionRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.WeeklyPlanSnapshotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshot lifecycle of the weekly plan read model against the H2 (PostgreSQL mode) schema:
+ * build, read by current version, version switch and restore, and eviction.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(WeeklyPlanReadModelService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WeeklyPlanReadModelServiceTest {
+
+	private static final LocalDate WEEK = LocalDate.of(2026, 3, 2);
+
+	@Autowired
+	private WeeklyPlanReadModelService readModel;
+	@Autowired
+	private WeeklyPlanSnapshotRepository snapshots;
+	@Autowired
+	private MealPlanRepository plans;
+	@Autowired
+	private MealPlanVersionRepository versions;
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@AfterEach
+	void cleanUp() {
+		snapshots.deleteAll();
+		for (MealPlan plan : plans.findAll()) {
+			plan.setCurrentVersion(null);
+			plans.save(plan);
+		}
+		versions.deleteAll();
+		plans.deleteAll();
+	}
+
+	private MealPlan weeklyPlan(Long userId) {
+		return plans.save(new MealPlan(userId, PlanDuration.WEEKLY, "Europe/Tallinn"));
+	}
+
+	private MealPlanVersion version(MealPlan plan, int number) {
+		return versions.save(new MealPlanVersion(plan, number, VersionReason.INITIAL_GENERATION));
+	}
+
+	private void makeCurrent(MealPlan plan, MealPlanVersion version) {
+		plan.setCurrentVersion(version);
+		plans.save(plan);
+	}
+
+	private static WeeklyPlanResponse response() {
+		return new WeeklyPlanResponse(WEEK, WEEK.plusDays(6), List.of(), null);
+	}
+
+	@Test
+	void materializedSnapshotIsServedForTheCurrentVersion() throws Exception {
+		MealPlan plan = weeklyPlan(1L);
+		MealPlanVersion v1 = version(plan, 1);
+		makeCurrent(plan, v1);
+
+		readModel.materialize(1L, WEEK, v1.getId(), response());
+
+		WeeklyPlanSnapshot snapshot = readModel.findCurrent(1L, WEEK).orElseThrow();
+		assertEquals(v1.getId(), snapshot.getVersionId());
+		assertEquals(WeeklyPlanReadModelService.computeETag(snapshot.getPayload()), snapshot.getEtag());
+		assertEquals(WEEK, objectMapper.readValue(snapshot.getPayload(), WeeklyPlanResponse.class).getStartDate());
+		assertTrue(readModel.findCurrent(1L, WEEK.plusWeeks(1)).isEmpty());
+		assertTrue(readModel.findCurrent(2L, WEEK).isEmpty());
+	}
+
+	@Test
+	void newVersionStopsMatchingAndRestoreMatchesAgain() {
+		MealPlan plan = weeklyPlan(1L);
+		MealPlanVersion v1 = version(plan, 1);
+		MealPlanVersion v2 = version(plan, 2);
+		makeCurrent(plan, v1);
+		readModel.materialize(1L, WEEK, v1.getId(), response());
+
+		makeCurrent(plan, v2);
+		assertTrue(readModel.findCurrent(1L, WEEK).isEmpty());
+
+		makeCurrent(plan, v1);
+		assertEquals(v1.getId(), readModel.findCurrent(1L, WEEK).orElseThrow().getVersionId());
+	}
+
+	@Test
+	void rebuildOverwritesTheRowOfTheSameKey() {
+		MealPlan plan = weeklyPlan(1L);
+		MealPlanVersion v1 = version(plan, 1);
+		makeCurrent(plan, v1);
+
+		WeeklyPlanSnapshot first = readModel.materialize(1L, WEEK, v1.getId(), response());
+		WeeklyPlanResponse changed = new WeeklyPlanResponse(WEEK, WEEK.plusDays(5), List.of(), null);
+		WeeklyPlanSnapshot second = readModel.materialize(1L, WEEK, v1.getId(), changed);
+
+		assertEquals(first.getId(), second.getId());
+		assertEquals(1, snapshots.count());
+		assertArrayEquals(second.getPayload(), readModel.findCurrent(1L, WEEK).orElseThrow().getPayload());
+	}
+
+	@Test
+	void evictionRemovesOnlyTheTargetedRows() {
+		MealPlan plan = weeklyPlan(1L);
+		MealPlanVersion v1 = version(plan, 1);
+		MealPlanVersion v2 = version(plan, 2);
+		makeCurrent(plan, v1);
+		MealPlan other = weeklyPlan(2L);
+		MealPlanVersion otherVersion = version(other, 1);
+		makeCurrent(other, otherVersion);
+		readModel.materialize(1L, WEEK, v1.getId(), response());
+		readModel.materialize(1L, WEEK.plusWeeks(1), v2.getId(), response());
+		readModel.materialize(2L, WEEK, otherVersion.getId(), response());
+
+		readModel.evictForDayPlan(new DayPlan(v1, WEEK));
+		assertTrue(readModel.findCurrent(1L, WEEK).isEmpty());
+		assertEquals(2, snapshots.count());
+
+		readModel.evictUser(1L);
+		assertEquals(1, snapshots.count());
+		assertTrue(readModel.findCurrent(2L, WEEK).isPresent());
+
+		readModel.evictAll();
+		assertEquals(0, snapshots.count());
+	}
+}
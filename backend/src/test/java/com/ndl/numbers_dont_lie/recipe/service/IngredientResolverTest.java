@@ -0,0 +1,88 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Matching tiers, hit/miss accounting and index rebuilds of the in-memory ingredient resolver.
+ */
+class IngredientResolverTest {
+
+	private IngredientRepository ingredientRepository;
+	private SimpleMeterRegistry registry;
+	private IngredientResolver resolver;
+
+	@BeforeEach
+	void setUp() {
+		ingredientRepository = mock(IngredientRepository.class);
+		when(ingredientRepository.findAll()).thenReturn(catalog());
+		registry = new SimpleMeterRegistry();
+		resolver = new IngredientResolver(ingredientRepository, registry);
+	}
+
+	private static List<Ingredient> catalog() {
+		String[] labels = {"chicken breast", "brown rice", "olive oil", "greek yogurt", "rice"};
+		List<Ingredient> catalog = new ArrayList<>();
+		for (int i = 0; i < labels.length; i++) {
+			Ingredient ingredient = new Ingredient("ing-" + i, labels[i], "g", 100.0, 100.0, 1.0, 1.0, 1.0);
+			ReflectionTestUtils.setField(ingredient, "id", (long) i + 1);
+			catalog.add(ingredient);
+		}
+		return catalog;
+	}
+
+	private double resolutions(String outcome) {
+		return registry.get("nutrition.ingredient.resolutions").tag("outcome", outcome).functionCounter().count();
+	}
+
+	@Test
+	void matchingTiers() {
+		assertEquals("olive oil", resolver.resolve("ing-2", "something else").getLabel());
+		assertEquals("brown rice", resolver.resolve(null, "  Brown   Rice ").getLabel());
+		// Token containment prefers the shorter label
+		assertEquals("rice", resolver.resolve(null, "rice, cooked").getLabel());
+		assertEquals("chicken breast", resolver.resolve(null, "chicken").getLabel());
+		assertEquals("greek yogurt", resolver.resolve(null, "greek yoghurt").getLabel());
+		assertNull(resolver.resolve(null, "tofu"));
+		assertEquals(3L, resolver.findById(3L).getId());
+	}
+
+	@Test
+	void hitsAndMissesAreExported() {
+		resolver.resolve(null, "brown rice");
+		resolver.resolve(null, "olive oil");
+		resolver.resolve(null, "tofu");
+		resolver.resolve(null, "tofu");
+
+		assertEquals(4, resolver.getLookupCount());
+		assertEquals(2, resolver.getMissCount());
+		assertEquals(2.0, resolutions("hit"));
+		assertEquals(2.0, resolutions("miss"));
+	}
+
+	@Test
+	void invalidateRebuildsTheIndexOnNextLookup() {
+		resolver.resolve(null, "rice");
+		resolver.resolve(null, "olive oil");
+		verify(ingredientRepository, times(1)).findAll();
+
+		resolver.invalidate();
+		resolver.resolve(null, "rice");
+
+		verify(ingredientRepository, times(2)).findAll();
+	}
+}
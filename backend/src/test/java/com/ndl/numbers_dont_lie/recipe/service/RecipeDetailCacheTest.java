@@ -0,0 +1,183 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.ai.function.DatabaseNutritionCalculator;
+import com.ndl.numbers_dont_lie.mealplan.service.WeeklyPlanReadModelService;
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Loading, serving, scaling, invalidation and LRU bound of pre-rendered recipe details.
+ */
+class RecipeDetailCacheTest {
+
+	private static final Ingredient RICE = ingredient(1L, "rice", 350.0, 8.0, 78.0, 1.0);
+	private static final Ingredient OIL = ingredient(2L, "olive oil", 880.0, 0.0, 0.0, 100.0);
+
+	private RecipeRepository recipeRepository;
+	private RecipeDetailCache cache;
+
+	@BeforeEach
+	void setUp() {
+		IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+		when(ingredientRepository.findAll()).thenReturn(List.of(RICE, OIL));
+		DatabaseNutritionCalculator calculator = new DatabaseNutritionCalculator(
+			new IngredientResolver(ingredientRepository, new SimpleMeterRegistry()));
+		recipeRepository = mock(RecipeRepository.class);
+		when(recipeRepository.findByStableId(anyString())).thenReturn(Optional.empty());
+		cache = new RecipeDetailCache(recipeRepository, calculator, new ObjectMapper(),
+			mock(PlatformTransactionManager.class), 16);
+	}
+
+	@AfterEach
+	void clearSynchronization() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private static Ingredient ingredient(long id, String label, double kcal, double protein, double carbs, double fats) {
+		Ingredient ingredient = new Ingredient("ing-" + id, label, "g", 100.0, kcal, protein, carbs, fats);
+		ReflectionTestUtils.setField(ingredient, "id", id);
+		return ingredient;
+	}
+
+	private static Recipe recipe(long id, String stableId) {
+		Recipe recipe = new Recipe();
+		ReflectionTestUtils.setField(recipe, "id", id);
+		recipe.setStableId(stableId);
+		recipe.setTitle("Rice bowl " + id);
+		recipe.setServings(2);
+		List<RecipeIngredient> ingredients = new ArrayList<>();
+		ingredients.add(new RecipeIngredient(recipe, RICE, 200.0));
+		ingredients.add(new RecipeIngredient(recipe, OIL, 10.0));
+		recipe.setIngredients(ingredients);
+		return recipe;
+	}
+
+	private void stored(Recipe recipe) {
+		when(recipeRepository.findByStableId(recipe.getStableId())).thenReturn(Optional.of(recipe));
+		when(recipeRepository.findById(recipe.getId())).thenReturn(Optional.of(recipe));
+	}
+
+	@Test
+	void firstReadLoadsLaterReadsAreServedFromMemory() {
+		stored(recipe(7L, "r00007"));
+
+		RecipeDetailCache.RecipeDetail first = cache.getByStableId("r00007");
+
+		assertSame(first, cache.getByStableId("r00007"));
+		assertSame(first, cache.getById(7L));
+		verify(recipeRepository, times(1)).findByStableId("r00007");
+		verify(recipeRepository, never()).findById(7L);
+		assertEquals(WeeklyPlanReadModelService.computeETag(first.json()), first.etag());
+	}
+
+	@Test
+	void unknownRecipeIsNull() {
+		assertNull(cache.getByStableId("r99999"));
+		assertNull(cache.getById(99L));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void renderedJsonIsTheDetailView() throws Exception {
+		stored(recipe(7L, "r00007"));
+		RecipeDetailCache.RecipeDetail detail = cache.getByStableId("r00007");
+
+		Map<?, ?> json = new ObjectMapper().readValue(detail.json(), Map.class);
+
+		assertEquals("r00007", json.get("stable_id"));
+		assertEquals(2, json.get("servings"));
+		assertEquals(2, ((List<?>) json.get("ingredients")).size());
+		assertEquals(detail.view().get("title"), json.get("title"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void scalingMultipliesBaseVectors() {
+		stored(recipe(7L, "r00007"));
+		RecipeDetailCache.RecipeDetail detail = cache.getByStableId("r00007");
+
+		Map<String, Object> scaled = detail.scaled(4);
+
+		assertEquals(4, scaled.get("servings"));
+		List<Map<String, Object>> ingredients = (List<Map<String, Object>>) scaled.get("ingredients");
+		assertEquals(400.0, (Double) ingredients.get(0).get("quantity"), 1e-9);
+		assertEquals(20.0, (Double) ingredients.get(1).get("quantity"), 1e-9);
+		Map<String, Object> nutrition = (Map<String, Object>) scaled.get("nutrition_summary");
+		// 400 g rice (1400 kcal) + 20 g oil (176 kcal)
+		assertEquals(1576.0, (Double) nutrition.get("calories"), 1e-9);
+		assertEquals(394.0, (Double) nutrition.get("caloriesPerServing"), 1e-9);
+		assertEquals(detail.baseTotals()[0] / 2, (Double) nutrition.get("caloriesPerServing"), 1e-9);
+	}
+
+	@Test
+	void invalidatedEntryIsRebuiltOnNextRead() {
+		Recipe recipe = recipe(7L, "r00007");
+		stored(recipe);
+		RecipeDetailCache.RecipeDetail first = cache.getByStableId("r00007");
+
+		cache.invalidate(recipe);
+		RecipeDetailCache.RecipeDetail second = cache.getByStableId("r00007");
+
+		verify(recipeRepository, times(2)).findByStableId("r00007");
+		assertEquals(first.etag(), second.etag());
+	}
+
+	@Test
+	void invalidationIsRepeatedAfterTheTransactionCompletes() {
+		Recipe recipe = recipe(7L, "r00007");
+		TransactionSynchronizationManager.initSynchronization();
+
+		cache.invalidate(recipe);
+		// A concurrent read re-caches the pre-commit state before the commit
+		cache.get(recipe);
+		assertEquals(1, cache.size());
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		}
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void entriesAreBounded() {
+		for (long id = 1; id <= 20; id++) {
+			cache.get(recipe(id, "r" + id));
+		}
+
+		assertEquals(16, cache.size());
+		// The four oldest were evicted together with their stable id mapping
+		assertNull(cache.getByStableId("r1"));
+		verify(recipeRepository).findByStableId("r1");
+		cache.getByStableId("r20");
+		verify(recipeRepository, never()).findByStableId("r20");
+	}
+}
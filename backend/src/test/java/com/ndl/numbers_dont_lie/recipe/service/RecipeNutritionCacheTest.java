@@ -0,0 +1,128 @@
+package com.ndl.numbers_dont_lie.recipe.service;
+
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-serving vectors, invalidation with slot reclamation, and negative caching of unknown ids.
+ */
+class RecipeNutritionCacheTest {
+
+	private RecipeRepository recipeRepository;
+	private RecipeNutritionCache cache;
+
+	@BeforeEach
+	void setUp() {
+		recipeRepository = mock(RecipeRepository.class);
+		when(recipeRepository.findByStableIdIn(anyCollection())).thenAnswer(invocation -> {
+			Collection<String> ids = invocation.getArgument(0);
+			List<Recipe> found = new ArrayList<>();
+			for (String id : ids) {
+				if (id.startsWith("recipe-")) {
+					found.add(recipe(id, 200.0));
+				}
+			}
+			return found;
+		});
+		cache = new RecipeNutritionCache(recipeRepository);
+	}
+
+	private static Recipe recipe(String stableId, double grams) {
+		Recipe recipe = new Recipe();
+		recipe.setStableId(stableId);
+		recipe.setServings(2);
+		Ingredient rice = new Ingredient("rice", "rice", "g", 100.0, 350.0, 8.0, 78.0, 1.0);
+		List<RecipeIngredient> ingredients = new ArrayList<>();
+		ingredients.add(new RecipeIngredient(recipe, rice, grams));
+		recipe.setIngredients(ingredients);
+		return recipe;
+	}
+
+	@Test
+	void vectorIsPerServingNutritionOfTheIngredients() {
+		cache.preload(List.of("recipe-a"));
+
+		// 200 g of rice over 2 servings = 100 g per serving
+		assertEquals(350.0, cache.perServing("recipe-a", RecipeNutritionCache.KCAL), 1e-9);
+		assertEquals(8.0, cache.perServing("recipe-a", RecipeNutritionCache.PROTEIN), 1e-9);
+		double[] totals = new double[RecipeNutritionCache.VECTOR_SIZE];
+		assertTrue(cache.accumulate("recipe-a", 1.5, totals));
+		assertEquals(525.0, totals[RecipeNutritionCache.KCAL], 1e-9);
+		assertEquals(117.0, totals[RecipeNutritionCache.CARBS], 1e-9);
+	}
+
+	@Test
+	void unknownIdsAreCachedAsMisses() {
+		cache.preload(List.of("recipe-a", "deleted"));
+		cache.preload(List.of("recipe-a", "deleted"));
+
+		verify(recipeRepository, times(1)).findByStableIdIn(anyCollection());
+		assertTrue(Double.isNaN(cache.perServing("deleted", RecipeNutritionCache.KCAL)));
+		assertFalse(cache.accumulate("deleted", 1.0, new double[RecipeNutritionCache.VECTOR_SIZE]));
+
+		cache.invalidate("deleted");
+		cache.preload(List.of("deleted"));
+		verify(recipeRepository, times(2)).findByStableIdIn(anyCollection());
+	}
+
+	@Test
+	void missesAreRequeriedWhenNegativeCachingIsOff() {
+		ReflectionTestUtils.setField(cache, "missTtlSeconds", 0L);
+
+		cache.preload(List.of("deleted"));
+		cache.preload(List.of("deleted"));
+
+		verify(recipeRepository, times(2)).findByStableIdIn(anyCollection());
+	}
+
+	@Test
+	void invalidatedRecipeIsRecomputed() {
+		cache.preload(List.of("recipe-a"));
+		cache.invalidate("recipe-a");
+		assertTrue(Double.isNaN(cache.perServing("recipe-a", RecipeNutritionCache.KCAL)));
+
+		cache.preload(List.of("recipe-a"));
+
+		verify(recipeRepository, times(2)).findByStableIdIn(anyCollection());
+		assertEquals(350.0, cache.perServing("recipe-a", RecipeNutritionCache.KCAL), 1e-9);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void invalidatedSlotsAreReclaimed() {
+		List<String> live = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			live.add("recipe-live-" + i);
+		}
+		cache.preload(live);
+
+		for (int round = 0; round < 1000; round++) {
+			cache.preload(List.of("recipe-edited"));
+			cache.invalidate("recipe-edited");
+		}
+
+		assertEquals(10, cache.size());
+		assertTrue(cache.allocatedSlots() < 100, "allocated slots: " + cache.allocatedSlots());
+		for (String id : live) {
+			assertEquals(350.0, cache.perServing(id, RecipeNutritionCache.KCAL), 1e-9);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.ndl.numbers_dont_lie.shoppinglist.service;
+
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealPlanVersion;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealType;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.entity.VersionReason;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealPlanVersionRepository;
+import com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientRow;
+import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeIngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.service.IngredientResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent meal edits and recipe edits against the materialized day list: a delta is never
+ * lost silently and a list built from an old recipe is never stored.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DayShoppingListServiceTest {
+
+	private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+	private static final long OATS = 7L;
+
+	@Autowired
+	private DayPlanRepository dayPlans;
+	@Autowired
+	private MealPlanRepository plans;
+	@Autowired
+	private MealPlanVersionRepository versions;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private RecipeIngredientRepository recipeIngredients;
+	private DayShoppingListService service;
+	private TransactionTemplate transaction;
+	private TransactionTemplate concurrentTransaction;
+
+	@BeforeEach
+	void setUp() {
+		recipeIngredients = mock(RecipeIngredientRepository.class);
+		when(recipeIngredients.findRowsByRecipeStableIdIn(any())).thenReturn(List.of(oats(50.0)));
+		service = new DayShoppingListService(dayPlans, recipeIngredients, mock(IngredientRepository.class),
+			mock(IngredientResolver.class), transactionManager);
+		transaction = new TransactionTemplate(transactionManager);
+		concurrentTransaction = new TransactionTemplate(transactionManager);
+		concurrentTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		dayPlans.deleteAll();
+		versions.deleteAll();
+		plans.deleteAll();
+	}
+
+	private static RecipeIngredientRow oats(double quantity) {
+		return new RecipeIngredientRow("recipe-a", OATS, "oats", "gram", null, null, quantity);
+	}
+
+	/** A day with one meal of recipe-a, and the given stored list (null = not built). */
+	private Long savedDay(String shoppingList) {
+		MealPlan plan = plans.save(new MealPlan(1L, PlanDuration.DAILY, "UTC"));
+		MealPlanVersion version = versions.save(new MealPlanVersion(plan, 1, VersionReason.INITIAL_GENERATION));
+		DayPlan day = new DayPlan(version, DAY);
+		day.setUserId(1L);
+		Meal meal = new Meal(day, MealType.LUNCH, 0, DAY.atTime(12, 0));
+		meal.setIsCustom(false);
+		meal.setRecipeId("recipe-a");
+		day.addMeal(meal);
+		day.setShoppingList(shoppingList);
+		return dayPlans.save(day).getId();
+	}
+
+	private DayPlan load(Long id) {
+		return dayPlans.findByIdInWithMeals(List.of(id)).get(0);
+	}
+
+	private void addMealDelta(Long id) {
+		DayPlan day = dayPlans.findById(id).orElseThrow();
+		service.afterMealChange(day.getMeals().get(0));
+		day.markModified();
+	}
+
+	private static String list(double quantity) {
+		DayShoppingList list = new DayShoppingList();
+		list.add(OATS, quantity);
+		return list.encode();
+	}
+
+	@Test
+	void sequentialDeltasAccumulate() {
+		Long id = savedDay(list(50.0));
+
+		transaction.executeWithoutResult(status -> addMealDelta(id));
+		transaction.executeWithoutResult(status -> addMealDelta(id));
+
+		assertEquals(list(150.0), load(id).getShoppingList());
+	}
+
+	@Test
+	void concurrentEditOfTheSameDayFailsInsteadOfLosingADelta() {
+		Long id = savedDay(list(50.0));
+
+		assertThrows(OptimisticLockingFailureException.class, () -> transaction.executeWithoutResult(status -> {
+			DayPlan day = dayPlans.findById(id).orElseThrow();
+			concurrentTransaction.executeWithoutResult(inner -> addMealDelta(id));
+			service.afterMealChange(day.getMeals().get(0));
+			day.markModified();
+		}));
+
+		assertEquals(list(100.0), load(id).getShoppingList());
+	}
+
+	@Test
+	void recipeEditFailsAnEditThatLoadedTheOldList() {
+		Long id = savedDay(list(50.0));
+
+		assertThrows(OptimisticLockingFailureException.class, () -> transaction.executeWithoutResult(status -> {
+			DayPlan day = dayPlans.findById(id).orElseThrow();
+			concurrentTransaction.executeWithoutResult(inner -> dayPlans.markModifiedByRecipeId("recipe-a"));
+			service.afterMealChange(day.getMeals().get(0));
+			day.markModified();
+		}));
+
+		assertFalse(load(id).hasShoppingList());
+	}
+
+	@Test
+	void buildThatReadTheOldRecipeDoesNotStoreItsList() {
+		Long id = savedDay(null);
+		when(recipeIngredients.findRowsByRecipeStableIdIn(any())).thenAnswer(invocation -> {
+			// The recipe edit commits after the build read the day, before it reads the recipe lines
+			concurrentTransaction.executeWithoutResult(inner -> dayPlans.markModifiedByRecipeId("recipe-a"));
+			return List.of(oats(50.0));
+		});
+
+		List<DayShoppingList> lists = service.listsFor(List.of(load(id)));
+
+		assertEquals(1, lists.get(0).size());
+		assertFalse(load(id).hasShoppingList());
+	}
+}
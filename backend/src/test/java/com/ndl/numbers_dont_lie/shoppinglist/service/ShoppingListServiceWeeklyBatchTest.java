@@ -0,0 +1,381 @@
+package com.ndl.numbers_dont_lie.shoppinglist.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndl.numbers_dont_lie.mealplan.dto.DayPlanListRow;
+import com.ndl.numbers_dont_lie.mealplan.entity.DayPlan;
+import com.ndl.numbers_dont_lie.mealplan.entity.Meal;
+import com.ndl.numbers_dont_lie.mealplan.entity.MealType;
+import com.ndl.numbers_dont_lie.mealplan.entity.PlanDuration;
+import com.ndl.numbers_dont_lie.mealplan.repository.DayPlanRepository;
+import com.ndl.numbers_dont_lie.mealplan.repository.MealRepository;
+import com.ndl.numbers_dont_lie.recipe.dto.RecipeIngredientRow;
+import com.ndl.numbers_dont_lie.recipe.entity.Ingredient;
+import com.ndl.numbers_dont_lie.recipe.entity.Recipe;
+import com.ndl.numbers_dont_lie.recipe.entity.RecipeIngredient;
+import com.ndl.numbers_dont_lie.recipe.repository.IngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.repository.RecipeIngredientRepository;
+import com.ndl.numbers_dont_lie.recipe.service.IngredientResolver;
+import com.ndl.numbers_dont_lie.recipe.service.UnitConversion;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.RangeShoppingListResponse;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.ShoppingListItemDto;
+import com.ndl.numbers_dont_lie.shoppinglist.dto.WeeklyShoppingListResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Weekly shopping list as a merge of materialized day lists: the first read builds missing days
+ * with one recipe-line query, later reads cost the range lookup only; meal deltas keep a stored
+ * list equal to a rebuild; a range read streams day rows and matches the week; units merge
+ * through canonical conversion.
+ */
+class ShoppingListServiceWeeklyBatchTest {
+
+	private static final long USER_ID = 11L;
+	private static final LocalDate START = LocalDate.of(2025, 3, 3);
+	private static final int RECIPES = 9;
+	private static final String[] LABELS = {"Chicken Breast", "rice", "olive oil", "spinach", "Greek Yogurt", "garlic"};
+
+	private DayPlanRepository dayPlanRepository;
+	private RecipeIngredientRepository recipeIngredientRepository;
+	private DayShoppingListService dayShoppingListService;
+	private ShoppingListService service;
+	private List<Recipe> recipes;
+	private List<DayPlan> currentDays;
+	private Map<Long, DayPlan> dayPlansById;
+
+	@BeforeEach
+	void setUp() {
+		dayPlanRepository = mock(DayPlanRepository.class);
+		recipeIngredientRepository = mock(RecipeIngredientRepository.class);
+		List<Ingredient> catalog = new ArrayList<>();
+		for (int i = 0; i < LABELS.length; i++) {
+			catalog.add(catalogIngredient(1000L + i, LABELS[i], i % 3 == 2 ? "milliliter" : "gram", null));
+		}
+		recipes = recipes(catalog);
+
+		List<DayPlan> week = new ArrayList<>();
+		currentDays = new ArrayList<>();
+		dayPlansById = new HashMap<>();
+		for (int d = 0; d < 7; d++) {
+			LocalDate date = START.plusDays(d);
+			// An older plan for the same date must be ignored by both paths
+			DayPlan stale = dayPlan(100L + d, date, 3);
+			DayPlan current = dayPlan(200L + d, date, 0);
+			week.add(stale);
+			week.add(current);
+			currentDays.add(current);
+			dayPlansById.put(stale.getId(), stale);
+			dayPlansById.put(current.getId(), current);
+			when(dayPlanRepository.findByUserIdAndDateWithMealsAndDurationOrderByIdDesc(USER_ID, date, PlanDuration.WEEKLY))
+				.thenReturn(List.of(current, stale));
+		}
+		when(dayPlanRepository.findByUserIdAndDateRangeWithMealsAndDuration(
+				USER_ID, START, START.plusDays(6), PlanDuration.WEEKLY))
+			.thenReturn(week);
+		when(dayPlanRepository.storeShoppingList(anyLong(), anyLong(), anyString())).thenAnswer(invocation -> {
+			dayPlansById.get(invocation.<Long>getArgument(0)).setShoppingList(invocation.getArgument(2));
+			return 1;
+		});
+		when(recipeIngredientRepository.findRowsByRecipeStableIdIn(anyCollection()))
+			.thenAnswer(invocation -> rows(invocation.getArgument(0)));
+
+		newService(catalog);
+	}
+
+	@Test
+	void firstReadMaterializesThenOneLookup() {
+		WeeklyShoppingListResponse first = service.buildWeeklyShoppingList(USER_ID, START);
+		long firstRoundTrips = roundTrips();
+
+		assertEquals(LABELS.length, first.getItems().size());
+		verify(recipeIngredientRepository, times(1)).findRowsByRecipeStableIdIn(anyCollection());
+		verify(dayPlanRepository, times(7)).storeShoppingList(anyLong(), anyLong(), anyString());
+		for (DayPlan day : currentDays) {
+			assertTrue(day.hasShoppingList(), day.getDate().toString());
+		}
+
+		WeeklyShoppingListResponse second = service.buildWeeklyShoppingList(USER_ID, START);
+		long secondRoundTrips = roundTrips() - firstRoundTrips;
+
+		verify(dayPlanRepository, times(2)).findByUserIdAndDateRangeWithMealsAndDuration(
+			eq(USER_ID), any(), any(), eq(PlanDuration.WEEKLY));
+		verify(recipeIngredientRepository, times(1)).findRowsByRecipeStableIdIn(anyCollection());
+		assertEquals(1, secondRoundTrips);
+		assertEquals(quantities(first), quantities(second));
+		assertTrue(firstRoundTrips > secondRoundTrips, "first read " + firstRoundTrips + " round trips");
+	}
+
+	@Test
+	void weekAndDaysMatchRecipeLines() {
+		Map<String, Double> expected = new LinkedHashMap<>();
+		for (DayPlan day : currentDays) {
+			for (Meal meal : day.getMeals()) {
+				for (Recipe recipe : recipes) {
+					if (!recipe.getStableId().equals(meal.getRecipeId())) {
+						continue;
+					}
+					for (RecipeIngredient line : recipe.getIngredients()) {
+						String unit = UnitConversion.canonical(line.getIngredient().getUnit()).dimension().getBaseUnit();
+						expected.merge(line.getIngredient().getLabel().toLowerCase() + "|" + unit, line.getQuantity(), Double::sum);
+					}
+				}
+			}
+		}
+
+		Map<String, Double> perDay = new LinkedHashMap<>();
+		for (int d = 0; d < 7; d++) {
+			ShoppingListService.AggregationResult day = service.aggregateDay(USER_ID, START.plusDays(d), PlanDuration.WEEKLY);
+			@SuppressWarnings("unchecked")
+			Map<String, ShoppingListItemDto> items =
+				(Map<String, ShoppingListItemDto>) ReflectionTestUtils.getField(day, "aggregated");
+			// Days are formatted separately (g vs kg), so compare in base units
+			for (Map.Entry<String, Double> entry : quantities(new ArrayList<>(items.values())).entrySet()) {
+				perDay.merge(entry.getKey(), entry.getValue(), Double::sum);
+			}
+		}
+		Map<String, Double> week = quantities(service.buildWeeklyShoppingList(USER_ID, START));
+
+		assertEquals(expected.keySet(), week.keySet());
+		assertEquals(expected.keySet(), perDay.keySet());
+		for (String key : expected.keySet()) {
+			// Friendly formatting rounds to the gram/milliliter
+			assertEquals(expected.get(key), week.get(key), 1.0, key);
+			assertEquals(expected.get(key), perDay.get(key), 1.0, key);
+		}
+	}
+
+	@Test
+	void mealDeltasMatchRebuild() {
+		service.buildWeeklyShoppingList(USER_ID, START);
+		DayPlan day = currentDays.get(2);
+		Meal replaced = day.getMeals().stream().filter(meal -> meal.getRecipeId() != null).findFirst().orElseThrow();
+
+		dayShoppingListService.beforeMealChange(replaced);
+		replaced.setRecipeId("r" + ((Integer.parseInt(replaced.getRecipeId().substring(1)) + 4) % RECIPES));
+		dayShoppingListService.afterMealChange(replaced);
+
+		Meal custom = new Meal(day, MealType.SNACK, 9, day.getDate().atTime(21, 0));
+		custom.setRecipeId(null);
+		day.getMeals().add(custom);
+		dayShoppingListService.afterMealChange(custom);
+
+		DayShoppingList maintained = DayShoppingList.decode(day.getShoppingList());
+		day.setShoppingList(null);
+		DayShoppingList rebuilt = dayShoppingListService.listsFor(List.of(day)).get(0);
+
+		assertEquals(asMap(rebuilt).keySet(), asMap(maintained).keySet());
+		asMap(rebuilt).forEach((id, quantity) -> assertEquals(quantity, asMap(maintained).get(id), 1e-9));
+	}
+
+	@Test
+	void rangeStreamsRowsAndMatchesWeek() throws Exception {
+		when(dayPlanRepository.streamListRowsByUserIdAndDateRange(
+				USER_ID, START, START.plusDays(6), PlanDuration.WEEKLY))
+			.thenAnswer(invocation -> dayPlansById.values().stream()
+				.sorted(Comparator.comparing(DayPlan::getDate).thenComparing(DayPlan::getId, Comparator.reverseOrder()))
+				.map(day -> new DayPlanListRow(day.getId(), day.getDate(), day.getShoppingList())));
+		when(dayPlanRepository.findByIdInWithMeals(anyCollection()))
+			.thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream().map(dayPlansById::get).toList());
+		// Half the days already materialized, the rest built in batches while aggregating
+		dayShoppingListService.listsFor(currentDays.subList(0, 4));
+
+		RangeShoppingListResponse range = service.buildRangeShoppingList(USER_ID, START, START.plusDays(6));
+
+		assertEquals(7, range.getDaysPlanned());
+		verify(dayPlanRepository, times(1)).findByIdInWithMeals(anyCollection());
+		assertEquals(quantities(service.buildWeeklyShoppingList(USER_ID, START)), quantities(range.getItems()));
+
+		ShoppingListStreamWriter writer = new ShoppingListStreamWriter(new ObjectMapper());
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		writer.writeJson(range, json);
+		RangeShoppingListResponse parsed = new ObjectMapper().readValue(json.toByteArray(), RangeShoppingListResponse.class);
+		assertEquals(quantities(range.getItems()), quantities(parsed.getItems()));
+
+		ByteArrayOutputStream csv = new ByteArrayOutputStream();
+		writer.writeCsv(range, csv);
+		String[] lines = csv.toString(StandardCharsets.UTF_8).split("\r\n");
+		assertEquals("ingredient,quantity,unit,category", lines[0]);
+		assertEquals(range.getItems().size() + 1, lines.length);
+	}
+
+	@Test
+	void rangeRejectsTooLongRange() {
+		assertThrows(IllegalArgumentException.class,
+			() -> service.buildRangeShoppingList(USER_ID, START, START.plusDays(92)));
+		assertThrows(IllegalArgumentException.class,
+			() -> service.buildRangeShoppingList(USER_ID, START, START.minusDays(1)));
+	}
+
+	@Test
+	void unitsMergeAcrossSpellingsAndFormatFriendly() {
+		Ingredient grams = catalogIngredient(1L, "Oats", "g", null);
+		Ingredient kilos = catalogIngredient(2L, "oats", "kg", null);
+		Ingredient milk = catalogIngredient(3L, "milk", "cup", null);
+		Ingredient honey = catalogIngredient(4L, "honey", "tbsp", 1.4);
+		Ingredient garlic = catalogIngredient(5L, "garlic", "clove", null);
+		newService(List.of(grams, kilos, milk, honey, garlic));
+		Recipe recipe = new Recipe();
+		recipe.setStableId("porridge");
+		recipe.setIngredients(List.of(
+			new RecipeIngredient(recipe, grams, 600.0),
+			new RecipeIngredient(recipe, kilos, 0.5),
+			new RecipeIngredient(recipe, milk, 5.0),
+			new RecipeIngredient(recipe, honey, 2.0),
+			new RecipeIngredient(recipe, garlic, 3.0)));
+		recipes = List.of(recipe);
+
+		DayPlan day = new DayPlan(null, START);
+		ReflectionTestUtils.setField(day, "id", 1L);
+		dayPlansById.put(1L, day);
+		Meal meal = new Meal(day, MealType.BREAKFAST, 0, START.atTime(8, 0));
+		meal.setRecipeId("porridge");
+		day.setMeals(List.of(meal));
+		when(dayPlanRepository.findByUserIdAndDateRangeWithMealsAndDuration(
+				USER_ID, START, START.plusDays(6), PlanDuration.WEEKLY))
+			.thenReturn(List.of(day));
+
+		Map<String, ShoppingListItemDto> items = new LinkedHashMap<>();
+		for (ShoppingListItemDto item : service.buildWeeklyShoppingList(USER_ID, START).getItems()) {
+			items.put(item.getIngredient(), item);
+		}
+
+		assertEquals(4, items.size());
+		assertEquals(1.1, items.get("oats").getTotalQuantity(), 1e-9);
+		assertEquals("kg", items.get("oats").getUnit());
+		assertEquals("Grains", items.get("oats").getCategory());
+		assertEquals(1.2, items.get("milk").getTotalQuantity(), 1e-9);
+		assertEquals("l", items.get("milk").getUnit());
+		// 2 tbsp = 30 ml at 1.4 g/ml
+		assertEquals(42.0, items.get("honey").getTotalQuantity(), 1e-9);
+		assertEquals("g", items.get("honey").getUnit());
+		assertEquals(3.0, items.get("garlic").getTotalQuantity(), 1e-9);
+		assertEquals("clove", items.get("garlic").getUnit());
+	}
+
+	// ========== Fixtures ==========
+
+	private void newService(List<Ingredient> catalog) {
+		IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+		when(ingredientRepository.findAll()).thenReturn(catalog);
+		dayShoppingListService = new DayShoppingListService(dayPlanRepository, recipeIngredientRepository,
+			ingredientRepository, new IngredientResolver(ingredientRepository, new SimpleMeterRegistry()), mock(PlatformTransactionManager.class));
+		service = new ShoppingListService(dayPlanRepository, mock(MealRepository.class), recipeIngredientRepository,
+			dayShoppingListService, mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(service, "rangeMaxDays", 92);
+		ReflectionTestUtils.setField(service, "rangeBuildBatchSize", 3);
+	}
+
+	private long roundTrips() {
+		return mockingDetails(dayPlanRepository).getInvocations().size()
+			+ mockingDetails(recipeIngredientRepository).getInvocations().size();
+	}
+
+	private static Map<String, Double> quantities(WeeklyShoppingListResponse response) {
+		return quantities(response.getItems());
+	}
+
+	/**
+	 * Items keyed by name|base unit with quantities converted back to base units.
+	 */
+	private static Map<String, Double> quantities(List<ShoppingListItemDto> items) {
+		Map<String, Double> result = new LinkedHashMap<>();
+		for (ShoppingListItemDto item : items) {
+			UnitConversion.Canonical canonical = UnitConversion.canonical(item.getUnit());
+			assertNotNull(canonical, item.getUnit());
+			result.merge(item.getIngredient() + "|" + canonical.dimension().getBaseUnit(),
+				item.getTotalQuantity() * canonical.factor(), Double::sum);
+		}
+		return result;
+	}
+
+	private static Map<Long, Double> asMap(DayShoppingList list) {
+		Map<Long, Double> map = new HashMap<>();
+		for (int i = 0; i < list.size(); i++) {
+			map.put(list.ingredientIdAt(i), list.quantityAt(i));
+		}
+		return map;
+	}
+
+	private static Ingredient catalogIngredient(Long id, String label, String unit, Double density) {
+		Ingredient ingredient = new Ingredient("ing" + id, label, unit, 100.0, 100.0, 1.0, 1.0, 1.0);
+		ReflectionTestUtils.setField(ingredient, "id", id);
+		ingredient.setDensity(density);
+		return ingredient;
+	}
+
+	private static DayPlan dayPlan(Long id, LocalDate date, int recipeOffset) {
+		DayPlan day = new DayPlan(null, date);
+		ReflectionTestUtils.setField(day, "id", id);
+		day.setUserId(USER_ID);
+		MealType[] types = {MealType.BREAKFAST, MealType.LUNCH, MealType.DINNER, MealType.SNACK};
+		List<Meal> meals = new ArrayList<>();
+		for (int m = 0; m < types.length; m++) {
+			Meal meal = new Meal(day, types[m], m, date.atTime(8 + 4 * m, 0));
+			int seed = date.getDayOfMonth() + m + recipeOffset;
+			// Every fifth meal is custom (no recipe)
+			meal.setRecipeId(seed % 5 == 0 ? null : "r" + (seed % RECIPES));
+			meals.add(meal);
+		}
+		day.setMeals(meals);
+		return day;
+	}
+
+	private static List<Recipe> recipes(List<Ingredient> catalog) {
+		List<Recipe> recipes = new ArrayList<>();
+		for (int r = 0; r < RECIPES; r++) {
+			Recipe recipe = new Recipe();
+			recipe.setStableId("r" + r);
+			List<RecipeIngredient> lines = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				lines.add(new RecipeIngredient(recipe, catalog.get((r + i * 2) % LABELS.length), 10.0 * (r + 1) + i));
+			}
+			recipe.setIngredients(lines);
+			recipes.add(recipe);
+		}
+		return recipes;
+	}
+
+	private List<RecipeIngredientRow> rows(Collection<String> stableIds) {
+		List<RecipeIngredientRow> rows = new ArrayList<>();
+		for (Recipe recipe : recipes) {
+			if (!stableIds.contains(recipe.getStableId())) {
+				continue;
+			}
+			for (RecipeIngredient line : recipe.getIngredients()) {
+				Ingredient ingredient = line.getIngredient();
+				rows.add(new RecipeIngredientRow(recipe.getStableId(), ingredient.getId(), ingredient.getLabel(),
+					ingredient.getUnit(), ingredient.getCategory(), ingredient.getDensity(), line.getQuantity()));
+			}
+		}
+		return rows;
+	}
+}